@@ -159,6 +159,14 @@ public interface Context
      * exceptions can be specified on the corresponding input ports.
      */
     Attribute<Boolean> UNIFIER_SINGLE_FINAL = new Attribute<Boolean>(Boolean.FALSE);
+    /**
+     * Attribute of output port to aggregate the tuples of each partition per streaming window before they are sent to
+     * the unifier. Requires the unifier of the port to implement {@link Operator.Combiner}. The engine accumulates the
+     * tuples in the container of the partition and emits the result of the aggregate at the end of the window, which
+     * reduces the tuples transferred to and processed by the unifier by the aggregation ratio. It only applies to
+     * partitions of which all sinks are unifiers that are not partitioned by key. Operator state is not affected.
+     */
+    Attribute<Boolean> UNIFIER_PRE_AGGREGATE = new Attribute<Boolean>(Boolean.FALSE);
     /**
      * Whether or not to auto record the tuples
      */
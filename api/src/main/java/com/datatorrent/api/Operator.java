@@ -99,6 +99,50 @@ public interface Operator extends Component<OperatorContext>, GenericOperator
 
   }
 
+  /**
+   * A unifier that can also aggregate tuples into partial aggregates, which the engine may compute separately
+   * and merge before passing the result to {@link #process(Object)}. Sliding windows, for example, keep one partial
+   * aggregate per window instead of all tuples of the sliding window.
+   * <p>
+   * Processing the result of an aggregate must be equivalent to processing all tuples that were accumulated into it.
+   * The engine does not call beginWindow, endWindow or process while computing aggregates, and may compute them on an
+   * instance that was not set up, see {@link Context.PortContext#UNIFIER_PRE_AGGREGATE}.
+   *
+   * @param <T> Type of the tuple emitted by the output port which is being unified
+   * @param <A> Type of the partial aggregate, needs to be serializable with the operator state
+   */
+  interface Combiner<T, A> extends Unifier<T>
+  {
+    /**
+     * @return a new aggregate that does not contain any tuples
+     */
+    A createAggregate();
+
+    /**
+     * Add a tuple to the aggregate.
+     *
+     * @param aggregate the aggregate, may be modified
+     * @param tuple
+     * @return the aggregate including the tuple
+     */
+    A accumulate(A aggregate, T tuple);
+
+    /**
+     * Merge two aggregates. The tuples of the second aggregate follow those of the first.
+     *
+     * @param aggregate the aggregate, may be modified
+     * @param other the aggregate to merge, must not be modified
+     * @return the aggregate including the tuples of both aggregates
+     */
+    A merge(A aggregate, A other);
+
+    /**
+     * @param aggregate
+     * @return the tuple to process for the aggregate, or null when there is nothing to process
+     */
+    T getResult(A aggregate);
+  }
+
   /**
    * DelayOperator is an operator of which the outgoing streaming window id is incremented by *one* by the
    * engine, thus allowing loops in the "DAG". The output ports of a DelayOperator, if connected, *must*
@@ -18,11 +18,20 @@
  */
 package com.datatorrent.bufferserver.client;
 
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.datatorrent.bufferserver.util.SharedMemoryRing;
+import com.datatorrent.netlet.EventLoop;
+
 import static com.datatorrent.bufferserver.packet.SubscribeRequestTuple.getSerializedRequest;
 
 /**
@@ -38,6 +47,7 @@ import static com.datatorrent.bufferserver.packet.SubscribeRequestTuple.getSeria
  */
 public abstract class Subscriber extends AuthClient
 {
+  private static final SharedMemoryPoller POLLER = new SharedMemoryPoller();
   private final String id;
 
   public Subscriber(String id)
@@ -46,6 +56,8 @@ public abstract class Subscriber extends AuthClient
     this.id = id;
   }
 
+  private SharedMemoryReader reader;
+
   public void activate(final String version, final String type, final String sourceId, final int mask,
       final Collection<Integer> partitions, final long windowId, final int bufferSize)
   {
@@ -53,6 +65,165 @@ public abstract class Subscriber extends AuthClient
     write(getSerializedRequest(version, id, type, sourceId, mask, partitions, windowId, bufferSize));
   }
 
+  /**
+   * Subscribe asking the buffer server to deliver the data through the shared memory ring instead of the socket.
+   * The buffer server falls back to the socket when it cannot open the ring, typically because it runs on another
+   * host. Either way the data is passed to {@link #read(int)} on the event loop, as if it was read from the socket.
+   *
+   * @param ring ring created by the subscriber, closed when the subscriber disconnects
+   * @param eventloop event loop the subscriber is connected through
+   */
+  public void activate(final String version, final String type, final String sourceId, final int mask,
+      final Collection<Integer> partitions, final long windowId, final int bufferSize, final SharedMemoryRing ring,
+      final EventLoop eventloop)
+  {
+    if (ring == null) {
+      activate(version, type, sourceId, mask, partitions, windowId, bufferSize);
+      return;
+    }
+
+    stopSharedMemoryReader();
+    reader = new SharedMemoryReader(ring, eventloop);
+    POLLER.add(reader);
+    sendAuthenticate();
+    write(getSerializedRequest(version, id, type, sourceId, mask, partitions, windowId, bufferSize, ring.getPath()));
+  }
+
+  @Override
+  public void unregistered(SelectionKey key)
+  {
+    stopSharedMemoryReader();
+    super.unregistered(key);
+  }
+
+  @Override
+  public void disconnected()
+  {
+    stopSharedMemoryReader();
+    super.disconnected();
+  }
+
+  private void stopSharedMemoryReader()
+  {
+    if (reader != null) {
+      reader.shutdown = true;
+      reader = null;
+    }
+  }
+
+  /**
+   * Moves the data from the ring to the read buffer of the subscriber, honoring the read suspension that the
+   * subscriber uses for back pressure. The poller only submits the reader to the event loop, which is the one thread
+   * to access the read buffer of the subscriber and the ring.
+   */
+  private class SharedMemoryReader implements Runnable
+  {
+    private final SharedMemoryRing ring;
+    private final EventLoop eventloop;
+    /* set by the poller when it submits the reader, cleared by the event loop once the reader ran */
+    private final AtomicBoolean submitted = new AtomicBoolean();
+    private volatile boolean idle;
+    private volatile boolean shutdown;
+
+    SharedMemoryReader(SharedMemoryRing ring, EventLoop eventloop)
+    {
+      this.ring = ring;
+      this.eventloop = eventloop;
+    }
+
+    /**
+     * Called by the poller thread, submits the reader unless it still waits for the event loop.
+     *
+     * @return true if the last run moved data, false if the ring was idle
+     */
+    boolean poll()
+    {
+      if (submitted.compareAndSet(false, true)) {
+        eventloop.submit(this);
+      }
+      return !idle;
+    }
+
+    @Override
+    public void run()
+    {
+      if (!shutdown) {
+        try {
+          /* the key of a client that is not registered yet does not have any interest */
+          int len = (key.interestOps() & SelectionKey.OP_READ) == 0 ? 0 : ring.read(buffer());
+          if (len > 0) {
+            read(len);
+          }
+          idle = len == 0;
+          submitted.set(false);
+          return;
+        } catch (CancelledKeyException ex) {
+          logger.debug("{} disconnected", Subscriber.this);
+        } catch (RuntimeException ex) {
+          logger.error("{} failed to read from {}", Subscriber.this, ring, ex);
+        }
+      }
+
+      POLLER.remove(this);
+      ring.close();
+    }
+
+  }
+
+  /**
+   * Single thread handing the rings of all the subscribers in the process to their event loops. It backs off up to a
+   * millisecond while the rings are idle and parks until the next subscriber when there are none.
+   */
+  private static class SharedMemoryPoller implements Runnable
+  {
+    private static final long MAX_PARK_NANOS = 1000000;
+    private final List<SharedMemoryReader> readers = new CopyOnWriteArrayList<>();
+    private Thread thread;
+
+    synchronized void add(SharedMemoryReader reader)
+    {
+      readers.add(reader);
+      if (thread == null) {
+        thread = new Thread(this, "SharedMemoryPoller");
+        thread.setDaemon(true);
+        thread.start();
+      } else {
+        LockSupport.unpark(thread);
+      }
+    }
+
+    void remove(SharedMemoryReader reader)
+    {
+      readers.remove(reader);
+    }
+
+    @Override
+    public void run()
+    {
+      long parkNanos = 0;
+      while (true) {
+        boolean busy = false;
+        for (SharedMemoryReader reader : readers) {
+          busy |= reader.poll();
+        }
+
+        if (busy) {
+          parkNanos = 0;
+        } else if (readers.isEmpty()) {
+          LockSupport.park(this);
+          parkNanos = 0;
+        } else if (parkNanos == 0) {
+          parkNanos = 1000;
+          Thread.yield();
+        } else {
+          LockSupport.parkNanos(this, parkNanos);
+          parkNanos = Math.min(parkNanos << 1, MAX_PARK_NANOS);
+        }
+      }
+    }
+
+  }
+
   @Override
   public String toString()
   {
@@ -18,6 +18,7 @@
  */
 package com.datatorrent.bufferserver.internal;
 
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.HashSet;
 
@@ -46,11 +47,18 @@ import com.datatorrent.netlet.EventLoop;
  */
 public class LogicalNode implements DataListener
 {
+  private static final int MAX_INDEXED_MASK = 0xffff;
   private final String identifier;
   private final String upstream;
   private final String group;
   private final HashSet<PhysicalNode> physicalNodes;
   private final HashSet<BitVector> partitions;
+  /*
+   * partitions indexed by the masked partition value when all partitions share a narrow mask,
+   * so that filtering does not need to match each of the partitions
+   */
+  private BitSet partitionBits;
+  private int partitionMask;
   private final Policy policy = GiveAll.getInstance();
   private final DataListIterator iterator;
   private final long skipWindowId;
@@ -128,7 +136,16 @@ public class LogicalNode implements DataListener
    */
   public void addPartition(int partition, int mask)
   {
+    if (partitions.isEmpty()) {
+      partitionMask = mask;
+      partitionBits = mask >= 0 && mask <= MAX_INDEXED_MASK ? new BitSet(mask + 1) : null;
+    } else if (mask != partitionMask) {
+      partitionBits = null;
+    }
     partitions.add(new BitVector(partition, mask));
+    if (partitionBits != null) {
+      partitionBits.set(partition & mask);
+    }
   }
 
   boolean ready = true;
@@ -269,6 +286,12 @@ public class LogicalNode implements DataListener
                 case MessageType.PAYLOAD_VALUE:
                   Tuple tuple = Tuple.getTuple(data.buffer, data.dataOffset, length);
                   int value = tuple.getPartition();
+                  if (partitionBits != null) {
+                    if (partitionBits.get(value & partitionMask)) {
+                      ready = policy.distribute(physicalNodes, data);
+                    }
+                    break;
+                  }
                   for (BitVector bv : partitions) {
                     if (bv.matches(value)) {
                       ready = policy.distribute(physicalNodes, data);
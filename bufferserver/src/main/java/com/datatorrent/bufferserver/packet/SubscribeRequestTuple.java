@@ -44,6 +44,7 @@ public class SubscribeRequestTuple extends RequestTuple
   private int mask;
   private int[] partitions;
   private int bufferSize;
+  private String sharedMemoryRing = EMPTY_STRING;
 
   @Override
   public void parse()
@@ -145,6 +146,11 @@ public class SubscribeRequestTuple extends RequestTuple
             }
           }
         }
+      } else if (count == 0) {
+        /* skip the count of an unpartitioned subscriber, the buffer size and the optional fields follow it */
+        dataOffset++;
+      } else {
+        return;
       }
 
       bufferSize = readVarInt(dataOffset, limit);
@@ -154,6 +160,23 @@ public class SubscribeRequestTuple extends RequestTuple
       while (buffer[dataOffset++] < 0) {
       }
 
+      /*
+       * read the optional shared memory ring, older subscribers do not send it
+       */
+      if (dataOffset < limit) {
+        idlen = readVarInt(dataOffset, limit);
+        if (idlen > 0) {
+          while (buffer[dataOffset++] < 0) {
+          }
+          sharedMemoryRing = new String(buffer, dataOffset, idlen);
+          dataOffset += idlen;
+        } else if (idlen == 0) {
+          dataOffset++;
+        } else {
+          return;
+        }
+      }
+
       valid = true;
     } catch (NumberFormatException nfe) {
       logger.warn("Unparseable Tuple", nfe);
@@ -230,16 +253,36 @@ public class SubscribeRequestTuple extends RequestTuple
     return partitions;
   }
 
+  /**
+   * @return capacity, in messages, the subscriber asks for its send queue on the server; 0 for the netlet default
+   */
   public int getBufferSize()
   {
     return bufferSize;
   }
 
+  /**
+   * @return path of the shared memory ring the subscriber reads from, empty if it reads from the socket
+   */
+  public String getSharedMemoryRing()
+  {
+    return sharedMemoryRing;
+  }
+
   public static byte[] getSerializedRequest(final String version, final String id, final String down_type,
       final String upstream_id, final int mask, final Collection<Integer> partitions, final long startingWindowId,
       final int bufferSize)
   {
-    byte[] array = new byte[4096];
+    return getSerializedRequest(version, id, down_type, upstream_id, mask, partitions, startingWindowId, bufferSize,
+        null);
+  }
+
+  public static byte[] getSerializedRequest(final String version, final String id, final String down_type,
+      final String upstream_id, final int mask, final Collection<Integer> partitions, final long startingWindowId,
+      final int bufferSize, final String sharedMemoryRing)
+  {
+    /* the strings fit the fixed part, the partition count, mask and each partition take up to 5 bytes */
+    byte[] array = new byte[4096 + (partitions == null ? 0 : (partitions.size() + 2) * 5)];
     int offset = 0;
 
     /* write the type */
@@ -279,6 +322,11 @@ public class SubscribeRequestTuple extends RequestTuple
     /* write the buffer size */
     offset = VarInt.write(bufferSize, array, offset);
 
+    /* write the shared memory ring */
+    if (sharedMemoryRing != null) {
+      offset = Tuple.writeString(sharedMemoryRing, array, offset);
+    }
+
     return Arrays.copyOfRange(array, 0, offset);
   }
 
@@ -289,7 +337,7 @@ public class SubscribeRequestTuple extends RequestTuple
         ", windowId=" + Codec.getStringWindowId((long)baseSeconds | windowId) + ", type=" + streamType +
         ", upstreamIdentifier=" + upstreamIdentifier + ", mask=" + mask +
         ", partitions=" + (partitions == null ? "null" : Arrays.toString(partitions)) +
-        ", bufferSize=" + bufferSize + '}';
+        ", bufferSize=" + bufferSize + ", sharedMemoryRing=" + sharedMemoryRing + '}';
   }
 
   private static final Logger logger = LoggerFactory.getLogger(SubscribeRequestTuple.class);
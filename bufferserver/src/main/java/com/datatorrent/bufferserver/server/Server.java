@@ -18,6 +18,7 @@
  */
 package com.datatorrent.bufferserver.server;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
@@ -49,6 +50,7 @@ import com.datatorrent.bufferserver.packet.ResetRequestTuple;
 import com.datatorrent.bufferserver.packet.SubscribeRequestTuple;
 import com.datatorrent.bufferserver.packet.Tuple;
 import com.datatorrent.bufferserver.storage.Storage;
+import com.datatorrent.bufferserver.util.SharedMemoryRing;
 import com.datatorrent.common.util.NameableThreadFactory;
 import com.datatorrent.netlet.AbstractLengthPrependerClient;
 import com.datatorrent.netlet.DefaultEventLoop;
@@ -258,6 +260,7 @@ public class Server implements ServerListener
       }
 
       ln = subscriberGroups.get(type);
+      final DataList dl = publisherBuffers.get(upstream_identifier);
       serverHelperExecutor.submit(new Runnable()
       {
         @Override
@@ -266,6 +269,7 @@ public class Server implements ServerListener
           ln.boot(eventloop);
           ln.addConnection(connection);
           ln.catchUp();
+          retryBlockedCatchUp(ln, dl);
         }
       });
     } else {
@@ -305,6 +309,7 @@ public class Server implements ServerListener
           ln.addConnection(connection);
           ln.catchUp();
           dl.addDataListener(ln);
+          retryBlockedCatchUp(ln, dl);
         }
       });
     }
@@ -312,6 +317,17 @@ public class Server implements ServerListener
     return ln;
   }
 
+  /**
+   * A subscriber that cannot take all the data it has to catch up with, typically one reading from a shared memory
+   * ring, is otherwise retried only when the publisher flushes more data.
+   */
+  private static void retryBlockedCatchUp(LogicalNode ln, DataList dl)
+  {
+    if (dl != null && !ln.isReady()) {
+      dl.notifyListeners();
+    }
+  }
+
   /**
    *
    * @param request
@@ -476,12 +492,13 @@ public class Server implements ServerListener
 //          if (bufferSize == 0) {
 //            bufferSize = 16 * 1024;
 //          }
+          SharedMemoryRing ring = openSharedMemoryRing(subscriberRequest.getSharedMemoryRing());
           if (subscriberRequest.getVersion().equals(Tuple.FAST_VERSION)) {
             subscriber = new Subscriber(subscriberRequest.getStreamType(), subscriberRequest.getMask(),
-                subscriberRequest.getPartitions(), bufferSize);
+                subscriberRequest.getPartitions(), bufferSize, ring);
           } else {
             subscriber = new Subscriber(subscriberRequest.getStreamType(), subscriberRequest.getMask(),
-                subscriberRequest.getPartitions(), bufferSize)
+                subscriberRequest.getPartitions(), bufferSize, ring)
             {
               @Override
               public int readSize()
@@ -528,21 +545,63 @@ public class Server implements ServerListener
 
   }
 
+  /**
+   * Open the shared memory ring of a subscriber on the same host.
+   *
+   * @param path path of the ring, empty if the subscriber did not ask for one
+   * @return the ring or null if the data has to go through the socket
+   */
+  private static SharedMemoryRing openSharedMemoryRing(String path)
+  {
+    if (path == null || path.isEmpty()) {
+      return null;
+    }
+
+    try {
+      return SharedMemoryRing.open(new File(path));
+    } catch (IOException ex) {
+      logger.info("Delivering through the socket, cannot open shared memory ring {}: {}", path, ex.getMessage());
+      return null;
+    }
+  }
+
   class Subscriber extends AbstractLengthPrependerClient
   {
     private final String type;
     private final int mask;
     private final int[] partitions;
+    /* when present the data goes through the ring in place of the socket, in the same format */
+    private final SharedMemoryRing ring;
+    private final byte[] lengthPrefix = new byte[5];
 
-    Subscriber(String type, int mask, int[] partitions, int bufferSize)
+    Subscriber(String type, int mask, int[] partitions, int bufferSize, SharedMemoryRing ring)
     {
       super(1024, bufferSize);
       this.type = type;
       this.mask = mask;
       this.partitions = partitions;
+      this.ring = ring;
       super.write = false;
     }
 
+    @Override
+    public boolean write(byte[] message, int offset, int size)
+    {
+      if (ring == null) {
+        return super.write(message, offset, size);
+      }
+      return ring.offer(lengthPrefix, VarInt.write(size, lengthPrefix, 0), message, offset, size);
+    }
+
+    @Override
+    public boolean send(byte[] array, int offset, int len)
+    {
+      if (ring == null) {
+        return super.send(array, offset, len);
+      }
+      return ring.offer(array, offset, len);
+    }
+
     @Override
     public void onMessage(byte[] buffer, int offset, int size)
     {
@@ -568,7 +627,8 @@ public class Server implements ServerListener
     public String toString()
     {
       return "Server.Subscriber{" + "type=" + type + ", mask=" + mask +
-          ", partitions=" + (partitions == null ? "null" : Arrays.toString(partitions)) + '}';
+          ", partitions=" + (partitions == null ? "null" : Arrays.toString(partitions)) +
+          (ring == null ? "" : ", ring=" + ring) + '}';
     }
 
     private volatile boolean torndown;
@@ -603,6 +663,29 @@ public class Server implements ServerListener
         }
         ln.getIterator().close();
       }
+
+      if (ring != null) {
+        closeSharedMemoryRing();
+      }
+    }
+
+    /**
+     * The data is written to the ring by the helper thread only, close it there once the channel is removed.
+     */
+    private void closeSharedMemoryRing()
+    {
+      try {
+        serverHelperExecutor.submit(new Runnable()
+        {
+          @Override
+          public void run()
+          {
+            ring.close();
+          }
+        });
+      } catch (RejectedExecutionException ex) {
+        logger.debug("Leaving {} to be unmapped when collected", ring);
+      }
     }
 
   }
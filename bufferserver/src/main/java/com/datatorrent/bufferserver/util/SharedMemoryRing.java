@@ -0,0 +1,325 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.bufferserver.util;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Single producer, single consumer byte ring in a memory mapped file, typically in /dev/shm, that lets the
+ * buffer server hand the stream to a subscriber on the same host without going through the socket.
+ * <p>
+ * The subscriber creates the ring and sends its path with the subscribe request, the buffer server opens it and
+ * writes the very bytes it would otherwise have written to the socket. A write is either taken completely or
+ * rejected, so a message is never split between the ring and a retry.
+ * <p>
+ * The header holds the magic, the capacity, the attached flag, the write position and the read position, each
+ * position on its own cache line. Positions are ever increasing byte counts, the producer is the only one to
+ * update the write position and the consumer the only one to update the read position. Java 7 has neither fences
+ * nor ordered stores on buffers, so a fence made of a volatile store followed by a volatile load separates the data
+ * from the position that publishes it, and a loaded position from the data it covers.
+ * <p>
+ * The producer removes the file as soon as it has mapped it, the mappings stay valid until each side closes the
+ * ring. A ring must be closed by the thread that uses it.
+ */
+public class SharedMemoryRing implements Closeable
+{
+  public static final int DEFAULT_CAPACITY = 4 * 1024 * 1024;
+  private static final int MAGIC = 0x41504d52;
+  private static final int CAPACITY_OFFSET = 4;
+  private static final int ATTACHED_OFFSET = 8;
+  private static final int WRITE_POSITION_OFFSET = 64;
+  private static final int READ_POSITION_OFFSET = 128;
+  private static final int DATA_OFFSET = 192;
+
+  private final File file;
+  private final boolean owner;
+  private final MappedByteBuffer header;
+  private final ByteBuffer data;
+  private final int capacity;
+  private final int mask;
+  /* own position and the last seen position of the other side */
+  private long position;
+  private long limit;
+  private boolean closed;
+  private volatile long fence;
+
+  private SharedMemoryRing(File file, boolean owner, MappedByteBuffer header)
+  {
+    this.file = file;
+    this.owner = owner;
+    this.header = header;
+    capacity = header.getInt(CAPACITY_OFFSET);
+    mask = capacity - 1;
+    header.position(DATA_OFFSET);
+    data = header.slice();
+    header.clear();
+  }
+
+  /**
+   * Create the ring as the consumer.
+   *
+   * @param file file to map, removed by the producer once it maps it or when the ring is closed
+   * @param capacity size of the ring in bytes, a power of 2
+   * @return the ring
+   * @throws IOException if the file cannot be mapped
+   */
+  public static SharedMemoryRing create(File file, int capacity) throws IOException
+  {
+    if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+      throw new IllegalArgumentException("Capacity " + capacity + " is not a power of 2");
+    }
+
+    MappedByteBuffer header = map(file, DATA_OFFSET + capacity);
+    header.putLong(WRITE_POSITION_OFFSET, 0);
+    header.putLong(READ_POSITION_OFFSET, 0);
+    header.putInt(ATTACHED_OFFSET, 0);
+    header.putInt(CAPACITY_OFFSET, capacity);
+    SharedMemoryRing ring = new SharedMemoryRing(file, true, header);
+    ring.fence();
+    header.putInt(0, MAGIC);
+    return ring;
+  }
+
+  /**
+   * Open the ring created by the consumer as the producer and remove its file, both sides have it mapped by then.
+   *
+   * @param file file created by {@link #create(File, int)}
+   * @return the ring
+   * @throws IOException if the file does not exist or is not a ring
+   */
+  public static SharedMemoryRing open(File file) throws IOException
+  {
+    if (!file.isFile() || file.length() <= DATA_OFFSET) {
+      throw new IOException("Not a shared memory ring " + file);
+    }
+
+    MappedByteBuffer header = map(file, file.length());
+    if (header.getInt(0) != MAGIC || DATA_OFFSET + (long)header.getInt(CAPACITY_OFFSET) != file.length()) {
+      throw new IOException("Not a shared memory ring " + file);
+    }
+
+    SharedMemoryRing ring = new SharedMemoryRing(file, false, header);
+    ring.position = header.getLong(WRITE_POSITION_OFFSET);
+    ring.fence();
+    header.putInt(ATTACHED_OFFSET, 1);
+    if (!file.delete()) {
+      logger.debug("Consumer removes {} when closing the ring", file);
+    }
+    return ring;
+  }
+
+  private static MappedByteBuffer map(File file, long size) throws IOException
+  {
+    try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+      raf.setLength(size);
+      /* both sides are on the same host, positions are single aligned stores in the native order */
+      MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+      buffer.order(ByteOrder.nativeOrder());
+      return buffer;
+    }
+  }
+
+  /**
+   * Append the message to the ring.
+   *
+   * @param buffer buffer holding the message
+   * @param offset offset of the message in the buffer
+   * @param length length of the message
+   * @return true if the message was written, false if there is not enough room for it yet
+   */
+  public boolean offer(byte[] buffer, int offset, int length)
+  {
+    return offer(buffer, 0, buffer, offset, length);
+  }
+
+  /**
+   * Append the message along with its prefix to the ring, both or none of them are written.
+   *
+   * @param prefix buffer holding the prefix at offset 0
+   * @param prefixLength length of the prefix
+   * @param buffer buffer holding the message
+   * @param offset offset of the message in the buffer
+   * @param length length of the message
+   * @return true if the message was written, false if there is not enough room for it yet
+   */
+  public boolean offer(byte[] prefix, int prefixLength, byte[] buffer, int offset, int length)
+  {
+    checkOpen();
+    final int size = prefixLength + length;
+    if (size > capacity) {
+      throw new IllegalArgumentException("Message of " + size + " bytes exceeds the capacity " + capacity);
+    }
+
+    if (position + size - limit > capacity) {
+      limit = header.getLong(READ_POSITION_OFFSET);
+      fence();
+      if (position + size - limit > capacity) {
+        return false;
+      }
+    }
+
+    put(prefix, 0, prefixLength);
+    put(buffer, offset, length);
+    fence();
+    header.putLong(WRITE_POSITION_OFFSET, position);
+    return true;
+  }
+
+  private void put(byte[] buffer, int offset, int length)
+  {
+    int index = (int)position & mask;
+    int first = Math.min(length, capacity - index);
+    data.clear().position(index);
+    data.put(buffer, offset, first);
+    if (first < length) {
+      data.clear();
+      data.put(buffer, offset + first, length - first);
+    }
+    position += length;
+  }
+
+  /**
+   * Move the available bytes to the buffer, as many as it has room for.
+   *
+   * @param dst buffer to fill
+   * @return number of bytes moved, 0 if the ring is empty
+   */
+  public int read(ByteBuffer dst)
+  {
+    checkOpen();
+    if (position == limit) {
+      limit = header.getLong(WRITE_POSITION_OFFSET);
+      fence();
+      if (position == limit) {
+        return 0;
+      }
+    }
+
+    int length = (int)Math.min(limit - position, dst.remaining());
+    int index = (int)position & mask;
+    int first = Math.min(length, capacity - index);
+    data.clear().position(index);
+    data.limit(index + first);
+    dst.put(data);
+    if (first < length) {
+      data.clear().limit(length - first);
+      dst.put(data);
+    }
+
+    position += length;
+    fence();
+    header.putLong(READ_POSITION_OFFSET, position);
+    return length;
+  }
+
+  /**
+   * @return true once the producer has opened the ring
+   */
+  public boolean isAttached()
+  {
+    checkOpen();
+    return header.getInt(ATTACHED_OFFSET) != 0;
+  }
+
+  /**
+   * Neither the accesses before nor those after a volatile store followed by a volatile load are moved across it.
+   *
+   * @return the value of the fence field, to be ignored
+   */
+  private long fence()
+  {
+    fence = position;
+    return fence;
+  }
+
+  /* accessing the memory once it is unmapped crashes the process */
+  private void checkOpen()
+  {
+    if (closed) {
+      throw new IllegalStateException("Closed " + this);
+    }
+  }
+
+  public int getCapacity()
+  {
+    return capacity;
+  }
+
+  public String getPath()
+  {
+    return file.getAbsolutePath();
+  }
+
+  /**
+   * Unmap the ring, the consumer also removes the file if the producer never opened it.
+   */
+  @Override
+  public void close()
+  {
+    if (closed) {
+      return;
+    }
+    closed = true;
+
+    if (owner && file.exists() && !file.delete()) {
+      file.deleteOnExit();
+    }
+    unmap(header);
+  }
+
+  /**
+   * Release the mapping through the cleaner of the buffer where the runtime gives access to it, otherwise the
+   * mapping is released once the buffer is garbage collected.
+   */
+  private static void unmap(MappedByteBuffer buffer)
+  {
+    try {
+      Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+      cleanerMethod.setAccessible(true);
+      Object cleaner = cleanerMethod.invoke(buffer);
+      if (cleaner != null) {
+        Method cleanMethod = cleaner.getClass().getMethod("clean");
+        cleanMethod.setAccessible(true);
+        cleanMethod.invoke(cleaner);
+      }
+    } catch (ReflectiveOperationException | RuntimeException ex) {
+      logger.debug("Cannot unmap {}, it is released when garbage collected", buffer, ex);
+    }
+  }
+
+  @Override
+  public String toString()
+  {
+    return "SharedMemoryRing{" + "file=" + file + ", capacity=" + capacity + ", position=" + position + '}';
+  }
+
+  private static final Logger logger = LoggerFactory.getLogger(SharedMemoryRing.class);
+
+}
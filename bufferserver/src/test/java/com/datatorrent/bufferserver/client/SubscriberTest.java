@@ -18,6 +18,7 @@
  */
 package com.datatorrent.bufferserver.client;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.nio.channels.CancelledKeyException;
@@ -38,8 +39,10 @@ import com.datatorrent.bufferserver.server.Server;
 import com.datatorrent.bufferserver.support.Publisher;
 import com.datatorrent.bufferserver.support.Subscriber;
 import com.datatorrent.bufferserver.util.Codec;
+import com.datatorrent.bufferserver.util.SharedMemoryRing;
 import com.datatorrent.netlet.DefaultEventLoop;
 
+import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertTrue;
 
@@ -221,4 +224,81 @@ public class SubscriberTest
     assertTrue((bss2.lastPayload.getWindowId() - 8) * 3 <= bss2.tupleCount.get());
   }
 
+  @Test(timeOut = 2000)
+  public void testSharedMemoryRing() throws Exception
+  {
+    final Publisher bsp = new Publisher("RingPublisher");
+    eventloopClient.connect(address, bsp);
+
+    final Subscriber bss = new Subscriber("RingSubscriber")
+    {
+      @Override
+      public void beginWindow(int windowId)
+      {
+        super.beginWindow(windowId);
+        if (windowId == 9) {
+          synchronized (this) {
+            notifyAll();
+          }
+        }
+      }
+
+    };
+    eventloopClient.connect(address, bss);
+
+    File file = File.createTempFile("ring", null);
+    SharedMemoryRing ring = SharedMemoryRing.create(file, 256);
+    bsp.activate(null, 0x7afebabe, 0);
+    synchronized (bss) {
+      bss.activate(null, "BufferServerOutput/RingSubscriber", "RingPublisher", 0, null, 0L, 0, ring, eventloopClient);
+
+      /* more than the capacity of the ring makes the server wait for the subscriber to catch up */
+      bsp.publishMessage(ResetWindowTuple.getSerializedTuple(0x7afebabe, 500));
+      for (int windowId = 0; windowId < 10; windowId++) {
+        bsp.publishMessage(BeginWindowTuple.getSerializedTuple(windowId));
+        for (int i = 0; i < 20; i++) {
+          bsp.publishMessage(PayloadTuple.getSerializedTuple(i, 8));
+        }
+        bsp.publishMessage(EndWindowTuple.getSerializedTuple(windowId));
+      }
+
+      bss.wait();
+    }
+
+    assertTrue(ring.isAttached(), "attached");
+    assertFalse(file.exists(), "unlinked");
+    assertTrue(bss.tupleCount.get() >= 1 + 9 * 22, "tuples " + bss.tupleCount.get());
+    eventloopClient.disconnect(bss);
+
+    /* the recovering subscriber gets the data retained by the buffer server replayed through its new ring */
+    final Subscriber recovered = new Subscriber("RecoveredSubscriber")
+    {
+      @Override
+      public void endWindow(int windowId)
+      {
+        super.endWindow(windowId);
+        if (windowId == 9) {
+          synchronized (this) {
+            notifyAll();
+          }
+        }
+      }
+
+    };
+    eventloopClient.connect(address, recovered);
+    SharedMemoryRing recoveryRing = SharedMemoryRing.create(File.createTempFile("ring", null), 256);
+    synchronized (recovered) {
+      recovered.activate(null, "BufferServerOutput/RecoveredSubscriber", "RingPublisher", 0, null, 0x7afebabe00000005L, 0,
+          recoveryRing, eventloopClient);
+      recovered.wait();
+    }
+
+    assertTrue(recoveryRing.isAttached(), "attached");
+    assertEquals(recovered.firstPayload.getWindowId(), 6, "first replayed window");
+    assertEquals(recovered.tupleCount.get(), 4 * 22, "replayed tuples");
+
+    eventloopClient.disconnect(bsp);
+    eventloopClient.disconnect(recovered);
+  }
+
 }
@@ -55,6 +55,48 @@ public class SubscribeRequestTupleTest
     assertTrue(parts != null && parts.length == 1 && parts[0] == 5);
 
     assertEquals((long)tuple.getBaseSeconds() << 32 | tuple.getWindowId(), startingWindowId, "Window");
+    assertEquals(tuple.getSharedMemoryRing(), "", "SharedMemoryRing");
+  }
+
+  @Test
+  public void testWideMask()
+  {
+    int mask = 0xffff;
+    ArrayList<Integer> partitions = new ArrayList<Integer>();
+    for (int i = 0; i <= mask; i++) {
+      partitions.add(i);
+    }
+    byte[] serial = getSerializedRequest(null, "SubscriberId", "SubscriberId/StreamType", "PublisherId", mask,
+        partitions, 0L, 1024);
+    SubscribeRequestTuple tuple = (SubscribeRequestTuple)Tuple.getTuple(serial, 0, serial.length);
+    assertTrue(tuple.isValid(), "Valid");
+    assertEquals(tuple.getMask(), mask, "Mask");
+    assertEquals(tuple.getPartitions().length, partitions.size(), "Partitions");
+    assertEquals(tuple.getPartitions()[mask], mask, "Last partition");
+    assertEquals(tuple.getBufferSize(), 1024, "BufferSize");
+  }
+
+  @Test
+  public void testUnpartitionedBufferSize()
+  {
+    byte[] serial = getSerializedRequest(null, "SubscriberId", "SubscriberId/StreamType", "PublisherId", 0, null, 0L,
+        2048);
+    SubscribeRequestTuple tuple = (SubscribeRequestTuple)Tuple.getTuple(serial, 0, serial.length);
+    assertTrue(tuple.isValid(), "Valid");
+    assertEquals(tuple.getPartitions(), null, "Partitions");
+    assertEquals(tuple.getBufferSize(), 2048, "BufferSize");
+  }
+
+  @Test
+  public void testSharedMemoryRing()
+  {
+    String ring = "/dev/shm/ring";
+    byte[] serial = getSerializedRequest(null, "SubscriberId", "SubscriberId/StreamType", "PublisherId", 0, null, 0L,
+        1024, ring);
+    SubscribeRequestTuple tuple = (SubscribeRequestTuple)Tuple.getTuple(serial, 0, serial.length);
+    assertTrue(tuple.isValid(), "Valid");
+    assertEquals(tuple.getBufferSize(), 1024, "BufferSize");
+    assertEquals(tuple.getSharedMemoryRing(), ring, "SharedMemoryRing");
   }
 
 }
@@ -21,6 +21,8 @@ package com.datatorrent.bufferserver.server;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -530,5 +532,46 @@ public class ServerTest
     assertTrue(bss.resetPayloads.isEmpty());
   }
 
+  @Test(dependsOnMethods = {"testAuthFailure"})
+  @SuppressWarnings("SleepWhileInLoop")
+  public void testWideMaskSubscriber() throws InterruptedException
+  {
+    int mask = 0xffff;
+    List<Integer> partitions = new ArrayList<Integer>();
+    for (int i = 0; i <= mask; i += 2) {
+      partitions.add(i);
+    }
+
+    bss = new Subscriber("MySubscriber");
+    bss.setToken(authToken);
+    eventloopClient.connect(address, bss);
+    bss.activate(null, "BufferServerOutput/BufferServerSubscriber", "WidePublisher", mask, partitions, 0L, 0);
+
+    bsp = new Publisher("WidePublisher");
+    bsp.setToken(authToken);
+    eventloopClient.connect(address, bsp);
+    bsp.activate(null, 0x7afebabe, 0);
+
+    long windowId = 0x7afebabe00000000L;
+    bsp.publishMessage(BeginWindowTuple.getSerializedTuple((int)windowId));
+    for (int i = 0; i < 100; i++) {
+      bsp.publishMessage(PayloadTuple.getSerializedTuple(mask - i, 1));
+    }
+    bsp.publishMessage(EndWindowTuple.getSerializedTuple((int)windowId));
+
+    for (int i = 0; i < spinCount; i++) {
+      Thread.sleep(10);
+      if (bss.tupleCount.get() == 52 + bss.resetPayloads.size()) {
+        break;
+      }
+    }
+    Thread.sleep(10); // wait some more to receive more tuples if possible
+
+    eventloopClient.disconnect(bsp);
+    eventloopClient.disconnect(bss);
+
+    assertEquals(bss.tupleCount.get(), 52 + bss.resetPayloads.size());
+  }
+
   private static final Logger logger = LoggerFactory.getLogger(ServerTest.class);
 }
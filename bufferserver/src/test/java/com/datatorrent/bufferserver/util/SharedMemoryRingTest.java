@@ -0,0 +1,148 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.bufferserver.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+/**
+ *
+ */
+public class SharedMemoryRingTest
+{
+  @Test
+  public void testWrapAround() throws IOException
+  {
+    File file = File.createTempFile("ring", null);
+    SharedMemoryRing consumer = SharedMemoryRing.create(file, 16);
+    assertFalse(consumer.isAttached(), "attached");
+    SharedMemoryRing producer = SharedMemoryRing.open(file);
+    assertTrue(consumer.isAttached(), "attached");
+    assertFalse(file.exists(), "unlinked once mapped by both sides");
+
+    byte[] prefix = new byte[] {9};
+    byte[] message = new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9, 10};
+    ByteBuffer dst = ByteBuffer.allocate(64);
+    for (int i = 0; i < 5; i++) {
+      assertTrue(producer.offer(prefix, 1, message, 0, message.length), "offer " + i);
+      assertFalse(producer.offer(message, 0, 6), "full " + i);
+      assertEquals(consumer.read(dst), 11, "read " + i);
+      assertEquals(consumer.read(dst), 0, "empty " + i);
+      dst.flip();
+      assertEquals(dst.get(), 9, "prefix " + i);
+      byte[] read = new byte[message.length];
+      dst.get(read);
+      assertTrue(Arrays.equals(read, message), "message " + i + " " + Arrays.toString(read));
+      dst.clear();
+    }
+
+    /* the destination limits the read */
+    assertTrue(producer.offer(message, 0, message.length), "offer");
+    dst.limit(4);
+    assertEquals(consumer.read(dst), 4, "partial read");
+    dst.limit(64);
+    assertEquals(consumer.read(dst), 6, "remaining read");
+
+    producer.close();
+    consumer.close();
+    try {
+      consumer.read(dst);
+      fail("read from an unmapped ring");
+    } catch (IllegalStateException ex) {
+      assertTrue(ex.getMessage().startsWith("Closed"), ex.getMessage());
+    }
+  }
+
+  @Test(timeOut = 10000)
+  public void testConcurrentProducer() throws Exception
+  {
+    File file = File.createTempFile("ring", null);
+    SharedMemoryRing consumer = SharedMemoryRing.create(file, 64);
+    final SharedMemoryRing producer = SharedMemoryRing.open(file);
+    final int count = 100000;
+    Thread thread = new Thread()
+    {
+      @Override
+      public void run()
+      {
+        ByteBuffer message = ByteBuffer.allocate(8);
+        for (long i = 0; i < count; i++) {
+          message.putLong(0, i);
+          while (!producer.offer(message.array(), 0, 8)) {
+            Thread.yield();
+          }
+        }
+        producer.close();
+      }
+    };
+    thread.start();
+
+    /* reads that end within a message check that the data is complete up to the published position */
+    ByteBuffer dst = ByteBuffer.allocate(8 * 3 + 5);
+    long expected = 0;
+    while (expected < count) {
+      if (consumer.read(dst) == 0) {
+        Thread.yield();
+        continue;
+      }
+      dst.flip();
+      while (dst.remaining() >= 8) {
+        assertEquals(dst.getLong(), expected++, "message");
+      }
+      dst.compact();
+    }
+    thread.join();
+    assertEquals(dst.position(), 0, "remaining");
+    consumer.close();
+  }
+
+  @Test
+  public void testCloseUnattached() throws IOException
+  {
+    File file = File.createTempFile("ring", null);
+    SharedMemoryRing consumer = SharedMemoryRing.create(file, 16);
+    assertTrue(file.exists(), "created");
+    consumer.close();
+    assertFalse(file.exists(), "removed");
+  }
+
+  @Test
+  public void testOpenInvalid() throws IOException
+  {
+    File file = File.createTempFile("ring", null);
+    try {
+      SharedMemoryRing.open(file);
+      fail("empty file opened");
+    } catch (IOException ex) {
+      assertTrue(ex.getMessage().startsWith("Not a shared memory ring"), ex.getMessage());
+    } finally {
+      file.delete();
+    }
+  }
+
+}
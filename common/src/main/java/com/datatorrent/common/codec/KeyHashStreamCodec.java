@@ -0,0 +1,112 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.common.codec;
+
+import java.io.Serializable;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+import com.datatorrent.api.StreamCodec;
+import com.datatorrent.netlet.util.Slice;
+
+/**
+ * Kryo stream codec that partitions by a well distributed hash of the tuple key. All bits of the partition value are
+ * mixed, which is needed when a partitioner assigns many keys under a wide mask, as the
+ * {@link com.datatorrent.common.partitioner.ConsistentHashPartitioner} does.
+ * <p>
+ * Override {@link #getKey(Object)} to partition by a field of the tuple instead of the tuple itself.
+ *
+ * @param <T> tuple type
+ */
+public class KeyHashStreamCodec<T> implements StreamCodec<T>, Serializable
+{
+  private static final long serialVersionUID = 201610190000L;
+  private transient Kryo kryo;
+
+  private Kryo getKryo()
+  {
+    if (kryo == null) {
+      kryo = new Kryo();
+      kryo.setClassLoader(Thread.currentThread().getContextClassLoader());
+    }
+    return kryo;
+  }
+
+  @Override
+  public Object fromByteArray(Slice fragment)
+  {
+    final Input input = new Input(fragment.buffer, fragment.offset, fragment.length);
+    try {
+      return getKryo().readClassAndObject(input);
+    } finally {
+      input.close();
+    }
+  }
+
+  @Override
+  public Slice toByteArray(T o)
+  {
+    final Output output = new Output(32, -1);
+    try {
+      getKryo().writeClassAndObject(output, o);
+    } finally {
+      output.close();
+    }
+    return new Slice(output.getBuffer(), 0, output.position());
+  }
+
+  @Override
+  public int getPartition(T o)
+  {
+    return hash(getKey(o));
+  }
+
+  /**
+   * @param tuple
+   * @return the key that determines the partition of the tuple
+   */
+  protected Object getKey(T tuple)
+  {
+    return tuple;
+  }
+
+  /**
+   * Hash of the key with the bits of {@link Object#hashCode()} mixed (finalizer of MurmurHash3).
+   *
+   * @param key
+   * @return hash value
+   */
+  public static int hash(Object key)
+  {
+    return mix(key == null ? 0 : key.hashCode());
+  }
+
+  public static int mix(int h)
+  {
+    h ^= h >>> 16;
+    h *= 0x85ebca6b;
+    h ^= h >>> 13;
+    h *= 0xc2b2ae35;
+    h ^= h >>> 16;
+    return h;
+  }
+
+}
@@ -154,6 +154,26 @@ public class MetricsAggregator implements AutoMetric.Aggregator, Serializable
     }
   }
 
+  /**
+   * Whether the logical metrics can be aggregated again with this aggregator. This is the case when every metric has
+   * a single {@link SingleMetricAggregator.Combinable} aggregator and the logical metric keeps the physical name.
+   *
+   * @return true if partial aggregates of a subset of the partitions can be combined into the logical metrics
+   */
+  public boolean isCombinable()
+  {
+    for (Map.Entry<String, List<LogicalMetricMeta>> entry : metricLogicalAggregates.entrySet()) {
+      if (entry.getValue().size() != 1) {
+        return false;
+      }
+      LogicalMetricMeta meta = entry.getValue().get(0);
+      if (!(meta.aggregator instanceof SingleMetricAggregator.Combinable) || !entry.getKey().equals(meta.name)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   public String getAggregatorMetricSeparator()
   {
     return aggregatorMetricSeparator;
@@ -28,4 +28,16 @@ import java.util.Collection;
 public interface SingleMetricAggregator
 {
   Object aggregate(Collection<Object> metricValues);
+
+  /**
+   * Marker for aggregators whose result is the same when partial aggregates are aggregated again, such as
+   * {@link com.datatorrent.common.metric.sum.LongSumAggregator} and
+   * {@link com.datatorrent.common.metric.sum.DoubleSumAggregator}. Metrics with such aggregators can be
+   * pre-aggregated before they reach the application master.
+   *
+   * @since 3.5.0
+   */
+  interface Combinable extends SingleMetricAggregator
+  {
+  }
 }
@@ -31,7 +31,7 @@ import com.datatorrent.common.metric.SingleMetricAggregator;
  * @since 3.2.0
  */
 @Name("sum")
-public class DoubleSumAggregator implements SingleMetricAggregator, Serializable
+public class DoubleSumAggregator implements SingleMetricAggregator.Combinable, Serializable
 {
   @Override
   public Object aggregate(Collection<Object> metricValues)
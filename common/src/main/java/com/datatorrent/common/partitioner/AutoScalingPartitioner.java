@@ -0,0 +1,383 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.common.partitioner;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.validation.constraints.Min;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Lists;
+
+import com.datatorrent.api.DefaultPartition;
+import com.datatorrent.api.Operator;
+import com.datatorrent.api.Operator.InputPort;
+import com.datatorrent.api.Partitioner;
+import com.datatorrent.api.Stats.OperatorStats;
+import com.datatorrent.api.Stats.OperatorStats.PortStats;
+import com.datatorrent.api.StatsListener;
+
+/**
+ * Partitioner that scales the number of partitions of a stateless operator with the observed load. It needs to be
+ * registered as stats listener of the operator as well.
+ * <p>
+ * The partitions are scaled up when the average throughput per partition exceeds {@link #setMaxThroughput}, the latency
+ * of a partition exceeds {@link #setMaxLatencyMillis} or the average input queue size of a partition exceeds
+ * {@link #setMaxQueueSize}. They are scaled down when the average throughput is below {@link #setMinThroughput} and
+ * latency and queue size are below their limits by the {@link #setScaleDownRatio}. A target of 0 disables the check.
+ * <p>
+ * The stats of all partitions are evaluated together once each partition has reported since the last evaluation, so
+ * that at most one repartition request is made per round. A condition needs to hold for
+ * {@link #setStableRounds} consecutive rounds and no repartition request is made within {@link #setCooldownMillis}
+ * of the previous one. The new partition count is sized for the throughput in the middle of the min and max targets.
+ * <p>
+ * Partition keys of the first input port are reassigned on scaling, operator state is not redistributed.
+ *
+ * @param <T> The type of the operator
+ */
+@StatsListener.DataQueueSize
+public class AutoScalingPartitioner<T extends Operator> implements Partitioner<T>, StatsListener, Serializable
+{
+  private static final Logger LOG = LoggerFactory.getLogger(AutoScalingPartitioner.class);
+  private static final long serialVersionUID = 201610190000L;
+
+  @Min(1)
+  private int partitionCount = 1;
+  @Min(1)
+  private int minPartitions = 1;
+  @Min(1)
+  private int maxPartitions = 32;
+  private long maxThroughput;
+  private long minThroughput;
+  private long maxLatencyMillis;
+  private long maxQueueSize;
+  private double scaleDownRatio = 0.5;
+  @Min(1)
+  private int stableRounds = 3;
+  private long cooldownMillis = 60000;
+
+  private final Map<Integer, PartitionLoad> loads = new HashMap<>();
+  private Set<Integer> partitionIds = Collections.emptySet();
+  private int upRounds;
+  private int downRounds;
+  private long lastRepartitionMillis;
+
+  public AutoScalingPartitioner()
+  {
+  }
+
+  /**
+   * This constructor is used to create the partitioner from a property.
+   * @param value A string which is an integer of the initial number of partitions
+   */
+  public AutoScalingPartitioner(String value)
+  {
+    this(Integer.parseInt(value));
+  }
+
+  public AutoScalingPartitioner(int partitionCount)
+  {
+    this.partitionCount = partitionCount;
+  }
+
+  @Override
+  public Collection<Partition<T>> definePartitions(Collection<Partition<T>> partitions, PartitioningContext context)
+  {
+    final int newPartitionCount = DefaultPartition.getRequiredPartitionCount(context, this.partitionCount);
+    List<Partition<T>> currentPartitions = Lists.newArrayList(partitions);
+    T operator = currentPartitions.get(0).getPartitionedInstance();
+    if (currentPartitions.get(0).getStats() == null) {
+      // first call to define partitions
+      currentPartitions.clear();
+    } else if (newPartitionCount == currentPartitions.size()) {
+      return currentPartitions;
+    }
+    LOG.info("Scaling partitions {} -> {}", currentPartitions.size(), newPartitionCount);
+
+    List<Partition<T>> newPartitions = Lists.newArrayListWithCapacity(newPartitionCount);
+    List<Partition<T>> keyPartitions = Lists.newArrayListWithCapacity(newPartitionCount);
+    for (int i = 0; i < newPartitionCount; i++) {
+      newPartitions.add(i < currentPartitions.size() ? currentPartitions.get(i) : new DefaultPartition<>(operator));
+      keyPartitions.add(new DefaultPartition<>(operator));
+    }
+
+    List<InputPort<?>> inputPorts = context.getInputPorts();
+    if (inputPorts != null && !inputPorts.isEmpty()) {
+      InputPort<?> port = inputPorts.get(0);
+      DefaultPartition.assignPartitionKeys(keyPartitions, port);
+      for (int i = 0; i < newPartitionCount; i++) {
+        // only partitions with changed keys are marked modified
+        newPartitions.get(i).getPartitionKeys().put(port, keyPartitions.get(i).getPartitionKeys().get(port));
+      }
+    }
+    return newPartitions;
+  }
+
+  @Override
+  public void partitioned(Map<Integer, Partition<T>> partitions)
+  {
+    partitionIds = new HashSet<>(partitions.keySet());
+    partitionCount = partitionIds.size();
+    loads.clear();
+    upRounds = 0;
+    downRounds = 0;
+  }
+
+  @Override
+  public Response processStats(BatchedOperatorStats stats)
+  {
+    Response rsp = new Response();
+    if (!partitionIds.contains(stats.getOperatorId())) {
+      return rsp;
+    }
+
+    long queueSize = 0;
+    int count = 0;
+    if (stats.getLastWindowedStats() != null) {
+      for (OperatorStats os : stats.getLastWindowedStats()) {
+        if (os.inputPorts != null) {
+          for (PortStats ps : os.inputPorts) {
+            queueSize += ps.queueSize;
+            count++;
+          }
+        }
+      }
+    }
+    loads.put(stats.getOperatorId(), new PartitionLoad(stats.getTuplesProcessedPSMA(), stats.getLatencyMA(),
+        count == 0 ? 0 : queueSize / count));
+    if (loads.size() < partitionIds.size()) {
+      return rsp;
+    }
+
+    // all partitions reported, evaluate the round
+    int newCount = evaluate();
+    loads.clear();
+    long now = System.currentTimeMillis();
+    if (newCount != partitionCount && now - lastRepartitionMillis >= cooldownMillis) {
+      lastRepartitionMillis = now;
+      rsp.repartitionRequired = true;
+      rsp.repartitionNote = "Scaling partitions " + partitionCount + " -> " + newCount;
+      LOG.debug(rsp.repartitionNote);
+      partitionCount = newCount;
+      upRounds = 0;
+      downRounds = 0;
+    }
+    return rsp;
+  }
+
+  /**
+   * @return the partition count for the current round
+   */
+  private int evaluate()
+  {
+    final int count = partitionIds.size();
+    long totalThroughput = 0;
+    long latency = 0;
+    long queueSize = 0;
+    for (PartitionLoad load : loads.values()) {
+      totalThroughput += load.throughput;
+      latency = Math.max(latency, load.latency);
+      queueSize = Math.max(queueSize, load.queueSize);
+    }
+    long throughput = totalThroughput / count;
+
+    boolean up = (maxThroughput > 0 && throughput > maxThroughput)
+        || (maxLatencyMillis > 0 && latency > maxLatencyMillis)
+        || (maxQueueSize > 0 && queueSize > maxQueueSize);
+    boolean down = !up && minThroughput > 0 && throughput < minThroughput
+        && (maxLatencyMillis <= 0 || latency < maxLatencyMillis * scaleDownRatio)
+        && (maxQueueSize <= 0 || queueSize < maxQueueSize * scaleDownRatio);
+    upRounds = up ? upRounds + 1 : 0;
+    downRounds = down ? downRounds + 1 : 0;
+
+    int newCount = count;
+    if (upRounds >= stableRounds && count < maxPartitions) {
+      newCount = Math.max(count + 1, getTargetCount(totalThroughput));
+    } else if (downRounds >= stableRounds && count > minPartitions) {
+      newCount = Math.min(count - 1, getTargetCount(totalThroughput));
+    }
+    return Math.max(minPartitions, Math.min(maxPartitions, newCount));
+  }
+
+  private int getTargetCount(long totalThroughput)
+  {
+    long target = maxThroughput > 0 ? (minThroughput + maxThroughput) / 2 : minThroughput;
+    if (target <= 0) {
+      return 0;
+    }
+    return (int)Math.min(Integer.MAX_VALUE, (totalThroughput + target - 1) / target);
+  }
+
+  private static class PartitionLoad implements Serializable
+  {
+    private static final long serialVersionUID = 201610190000L;
+    final long throughput;
+    final long latency;
+    final long queueSize;
+
+    PartitionLoad(long throughput, long latency, long queueSize)
+    {
+      this.throughput = throughput;
+      this.latency = latency;
+      this.queueSize = queueSize;
+    }
+  }
+
+  public int getPartitionCount()
+  {
+    return partitionCount;
+  }
+
+  /**
+   * Initial number of partitions.
+   * @param partitionCount
+   */
+  public void setPartitionCount(int partitionCount)
+  {
+    this.partitionCount = partitionCount;
+  }
+
+  public int getMinPartitions()
+  {
+    return minPartitions;
+  }
+
+  public void setMinPartitions(int minPartitions)
+  {
+    this.minPartitions = minPartitions;
+  }
+
+  public int getMaxPartitions()
+  {
+    return maxPartitions;
+  }
+
+  public void setMaxPartitions(int maxPartitions)
+  {
+    this.maxPartitions = maxPartitions;
+  }
+
+  public long getMaxThroughput()
+  {
+    return maxThroughput;
+  }
+
+  /**
+   * Tuples processed per second per partition above which the partitions are scaled up, 0 to disable.
+   * @param maxThroughput
+   */
+  public void setMaxThroughput(long maxThroughput)
+  {
+    this.maxThroughput = maxThroughput;
+  }
+
+  public long getMinThroughput()
+  {
+    return minThroughput;
+  }
+
+  /**
+   * Tuples processed per second per partition below which the partitions are scaled down, 0 to disable.
+   * @param minThroughput
+   */
+  public void setMinThroughput(long minThroughput)
+  {
+    this.minThroughput = minThroughput;
+  }
+
+  public long getMaxLatencyMillis()
+  {
+    return maxLatencyMillis;
+  }
+
+  /**
+   * Latency of a partition above which the partitions are scaled up, 0 to disable.
+   * @param maxLatencyMillis
+   */
+  public void setMaxLatencyMillis(long maxLatencyMillis)
+  {
+    this.maxLatencyMillis = maxLatencyMillis;
+  }
+
+  public long getMaxQueueSize()
+  {
+    return maxQueueSize;
+  }
+
+  /**
+   * Average number of tuples in the input queue of a partition above which the partitions are scaled up, 0 to disable.
+   * @param maxQueueSize
+   */
+  public void setMaxQueueSize(long maxQueueSize)
+  {
+    this.maxQueueSize = maxQueueSize;
+  }
+
+  public double getScaleDownRatio()
+  {
+    return scaleDownRatio;
+  }
+
+  /**
+   * Fraction of the latency and queue size limits that must not be exceeded to scale down.
+   * @param scaleDownRatio
+   */
+  public void setScaleDownRatio(double scaleDownRatio)
+  {
+    this.scaleDownRatio = scaleDownRatio;
+  }
+
+  public int getStableRounds()
+  {
+    return stableRounds;
+  }
+
+  /**
+   * Number of consecutive rounds of stats from all partitions for which a condition needs to hold to scale.
+   * @param stableRounds
+   */
+  public void setStableRounds(int stableRounds)
+  {
+    this.stableRounds = stableRounds;
+  }
+
+  public long getCooldownMillis()
+  {
+    return cooldownMillis;
+  }
+
+  /**
+   * Minimum time between repartition requests.
+   * @param cooldownMillis
+   */
+  public void setCooldownMillis(long cooldownMillis)
+  {
+    this.cooldownMillis = cooldownMillis;
+  }
+
+}
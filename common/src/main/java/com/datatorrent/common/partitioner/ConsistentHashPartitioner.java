@@ -0,0 +1,521 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.common.partitioner;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import com.datatorrent.api.DefaultPartition;
+import com.datatorrent.api.Operator;
+import com.datatorrent.api.Operator.InputPort;
+import com.datatorrent.api.Partitioner;
+import com.datatorrent.api.Stats.OperatorStats;
+import com.datatorrent.api.StatsListener;
+import com.datatorrent.common.codec.KeyHashStreamCodec;
+
+/**
+ * Partitioner that distributes the keys of the first input port over the partitions with consistent hashing.
+ * <p>
+ * The stream is divided into 2^slotBits slots under a single partition mask. Each partition has a number of virtual
+ * nodes on the ring of slots and owns the slots up to its virtual nodes. When the number of partitions changes, only
+ * the slots of the ring segments that are taken over or released move, and the existing partitions are matched to
+ * the ring by the slots they already own.
+ * <p>
+ * When also registered as stats listener of the operator, repartitioning is requested when the throughput of the
+ * hottest partition exceeds the average throughput by the skew threshold. Slots are then moved from the hottest to
+ * the coldest partition without changing the number of partitions, so only these two partitions are redeployed.
+ * When the number of partitions changes later, the moved slots stay with their partition unless their ring segment
+ * is taken over or released.
+ * If the operator reports the tuple count per slot as metric (map of slot to count) named by {@link #setSlotMetric},
+ * the slots to move are chosen by the sampled counts, otherwise the load of a partition is assumed to be evenly
+ * distributed over its slots.
+ * <p>
+ * Tuples are routed by the partition value of the stream codec, which needs to be well distributed over the slot bits,
+ * see {@link KeyHashStreamCodec}. The state of the operator is not redistributed with the slots.
+ *
+ * @param <T> The type of the operator
+ */
+public class ConsistentHashPartitioner<T extends Operator> implements Partitioner<T>, StatsListener, Serializable
+{
+  private static final Logger LOG = LoggerFactory.getLogger(ConsistentHashPartitioner.class);
+  private static final long serialVersionUID = 201610190000L;
+
+  @Min(1)
+  private int partitionCount = 1;
+  @Min(1)
+  private int virtualNodes = 32;
+  @Min(1)
+  @Max(16)
+  private int slotBits = 10;
+  private double skewThreshold = 1.5;
+  private long cooldownMillis = 60000;
+  private String slotMetric;
+
+  private final Map<Integer, Long> throughput = new HashMap<>();
+  private final Map<Integer, Long> slotCounts = new HashMap<>();
+  private Set<Integer> partitionIds = Collections.emptySet();
+  private long lastRepartitionMillis;
+
+  public ConsistentHashPartitioner()
+  {
+  }
+
+  /**
+   * This constructor is used to create the partitioner from a property.
+   * @param value A string which is an integer of the number of partitions to create
+   */
+  public ConsistentHashPartitioner(String value)
+  {
+    this(Integer.parseInt(value));
+  }
+
+  public ConsistentHashPartitioner(int partitionCount)
+  {
+    this.partitionCount = partitionCount;
+  }
+
+  @Override
+  public Collection<Partition<T>> definePartitions(Collection<Partition<T>> partitions, PartitioningContext context)
+  {
+    final int newPartitionCount = DefaultPartition.getRequiredPartitionCount(context, this.partitionCount);
+    List<InputPort<?>> inputPorts = context.getInputPorts();
+    InputPort<?> port = (inputPorts == null || inputPorts.isEmpty()) ? null : inputPorts.get(0);
+    List<Partition<T>> currentPartitions = Lists.newArrayList(partitions);
+    T operator = currentPartitions.get(0).getPartitionedInstance();
+
+    if (currentPartitions.get(0).getStats() == null) {
+      // first call to define partitions
+      currentPartitions.clear();
+    } else if (newPartitionCount == currentPartitions.size()) {
+      if (port != null) {
+        rebalance(currentPartitions, port);
+      }
+      return currentPartitions;
+    }
+
+    List<Partition<T>> newPartitions = Lists.newArrayListWithCapacity(newPartitionCount);
+    if (port == null) {
+      for (int i = 0; i < newPartitionCount; i++) {
+        newPartitions.add(i < currentPartitions.size() ? currentPartitions.get(i) : new DefaultPartition<>(operator));
+      }
+      return newPartitions;
+    }
+
+    List<Set<Integer>> ring = getSlots(newPartitionCount);
+    Partition<T>[] assigned = match(currentPartitions, ring, port);
+    List<Set<Integer>> slots = keepMovedSlots(currentPartitions, assigned, ring, port);
+    for (int i = 0; i < newPartitionCount; i++) {
+      Partition<T> p = assigned[i];
+      if (p == null) {
+        p = new DefaultPartition<>(operator);
+      }
+      setSlots(p, port, slots.get(i));
+      newPartitions.add(p);
+    }
+    LOG.debug("partitions {} -> {}", currentPartitions.size(), newPartitions.size());
+    return newPartitions;
+  }
+
+  @Override
+  public void partitioned(Map<Integer, Partition<T>> partitions)
+  {
+    partitionIds = new HashSet<>(partitions.keySet());
+    throughput.keySet().retainAll(partitionIds);
+  }
+
+  @Override
+  public Response processStats(BatchedOperatorStats stats)
+  {
+    throughput.put(stats.getOperatorId(), stats.getTuplesProcessedPSMA());
+    if (slotMetric != null && stats.getLastWindowedStats() != null) {
+      for (OperatorStats os : stats.getLastWindowedStats()) {
+        Object counts = os.metrics == null ? null : os.metrics.get(slotMetric);
+        if (counts instanceof Map) {
+          for (Map.Entry<?, ?> e : ((Map<?, ?>)counts).entrySet()) {
+            if (e.getKey() instanceof Integer && e.getValue() instanceof Number) {
+              Long count = slotCounts.get(e.getKey());
+              slotCounts.put((Integer)e.getKey(), (count == null ? 0 : count) + ((Number)e.getValue()).longValue());
+            }
+          }
+        }
+      }
+    }
+
+    Response rsp = new Response();
+    long now = System.currentTimeMillis();
+    if (partitionIds.size() > 1 && throughput.keySet().containsAll(partitionIds) && now - lastRepartitionMillis >= cooldownMillis) {
+      long max = 0;
+      long total = 0;
+      for (Integer id : partitionIds) {
+        long load = throughput.get(id);
+        max = Math.max(max, load);
+        total += load;
+      }
+      if (isSkewed(max, total, partitionIds.size())) {
+        lastRepartitionMillis = now;
+        rsp.repartitionRequired = true;
+        rsp.repartitionNote = "Skewed throughput, max " + max + " average " + total / partitionIds.size();
+      }
+    }
+    return rsp;
+  }
+
+  private boolean isSkewed(long max, long total, int count)
+  {
+    return max > 0 && max > skewThreshold * total / count;
+  }
+
+  /**
+   * Move slots from the hottest to the coldest partition, to level their throughput.
+   */
+  private void rebalance(List<Partition<T>> partitions, InputPort<?> port)
+  {
+    Partition<T> hot = null;
+    Partition<T> cold = null;
+    long total = 0;
+    for (Partition<T> p : partitions) {
+      long load = getLoad(p);
+      total += load;
+      if (hot == null || load > getLoad(hot)) {
+        hot = p;
+      }
+      if (cold == null || load < getLoad(cold)) {
+        cold = p;
+      }
+    }
+    long hotLoad = getLoad(hot);
+    if (hot == cold || !isSkewed(hotLoad, total, partitions.size())) {
+      return;
+    }
+
+    final Map<Integer, Double> slotLoads = new HashMap<>();
+    Set<Integer> hotSlots = hot.getPartitionKeys().get(port).partitions;
+    long sampled = 0;
+    for (Integer slot : hotSlots) {
+      Long count = slotCounts.get(slot);
+      sampled += count == null ? 0 : count;
+    }
+    for (Integer slot : hotSlots) {
+      Long count = slotCounts.get(slot);
+      double share = sampled > 0 ? (count == null ? 0 : count) / (double)sampled : 1.0 / hotSlots.size();
+      slotLoads.put(slot, share * hotLoad);
+    }
+
+    List<Integer> candidates = Lists.newArrayList(hotSlots);
+    Collections.sort(candidates, new Comparator<Integer>()
+    {
+      @Override
+      public int compare(Integer o1, Integer o2)
+      {
+        return Double.compare(slotLoads.get(o2), slotLoads.get(o1));
+      }
+    });
+
+    double remaining = (hotLoad - getLoad(cold)) / 2.0;
+    Set<Integer> newHotSlots = Sets.newHashSet(hotSlots);
+    Set<Integer> newColdSlots = Sets.newHashSet(cold.getPartitionKeys().get(port).partitions);
+    for (Integer slot : candidates) {
+      double load = slotLoads.get(slot);
+      if (load <= remaining && newHotSlots.size() > 1) {
+        newHotSlots.remove(slot);
+        newColdSlots.add(slot);
+        remaining -= load;
+      }
+    }
+
+    if (newHotSlots.size() == hotSlots.size()) {
+      LOG.info("Cannot rebalance, hot slots exceed the target load {} {}", remaining, slotLoads);
+      return;
+    }
+    LOG.info("Moving {} slots to level throughput {} and {}", hotSlots.size() - newHotSlots.size(), hotLoad, getLoad(cold));
+    setSlots(hot, port, newHotSlots);
+    setSlots(cold, port, newColdSlots);
+    slotCounts.clear();
+    throughput.clear();
+  }
+
+  private static long getLoad(Partition<?> p)
+  {
+    return p.getStats() == null ? 0 : p.getStats().getTuplesProcessedPSMA();
+  }
+
+  private void setSlots(Partition<T> p, InputPort<?> port, Set<Integer> slots)
+  {
+    PartitionKeys pks = new PartitionKeys(getSlotMask(), slots);
+    if (!pks.equals(p.getPartitionKeys().get(port))) {
+      p.getPartitionKeys().put(port, pks);
+    }
+  }
+
+  private int getSlotMask()
+  {
+    return (1 << slotBits) - 1;
+  }
+
+  /**
+   * Assign the slots to the given number of partitions with virtual nodes on the ring.
+   *
+   * @param count number of partitions
+   * @return slots per partition index
+   */
+  List<Set<Integer>> getSlots(int count)
+  {
+    int slotMask = getSlotMask();
+    if (count > slotMask + 1) {
+      throw new IllegalArgumentException("Number of partitions " + count + " exceeds the number of slots " + (slotMask + 1));
+    }
+    TreeMap<Integer, Integer> ring = new TreeMap<>();
+    for (int i = 0; i < count; i++) {
+      for (int v = 0; v < virtualNodes; v++) {
+        ring.put(KeyHashStreamCodec.mix(KeyHashStreamCodec.mix(i) + v) & slotMask, i);
+      }
+    }
+
+    List<Set<Integer>> slots = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      slots.add(new HashSet<Integer>());
+    }
+    for (int slot = 0; slot <= slotMask; slot++) {
+      Map.Entry<Integer, Integer> node = ring.ceilingEntry(slot);
+      slots.get(node == null ? ring.firstEntry().getValue() : node.getValue()).add(slot);
+    }
+
+    // virtual nodes may collide, make sure that every partition receives a slot
+    for (Set<Integer> partitionSlots : slots) {
+      if (partitionSlots.isEmpty()) {
+        Set<Integer> largest = Collections.max(slots, new Comparator<Set<Integer>>()
+        {
+          @Override
+          public int compare(Set<Integer> o1, Set<Integer> o2)
+          {
+            return Integer.compare(o1.size(), o2.size());
+          }
+        });
+        Integer slot = largest.iterator().next();
+        largest.remove(slot);
+        partitionSlots.add(slot);
+      }
+    }
+    return slots;
+  }
+
+  /**
+   * Keep the slots that a rebalance moved with their current partition, unless the ring segment of the slot is taken
+   * over or released by the change of the number of partitions.
+   *
+   * @param partitions current partitions
+   * @param assigned current partitions by the ring position they are matched to
+   * @param ring slots per ring position for the new number of partitions
+   * @return slots per ring position
+   */
+  private List<Set<Integer>> keepMovedSlots(List<Partition<T>> partitions, Partition<T>[] assigned,
+      List<Set<Integer>> ring, InputPort<?> port)
+  {
+    if (partitions.isEmpty()) {
+      return ring;
+    }
+    int slotMask = getSlotMask();
+    int[] previousPositions = getPositions(getSlots(partitions.size()));
+    int[] positions = getPositions(ring);
+
+    Map<Partition<T>, Integer> assignedPositions = new IdentityHashMap<>();
+    for (int i = 0; i < assigned.length; i++) {
+      if (assigned[i] != null) {
+        assignedPositions.put(assigned[i], i);
+      }
+    }
+    int[] currentPositions = new int[slotMask + 1];
+    Arrays.fill(currentPositions, -1);
+    for (Partition<T> p : partitions) {
+      PartitionKeys pks = p.getPartitionKeys().get(port);
+      Integer position = assignedPositions.get(p);
+      if (position != null && pks != null && pks.mask == slotMask) {
+        for (Integer slot : pks.partitions) {
+          currentPositions[slot] = position;
+        }
+      }
+    }
+
+    List<Set<Integer>> slots = new ArrayList<>(ring.size());
+    for (int i = 0; i < ring.size(); i++) {
+      slots.add(new HashSet<Integer>());
+    }
+    for (int slot = 0; slot <= slotMask; slot++) {
+      int position = positions[slot];
+      if (position == previousPositions[slot] && currentPositions[slot] != -1) {
+        position = currentPositions[slot];
+      }
+      slots.get(position).add(slot);
+    }
+    for (Set<Integer> partitionSlots : slots) {
+      if (partitionSlots.isEmpty()) {
+        LOG.info("Partition without slots after keeping moved slots, using the ring assignment");
+        return ring;
+      }
+    }
+    return slots;
+  }
+
+  private int[] getPositions(List<Set<Integer>> ring)
+  {
+    int[] positions = new int[getSlotMask() + 1];
+    for (int i = 0; i < ring.size(); i++) {
+      for (Integer slot : ring.get(i)) {
+        positions[slot] = i;
+      }
+    }
+    return positions;
+  }
+
+  /**
+   * Match the existing partitions to the ring positions they have the most slots in common with.
+   */
+  private Partition<T>[] match(List<Partition<T>> partitions, List<Set<Integer>> ring, InputPort<?> port)
+  {
+    @SuppressWarnings("unchecked")
+    Partition<T>[] assigned = new Partition[ring.size()];
+    Set<Partition<T>> unassigned = Sets.newLinkedHashSet(partitions);
+    while (!unassigned.isEmpty()) {
+      Partition<T> best = null;
+      int bestIndex = -1;
+      int bestCommon = -1;
+      for (Partition<T> p : unassigned) {
+        PartitionKeys pks = p.getPartitionKeys().get(port);
+        for (int i = 0; i < ring.size(); i++) {
+          if (assigned[i] == null) {
+            int common = pks == null ? 0 : Sets.intersection(pks.partitions, ring.get(i)).size();
+            if (common > bestCommon) {
+              best = p;
+              bestIndex = i;
+              bestCommon = common;
+            }
+          }
+        }
+      }
+      if (best == null) {
+        // fewer partitions than before, remaining partitions are removed
+        break;
+      }
+      assigned[bestIndex] = best;
+      unassigned.remove(best);
+    }
+    return assigned;
+  }
+
+  public int getPartitionCount()
+  {
+    return partitionCount;
+  }
+
+  public void setPartitionCount(int partitionCount)
+  {
+    this.partitionCount = partitionCount;
+  }
+
+  public int getVirtualNodes()
+  {
+    return virtualNodes;
+  }
+
+  /**
+   * Number of positions of each partition on the ring.
+   * @param virtualNodes
+   */
+  public void setVirtualNodes(int virtualNodes)
+  {
+    this.virtualNodes = virtualNodes;
+  }
+
+  public int getSlotBits()
+  {
+    return slotBits;
+  }
+
+  /**
+   * Number of bits of the partition mask, the stream is divided into 2^slotBits slots.
+   * @param slotBits
+   */
+  public void setSlotBits(int slotBits)
+  {
+    this.slotBits = slotBits;
+  }
+
+  public double getSkewThreshold()
+  {
+    return skewThreshold;
+  }
+
+  /**
+   * Ratio of the throughput of the hottest partition to the average throughput at which slots are moved.
+   * @param skewThreshold
+   */
+  public void setSkewThreshold(double skewThreshold)
+  {
+    this.skewThreshold = skewThreshold;
+  }
+
+  public long getCooldownMillis()
+  {
+    return cooldownMillis;
+  }
+
+  /**
+   * Minimum time between repartition requests.
+   * @param cooldownMillis
+   */
+  public void setCooldownMillis(long cooldownMillis)
+  {
+    this.cooldownMillis = cooldownMillis;
+  }
+
+  public String getSlotMetric()
+  {
+    return slotMetric;
+  }
+
+  /**
+   * Name of the operator metric with the tuple count per slot, optional.
+   * @param slotMetric
+   */
+  public void setSlotMetric(String slotMetric)
+  {
+    this.slotMetric = slotMetric;
+  }
+
+}
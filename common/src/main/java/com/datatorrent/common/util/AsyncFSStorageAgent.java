@@ -52,6 +52,10 @@ public class AsyncFSStorageAgent extends FSStorageAgent
 
   private boolean syncCheckpoint = false;
 
+  private int localCacheCheckpoints = 2;
+
+  private long localCacheSize = 256L * 1024 * 1024;
+
   @SuppressWarnings("unused")
   private AsyncFSStorageAgent()
   {
@@ -137,12 +141,59 @@ public class AsyncFSStorageAgent extends FSStorageAgent
         stateSaved = false;
         throw new RuntimeException(ie);
       } finally {
-        if (stateSaved) {
-          fileContext.rename(lPath, new Path(path + Path.SEPARATOR + operatorIdStr + Path.SEPARATOR + window), Options.Rename.OVERWRITE);
+        boolean committed = false;
+        try {
+          if (stateSaved) {
+            fileContext.rename(lPath, new Path(path + Path.SEPARATOR + operatorIdStr + Path.SEPARATOR + window), Options.Rename.OVERWRITE);
+            committed = true;
+          }
+        } finally {
+          if (committed && localCacheCheckpoints > 0) {
+            LocalCheckpointCache.INSTANCE.add(getCacheKey(operatorId), windowId, srcFile, localCacheCheckpoints, localCacheSize);
+          } else {
+            FileUtil.fullyDelete(srcFile);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Load the checkpoint from the local copy when it is still cached in this process, which is the case when an
+   * operator is restarted in the same container, otherwise from the DFS.
+   */
+  @Override
+  public Object load(int operatorId, long windowId) throws IOException
+  {
+    LocalCheckpointCache.Entry entry = LocalCheckpointCache.INSTANCE.get(getCacheKey(operatorId), windowId);
+    if (entry != null) {
+      Path lPath = new Path(path + Path.SEPARATOR + String.valueOf(operatorId) + Path.SEPARATOR + Long.toHexString(windowId));
+      try {
+        // guard against a checkpoint that was replaced in the DFS by another writer
+        if (fileContext.getFileStatus(lPath).getLen() == entry.length) {
+          try (FileInputStream stream = new FileInputStream(entry.file)) {
+            logger.debug("Loading {} {} from {}", operatorId, Long.toHexString(windowId), entry.file);
+            return retrieve(stream);
+          }
         }
-        FileUtil.fullyDelete(srcFile);
+      } catch (IOException e) {
+        logger.debug("Cannot load {} {} from local cache", operatorId, Long.toHexString(windowId), e);
       }
+      LocalCheckpointCache.INSTANCE.remove(getCacheKey(operatorId), windowId);
     }
+    return super.load(operatorId, windowId);
+  }
+
+  @Override
+  public void delete(int operatorId, long windowId) throws IOException
+  {
+    LocalCheckpointCache.INSTANCE.remove(getCacheKey(operatorId), windowId);
+    super.delete(operatorId, windowId);
+  }
+
+  private String getCacheKey(int operatorId)
+  {
+    return path + Path.SEPARATOR + operatorId;
   }
 
   @Override
@@ -150,6 +201,8 @@ public class AsyncFSStorageAgent extends FSStorageAgent
   {
     AsyncFSStorageAgent asyncFSStorageAgent = new AsyncFSStorageAgent(this.path, null);
     asyncFSStorageAgent.setSyncCheckpoint(syncCheckpoint);
+    asyncFSStorageAgent.setLocalCacheCheckpoints(localCacheCheckpoints);
+    asyncFSStorageAgent.setLocalCacheSize(localCacheSize);
     return asyncFSStorageAgent;
   }
 
@@ -163,6 +216,39 @@ public class AsyncFSStorageAgent extends FSStorageAgent
     this.syncCheckpoint = syncCheckpoint;
   }
 
+  public int getLocalCacheCheckpoints()
+  {
+    return localCacheCheckpoints;
+  }
+
+  /**
+   * Number of the most recent checkpoints per operator that are kept on the local disk after they were copied to
+   * the DFS, so that an operator restarted in the same container does not have to read its state from the DFS.
+   * 0 disables the local cache.
+   *
+   * @param localCacheCheckpoints
+   */
+  public void setLocalCacheCheckpoints(int localCacheCheckpoints)
+  {
+    this.localCacheCheckpoints = localCacheCheckpoints;
+  }
+
+  public long getLocalCacheSize()
+  {
+    return localCacheSize;
+  }
+
+  /**
+   * Limit in bytes for the checkpoints kept on the local disk by all the operators of the container. The oldest
+   * checkpoints are removed first when the limit is exceeded.
+   *
+   * @param localCacheSize
+   */
+  public void setLocalCacheSize(long localCacheSize)
+  {
+    this.localCacheSize = localCacheSize;
+  }
+
   private static final long serialVersionUID = 201507241610L;
   private static final Logger logger = LoggerFactory.getLogger(AsyncFSStorageAgent.class);
 }
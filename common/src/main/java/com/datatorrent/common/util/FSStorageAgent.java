@@ -149,6 +149,21 @@ public class FSStorageAgent implements StorageAgent, Serializable
     fileContext.delete(lPath, false);
   }
 
+  /**
+   * Delete all the checkpoints of an operator that was removed from the plan. The operator directory is deleted
+   * with a single call in place of one call per checkpoint.
+   *
+   * @param operatorId
+   * @throws IOException
+   */
+  public void deleteAll(int operatorId) throws IOException
+  {
+    Path lPath = new Path(path + Path.SEPARATOR + String.valueOf(operatorId));
+    logger.debug("Deleting: {}", lPath);
+
+    fileContext.delete(lPath, true);
+  }
+
   @Override
   public long[] getWindowIds(int operatorId) throws IOException
   {
@@ -0,0 +1,147 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.common.util;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.hadoop.fs.FileUtil;
+
+/**
+ * Process wide cache of the checkpoints that {@link AsyncFSStorageAgent} wrote to the local disk before copying
+ * them to the DFS. The storage agent is deserialized again when an operator is redeployed, so the cache outlives
+ * the agent instances to let an operator that is restarted in the same container load its state from the local disk.
+ * <p>
+ * The checkpoints are kept per operator up to a count and evicted in the order they were added once the total
+ * size exceeds the limit.
+ */
+class LocalCheckpointCache
+{
+  static final LocalCheckpointCache INSTANCE = new LocalCheckpointCache();
+
+  static class Entry
+  {
+    final String operator;
+    final long windowId;
+    final File file;
+    final long length;
+
+    Entry(String operator, long windowId, File file, long length)
+    {
+      this.operator = operator;
+      this.windowId = windowId;
+      this.file = file;
+      this.length = length;
+    }
+  }
+
+  private final Map<String, TreeMap<Long, Entry>> operators = new HashMap<>();
+  private final LinkedHashMap<File, Entry> entries = new LinkedHashMap<>();
+  private long size;
+
+  /**
+   * Take ownership of the local copy of a checkpoint that was saved to the DFS.
+   *
+   * @param operator key of the operator in the cache
+   * @param windowId checkpoint window
+   * @param file local copy of the checkpoint, deleted when it is evicted
+   * @param maxCount number of checkpoints to keep for the operator
+   * @param maxSize total size of the cached checkpoints in bytes
+   */
+  synchronized void add(String operator, long windowId, File file, int maxCount, long maxSize)
+  {
+    TreeMap<Long, Entry> windows = operators.get(operator);
+    if (windows == null) {
+      windows = new TreeMap<>();
+      operators.put(operator, windows);
+    }
+    Entry entry = new Entry(operator, windowId, file, file.length());
+    Entry previous = windows.put(windowId, entry);
+    if (previous != null) {
+      entries.remove(previous.file);
+      size -= previous.length;
+      if (!previous.file.equals(file)) {
+        FileUtil.fullyDelete(previous.file);
+      }
+    }
+    entries.put(file, entry);
+    size += entry.length;
+
+    while (windows.size() > maxCount) {
+      evict(windows.firstEntry().getValue());
+    }
+    Iterator<Entry> iterator = entries.values().iterator();
+    while (size > maxSize && iterator.hasNext()) {
+      Entry e = iterator.next();
+      iterator.remove();
+      evict(e);
+    }
+  }
+
+  /**
+   * @return the cached checkpoint or null when the checkpoint is not available locally
+   */
+  synchronized Entry get(String operator, long windowId)
+  {
+    TreeMap<Long, Entry> windows = operators.get(operator);
+    return windows == null ? null : windows.get(windowId);
+  }
+
+  synchronized void remove(String operator, long windowId)
+  {
+    TreeMap<Long, Entry> windows = operators.get(operator);
+    if (windows != null) {
+      Entry entry = windows.get(windowId);
+      if (entry != null) {
+        evict(entry);
+      }
+    }
+  }
+
+  synchronized long getSize()
+  {
+    return size;
+  }
+
+  private void evict(Entry entry)
+  {
+    TreeMap<Long, Entry> windows = operators.get(entry.operator);
+    if (windows != null && windows.get(entry.windowId) == entry) {
+      windows.remove(entry.windowId);
+      if (windows.isEmpty()) {
+        operators.remove(entry.operator);
+      }
+    }
+    if (entries.get(entry.file) == entry) {
+      entries.remove(entry.file);
+    }
+    size -= entry.length;
+    logger.debug("Evicting local checkpoint {} {}", entry.operator, entry.windowId);
+    FileUtil.fullyDelete(entry.file);
+  }
+
+  private static final Logger logger = LoggerFactory.getLogger(LocalCheckpointCache.class);
+}
@@ -0,0 +1,238 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.common.partitioner;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+import com.datatorrent.api.DefaultInputPort;
+import com.datatorrent.api.DefaultPartition;
+import com.datatorrent.api.Operator.InputPort;
+import com.datatorrent.api.Partitioner.Partition;
+import com.datatorrent.api.Stats.OperatorStats;
+import com.datatorrent.api.Stats.OperatorStats.PortStats;
+import com.datatorrent.api.StatsListener;
+import com.datatorrent.common.partitioner.StatelessPartitionerTest.DummyOperator;
+import com.datatorrent.common.partitioner.StatelessPartitionerTest.PartitioningContextImpl;
+
+public class AutoScalingPartitionerTest
+{
+  private final InputPort<Integer> input = new DefaultInputPort<Integer>()
+  {
+    @Override
+    public void process(Integer tuple)
+    {
+    }
+  };
+
+  private final List<InputPort<?>> ports = Lists.<InputPort<?>>newArrayList(input);
+
+  @Test
+  public void testScaleUpAndDown()
+  {
+    AutoScalingPartitioner<DummyOperator> partitioner = new AutoScalingPartitioner<>(2);
+    partitioner.setMaxThroughput(1000);
+    partitioner.setMinThroughput(200);
+    partitioner.setStableRounds(2);
+    partitioner.setCooldownMillis(0);
+    List<Partition<DummyOperator>> partitions = define(partitioner, Lists.<Partition<DummyOperator>>newArrayList(
+        new DefaultPartition<>(new DummyOperator(5))));
+    Assert.assertEquals("partitions", 2, partitions.size());
+
+    // within the targets
+    Assert.assertFalse(round(partitioner, partitions, 500, 0, 0));
+    Assert.assertFalse(round(partitioner, partitions, 500, 0, 0));
+
+    // overload needs to be sustained
+    Assert.assertFalse("first round", round(partitioner, partitions, 1500, 0, 0));
+    Assert.assertFalse("interrupted", round(partitioner, partitions, 900, 0, 0));
+    Assert.assertFalse("first round", round(partitioner, partitions, 1500, 0, 0));
+    Assert.assertTrue("scale up", round(partitioner, partitions, 1500, 0, 0));
+    Assert.assertEquals("sized for target throughput", 5, partitioner.getPartitionCount());
+
+    Partition<DummyOperator> retained = partitions.get(0);
+    partitions = define(partitioner, withStats(partitions, 1500));
+    Assert.assertEquals("partitions", 5, partitions.size());
+    Assert.assertSame("existing partition retained", retained.getPartitionedInstance(), partitions.get(0).getPartitionedInstance());
+    Assert.assertEquals("mask", 7, partitions.get(0).getPartitionKeys().get(input).mask);
+
+    Assert.assertFalse(round(partitioner, partitions, 100, 0, 0));
+    Assert.assertTrue("scale down", round(partitioner, partitions, 100, 0, 0));
+    Assert.assertEquals("partitions", 1, partitioner.getPartitionCount());
+    partitions = define(partitioner, withStats(partitions, 100));
+    Assert.assertEquals("partitions", 1, partitions.size());
+  }
+
+  @Test
+  public void testLatencyAndBacklog()
+  {
+    AutoScalingPartitioner<DummyOperator> partitioner = new AutoScalingPartitioner<>(2);
+    partitioner.setMinThroughput(200);
+    partitioner.setMaxLatencyMillis(100);
+    partitioner.setMaxQueueSize(1000);
+    partitioner.setMaxPartitions(3);
+    partitioner.setStableRounds(1);
+    partitioner.setCooldownMillis(0);
+    List<Partition<DummyOperator>> partitions = define(partitioner, Lists.<Partition<DummyOperator>>newArrayList(
+        new DefaultPartition<>(new DummyOperator(5))));
+
+    Assert.assertTrue("latency", round(partitioner, partitions, 500, 200, 0));
+    Assert.assertEquals("partitions", 3, partitioner.getPartitionCount());
+    partitions = define(partitioner, withStats(partitions, 500));
+
+    Assert.assertFalse("max partitions", round(partitioner, partitions, 500, 0, 2000));
+    // low throughput but backlog above the scale down ratio
+    Assert.assertFalse("hysteresis", round(partitioner, partitions, 100, 0, 800));
+    Assert.assertTrue("scale down", round(partitioner, partitions, 100, 0, 100));
+    Assert.assertEquals("partitions", 2, partitioner.getPartitionCount());
+  }
+
+  @Test
+  public void testCooldown()
+  {
+    AutoScalingPartitioner<DummyOperator> partitioner = new AutoScalingPartitioner<>(1);
+    partitioner.setMaxThroughput(1000);
+    partitioner.setStableRounds(1);
+    List<Partition<DummyOperator>> partitions = define(partitioner, Lists.<Partition<DummyOperator>>newArrayList(
+        new DefaultPartition<>(new DummyOperator(5))));
+    Assert.assertTrue("scale up", round(partitioner, partitions, 1500, 0, 0));
+    partitions = define(partitioner, withStats(partitions, 1500));
+    Assert.assertEquals("partitions", 3, partitions.size());
+    Assert.assertFalse("cooldown", round(partitioner, partitions, 1500, 0, 0));
+  }
+
+  private List<Partition<DummyOperator>> define(AutoScalingPartitioner<DummyOperator> partitioner,
+      List<Partition<DummyOperator>> partitions)
+  {
+    Collection<Partition<DummyOperator>> newPartitions = partitioner.definePartitions(partitions,
+        new PartitioningContextImpl(ports, 0));
+    List<Partition<DummyOperator>> result = Lists.newArrayList();
+    Map<Integer, Partition<DummyOperator>> partitionMap = new HashMap<>();
+    for (Partition<DummyOperator> p : newPartitions) {
+      partitionMap.put(partitionMap.size(), p);
+      result.add(p);
+    }
+    partitioner.partitioned(partitionMap);
+    return result;
+  }
+
+  /**
+   * Report stats of all partitions.
+   * @return whether repartitioning was requested
+   */
+  private boolean round(AutoScalingPartitioner<DummyOperator> partitioner, List<Partition<DummyOperator>> partitions,
+      long throughput, long latency, int queueSize)
+  {
+    boolean repartition = false;
+    for (int i = 0; i < partitions.size(); i++) {
+      StatsListener.Response rsp = partitioner.processStats(new MockStats(i, throughput, latency, queueSize));
+      Assert.assertFalse("single request per round", repartition);
+      repartition = rsp.repartitionRequired;
+    }
+    return repartition;
+  }
+
+  private List<Partition<DummyOperator>> withStats(List<Partition<DummyOperator>> partitions, long throughput)
+  {
+    List<Partition<DummyOperator>> result = Lists.newArrayList();
+    for (int i = 0; i < partitions.size(); i++) {
+      Partition<DummyOperator> p = partitions.get(i);
+      result.add(new DefaultPartition<>(p.getPartitionedInstance(), p.getPartitionKeys(), 0,
+          new MockStats(i, throughput, 0, 0)));
+    }
+    return result;
+  }
+
+  private static class MockStats implements StatsListener.BatchedOperatorStats
+  {
+    final int operatorId;
+    final long tuplesProcessedPSMA;
+    final long latency;
+    final int queueSize;
+
+    MockStats(int operatorId, long tuplesProcessedPSMA, long latency, int queueSize)
+    {
+      this.operatorId = operatorId;
+      this.tuplesProcessedPSMA = tuplesProcessedPSMA;
+      this.latency = latency;
+      this.queueSize = queueSize;
+    }
+
+    @Override
+    public List<OperatorStats> getLastWindowedStats()
+    {
+      OperatorStats os = new OperatorStats();
+      PortStats ps = new PortStats("input");
+      ps.queueSize = queueSize;
+      os.inputPorts = Lists.newArrayList(ps);
+      return Collections.singletonList(os);
+    }
+
+    @Override
+    public int getOperatorId()
+    {
+      return operatorId;
+    }
+
+    @Override
+    public long getCurrentWindowId()
+    {
+      return 0;
+    }
+
+    @Override
+    public long getTuplesProcessedPSMA()
+    {
+      return tuplesProcessedPSMA;
+    }
+
+    @Override
+    public long getTuplesEmittedPSMA()
+    {
+      return 0;
+    }
+
+    @Override
+    public double getCpuPercentageMA()
+    {
+      return 0;
+    }
+
+    @Override
+    public long getLatencyMA()
+    {
+      return latency;
+    }
+
+    @Override
+    public List<StatsListener.OperatorResponse> getOperatorResponse()
+    {
+      return null;
+    }
+  }
+
+}
@@ -0,0 +1,254 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.common.partitioner;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import com.datatorrent.api.DefaultInputPort;
+import com.datatorrent.api.DefaultPartition;
+import com.datatorrent.api.Operator.InputPort;
+import com.datatorrent.api.Partitioner.Partition;
+import com.datatorrent.api.Partitioner.PartitionKeys;
+import com.datatorrent.api.Stats.OperatorStats;
+import com.datatorrent.api.StatsListener;
+import com.datatorrent.common.codec.KeyHashStreamCodec;
+import com.datatorrent.common.partitioner.StatelessPartitionerTest.DummyOperator;
+import com.datatorrent.common.partitioner.StatelessPartitionerTest.PartitioningContextImpl;
+
+public class ConsistentHashPartitionerTest
+{
+  private final InputPort<Integer> input = new DefaultInputPort<Integer>()
+  {
+    @Override
+    public void process(Integer tuple)
+    {
+    }
+  };
+
+  private final List<InputPort<?>> ports = Lists.<InputPort<?>>newArrayList(input);
+
+  @Test
+  public void testScaleMovesFewSlots()
+  {
+    ConsistentHashPartitioner<DummyOperator> partitioner = new ConsistentHashPartitioner<>(4);
+    Collection<Partition<DummyOperator>> partitions = partitioner.definePartitions(
+        Lists.<Partition<DummyOperator>>newArrayList(new DefaultPartition<>(new DummyOperator(5))),
+        new PartitioningContextImpl(ports, 0));
+    Assert.assertEquals("partitions", 4, partitions.size());
+    partitions = withStats(partitions, 0, 0, 0, 0);
+    Map<Integer, Partition<DummyOperator>> owners = assertSlots(partitions, 1024);
+
+    partitioner.setPartitionCount(5);
+    Collection<Partition<DummyOperator>> newPartitions = partitioner.definePartitions(partitions,
+        new PartitioningContextImpl(ports, 0));
+    Assert.assertEquals("partitions", 5, newPartitions.size());
+    Map<Integer, Partition<DummyOperator>> newOwners = assertSlots(newPartitions, 1024);
+
+    Partition<DummyOperator> added = null;
+    for (Partition<DummyOperator> p : newPartitions) {
+      if (!partitions.contains(p)) {
+        added = p;
+      }
+    }
+    Assert.assertNotNull("added partition", added);
+    int moved = 0;
+    for (Map.Entry<Integer, Partition<DummyOperator>> e : newOwners.entrySet()) {
+      if (e.getValue() != owners.get(e.getKey())) {
+        Assert.assertSame("slot " + e.getKey() + " moved to added partition", added, e.getValue());
+        moved++;
+      }
+    }
+    Assert.assertTrue("moved slots " + moved, moved > 0 && moved < 1024 / 2);
+  }
+
+  @Test
+  public void testSkewRebalance()
+  {
+    ConsistentHashPartitioner<DummyOperator> partitioner = new ConsistentHashPartitioner<>(3);
+    partitioner.setCooldownMillis(0);
+    partitioner.setSlotMetric("slotCounts");
+    List<Partition<DummyOperator>> partitions = withStats(partitioner.definePartitions(
+        Lists.<Partition<DummyOperator>>newArrayList(new DefaultPartition<>(new DummyOperator(5))),
+        new PartitioningContextImpl(ports, 0)), 1000, 100, 100);
+
+    Map<Integer, Partition<DummyOperator>> partitionMap = new HashMap<>();
+    for (int i = 0; i < partitions.size(); i++) {
+      partitionMap.put(i, partitions.get(i));
+    }
+    partitioner.partitioned(partitionMap);
+
+    // hot key in one slot of the first partition
+    Set<Integer> hotSlots = partitions.get(0).getPartitionKeys().get(input).partitions;
+    int hotSlot = hotSlots.iterator().next();
+    Map<Integer, Long> slotCounts = new HashMap<>();
+    for (Integer slot : hotSlots) {
+      slotCounts.put(slot, slot == hotSlot ? 500L : 500L / (hotSlots.size() - 1));
+    }
+
+    ((MockStats)partitions.get(0).getStats()).metrics.put("slotCounts", slotCounts);
+    Assert.assertFalse("not all partitions reported", partitioner.processStats(partitions.get(0).getStats()).repartitionRequired);
+    Assert.assertFalse("not all partitions reported", partitioner.processStats(partitions.get(1).getStats()).repartitionRequired);
+    Assert.assertTrue("skew detected", partitioner.processStats(partitions.get(2).getStats()).repartitionRequired);
+
+    PartitionKeys unchanged = partitions.get(2).getPartitionKeys().get(input);
+    Collection<Partition<DummyOperator>> newPartitions = partitioner.definePartitions(partitions,
+        new PartitioningContextImpl(ports, 0));
+    Assert.assertEquals("partitions", 3, newPartitions.size());
+    Map<Integer, Partition<DummyOperator>> owners = assertSlots(newPartitions, 1024);
+
+    Set<Integer> newHotSlots = partitions.get(0).getPartitionKeys().get(input).partitions;
+    Assert.assertTrue("hot slot retained", newHotSlots.contains(hotSlot));
+    Assert.assertTrue("slots moved " + newHotSlots.size(), newHotSlots.size() < hotSlots.size());
+    Assert.assertTrue("cold partition received slots",
+        partitions.get(1).getPartitionKeys().get(input).partitions.containsAll(Sets.difference(hotSlots, newHotSlots)));
+    Assert.assertSame("other partition unchanged", unchanged, partitions.get(2).getPartitionKeys().get(input));
+    Assert.assertTrue("hot partition modified", ((DefaultPartition<?>)partitions.get(0)).isModified());
+    Assert.assertFalse("other partition not modified", ((DefaultPartition<?>)partitions.get(2)).isModified());
+
+    // moved slots stay with the cold partition when a partition is added
+    partitioner.setPartitionCount(4);
+    newPartitions = partitioner.definePartitions(partitions, new PartitioningContextImpl(ports, 0));
+    Assert.assertEquals("partitions", 4, newPartitions.size());
+    Map<Integer, Partition<DummyOperator>> newOwners = assertSlots(newPartitions, 1024);
+    Partition<DummyOperator> added = null;
+    for (Partition<DummyOperator> p : newPartitions) {
+      if (!partitions.contains(p)) {
+        added = p;
+      }
+    }
+    for (Map.Entry<Integer, Partition<DummyOperator>> e : newOwners.entrySet()) {
+      if (e.getValue() != owners.get(e.getKey())) {
+        Assert.assertSame("slot " + e.getKey() + " moved to added partition", added, e.getValue());
+      }
+    }
+  }
+
+  @Test
+  public void testCodecPartition()
+  {
+    KeyHashStreamCodec<Integer> codec = new KeyHashStreamCodec<>();
+    Assert.assertEquals("round trip", 42, codec.fromByteArray(codec.toByteArray(42)));
+    Set<Integer> slots = Sets.newHashSet();
+    for (int i = 0; i < 1024; i++) {
+      // keys with identical low bits are spread over the slots
+      slots.add(codec.getPartition(i << 10) & 1023);
+    }
+    Assert.assertTrue("slots " + slots.size(), slots.size() > 512);
+  }
+
+  private Map<Integer, Partition<DummyOperator>> assertSlots(Collection<Partition<DummyOperator>> partitions, int slots)
+  {
+    Map<Integer, Partition<DummyOperator>> owners = new HashMap<>();
+    for (Partition<DummyOperator> p : partitions) {
+      PartitionKeys pks = p.getPartitionKeys().get(input);
+      Assert.assertEquals("mask", slots - 1, pks.mask);
+      Assert.assertFalse("slots " + p, pks.partitions.isEmpty());
+      for (Integer slot : pks.partitions) {
+        Assert.assertNull("slot owned once " + slot, owners.put(slot, p));
+      }
+    }
+    Assert.assertEquals("slots", slots, owners.size());
+    return owners;
+  }
+
+  private List<Partition<DummyOperator>> withStats(Collection<Partition<DummyOperator>> partitions, long... throughput)
+  {
+    List<Partition<DummyOperator>> result = Lists.newArrayList();
+    int i = 0;
+    for (Partition<DummyOperator> p : partitions) {
+      result.add(new DefaultPartition<>(p.getPartitionedInstance(), p.getPartitionKeys(), 0,
+          new MockStats(i, throughput[i++])));
+    }
+    return result;
+  }
+
+  private static class MockStats implements StatsListener.BatchedOperatorStats
+  {
+    final int operatorId;
+    final long tuplesProcessedPSMA;
+    final Map<String, Object> metrics = new HashMap<>();
+
+    MockStats(int operatorId, long tuplesProcessedPSMA)
+    {
+      this.operatorId = operatorId;
+      this.tuplesProcessedPSMA = tuplesProcessedPSMA;
+    }
+
+    @Override
+    public List<OperatorStats> getLastWindowedStats()
+    {
+      OperatorStats os = new OperatorStats();
+      os.metrics = metrics;
+      return Collections.singletonList(os);
+    }
+
+    @Override
+    public int getOperatorId()
+    {
+      return operatorId;
+    }
+
+    @Override
+    public long getCurrentWindowId()
+    {
+      return 0;
+    }
+
+    @Override
+    public long getTuplesProcessedPSMA()
+    {
+      return tuplesProcessedPSMA;
+    }
+
+    @Override
+    public long getTuplesEmittedPSMA()
+    {
+      return 0;
+    }
+
+    @Override
+    public double getCpuPercentageMA()
+    {
+      return 0;
+    }
+
+    @Override
+    public long getLatencyMA()
+    {
+      return 0;
+    }
+
+    @Override
+    public List<StatsListener.OperatorResponse> getOperatorResponse()
+    {
+      return null;
+    }
+  }
+}
@@ -124,6 +124,37 @@ public class AsyncFSStorageAgentTest
     testSave();
   }
 
+  @Test
+  public void testLocalCache() throws IOException
+  {
+    AsyncFSStorageAgent storageAgent = testMeta.storageAgent;
+    storageAgent.setLocalCacheCheckpoints(2);
+    String operator = testMeta.applicationPath + Path.SEPARATOR + 1;
+    for (int windowId = 1; windowId <= 3; windowId++) {
+      storageAgent.save(Maps.newHashMap(), 1, windowId);
+      storageAgent.copyToHDFS(1, windowId);
+    }
+    Assert.assertNull("evicted window 1", LocalCheckpointCache.INSTANCE.get(operator, 1));
+    Assert.assertNotNull("cached window 2", LocalCheckpointCache.INSTANCE.get(operator, 2));
+    LocalCheckpointCache.Entry entry = LocalCheckpointCache.INSTANCE.get(operator, 3);
+    Assert.assertTrue("cached window 3", entry.file.exists());
+
+    // the restarted operator uses a new instance of the storage agent
+    storageAgent = new AsyncFSStorageAgent(testMeta.applicationPath, null);
+    Assert.assertEquals("window 3", Maps.newHashMap(), storageAgent.load(1, 3));
+
+    storageAgent.delete(1, 3);
+    Assert.assertNull("deleted window 3", LocalCheckpointCache.INSTANCE.get(operator, 3));
+    Assert.assertFalse("deleted local copy", entry.file.exists());
+
+    storageAgent.delete(1, 2);
+    storageAgent.setLocalCacheSize(0);
+    storageAgent.save(Maps.newHashMap(), 1, 4);
+    storageAgent.copyToHDFS(1, 4);
+    Assert.assertNull("size limit", LocalCheckpointCache.INSTANCE.get(operator, 4));
+    Assert.assertEquals("window 4", Maps.newHashMap(), storageAgent.load(1, 4));
+  }
+
   @Test
   public void testDelete() throws IOException
   {
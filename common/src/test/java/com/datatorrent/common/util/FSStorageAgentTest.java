@@ -131,4 +131,17 @@ public class FSStorageAgentTest
     Assert.assertFalse("operator 1 window 1", fileContext.util().exists(new Path(appPath + "/" + 1 + "/" + 1)));
   }
 
+  @Test
+  public void testDeleteAll() throws IOException
+  {
+    testLoad();
+    testMeta.storageAgent.save("two", 1, 2);
+
+    testMeta.storageAgent.deleteAll(1);
+    Path appPath = new Path(testMeta.applicationPath);
+    FileContext fileContext = FileContext.getFileContext();
+    Assert.assertTrue("operator 2 window 1", fileContext.util().exists(new Path(appPath + "/" + 2 + "/" + 1)));
+    Assert.assertFalse("operator 1", fileContext.util().exists(new Path(appPath + "/" + 1)));
+  }
+
 }
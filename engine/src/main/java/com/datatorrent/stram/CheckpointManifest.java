@@ -0,0 +1,319 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.stram;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.hadoop.fs.CreateFlag;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileContext;
+import org.apache.hadoop.fs.Options;
+import org.apache.hadoop.fs.Path;
+
+/**
+ * Compact per application index of the checkpoints that are available in the storage agent.
+ * <p>
+ * The master appends a record when an operator reports a new checkpoint and when a checkpoint
+ * is purged, the removal is made durable before the checkpoint is deleted. On recovery the window ids
+ * are read from the manifest instead of listing the checkpoint directory of every operator.
+ * The log is rewritten with only the live entries when it grows too large relative to its content.
+ * <p>
+ * Record format: 1 byte type, 4 byte operator id, 8 byte window id.
+ */
+public class CheckpointManifest implements Closeable
+{
+  private static final Logger LOG = LoggerFactory.getLogger(CheckpointManifest.class);
+
+  public static final String FILE_MANIFEST = "_manifest";
+  private static final String FILE_MANIFEST_TMP = "_manifest.tmp";
+  private static final int MAGIC = 0x434b504d;
+  private static final int VERSION = 1;
+  private static final byte RECORD_ADD = 1;
+  private static final byte RECORD_REMOVE = 2;
+  private static final int MIN_COMPACTION_RECORDS = 1024;
+
+  private final FileContext fileContext;
+  private final Path path;
+  private final Path tmpPath;
+  private final Map<Integer, TreeSet<Long>> windowIds = new HashMap<>();
+  private FSDataOutputStream out;
+  private int liveCount;
+  private int recordCount;
+  private boolean dirty;
+  private boolean valid = true;
+
+  public CheckpointManifest(FileContext fileContext, Path dir)
+  {
+    this.fileContext = fileContext;
+    this.path = new Path(dir, FILE_MANIFEST);
+    this.tmpPath = new Path(dir, FILE_MANIFEST_TMP);
+  }
+
+  /**
+   * Read the manifest written by a previous application attempt.
+   *
+   * @return false when no manifest exists or it cannot be read, in which case the caller should fall back to
+   * the storage agent
+   */
+  public synchronized boolean load()
+  {
+    windowIds.clear();
+    liveCount = 0;
+    recordCount = 0;
+    try (DataInputStream in = fileContext.open(path)) {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+        LOG.warn("Ignoring checkpoint manifest {} with unknown format", path);
+        windowIds.clear();
+        return false;
+      }
+      while (true) {
+        byte type;
+        int operatorId;
+        long windowId;
+        try {
+          type = in.readByte();
+          operatorId = in.readInt();
+          windowId = in.readLong();
+        } catch (EOFException e) {
+          // partial record at the end of the log was not flushed
+          break;
+        }
+        if (type == RECORD_ADD) {
+          apply(operatorId, windowId, true);
+        } else if (type == RECORD_REMOVE) {
+          apply(operatorId, windowId, false);
+        } else {
+          throw new IOException("Invalid record type " + type);
+        }
+        recordCount++;
+      }
+      LOG.debug("Loaded checkpoint manifest {} operators {} checkpoints {}", path, windowIds.size(), liveCount);
+      return true;
+    } catch (FileNotFoundException e) {
+      LOG.debug("No checkpoint manifest {}", path);
+    } catch (IOException e) {
+      LOG.warn("Failed to read checkpoint manifest {}", path, e);
+    }
+    windowIds.clear();
+    liveCount = 0;
+    return false;
+  }
+
+  /**
+   * Return the checkpoint window ids recorded for the operator in ascending order.
+   *
+   * @param operatorId
+   * @return window ids or null when the manifest has no entry for the operator
+   */
+  public synchronized long[] getWindowIds(int operatorId)
+  {
+    TreeSet<Long> ids = windowIds.get(operatorId);
+    if (ids == null) {
+      return null;
+    }
+    long[] result = new long[ids.size()];
+    int i = 0;
+    for (Long id : ids) {
+      result[i++] = id;
+    }
+    return result;
+  }
+
+  /**
+   * Replace the contents of the manifest with the given checkpoints. Called with the state of the physical plan
+   * whenever the plan is snapshot, which also drops entries of operators that were removed.
+   *
+   * @param checkpoints operator id to checkpoint window ids
+   */
+  public synchronized void reset(Map<Integer, long[]> checkpoints)
+  {
+    windowIds.clear();
+    liveCount = 0;
+    for (Map.Entry<Integer, long[]> e : checkpoints.entrySet()) {
+      for (long windowId : e.getValue()) {
+        apply(e.getKey(), windowId, true);
+      }
+    }
+    try {
+      rewrite();
+    } catch (IOException e) {
+      invalidate(e);
+    }
+  }
+
+  public synchronized void add(int operatorId, long windowId)
+  {
+    if (apply(operatorId, windowId, true)) {
+      append(RECORD_ADD, operatorId, windowId);
+    }
+  }
+
+  public synchronized void remove(int operatorId, long windowId)
+  {
+    if (apply(operatorId, windowId, false)) {
+      append(RECORD_REMOVE, operatorId, windowId);
+    }
+  }
+
+  public synchronized boolean isDirty()
+  {
+    return dirty;
+  }
+
+  /**
+   * Make the appended records durable. Additions are flushed with the heartbeat that reported them, removals
+   * before the checkpoints are deleted.
+   *
+   * @return false when the manifest could not be written and was invalidated
+   */
+  public synchronized boolean flush()
+  {
+    if (valid && dirty && out != null) {
+      try {
+        out.hflush();
+        dirty = false;
+      } catch (IOException e) {
+        invalidate(e);
+      }
+    }
+    return valid;
+  }
+
+  /**
+   * Rewrite the log with only the live entries once it has grown well beyond the number of live entries.
+   */
+  public synchronized void compact()
+  {
+    if (valid && recordCount > MIN_COMPACTION_RECORDS && recordCount > 2 * liveCount) {
+      LOG.debug("Compacting checkpoint manifest records {} live {}", recordCount, liveCount);
+      try {
+        rewrite();
+      } catch (IOException e) {
+        invalidate(e);
+      }
+    }
+  }
+
+  public synchronized boolean isValid()
+  {
+    return valid;
+  }
+
+  @Override
+  public synchronized void close() throws IOException
+  {
+    if (out != null) {
+      out.close();
+      out = null;
+    }
+  }
+
+  private boolean apply(int operatorId, long windowId, boolean add)
+  {
+    TreeSet<Long> ids = windowIds.get(operatorId);
+    if (add) {
+      if (ids == null) {
+        ids = new TreeSet<>();
+        windowIds.put(operatorId, ids);
+      }
+      if (ids.add(windowId)) {
+        liveCount++;
+        return true;
+      }
+    } else if (ids != null && ids.remove(windowId)) {
+      liveCount--;
+      return true;
+    }
+    return false;
+  }
+
+  private void append(byte type, int operatorId, long windowId)
+  {
+    if (!valid || out == null) {
+      return;
+    }
+    try {
+      writeRecord(out, type, operatorId, windowId);
+      recordCount++;
+      dirty = true;
+    } catch (IOException e) {
+      invalidate(e);
+    }
+  }
+
+  private void rewrite() throws IOException
+  {
+    close();
+    try (FSDataOutputStream tmp = fileContext.create(tmpPath, EnumSet.of(CreateFlag.CREATE, CreateFlag.OVERWRITE),
+        Options.CreateOpts.CreateParent.createParent())) {
+      tmp.writeInt(MAGIC);
+      tmp.writeInt(VERSION);
+      for (Map.Entry<Integer, TreeSet<Long>> e : windowIds.entrySet()) {
+        for (Long windowId : e.getValue()) {
+          writeRecord(tmp, RECORD_ADD, e.getKey(), windowId);
+        }
+      }
+    }
+    fileContext.rename(tmpPath, path, Options.Rename.OVERWRITE);
+    out = fileContext.create(path, EnumSet.of(CreateFlag.CREATE, CreateFlag.APPEND));
+    recordCount = liveCount;
+    dirty = false;
+    valid = true;
+  }
+
+  private static void writeRecord(DataOutputStream out, byte type, int operatorId, long windowId) throws IOException
+  {
+    out.writeByte(type);
+    out.writeInt(operatorId);
+    out.writeLong(windowId);
+  }
+
+  /**
+   * Once a write failed the manifest no longer reflects the storage agent. It is removed so that recovery falls
+   * back to listing the checkpoints.
+   */
+  private void invalidate(IOException e)
+  {
+    LOG.warn("Disabling checkpoint manifest {}", path, e);
+    valid = false;
+    try {
+      close();
+    } catch (IOException ex) {
+      LOG.debug("Failed to close {}", path, ex);
+    }
+    try {
+      fileContext.delete(path, false);
+    } catch (IOException ex) {
+      LOG.error("Failed to remove checkpoint manifest {}", path, ex);
+    }
+  }
+
+}
@@ -0,0 +1,215 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.stram;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.security.MessageDigest;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datatorrent.netlet.AbstractLengthPrependerClient;
+import com.datatorrent.netlet.EventLoop;
+import com.datatorrent.netlet.Listener.ServerListener;
+
+/**
+ * Control channel on which the master asks containers to send a heartbeat right away.
+ * <p>
+ * Deploy, undeploy and operator requests are still delivered in the heartbeat response, which keeps the ordering
+ * and retry semantics of the heartbeat protocol. Without the channel a container only picks them up with its next
+ * regular heartbeat. Each container connects after startup and authenticates with its id and the control token it
+ * received with the init context, afterwards the master only sends single byte notifications. Containers without
+ * a token are rejected.
+ */
+public class ContainerControlServer implements ServerListener
+{
+  public static final byte MESSAGE_HEARTBEAT = 1;
+  private static final byte[] HEARTBEAT_MESSAGE = new byte[] {MESSAGE_HEARTBEAT};
+
+  private final StreamingContainerManager dnmgr;
+  private final ConcurrentMap<String, ControlConnection> connections = new ConcurrentHashMap<>();
+  private EventLoop eventloop;
+  private InetSocketAddress address;
+
+  public ContainerControlServer(StreamingContainerManager dnmgr)
+  {
+    this.dnmgr = dnmgr;
+  }
+
+  public synchronized InetSocketAddress run(EventLoop eventloop)
+  {
+    this.eventloop = eventloop;
+    eventloop.start(null, 0, this);
+    while (address == null) {
+      try {
+        wait(20);
+      } catch (InterruptedException ex) {
+        throw new RuntimeException(ex);
+      }
+    }
+    return address;
+  }
+
+  public void stop()
+  {
+    if (eventloop != null) {
+      eventloop.stop(this);
+    }
+  }
+
+  /**
+   * Request an immediate heartbeat from the container. Does nothing when the container is not connected.
+   *
+   * @param containerId
+   * @return whether the notification was sent
+   */
+  public boolean notifyContainer(String containerId)
+  {
+    ControlConnection connection = connections.get(containerId);
+    if (connection == null) {
+      return false;
+    }
+    synchronized (connection) {
+      return connection.write(HEARTBEAT_MESSAGE);
+    }
+  }
+
+  boolean isConnected(String containerId)
+  {
+    return connections.containsKey(containerId);
+  }
+
+  /**
+   * @return the message that authenticates a container on the control channel
+   */
+  public static byte[] getAuthenticateMessage(String containerId, byte[] token)
+  {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    try (DataOutputStream out = new DataOutputStream(bos)) {
+      out.writeUTF(containerId);
+      out.writeInt(token == null ? -1 : token.length);
+      if (token != null) {
+        out.write(token);
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    return bos.toByteArray();
+  }
+
+  @Override
+  public synchronized void registered(SelectionKey key)
+  {
+    ServerSocketChannel channel = (ServerSocketChannel)key.channel();
+    address = (InetSocketAddress)channel.socket().getLocalSocketAddress();
+    LOG.info("Container control server listening at {}", address);
+    notifyAll();
+  }
+
+  @Override
+  public void unregistered(SelectionKey key)
+  {
+    LOG.info("Container control server stopped listening at {}", address);
+  }
+
+  @Override
+  public void handleException(Exception exception, EventLoop eventloop)
+  {
+    LOG.error("Container control server error", exception);
+  }
+
+  @Override
+  public ClientListener getClientConnection(SocketChannel client, ServerSocketChannel server)
+  {
+    return new ControlConnection();
+  }
+
+  private class ControlConnection extends AbstractLengthPrependerClient
+  {
+    private String containerId;
+
+    @Override
+    public void onMessage(byte[] buffer, int offset, int size)
+    {
+      if (containerId != null) {
+        LOG.warn("Ignoring message from container {}", containerId);
+        return;
+      }
+      String id;
+      byte[] token;
+      try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(buffer, offset, size))) {
+        id = in.readUTF();
+        int length = in.readInt();
+        token = null;
+        if (length >= 0) {
+          token = new byte[length];
+          in.readFully(token);
+        }
+      } catch (IOException e) {
+        LOG.warn("Invalid control channel request", e);
+        eventloop.disconnect(this);
+        return;
+      }
+      StreamingContainerAgent sca = dnmgr.getContainerAgent(id);
+      byte[] expectedToken = sca == null ? null : sca.controlToken;
+      if (expectedToken == null || token == null || !MessageDigest.isEqual(expectedToken, token)) {
+        LOG.warn("Rejecting control channel for container {}", id);
+        eventloop.disconnect(this);
+        return;
+      }
+      containerId = id;
+      ControlConnection previous = connections.put(id, this);
+      if (previous != null) {
+        eventloop.disconnect(previous);
+      }
+      LOG.debug("Control channel connected for container {}", id);
+      // requests may have been queued before the container connected
+      notifyContainer(id);
+    }
+
+    @Override
+    public void disconnected()
+    {
+      if (containerId != null) {
+        connections.remove(containerId, this);
+        LOG.debug("Control channel disconnected for container {}", containerId);
+      }
+      super.disconnected();
+    }
+
+    @Override
+    public void handleException(Exception cce, EventLoop el)
+    {
+      LOG.debug("Control channel of container {} failed", containerId, cce);
+      el.disconnect(this);
+    }
+  }
+
+  private static final Logger LOG = LoggerFactory.getLogger(ContainerControlServer.class);
+}
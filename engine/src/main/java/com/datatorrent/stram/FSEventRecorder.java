@@ -21,11 +21,15 @@ package com.datatorrent.stram;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -39,6 +43,7 @@ import com.datatorrent.common.codec.JsonStreamCodec;
 import com.datatorrent.netlet.util.Slice;
 import com.datatorrent.stram.api.StramEvent;
 import com.datatorrent.stram.client.EventsAgent;
+import com.datatorrent.stram.plan.logical.LogicalPlan;
 import com.datatorrent.stram.util.FSPartFileCollection;
 import com.datatorrent.stram.util.SharedPubSubWebSocketClient;
 
@@ -46,14 +51,29 @@ import net.engio.mbassy.listener.Handler;
 
 /**
  * <p>FSEventRecorder class.</p>
+ * <p>
+ * Events are written in batches by the recorder thread. The queue is bounded, when the file system cannot keep up
+ * events are dropped and counted instead of growing the heap.
  *
  * @since 0.3.4
  */
 public class FSEventRecorder implements EventRecorder
 {
   public static final String VERSION = "1.0";
-  private final BlockingQueue<StramEvent> queue = new LinkedBlockingQueue<>();
+  private BlockingQueue<StramEvent> queue = new ArrayBlockingQueue<>(LogicalPlan.RECORDING_QUEUE_CAPACITY.defaultValue);
+  private final AtomicLong droppedCount = new AtomicLong();
   private static final Logger LOG = LoggerFactory.getLogger(FSEventRecorder.class);
+  private static final int MAX_BATCH_SIZE = 1024;
+  private static final int DROPPED_LOG_INTERVAL = 1000;
+  private static final long SHUTDOWN_TIMEOUT_MILLIS = 10000;
+  private static final StramEvent SHUTDOWN = new StramEvent()
+  {
+    @Override
+    public String getType()
+    {
+      return "Shutdown";
+    }
+  };
   private FSPartFileCollection storage;
   private String basePath = ".";
   private transient StreamCodec<Object> streamCodec;
@@ -65,20 +85,25 @@ public class FSEventRecorder implements EventRecorder
 
   private class EventRecorderThread extends Thread
   {
+    private final List<StramEvent> batch = new ArrayList<>(MAX_BATCH_SIZE);
+
     @Override
-    @SuppressWarnings("CallToThreadYield")
     public void run()
     {
       while (true) {
         try {
-          writeEvent(queue.take());
-          yield();
-          if (queue.isEmpty()) {
+          batch.add(queue.take());
+          queue.drainTo(batch, MAX_BATCH_SIZE - 1);
+          boolean shutdown = writeBatch();
+          if (shutdown || queue.isEmpty()) {
             if (!storage.flushData() && wsClient != null) {
               String topic = SharedPubSubWebSocketClient.LAST_INDEX_TOPIC_PREFIX + ".event." + storage.getBasePath();
               wsClient.publish(topic, storage.getLatestIndexLine());
             }
           }
+          if (shutdown) {
+            return;
+          }
         } catch (InterruptedException ex) {
           return;
         } catch (Exception ex) {
@@ -87,6 +112,28 @@ public class FSEventRecorder implements EventRecorder
       }
     }
 
+    /**
+     * @return whether the batch contained the shutdown marker
+     */
+    private boolean writeBatch()
+    {
+      try {
+        for (StramEvent event : batch) {
+          if (event == SHUTDOWN) {
+            return true;
+          }
+          try {
+            writeEvent(event);
+          } catch (Exception ex) {
+            LOG.error("Failed to record event {}", event.getType(), ex);
+          }
+        }
+        return false;
+      } finally {
+        batch.clear();
+      }
+    }
+
   }
 
   public FSEventRecorder(String appid)
@@ -105,6 +152,24 @@ public class FSEventRecorder implements EventRecorder
     this.basePath = basePath;
   }
 
+  /**
+   * Must be called before events are recorded, queued events are discarded.
+   *
+   * @param queueCapacity maximum number of events waiting to be written
+   */
+  public void setQueueCapacity(int queueCapacity)
+  {
+    this.queue = new ArrayBlockingQueue<>(queueCapacity);
+  }
+
+  /**
+   * @return the number of events that were dropped because the queue was full
+   */
+  public long getDroppedCount()
+  {
+    return droppedCount.get();
+  }
+
   public void setup()
   {
     try {
@@ -130,11 +195,17 @@ public class FSEventRecorder implements EventRecorder
 
   public void teardown()
   {
-    eventRecorderThread.interrupt();
-    try {
-      eventRecorderThread.join();
-    } catch (InterruptedException ex) {
-      LOG.warn("Event recorder thread join interrupted");
+    // the thread is not running when setup was not called or failed
+    if (eventRecorderThread.isAlive()) {
+      try {
+        // events queued before the shutdown are written, unless the file system is stuck
+        if (!queue.offer(SHUTDOWN, SHUTDOWN_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+          eventRecorderThread.interrupt();
+        }
+        eventRecorderThread.join();
+      } catch (InterruptedException ex) {
+        LOG.warn("Event recorder thread join interrupted");
+      }
     }
     if (storage != null) {
       storage.teardown();
@@ -146,7 +217,9 @@ public class FSEventRecorder implements EventRecorder
   public void recordEventAsync(StramEvent event)
   {
     LOG.debug("Adding event {} to the queue", event.getType());
-    queue.add(event);
+    if (!queue.offer(event) && droppedCount.getAndIncrement() % DROPPED_LOG_INTERVAL == 0) {
+      LOG.warn("Event recording queue is full, {} events dropped", droppedCount.get());
+    }
   }
 
   public void writeEvent(StramEvent event) throws Exception
@@ -18,7 +18,10 @@
  */
 package com.datatorrent.stram;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.FileOutputStream;
@@ -27,6 +30,8 @@ import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.ObjectStreamClass;
+import java.io.ObjectStreamConstants;
+import java.io.OutputStream;
 import java.util.EnumSet;
 
 import org.slf4j.Logger;
@@ -67,6 +72,14 @@ public class FSRecoveryHandler implements StreamingContainerManager.RecoveryHand
   private static final String DIRECTORY_RECOVERY = "recovery";
   private static final String FILE_HEARTBEATURI = "heartbeatUri";
 
+  /**
+   * Snapshot header, followed by the version and the serialized state.
+   * Snapshots written by earlier versions start with the Java serialization stream magic instead.
+   */
+  static final int SNAPSHOT_MAGIC = 0x5354524d;
+  static final int SNAPSHOT_VERSION = 1;
+  private static final int SNAPSHOT_BUFFER_SIZE = 64 * 1024;
+
   public FSRecoveryHandler(String appDir, Configuration conf) throws IOException
   {
     this.basedir = new Path(appDir, DIRECTORY_RECOVERY);
@@ -157,21 +170,47 @@ public class FSRecoveryHandler implements StreamingContainerManager.RecoveryHand
   @Override
   public void save(Object state) throws IOException
   {
+    long start = System.currentTimeMillis();
+    try (FSDataOutputStream fsOutputStream = createSnapshot()) {
+      writeSnapshot(state, fsOutputStream);
+    }
+    commitSnapshot();
+    LOG.debug("Checkpoint written in {} ms", System.currentTimeMillis() - start);
+  }
 
-    if (fs.exists(snapshotBackupPath)) {
-      throw new IllegalStateException("Found previous backup " + snapshotBackupPath);
+  @Override
+  public byte[] serialize(Object state) throws IOException
+  {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream(SNAPSHOT_BUFFER_SIZE);
+    writeSnapshot(state, bos);
+    return bos.toByteArray();
+  }
+
+  @Override
+  public void saveSnapshot(byte[] snapshot) throws IOException
+  {
+    try (FSDataOutputStream fsOutputStream = createSnapshot()) {
+      fsOutputStream.write(snapshot);
     }
+    commitSnapshot();
+  }
 
-    if (fs.exists(snapshotPath)) {
+  private FSDataOutputStream createSnapshot() throws IOException
+  {
+    if (fs.exists(snapshotBackupPath)) {
+      // a previous save failed, the backup is still the last complete snapshot
+      LOG.warn("Replacing incomplete snapshot {}, keeping {}", snapshotPath, snapshotBackupPath);
+    } else if (fs.exists(snapshotPath)) {
       LOG.debug("Backup {} to {}", snapshotPath, snapshotBackupPath);
       fs.rename(snapshotPath, snapshotBackupPath);
     }
 
     LOG.debug("Writing checkpoint to {}", snapshotPath);
-    try (FSDataOutputStream fsOutputStream = fs.create(snapshotPath);
-        ObjectOutputStream oos = new ObjectOutputStream(fsOutputStream)) {
-      oos.writeObject(state);
-    }
+    return fs.create(snapshotPath);
+  }
+
+  private void commitSnapshot() throws IOException
+  {
     // remove snapshot backup
     if (fs.exists(snapshotBackupPath) && !fs.delete(snapshotBackupPath, false)) {
       throw new IOException("Failed to remove " + snapshotBackupPath);
@@ -182,7 +221,6 @@ public class FSRecoveryHandler implements StreamingContainerManager.RecoveryHand
     if (fs.exists(logBackup) && !fs.delete(logBackup, false)) {
       throw new IOException("Failed to remove " + logBackup);
     }
-
   }
 
   @Override
@@ -194,27 +232,13 @@ public class FSRecoveryHandler implements StreamingContainerManager.RecoveryHand
     if (fc.util().exists(snapshotBackupPath)) {
       LOG.warn("Incomplete checkpoint, reverting to {}", snapshotBackupPath);
       fc.rename(snapshotBackupPath, snapshotPath, Rename.OVERWRITE);
-
-      // combine logs (w/o append, create new file)
-      Path tmpLogPath = new Path(basedir, "log.combined");
-      try (FSDataOutputStream fsOut = fc.create(tmpLogPath, EnumSet.of(CreateFlag.CREATE, CreateFlag.OVERWRITE))) {
-        try (FSDataInputStream fsIn = fc.open(logBackupPath)) {
-          IOUtils.copy(fsIn, fsOut);
-        }
-
-        try (FSDataInputStream fsIn = fc.open(logPath)) {
-          IOUtils.copy(fsIn, fsOut);
-        }
-      }
-
-      fc.rename(tmpLogPath, logPath, Rename.OVERWRITE);
-      fc.delete(logBackupPath, false);
+      combineLogs(fc);
     } else {
       // we have log backup, but no checkpoint backup
       // failure between log rotation and writing checkpoint
       if (fc.util().exists(logBackupPath)) {
         LOG.warn("Found {}, did checkpointing fail?", logBackupPath);
-        fc.rename(logBackupPath, logPath, Rename.OVERWRITE);
+        combineLogs(fc);
       }
     }
 
@@ -224,11 +248,84 @@ public class FSRecoveryHandler implements StreamingContainerManager.RecoveryHand
     }
 
     LOG.debug("Reading checkpoint {}", snapshotPath);
-    InputStream is = fc.open(snapshotPath);
+    try (InputStream is = fc.open(snapshotPath)) {
+      return readSnapshot(is);
+    }
+  }
+
+  /**
+   * Prepend the log backup to the log, which has the operations written after the rotation that preceded
+   * the incomplete checkpoint.
+   */
+  private void combineLogs(FileContext fc) throws IOException
+  {
+    if (!fc.util().exists(logPath)) {
+      fc.rename(logBackupPath, logPath, Rename.OVERWRITE);
+      return;
+    }
+    // combine logs (w/o append, create new file)
+    Path tmpLogPath = new Path(basedir, "log.combined");
+    try (FSDataOutputStream fsOut = fc.create(tmpLogPath, EnumSet.of(CreateFlag.CREATE, CreateFlag.OVERWRITE))) {
+      try (FSDataInputStream fsIn = fc.open(logBackupPath)) {
+        IOUtils.copy(fsIn, fsOut);
+      }
+
+      try (FSDataInputStream fsIn = fc.open(logPath)) {
+        IOUtils.copy(fsIn, fsOut);
+      }
+    }
+
+    fc.rename(tmpLogPath, logPath, Rename.OVERWRITE);
+    fc.delete(logBackupPath, false);
+  }
+
+  /**
+   * Write the state in the current snapshot format.
+   *
+   * @param state
+   * @param os
+   * @throws IOException
+   */
+  static void writeSnapshot(Object state, OutputStream os) throws IOException
+  {
+    DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(os, SNAPSHOT_BUFFER_SIZE));
+    dos.writeInt(SNAPSHOT_MAGIC);
+    dos.writeInt(SNAPSHOT_VERSION);
+    ObjectOutputStream oos = new ObjectOutputStream(dos);
+    oos.writeObject(state);
+    oos.flush();
+  }
+
+  /**
+   * Read the state from a snapshot in the current format or the format written by earlier versions, which
+   * has no header.
+   *
+   * @param is
+   * @return state
+   * @throws IOException
+   */
+  static Object readSnapshot(InputStream is) throws IOException
+  {
+    BufferedInputStream bis = new BufferedInputStream(is, SNAPSHOT_BUFFER_SIZE);
+    bis.mark(8);
+    DataInputStream dis = new DataInputStream(bis);
+    int magic = dis.readInt();
+    if (magic == SNAPSHOT_MAGIC) {
+      int version = dis.readInt();
+      if (version != SNAPSHOT_VERSION) {
+        throw new IOException("Unsupported snapshot version " + version);
+      }
+    } else if ((magic >>> 16) == (ObjectStreamConstants.STREAM_MAGIC & 0xFFFF)) {
+      LOG.info("Reading snapshot in legacy format");
+      bis.reset();
+    } else {
+      throw new IOException("Invalid snapshot header " + Integer.toHexString(magic));
+    }
+
     // indeterministic class loading behavior
     // http://stackoverflow.com/questions/9110677/readresolve-not-working-an-instance-of-guavas-serializedform-appears
     final ClassLoader loader = Thread.currentThread().getContextClassLoader();
-    try (ObjectInputStream ois = new ObjectInputStream(is)
+    try (ObjectInputStream ois = new ObjectInputStream(bis)
     {
       @Override
       protected Class<?> resolveClass(ObjectStreamClass objectStreamClass)
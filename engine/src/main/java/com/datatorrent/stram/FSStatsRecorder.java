@@ -27,9 +27,11 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -38,12 +40,16 @@ import com.datatorrent.api.StreamCodec;
 import com.datatorrent.api.annotation.RecordField;
 import com.datatorrent.common.codec.JsonStreamCodec;
 import com.datatorrent.netlet.util.Slice;
+import com.datatorrent.stram.plan.logical.LogicalPlan;
 import com.datatorrent.stram.util.FSPartFileCollection;
 import com.datatorrent.stram.webapp.ContainerInfo;
 import com.datatorrent.stram.webapp.OperatorInfo;
 
 /**
  * <p>FSStatsRecorder class.</p>
+ * <p>
+ * Records are queued by the master loop and serialized and written in batches by the recorder thread. The queue is
+ * bounded, when the file system cannot keep up records are dropped and counted instead of growing the heap.
  *
  * @since 0.3.2
  */
@@ -51,59 +57,111 @@ public class FSStatsRecorder implements StatsRecorder
 {
   public static final String VERSION = "1.0";
   private static final Logger LOG = LoggerFactory.getLogger(FSStatsRecorder.class);
+  private static final int MAX_BATCH_SIZE = 1024;
+  private static final int DROPPED_LOG_INTERVAL = 1000;
+  private static final long SHUTDOWN_TIMEOUT_MILLIS = 10000;
   private String basePath = ".";
   private FSPartFileCollection containersStorage;
   private final Map<String, FSPartFileCollection> logicalOperatorStorageMap = new ConcurrentHashMap<>();
   private final Map<String, Integer> knownContainers = new HashMap<>();
   private final Set<String> knownOperators = new HashSet<>();
   private transient StreamCodec<Object> streamCodec;
-  private final Map<Class<?>, List<Field>> metaFields = new HashMap<>();
-  private final Map<Class<?>, List<Field>> statsFields = new HashMap<>();
-  private final BlockingQueue<WriteOperation> queue = new LinkedBlockingQueue<>();
+  private final Map<Class<?>, List<Field>> metaFields = new ConcurrentHashMap<>();
+  private final Map<Class<?>, List<Field>> statsFields = new ConcurrentHashMap<>();
+  private BlockingQueue<WriteOperation> queue = new ArrayBlockingQueue<>(LogicalPlan.RECORDING_QUEUE_CAPACITY.defaultValue);
+  private final AtomicLong droppedCount = new AtomicLong();
   private final StatsRecorderThread statsRecorderThread = new StatsRecorderThread();
 
   private class StatsRecorderThread extends Thread
   {
+    private final List<WriteOperation> batch = new ArrayList<>(MAX_BATCH_SIZE);
+    private final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+
     @Override
     public void run()
     {
       while (true) {
         try {
-          WriteOperation wo = queue.take();
-          if (wo.meta) {
-            wo.storage.writeMetaData(wo.bytes);
-          } else {
-            wo.storage.writeDataItem(wo.bytes, true);
+          batch.add(queue.take());
+          queue.drainTo(batch, MAX_BATCH_SIZE - 1);
+          boolean shutdown = writeBatch();
+          if (shutdown || queue.isEmpty()) {
+            flush();
           }
-          Thread.yield();
-          if (queue.isEmpty()) {
-            containersStorage.flushData();
-            for (FSPartFileCollection operatorStorage : logicalOperatorStorageMap.values()) {
-              operatorStorage.flushData();
-            }
+          if (shutdown) {
+            return;
           }
         } catch (InterruptedException ex) {
           return;
         } catch (Exception ex) {
+          batch.clear();
           LOG.error("Caught Exception", ex);
         }
       }
     }
 
+    /**
+     * @return whether the batch contained the shutdown marker
+     */
+    private boolean writeBatch()
+    {
+      try {
+        for (WriteOperation wo : batch) {
+          if (wo == SHUTDOWN) {
+            return true;
+          }
+          try {
+            write(wo);
+          } catch (IOException | RuntimeException ex) {
+            LOG.error("Failed to record {}", wo.record, ex);
+          }
+        }
+        return false;
+      } finally {
+        batch.clear();
+      }
+    }
+
+    private void write(WriteOperation wo) throws IOException
+    {
+      bos.reset();
+      bos.write(wo.prefix.getBytes());
+      Slice f = streamCodec.toByteArray(extractRecordFields(wo.record, wo.meta ? "meta" : "stats"));
+      bos.write(f.buffer, f.offset, f.length);
+      bos.write('\n');
+      if (wo.meta) {
+        wo.storage.writeMetaData(bos.toByteArray());
+      } else {
+        wo.storage.writeDataItem(bos.toByteArray(), true);
+      }
+    }
+
+    private void flush() throws IOException
+    {
+      containersStorage.flushData();
+      for (FSPartFileCollection operatorStorage : logicalOperatorStorageMap.values()) {
+        operatorStorage.flushData();
+      }
+    }
+
   }
 
+  private static final WriteOperation SHUTDOWN = new WriteOperation(null, null, null, false);
+
   private static class WriteOperation
   {
-    WriteOperation(FSPartFileCollection storage, byte[] bytes, boolean meta)
+    WriteOperation(FSPartFileCollection storage, String prefix, Object record, boolean meta)
     {
       this.storage = storage;
-      this.bytes = bytes;
+      this.prefix = prefix;
+      this.record = record;
       this.meta = meta;
     }
 
-    FSPartFileCollection storage;
-    byte[] bytes;
-    boolean meta;
+    final FSPartFileCollection storage;
+    final String prefix;
+    final Object record;
+    final boolean meta;
   }
 
   public void setBasePath(String basePath)
@@ -111,6 +169,35 @@ public class FSStatsRecorder implements StatsRecorder
     this.basePath = basePath;
   }
 
+  /**
+   * Must be called before records are queued, queued records are discarded.
+   *
+   * @param queueCapacity maximum number of records waiting to be written
+   */
+  public void setQueueCapacity(int queueCapacity)
+  {
+    this.queue = new ArrayBlockingQueue<>(queueCapacity);
+  }
+
+  /**
+   * @return the number of records that were dropped because the queue was full
+   */
+  public long getDroppedCount()
+  {
+    return droppedCount.get();
+  }
+
+  private boolean enqueue(WriteOperation wo)
+  {
+    if (queue.offer(wo)) {
+      return true;
+    }
+    if (droppedCount.getAndIncrement() % DROPPED_LOG_INTERVAL == 0) {
+      LOG.warn("Stats recording queue is full, {} records dropped", droppedCount.get());
+    }
+    return false;
+  }
+
   public void setup()
   {
     try {
@@ -127,11 +214,17 @@ public class FSStatsRecorder implements StatsRecorder
 
   public void teardown()
   {
-    statsRecorderThread.interrupt();
-    try {
-      statsRecorderThread.join();
-    } catch (InterruptedException ex) {
-      LOG.warn("Stats recorder thread join interrupted");
+    // the thread is not running when setup was not called or failed
+    if (statsRecorderThread.isAlive()) {
+      try {
+        // records queued before the shutdown are written, unless the file system is stuck
+        if (!queue.offer(SHUTDOWN, SHUTDOWN_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+          statsRecorderThread.interrupt();
+        }
+        statsRecorderThread.join();
+      } catch (InterruptedException ex) {
+        LOG.warn("Stats recorder thread join interrupted");
+      }
     }
     if (containersStorage != null) {
       containersStorage.teardown();
@@ -150,28 +243,16 @@ public class FSStatsRecorder implements StatsRecorder
       if (!containerInfo.state.equals("ACTIVE")) {
         continue;
       }
-      int containerIndex;
-      if (!knownContainers.containsKey(entry.getKey())) {
+      Integer containerIndex = knownContainers.get(entry.getKey());
+      if (containerIndex == null) {
         containerIndex = knownContainers.size();
+        if (!enqueue(new WriteOperation(containersStorage, containerIndex + ":", containerInfo, true))) {
+          // meta data is retried with the next stats
+          continue;
+        }
         knownContainers.put(entry.getKey(), containerIndex);
-        Map<String, Object> fieldMap = extractRecordFields(containerInfo, "meta");
-        ByteArrayOutputStream bos = new ByteArrayOutputStream();
-        Slice f = streamCodec.toByteArray(fieldMap);
-        bos.write((String.valueOf(containerIndex) + ":").getBytes());
-        bos.write(f.buffer, f.offset, f.length);
-        bos.write("\n".getBytes());
-        queue.add(new WriteOperation(containersStorage, bos.toByteArray(), true));
-      } else {
-        containerIndex = knownContainers.get(entry.getKey());
       }
-      Map<String, Object> fieldMap = extractRecordFields(containerInfo, "stats");
-      ByteArrayOutputStream bos = new ByteArrayOutputStream();
-      Slice f = streamCodec.toByteArray(fieldMap);
-      bos.write((String.valueOf(containerIndex) + ":").getBytes());
-      bos.write((String.valueOf(timestamp) + ":").getBytes());
-      bos.write(f.buffer, f.offset, f.length);
-      bos.write("\n".getBytes());
-      queue.add(new WriteOperation(containersStorage, bos.toByteArray(), false));
+      enqueue(new WriteOperation(containersStorage, containerIndex + ":" + timestamp + ":", containerInfo, false));
     }
   }
 
@@ -190,22 +271,12 @@ public class FSStatsRecorder implements StatsRecorder
         operatorStorage = logicalOperatorStorageMap.get(operatorInfo.name);
       }
       if (!knownOperators.contains(operatorInfo.id)) {
+        if (!enqueue(new WriteOperation(operatorStorage, "", operatorInfo, true))) {
+          continue;
+        }
         knownOperators.add(operatorInfo.id);
-        Map<String, Object> fieldMap = extractRecordFields(operatorInfo, "meta");
-        ByteArrayOutputStream bos = new ByteArrayOutputStream();
-        Slice f = streamCodec.toByteArray(fieldMap);
-        bos.write(f.buffer, f.offset, f.length);
-        bos.write("\n".getBytes());
-        queue.add(new WriteOperation(operatorStorage, bos.toByteArray(), true));
       }
-      Map<String, Object> fieldMap = extractRecordFields(operatorInfo, "stats");
-      ByteArrayOutputStream bos = new ByteArrayOutputStream();
-      Slice f = streamCodec.toByteArray(fieldMap);
-      bos.write((operatorInfo.id + ":").getBytes());
-      bos.write((String.valueOf(timestamp) + ":").getBytes());
-      bos.write(f.buffer, f.offset, f.length);
-      bos.write("\n".getBytes());
-      queue.add(new WriteOperation(operatorStorage, bos.toByteArray(), false));
+      enqueue(new WriteOperation(operatorStorage, operatorInfo.id + ":" + timestamp + ":", operatorInfo, false));
     }
   }
 
@@ -21,7 +21,14 @@ package com.datatorrent.stram;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -33,8 +40,13 @@ import org.slf4j.LoggerFactory;
 import com.esotericsoftware.kryo.KryoException;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
+import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.SettableFuture;
 
+import com.datatorrent.common.util.NameableThreadFactory;
+import com.datatorrent.stram.plan.logical.LogicalPlan;
 import com.datatorrent.stram.plan.physical.PTContainer;
 import com.datatorrent.stram.plan.physical.PTOperator;
 
@@ -42,6 +54,10 @@ import com.datatorrent.stram.plan.physical.PTOperator;
  * Write ahead log for DAG changes.
  * Operations need to be registered with the journal instance before writing.
  * Registered prototype instances will be used to apply changes on read.
+ * <p>
+ * Writes are group committed: operations are serialized into the output buffer as they arrive and a single
+ * flush makes all operations written up to that point durable. Callers of {@link #writeAsync} receive a future
+ * that completes once the operation was flushed, {@link #write} waits for it.
  *
  * @since 0.9.2
  */
@@ -91,49 +107,131 @@ public final class Journal
     void write(Output out) throws KryoException;
   }
 
+  private static class JournalOutput extends Output
+  {
+    /**
+     * Operations written to the buffer that wait for the next flush.
+     */
+    private final List<SettableFuture<Void>> pending = new ArrayList<>();
+    private boolean flushScheduled;
+    private boolean closed;
+
+    private JournalOutput(OutputStream out)
+    {
+      super(4096, -1);
+      setOutputStream(out);
+    }
+
+    @Override
+    public void flush() throws KryoException
+    {
+      super.flush();
+      // Kryo does not flush internal output stream during flush. We need to flush it explicitly.
+      try {
+        getOutputStream().flush();
+      } catch (IOException e) {
+        throw new KryoException(e);
+      }
+    }
+
+    private List<SettableFuture<Void>> drainPending()
+    {
+      List<SettableFuture<Void>> futures = new ArrayList<>(pending);
+      pending.clear();
+      return futures;
+    }
+  }
+
   private final StreamingContainerManager scm;
-  private final AtomicReference<Output> output;
+  private final AtomicReference<JournalOutput> output;
   private final AtomicBoolean replayMode;
+  private final ScheduledExecutorService flushExecutor;
 
   public Journal(StreamingContainerManager scm)
   {
     this.scm = scm;
     output = new AtomicReference<>();
     replayMode = new AtomicBoolean(false);
+    flushExecutor = Executors.newSingleThreadScheduledExecutor(new NameableThreadFactory("JournalFlush", true));
   }
 
   public void setOutputStream(@Nullable final OutputStream out) throws IOException
   {
-    final Output output;
-    if (out != null) {
-      output = new Output(4096, -1)
-      {
-        @Override
-        public void flush() throws KryoException
-        {
-          super.flush();
-          // Kryo does not flush internal output stream during flush. We need to flush it explicitly.
-          try {
-            getOutputStream().flush();
-          } catch (IOException e) {
-            throw new KryoException(e);
-          }
-        }
-      };
-      output.setOutputStream(out);
-    } else {
-      output = null;
-    }
+    final JournalOutput output = out != null ? new JournalOutput(out) : null;
 
-    final Output oldOut = this.output.getAndSet(output);
+    final JournalOutput oldOut = this.output.getAndSet(output);
     if (oldOut != null && oldOut.getOutputStream() != out) {
+      List<SettableFuture<Void>> futures;
       synchronized (oldOut) {
-        oldOut.close();
+        oldOut.closed = true;
+        futures = oldOut.drainPending();
+        try {
+          // close flushes the operations that were not flushed yet
+          oldOut.close();
+        } catch (KryoException e) {
+          for (SettableFuture<Void> f : futures) {
+            f.setException(e);
+          }
+          throw e;
+        }
+      }
+      for (SettableFuture<Void> f : futures) {
+        f.set(null);
       }
     }
   }
 
+  /**
+   * Stop the flush thread. Operations that were not flushed yet are flushed when the output stream is closed.
+   */
+  public void close()
+  {
+    flushExecutor.shutdown();
+  }
+
+  /**
+   * Number of bytes written to the current output stream, used to decide when the log should be compacted into
+   * a new snapshot.
+   *
+   * @return bytes written since the last call to {@link #setOutputStream}
+   */
+  public long getSize()
+  {
+    final Output out = output.get();
+    if (out == null) {
+      return 0;
+    }
+    synchronized (out) {
+      return out.total();
+    }
+  }
+
+  /**
+   * Write the operation and wait until it was flushed to the output stream.
+   *
+   * @param op
+   */
   final void write(Recoverable op)
+  {
+    try {
+      writeAsync(op).get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new KryoException(e);
+    } catch (ExecutionException e) {
+      throw Throwables.propagate(e.getCause());
+    }
+  }
+
+  /**
+   * Write the operation to the output buffer and schedule a flush, which will include all operations written
+   * by other threads until it executes. The flush is delayed by at most
+   * {@link LogicalPlan#JOURNAL_FLUSH_DELAY_MILLIS} to collect more operations into the same flush.
+   *
+   * @param op
+   * @return future that completes when the operation is durable
+   */
+  final Future<Void> writeAsync(Recoverable op)
   {
     if (replayMode.get()) {
       throw new IllegalStateException("Request to write while journal is replaying operations");
@@ -143,28 +241,73 @@ public final class Journal
       throw new IllegalArgumentException("Class not registered " + op.getClass());
     }
     while (true) {
-      final Output out = output.get();
+      final JournalOutput out = output.get();
       if (out != null) {
-        // need to atomically write id, operation and flush the output stream
+        // need to atomically write id and operation
         synchronized (out) {
-          try {
-            LOG.debug("WAL write {}", RecoverableOperation.get(classId));
-            out.writeInt(classId);
-            op.write(out);
-            out.flush();
-            break;
-          } catch (KryoException e) {
-            // check that no other threads sneaked between get() and synchronized block and set output stream to a new
+          if (out.closed) {
+            // another thread sneaked between get() and synchronized block and set output stream to a new
             // stream or null leading to the current stream being closed
-            if (output.get() == out) {
-              throw e;
-            }
+            continue;
+          }
+          LOG.debug("WAL write {}", RecoverableOperation.get(classId));
+          out.writeInt(classId);
+          op.write(out);
+          SettableFuture<Void> future = SettableFuture.create();
+          out.pending.add(future);
+          if (!out.flushScheduled) {
+            out.flushScheduled = true;
+            scheduleFlush(out);
           }
+          return future;
         }
       } else {
         LOG.warn("Journal output stream is null. Skipping write to the WAL.");
-        break;
+        return Futures.immediateFuture(null);
+      }
+    }
+  }
+
+  private void scheduleFlush(final JournalOutput out)
+  {
+    Runnable flush = new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        flush(out);
       }
+    };
+    long delayMillis = scm.getLogicalPlan().getValue(LogicalPlan.JOURNAL_FLUSH_DELAY_MILLIS);
+    if (delayMillis > 0) {
+      flushExecutor.schedule(flush, delayMillis, TimeUnit.MILLISECONDS);
+    } else {
+      flushExecutor.execute(flush);
+    }
+  }
+
+  private void flush(JournalOutput out)
+  {
+    List<SettableFuture<Void>> futures;
+    synchronized (out) {
+      out.flushScheduled = false;
+      if (out.closed || out.pending.isEmpty()) {
+        return;
+      }
+      futures = out.drainPending();
+      try {
+        out.flush();
+      } catch (KryoException e) {
+        LOG.error("Failed to flush WAL", e);
+        for (SettableFuture<Void> f : futures) {
+          f.setException(e);
+        }
+        return;
+      }
+    }
+    LOG.debug("WAL flushed {} operations", futures.size());
+    for (SettableFuture<Void> f : futures) {
+      f.set(null);
     }
   }
 
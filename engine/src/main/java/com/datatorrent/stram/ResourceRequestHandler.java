@@ -19,6 +19,7 @@
 package com.datatorrent.stram;
 
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -136,7 +137,8 @@ public class ResourceRequestHandler
   }
 
   private final Map<String, NodeReport> nodeReportMap = Maps.newHashMap();
-  private final Map<Set<PTOperator>, String> nodeLocalMapping = Maps.newHashMap();
+  // keyed by identity, the node local operator sets are shared by the operators of a group and grow on repartitioning
+  private final Map<Set<PTOperator>, String> nodeLocalMapping = Maps.newIdentityHashMap();
   private final Map<String, String> nodeToRack = Maps.newHashMap();
   private final Map<PTContainer, String> antiAffinityMapping = Maps.newHashMap();
 
@@ -198,9 +200,13 @@ public class ResourceRequestHandler
         }
       }
       if (host != null && nodeReportMap.get(host) != null) {
+        Set<Set<PTOperator>> visited = Sets.newIdentityHashSet();
         for (PTOperator oper : c.getOperators()) {
           HostOperatorSet grpObj = oper.getNodeLocalOperators();
           Set<PTOperator> nodeLocalSet = grpObj.getOperatorSet();
+          if (!visited.add(nodeLocalSet)) {
+            continue;
+          }
           NodeReport report = nodeReportMap.get(host);
           int aggrMemory = c.getRequiredMemoryMB();
           int vCores = c.getRequiredVCores();
@@ -226,8 +232,8 @@ public class ResourceRequestHandler
 
     // the host requested didn't have the resources so looking for other hosts
     host = null;
-    List<String> antiHosts = new ArrayList<>();
-    List<String> antiPreferredHosts = new ArrayList<>();
+    Set<String> antiHosts = new LinkedHashSet<>();
+    Set<String> antiPreferredHosts = new LinkedHashSet<>();
     if (!c.getStrictAntiPrefs().isEmpty()) {
       // Check if containers are allocated already for the anti-affinity containers
       populateAntiHostList(c, antiHosts);
@@ -236,9 +242,14 @@ public class ResourceRequestHandler
       populateAntiHostList(c, antiPreferredHosts);
     }
     LOG.info("Strict anti-affinity = {} for container with operators {}", antiHosts, StringUtils.join(c.getOperators(), ","));
+    Set<Set<PTOperator>> visited = Sets.newIdentityHashSet();
     for (PTOperator oper : c.getOperators()) {
       HostOperatorSet grpObj = oper.getNodeLocalOperators();
       Set<PTOperator> nodeLocalSet = grpObj.getOperatorSet();
+      if (!visited.add(nodeLocalSet)) {
+        // operators of the container that share the node local group
+        continue;
+      }
       if (nodeLocalSet.size() > 1 ||  !c.getStrictAntiPrefs().isEmpty() || !c.getPreferredAntiPrefs().isEmpty()) {
         LOG.info("Finding new host for {}", nodeLocalSet);
         int aggrMemory = c.getRequiredMemoryMB();
@@ -274,9 +285,9 @@ public class ResourceRequestHandler
   /**
    * Populate list of nodes where container cannot be allocated due to anti-affinity constraints
    * @param c container
-   * @param antiHosts List of nodes where container cannot be allocated
+   * @param antiHosts Set of nodes where container cannot be allocated
    */
-  public void populateAntiHostList(PTContainer c, List<String> antiHosts)
+  public void populateAntiHostList(PTContainer c, Set<String> antiHosts)
   {
     for (PTContainer container : c.getStrictAntiPrefs()) {
       if (antiAffinityMapping.containsKey(container)) {
@@ -323,7 +334,7 @@ public class ResourceRequestHandler
    * @param vCores
    * @return
    */
-  public String assignHost(String host, List<String> antiHosts, List<String> antiPreferredHosts, HostOperatorSet grpObj, Set<PTOperator> nodeLocalSet, int aggrMemory, int vCores)
+  public String assignHost(String host, Set<String> antiHosts, Set<String> antiPreferredHosts, HostOperatorSet grpObj, Set<PTOperator> nodeLocalSet, int aggrMemory, int vCores)
   {
     for (Map.Entry<String, NodeReport> nodeEntry : nodeReportMap.entrySet()) {
       if (nodeEntry.getValue().getNodeState() == NodeState.RUNNING) {
@@ -439,6 +439,11 @@ public class StramLocalCluster implements Runnable, Controller
   {
     long endMillis = System.currentTimeMillis() + runMillis;
     List<Thread> containerThreads = new LinkedList<>();
+    boolean controlChannel = dnmgr.getLogicalPlan().getValue(LogicalPlan.CONTAINER_CONTROL_CHANNEL);
+    if (controlChannel) {
+      StreamingContainer.eventloop.start();
+      dnmgr.startControlServer(StreamingContainer.eventloop, LOCALHOST);
+    }
 
     while (!appDone) {
 
@@ -491,7 +496,7 @@ public class StramLocalCluster implements Runnable, Controller
 
       if (!appDone) {
         try {
-          Thread.sleep(1000);
+          dnmgr.awaitEvent(1000);
         } catch (InterruptedException e) {
           LOG.info("Sleep interrupted " + e.getMessage());
           break;
@@ -512,6 +517,10 @@ public class StramLocalCluster implements Runnable, Controller
       }
     }
 
+    if (controlChannel) {
+      dnmgr.stopControlServer();
+      StreamingContainer.eventloop.stop();
+    }
     dnmgr.teardown();
 
     LOG.info("Application finished.");
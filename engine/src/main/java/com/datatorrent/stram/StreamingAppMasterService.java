@@ -125,6 +125,8 @@ public class StreamingAppMasterService extends CompositeService
   private static final long DELEGATION_TOKEN_RENEW_INTERVAL = Long.MAX_VALUE / 2;
   private static final long DELEGATION_TOKEN_REMOVER_SCAN_INTERVAL = 24 * 60 * 60 * 1000;
   private static final int UPDATE_NODE_REPORTS_INTERVAL = 10 * 60 * 1000;
+  private static final long LOOP_INTERVAL_MILLIS = 1000;
+  private static final long MIN_LOOP_INTERVAL_MILLIS = 50;
   private AMRMClient<ContainerRequest> amRmClient;
   private NMClientAsync nmClient;
   private LogicalPlan dag;
@@ -649,8 +651,10 @@ public class StreamingAppMasterService extends CompositeService
     boolean status = true;
     try {
       StreamingContainer.eventloop.start();
+      dnmgr.startControlServer(StreamingContainer.eventloop, NetUtils.getConnectAddress(heartbeatListener.getAddress()).getHostName());
       execute();
     } finally {
+      dnmgr.stopControlServer();
       StreamingContainer.eventloop.stop();
     }
     return status;
@@ -773,11 +777,15 @@ public class StreamingAppMasterService extends CompositeService
        * numTotalContainers + ", requested=" + numRequestedContainers + ", completed=" + numCompletedContainers +
        * ", failed=" + numFailedContainers + ", currentAllocated=" + this.allAllocatedContainers.size());
        */
-      // Sleep before each loop when asking RM for containers
-      // to avoid flooding RM with spurious requests when it
-      // need not have any available containers
+      // Wait for an event that requires action, such as a container start or stop request or a plan change, or
+      // until the regular interval elapsed. The minimum interval limits the rate of
+      // requests to the RM to avoid flooding it with spurious requests when it need not have any available containers
       try {
-        sleep(1000);
+        long elapsedMillis = System.currentTimeMillis() - currentTimeMillis;
+        if (elapsedMillis < MIN_LOOP_INTERVAL_MILLIS) {
+          sleep(MIN_LOOP_INTERVAL_MILLIS - elapsedMillis);
+        }
+        dnmgr.awaitEvent(LOOP_INTERVAL_MILLIS - MIN_LOOP_INTERVAL_MILLIS);
       } catch (InterruptedException e) {
         LOG.info("Sleep interrupted " + e.getMessage());
       }
@@ -1193,6 +1201,7 @@ public class StreamingAppMasterService extends CompositeService
         }
 
       });
+      dnmgr.signalEvent();
     }
 
   }
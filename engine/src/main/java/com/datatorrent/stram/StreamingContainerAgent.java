@@ -37,6 +37,7 @@ import org.apache.hadoop.yarn.conf.YarnConfiguration;
 
 import com.google.common.collect.Sets;
 
+import com.datatorrent.api.AutoMetric;
 import com.datatorrent.api.Context.PortContext;
 import com.datatorrent.api.DAG.Locality;
 import com.datatorrent.api.InputOperator;
@@ -45,7 +46,11 @@ import com.datatorrent.api.Operator.ProcessingMode;
 import com.datatorrent.api.StorageAgent;
 import com.datatorrent.api.StreamCodec;
 import com.datatorrent.api.annotation.Stateless;
+import com.datatorrent.bufferserver.auth.AuthManager;
+import com.datatorrent.common.metric.MetricsAggregator;
 import com.datatorrent.stram.api.Checkpoint;
+import com.datatorrent.stram.api.ContainerContext;
+import com.datatorrent.stram.api.HeartbeatCodec;
 import com.datatorrent.stram.api.OperatorDeployInfo;
 import com.datatorrent.stram.api.OperatorDeployInfo.InputDeployInfo;
 import com.datatorrent.stram.api.OperatorDeployInfo.OperatorType;
@@ -57,6 +62,7 @@ import com.datatorrent.stram.engine.OperatorContext;
 import com.datatorrent.stram.plan.logical.LogicalPlan;
 import com.datatorrent.stram.plan.logical.LogicalPlan.InputPortMeta;
 import com.datatorrent.stram.plan.logical.LogicalPlan.StreamMeta;
+import com.datatorrent.stram.plan.logical.MetricAggregatorMeta;
 import com.datatorrent.stram.plan.physical.PTContainer;
 import com.datatorrent.stram.plan.physical.PTOperator;
 import com.datatorrent.stram.plan.physical.PTOperator.State;
@@ -109,14 +115,33 @@ public class StreamingContainerAgent
   final StreamingContainerContext initCtx;
   String jvmName;
   int memoryMBFree;
+  int memoryMBUsed;
   long gcCollectionCount;
   long gcCollectionTime;
   final StreamingContainerManager dnmgr;
+  /**
+   * Authenticates the container on the control channel. Unlike the buffer server token it does not depend on
+   * security being enabled, it is handed out with the init context once the control server runs.
+   */
+  volatile byte[] controlToken;
+  /**
+   * Decodes the delta encoded window stats of the heartbeats of this container.
+   */
+  final HeartbeatCodec.Decoder heartbeatDecoder = new HeartbeatCodec.Decoder();
 
   private final ConcurrentLinkedQueue<StramToNodeRequest> operatorRequests = new ConcurrentLinkedQueue<>();
 
   public StreamingContainerContext getInitContext()
   {
+    // the master address may have changed since the context was created (recovery)
+    InetSocketAddress controlAddress = dnmgr.getControlAddress();
+    if (controlAddress != null) {
+      if (controlToken == null) {
+        controlToken = AuthManager.generateToken();
+      }
+      initCtx.attributes.put(ContainerContext.CONTROL_ADDRESS, controlAddress);
+      initCtx.attributes.put(ContainerContext.CONTROL_TOKEN, controlToken);
+    }
     return initCtx;
   }
 
@@ -139,6 +164,7 @@ public class StreamingContainerAgent
   {
     LOG.info("Adding operator request {} {}", container.getExternalId(), r);
     this.operatorRequests.add(r);
+    dnmgr.notifyContainer(container.getExternalId());
   }
 
   @SuppressWarnings("ReturnOfCollectionOrArrayField")
@@ -204,6 +230,8 @@ public class StreamingContainerAgent
             portInfo.contextAttributes = sink.getAttributes();
             break;
           }
+        } else if (portInfo.getValue(PortContext.UNIFIER_PRE_AGGREGATE) && !out.isPreAggregated()) {
+          portInfo.contextAttributes.put(PortContext.UNIFIER_PRE_AGGREGATE, false);
         }
 
         if (!out.isDownStreamInline()) {
@@ -440,9 +468,31 @@ public class StreamingContainerAgent
     if (oper.isOperatorStateLess()) {
       ndi.contextAttributes.put(OperatorContext.STATELESS, true);
     }
+    if (!oper.isUnifier() && initCtx.getValue(LogicalPlan.METRICS_CONTAINER_AGGREGATION)) {
+      ndi.metricsAggregator = getCombinableMetricsAggregator(oper);
+    }
     return ndi;
   }
 
+  /**
+   * @return the metrics aggregator of the logical operator, when it can combine the metrics of partitions in this
+   * container, otherwise null
+   */
+  private AutoMetric.Aggregator getCombinableMetricsAggregator(PTOperator oper)
+  {
+    MetricAggregatorMeta meta = oper.getOperatorMeta().getMetricAggregatorMeta();
+    if (meta == null || !(meta.getAggregator() instanceof MetricsAggregator)
+        || !((MetricsAggregator)meta.getAggregator()).isCombinable()) {
+      return null;
+    }
+    for (PTOperator other : container.getOperators()) {
+      if (other != oper && other.getOperatorMeta() == oper.getOperatorMeta()) {
+        return meta.getAggregator();
+      }
+    }
+    return null;
+  }
+
   public ContainerInfo getContainerInfo()
   {
     ContainerInfo ci = new ContainerInfo();
@@ -480,6 +530,7 @@ public class StreamingContainerAgent
   {
 
     stackTraceRequested = true;
+    dnmgr.notifyContainer(container.getExternalId());
     return containerStackTrace;
   }
 
@@ -49,10 +49,13 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.FutureTask;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
@@ -119,6 +122,7 @@ import com.datatorrent.common.util.AsyncFSStorageAgent;
 import com.datatorrent.common.util.FSStorageAgent;
 import com.datatorrent.common.util.NumberAggregate;
 import com.datatorrent.common.util.Pair;
+import com.datatorrent.netlet.EventLoop;
 import com.datatorrent.stram.Journal.Recoverable;
 import com.datatorrent.stram.StreamingContainerAgent.ContainerStartRequest;
 import com.datatorrent.stram.api.AppDataSource;
@@ -158,6 +162,7 @@ import com.datatorrent.stram.plan.physical.PTOperator.PTOutput;
 import com.datatorrent.stram.plan.physical.PTOperator.State;
 import com.datatorrent.stram.plan.physical.PhysicalPlan;
 import com.datatorrent.stram.plan.physical.PhysicalPlan.PlanContext;
+import com.datatorrent.stram.plan.physical.PlacementOptimizer;
 import com.datatorrent.stram.plan.physical.PlanModifier;
 import com.datatorrent.stram.util.ConfigUtils;
 import com.datatorrent.stram.util.FSJsonLineFile;
@@ -212,6 +217,10 @@ public class StreamingContainerManager implements PlanContext
   protected boolean forcedShutdown = false;
   private final ConcurrentLinkedQueue<Runnable> eventQueue = new ConcurrentLinkedQueue<>();
   private final AtomicBoolean eventQueueProcessing = new AtomicBoolean();
+  private final Semaphore eventSignal = new Semaphore(0);
+  private ContainerControlServer controlServer;
+  private volatile InetSocketAddress controlAddress;
+  private volatile boolean checkpointsChanged = true;
   private final HashSet<PTContainer> pendingAllocation = Sets.newLinkedHashSet();
   protected String shutdownDiagnosticsMessage = "";
   private long lastResourceRequest = 0;
@@ -223,17 +232,23 @@ public class StreamingContainerManager implements PlanContext
   private final ConcurrentMap<PTOperator, PTOperator> reportStats = new ConcurrentHashMap<>();
   private final AtomicBoolean deployChangeInProgress = new AtomicBoolean();
   private int deployChangeCnt;
+  private volatile PendingDeploy pendingDeploy;
   private MBassador<StramEvent> eventBus; // event bus for publishing stram events
   private final Journal journal;
   private RecoveryHandler recoveryHandler;
+  private CheckpointManifest checkpointManifest;
+  private volatile Future<?> journalCompaction;
+  private byte[] pendingSnapshot;
   // window id to node id to end window stats
   private final ConcurrentSkipListMap<Long, Map<Integer, EndWindowStats>> endWindowStatsOperatorMap = new ConcurrentSkipListMap<>();
   private final ConcurrentMap<PTOperator, PTOperator> slowestUpstreamOp = new ConcurrentHashMap<>();
   private long committedWindowId;
-  // (operator id, port name) to timestamp
-  private final Map<Pair<Integer, String>, Long> operatorPortLastEndWindowTimestamps = Maps.newConcurrentMap();
-  private final Map<Integer, Long> operatorLastEndWindowTimestamps = Maps.newConcurrentMap();
   private long lastStatsTimestamp = System.currentTimeMillis();
+  private long lastEndWindowStatsPublishTms;
+  private long lastPlacementTms;
+  private long lastUnifierAdaptationTms;
+  private volatile PlacementOptimizer.Proposal placementProposal = PlacementOptimizer.Proposal.NONE;
+  private volatile boolean endWindowStatsChanged;
   private long currentEndWindowStatsWindowId;
   private long completeEndWindowStatsWindowId;
   private final ConcurrentHashMap<String, MovingAverageLong> rpcLatencies = new ConcurrentHashMap<>();
@@ -524,12 +539,14 @@ public class StreamingContainerManager implements PlanContext
     if (this.vars.enableStatsRecording) {
       statsRecorder = new FSStatsRecorder();
       statsRecorder.setBasePath(this.vars.appPath + "/" + LogicalPlan.SUBDIR_STATS);
+      statsRecorder.setQueueCapacity(plan.getLogicalPlan().getValue(LogicalPlan.RECORDING_QUEUE_CAPACITY));
       statsRecorder.setup();
     }
     if (enableEventRecording) {
       eventRecorder = new FSEventRecorder(plan.getLogicalPlan().getValue(LogicalPlan.APPLICATION_ID));
       eventRecorder.setBasePath(this.vars.appPath + "/" + LogicalPlan.SUBDIR_EVENTS);
       eventRecorder.setWebSocketClient(wsClient);
+      eventRecorder.setQueueCapacity(plan.getLogicalPlan().getValue(LogicalPlan.RECORDING_QUEUE_CAPACITY));
       eventRecorder.setup();
       eventBus.subscribe(eventRecorder);
     }
@@ -578,11 +595,61 @@ public class StreamingContainerManager implements PlanContext
 
     IOUtils.closeQuietly(containerFile);
     IOUtils.closeQuietly(operatorFile);
+    IOUtils.closeQuietly(checkpointManifest);
+    journal.close();
+    if (journalCompaction != null) {
+      try {
+        awaitJournalCompaction();
+      } catch (IOException e) {
+        LOG.warn("Failed to save snapshot", e);
+      }
+    }
     if (poolExecutor != null) {
       poolExecutor.shutdown();
     }
   }
 
+  /**
+   * Start the control channel on which containers are notified of pending requests, when enabled for the application.
+   *
+   * @param eventloop the event loop that serves the connections
+   * @param host the host name containers use to connect
+   */
+  public void startControlServer(EventLoop eventloop, String host)
+  {
+    if (plan.getLogicalPlan().getValue(LogicalPlan.CONTAINER_CONTROL_CHANNEL)) {
+      controlServer = new ContainerControlServer(this);
+      controlAddress = InetSocketAddress.createUnresolved(host, controlServer.run(eventloop).getPort());
+    }
+  }
+
+  public void stopControlServer()
+  {
+    if (controlServer != null) {
+      controlServer.stop();
+      controlServer = null;
+      controlAddress = null;
+    }
+  }
+
+  InetSocketAddress getControlAddress()
+  {
+    return controlAddress;
+  }
+
+  /**
+   * Ask the container to heartbeat now, so that queued requests are delivered without waiting for the heartbeat interval.
+   *
+   * @param containerId
+   */
+  void notifyContainer(String containerId)
+  {
+    ContainerControlServer server = controlServer;
+    if (server != null && containerId != null) {
+      server.notifyContainer(containerId);
+    }
+  }
+
   public void subscribeToEvents(Object listener)
   {
     if (eventBus != null) {
@@ -751,6 +818,7 @@ public class StreamingContainerManager implements PlanContext
   public void monitorHeartbeat()
   {
     long currentTms = clock.getTime();
+    checkPendingDeploy(currentTms);
 
     // look for resource allocation timeout
     if (!pendingAllocation.isEmpty()) {
@@ -797,11 +865,57 @@ public class StreamingContainerManager implements PlanContext
     // events that may modify the plan
     processEvents();
 
+    compactJournal();
+
     committedWindowId = updateCheckpoints(false);
-    calculateEndWindowStats();
+    calculateEndWindowStats(currentTms);
     if (this.vars.enableStatsRecording) {
       recordStats(currentTms);
     }
+    proposePlacement(currentTms);
+    adaptCascadingUnifiers(currentTms);
+  }
+
+  private void adaptCascadingUnifiers(long currentTms)
+  {
+    long intervalMillis = plan.getLogicalPlan().getValue(LogicalPlan.UNIFIER_ADAPTIVE_INTERVAL_MILLIS);
+    if (intervalMillis <= 0 || currentTms - lastUnifierAdaptationTms < intervalMillis) {
+      return;
+    }
+    lastUnifierAdaptationTms = currentTms;
+    plan.adaptCascadingUnifiers(currentTms);
+  }
+
+  private void proposePlacement(long currentTms)
+  {
+    long intervalMillis = plan.getLogicalPlan().getValue(LogicalPlan.PLACEMENT_OPTIMIZER_INTERVAL_MILLIS);
+    if (intervalMillis <= 0 || currentTms - lastPlacementTms < intervalMillis) {
+      return;
+    }
+    lastPlacementTms = currentTms;
+    Map<PTContainer, Integer> usedMemoryMB = new HashMap<>();
+    for (StreamingContainerAgent sca : containers.values()) {
+      if (sca.lastHeartbeatMillis > 0) {
+        usedMemoryMB.put(sca.container, sca.memoryMBUsed);
+      }
+    }
+    PlacementOptimizer optimizer = new PlacementOptimizer(plan.getLogicalPlan().getValue(LogicalPlan.PLACEMENT_TARGET_UTILIZATION));
+    PlacementOptimizer.Proposal proposal = optimizer.propose(plan.getContainers(), usedMemoryMB,
+        plan.getLogicalPlan().getValue(Context.DAGContext.AFFINITY_RULES_SET));
+    placementProposal = proposal;
+    if (!proposal.migrations.isEmpty()) {
+      LOG.info("Placement proposal {}", proposal);
+      recordEventAsync(new StramEvent.PlacementProposalEvent(proposal.currentContainers, proposal.proposedContainers, proposal.migrations.size()));
+    }
+  }
+
+  /**
+   * @return the last placement proposal of the placement optimizer
+   * @see LogicalPlan#PLACEMENT_OPTIMIZER_INTERVAL_MILLIS
+   */
+  public PlacementOptimizer.Proposal getPlacementProposal()
+  {
+    return placementProposal;
   }
 
   private void recordStats(long currentTms)
@@ -814,36 +928,40 @@ public class StreamingContainerManager implements PlanContext
     }
   }
 
-  private void calculateEndWindowStats()
+  private void calculateEndWindowStats(long currentTms)
   {
+    long publishIntervalMillis = plan.getLogicalPlan().getValue(LogicalPlan.STATS_PUBLISH_INTERVAL_MILLIS);
+    if (currentTms - lastEndWindowStatsPublishTms < publishIntervalMillis) {
+      return;
+    }
+    lastEndWindowStatsPublishTms = currentTms;
+
     if (!endWindowStatsOperatorMap.isEmpty()) {
       Set<Integer> allCurrentOperators = plan.getAllOperators().keySet();
+      List<OperatorMeta> aggregatedOperators = getAggregatedOperators();
 
       if (endWindowStatsOperatorMap.size() > this.vars.maxWindowsBehindForStats) {
         LOG.warn("Some operators are behind for more than {} windows! Trimming the end window stats map", this.vars.maxWindowsBehindForStats);
         while (endWindowStatsOperatorMap.size() > this.vars.maxWindowsBehindForStats) {
+          Map.Entry<Long, Map<Integer, EndWindowStats>> first = endWindowStatsOperatorMap.pollFirstEntry();
           LOG.debug("Removing incomplete end window stats for window id {}. Collected operator set: {}. Complete set: {}",
-              endWindowStatsOperatorMap.firstKey(),
-              endWindowStatsOperatorMap.get(endWindowStatsOperatorMap.firstKey()).keySet(), allCurrentOperators);
-          endWindowStatsOperatorMap.remove(endWindowStatsOperatorMap.firstKey());
+              first.getKey(), first.getValue().keySet(), allCurrentOperators);
+          aggregateMetrics(first.getKey(), first.getValue(), aggregatedOperators);
         }
       }
-      //logicalMetrics.clear();
       int numOperators = allCurrentOperators.size();
       Long windowId = endWindowStatsOperatorMap.firstKey();
       while (windowId != null) {
         Map<Integer, EndWindowStats> endWindowStatsMap = endWindowStatsOperatorMap.get(windowId);
         Set<Integer> endWindowStatsOperators = endWindowStatsMap.keySet();
 
-        aggregateMetrics(windowId, endWindowStatsMap);
-        criticalPathInfo = findCriticalPath();
-
         if (allCurrentOperators.containsAll(endWindowStatsOperators)) {
           if (endWindowStatsMap.size() < numOperators) {
             if (windowId < completeEndWindowStatsWindowId) {
               LOG.debug("Disregarding stale end window stats for window {}", windowId);
               endWindowStatsOperatorMap.remove(windowId);
             } else {
+              // aggregated once all operators reported the window or it is trimmed
               break;
             }
           } else {
@@ -856,14 +974,36 @@ public class StreamingContainerManager implements PlanContext
           LOG.debug("Stats for non-existent operators detected. Disregarding end window stats for window {}", windowId);
           endWindowStatsOperatorMap.remove(windowId);
         }
+        aggregateMetrics(windowId, endWindowStatsMap, aggregatedOperators);
         windowId = endWindowStatsOperatorMap.higherKey(windowId);
       }
     }
+
+    // the critical path only depends on the latest latency of each operator
+    if (endWindowStatsChanged) {
+      endWindowStatsChanged = false;
+      criticalPathInfo = findCriticalPath();
+    }
+  }
+
+  /**
+   * @return the logical operators that have a counters or metrics aggregator
+   */
+  private List<OperatorMeta> getAggregatedOperators()
+  {
+    List<OperatorMeta> operators = new ArrayList<>();
+    for (OperatorMeta operatorMeta : getLogicalPlan().getAllOperators()) {
+      @SuppressWarnings("deprecation")
+      Context.CountersAggregator countersAggregator = operatorMeta.getValue(OperatorContext.COUNTERS_AGGREGATOR);
+      if (countersAggregator != null || operatorMeta.getMetricAggregatorMeta() != null) {
+        operators.add(operatorMeta);
+      }
+    }
+    return operators;
   }
 
-  private void aggregateMetrics(long windowId, Map<Integer, EndWindowStats> endWindowStatsMap)
+  private void aggregateMetrics(long windowId, Map<Integer, EndWindowStats> endWindowStatsMap, List<OperatorMeta> logicalOperators)
   {
-    Collection<OperatorMeta> logicalOperators = getLogicalPlan().getAllOperators();
     //for backward compatibility
     for (OperatorMeta operatorMeta : logicalOperators) {
       @SuppressWarnings("deprecation")
@@ -976,7 +1116,7 @@ public class StreamingContainerManager implements PlanContext
   {
     CriticalPathInfo result = null;
     List<PTOperator> leafOperators = plan.getLeafOperators();
-    Map<PTOperator, CriticalPathInfo> cache = new HashMap<>();
+    Map<PTOperator, CriticalPathInfo> cache = new HashMap<>(plan.getAllOperators().size() * 2);
     for (PTOperator leafOperator : leafOperators) {
       CriticalPathInfo cpi = findCriticalPathHelper(leafOperator, cache);
       if (result == null || result.latency < cpi.latency) {
@@ -1048,6 +1188,7 @@ public class StreamingContainerManager implements PlanContext
             for (PTOperator oper : windowAndOpers.getValue()) {
               plan.removeTerminatedPartition(oper);
             }
+            checkpointsChanged = true;
             it.remove();
           }
         }
@@ -1418,6 +1559,7 @@ public class StreamingContainerManager implements PlanContext
         // existing container or sandbox container for just the operator
         LOG.error("Initiating container restart after operator failure {}", oper);
         containerStopRequests.put(oper.getContainer().getExternalId(), oper.getContainer().getExternalId());
+        signalEvent();
       } else {
         String msg = String.format("Shutdown after reaching failure threshold for %s", oper);
         LOG.warn(msg);
@@ -1489,14 +1631,27 @@ public class StreamingContainerManager implements PlanContext
       });
     }
 
+    boolean statsResync = false;
+    try {
+      if (!sca.heartbeatDecoder.decode(heartbeat)) {
+        LOG.info("Missing base of the stats of container {}, requesting resync", sca.container.getExternalId());
+        statsResync = true;
+      }
+    } catch (IOException e) {
+      LOG.warn("Failed to decode the stats of container {}, requesting resync", sca.container.getExternalId(), e);
+      statsResync = true;
+    }
+
     sca.containerStackTrace = heartbeat.stackTrace;
 
     if (heartbeat.restartRequested) {
       LOG.error("Container {} restart request", sca.container.getExternalId());
       containerStopRequests.put(sca.container.getExternalId(), sca.container.getExternalId());
+      signalEvent();
     }
 
     sca.memoryMBFree = heartbeat.memoryMBFree;
+    sca.memoryMBUsed = heartbeat.memoryMBUsed;
     sca.gcCollectionCount = heartbeat.gcCollectionCount;
     sca.gcCollectionTime = heartbeat.gcCollectionTime;
 
@@ -1515,8 +1670,22 @@ public class StreamingContainerManager implements PlanContext
       PTOperator oper = this.plan.getAllOperators().get(shb.getNodeId());
 
       if (oper == null) {
-        LOG.info("Heartbeat for unknown operator {} (container {})", shb.getNodeId(), heartbeat.getContainerId());
-        sca.undeployOpers.add(shb.nodeId);
+        PendingDeploy pd = pendingDeploy;
+        PTOperator removed = pd == null ? null : pd.removedOperators.get(shb.getNodeId());
+        if (removed == null) {
+          LOG.info("Heartbeat for unknown operator {} (container {})", shb.getNodeId(), heartbeat.getContainerId());
+          sca.undeployOpers.add(shb.nodeId);
+        } else {
+          // removed operator held for a handover, its checkpoints are purged once it is undeployed
+          for (ContainerStats.OperatorStats stats : shb.getOperatorStatsContainer()) {
+            if (stats != null && stats.checkpoint instanceof Checkpoint && (removed.getRecentCheckpoint() == null || removed.getRecentCheckpoint().windowId < stats.checkpoint.getWindowId())) {
+              addCheckpoint(removed, (Checkpoint)stats.checkpoint);
+            }
+          }
+          if (pd.scheduled) {
+            sca.undeployOpers.add(shb.nodeId);
+          }
+        }
         continue;
       }
 
@@ -1551,240 +1720,232 @@ public class StreamingContainerManager implements PlanContext
 
         final OperatorStatus status = oper.stats;
         status.statsRevs.checkout();
-
-        for (Map.Entry<String, PortStatus> entry : status.inputPortStatusList.entrySet()) {
-          entry.getValue().recordingId = null;
-        }
-        for (Map.Entry<String, PortStatus> entry : status.outputPortStatusList.entrySet()) {
-          entry.getValue().recordingId = null;
-        }
-        for (ContainerStats.OperatorStats stats : statsList) {
-          if (stats == null) {
-            LOG.warn("Operator {} statistics list contains null element", shb.getNodeId());
-            continue;
+        try {
+          for (Map.Entry<String, PortStatus> entry : status.inputPortStatusList.entrySet()) {
+            entry.getValue().recordingId = null;
           }
+          for (Map.Entry<String, PortStatus> entry : status.outputPortStatusList.entrySet()) {
+            entry.getValue().recordingId = null;
+          }
+          for (ContainerStats.OperatorStats stats : statsList) {
+            if (stats == null) {
+              LOG.warn("Operator {} statistics list contains null element", shb.getNodeId());
+              continue;
+            }
 
-          /* report checkpoint-ed WindowId status of the operator */
-          if (stats.checkpoint instanceof Checkpoint) {
-            if (oper.getRecentCheckpoint() == null || oper.getRecentCheckpoint().windowId < stats.checkpoint.getWindowId()) {
-              addCheckpoint(oper, (Checkpoint)stats.checkpoint);
-              if (stats.checkpointStats != null) {
-                status.checkpointStats = stats.checkpointStats;
-                status.checkpointTimeMA.add(stats.checkpointStats.checkpointTime);
+            /* report checkpoint-ed WindowId status of the operator */
+            if (stats.checkpoint instanceof Checkpoint) {
+              if (oper.getRecentCheckpoint() == null || oper.getRecentCheckpoint().windowId < stats.checkpoint.getWindowId()) {
+                addCheckpoint(oper, (Checkpoint)stats.checkpoint);
+                if (stats.checkpointStats != null) {
+                  status.checkpointStats = stats.checkpointStats;
+                  status.checkpointTimeMA.add(stats.checkpointStats.checkpointTime);
+                }
+                oper.failureCount = 0;
               }
-              oper.failureCount = 0;
             }
-          }
 
-          oper.stats.recordingId = stats.recordingId;
-
-          /* report all the other stuff */
-
-          // calculate the stats related to end window
-          EndWindowStats endWindowStats = new EndWindowStats(); // end window stats for a particular window id for a particular node
-          Collection<ContainerStats.OperatorStats.PortStats> ports = stats.inputPorts;
-          if (ports != null) {
-            Set<String> currentInputPortSet = Sets.newHashSetWithExpectedSize(ports.size());
-            for (ContainerStats.OperatorStats.PortStats s : ports) {
-              currentInputPortSet.add(s.id);
-              PortStatus ps = status.inputPortStatusList.get(s.id);
-              if (ps == null) {
-                ps = status.new PortStatus();
-                ps.portName = s.id;
-                status.inputPortStatusList.put(s.id, ps);
-              }
-              ps.totalTuples += s.tupleCount;
-              ps.recordingId = s.recordingId;
+            oper.stats.recordingId = stats.recordingId;
+
+            /* report all the other stuff */
+
+            // calculate the stats related to end window
+            EndWindowStats endWindowStats = new EndWindowStats(); // end window stats for a particular window id for a particular node
+            Collection<ContainerStats.OperatorStats.PortStats> ports = stats.inputPorts;
+            if (ports != null) {
+              Set<String> currentInputPortSet = Sets.newHashSetWithExpectedSize(ports.size());
+              for (ContainerStats.OperatorStats.PortStats s : ports) {
+                currentInputPortSet.add(s.id);
+                PortStatus ps = status.inputPortStatusList.get(s.id);
+                if (ps == null) {
+                  ps = status.new PortStatus();
+                  ps.portName = s.id;
+                  status.inputPortStatusList.put(s.id, ps);
+                }
+                ps.totalTuples += s.tupleCount;
+                ps.recordingId = s.recordingId;
 
-              tuplesProcessed += s.tupleCount;
-              endWindowStats.dequeueTimestamps.put(s.id, s.endWindowTimestamp);
+                tuplesProcessed += s.tupleCount;
+                endWindowStats.dequeueTimestamps.put(s.id, s.endWindowTimestamp);
 
-              Pair<Integer, String> operatorPortName = new Pair<>(oper.getId(), s.id);
-              Long lastEndWindowTimestamp = operatorPortLastEndWindowTimestamps.get(operatorPortName);
-              if (lastEndWindowTimestamp == null) {
-                lastEndWindowTimestamp = lastStatsTimestamp;
-              }
-              long portElapsedMillis = Math.max(s.endWindowTimestamp - lastEndWindowTimestamp, 0);
-              //LOG.debug("=== PROCESSED TUPLE COUNT for {}: {}, {}, {}, {}", operatorPortName, s.tupleCount, portElapsedMillis, operatorPortLastEndWindowTimestamps.get(operatorPortName), lastStatsTimestamp);
-              ps.tuplesPMSMA.add(s.tupleCount, portElapsedMillis);
-              ps.bufferServerBytesPMSMA.add(s.bufferServerBytes, portElapsedMillis);
-              ps.queueSizeMA.add(s.queueSize);
-
-              operatorPortLastEndWindowTimestamps.put(operatorPortName, s.endWindowTimestamp);
-              if (maxEndWindowTimestamp < s.endWindowTimestamp) {
-                maxEndWindowTimestamp = s.endWindowTimestamp;
-              }
-              if (s.endWindowTimestamp > maxDequeueTimestamp) {
-                maxDequeueTimestamp = s.endWindowTimestamp;
+                long lastEndWindowTimestamp = ps.lastEndWindowTimestamp <= 0 ? lastStatsTimestamp : ps.lastEndWindowTimestamp;
+                long portElapsedMillis = Math.max(s.endWindowTimestamp - lastEndWindowTimestamp, 0);
+                ps.tuplesPMSMA.add(s.tupleCount, portElapsedMillis);
+                ps.bufferServerBytesPMSMA.add(s.bufferServerBytes, portElapsedMillis);
+                ps.queueSizeMA.add(s.queueSize);
+
+                ps.lastEndWindowTimestamp = s.endWindowTimestamp;
+                if (maxEndWindowTimestamp < s.endWindowTimestamp) {
+                  maxEndWindowTimestamp = s.endWindowTimestamp;
+                }
+                if (s.endWindowTimestamp > maxDequeueTimestamp) {
+                  maxDequeueTimestamp = s.endWindowTimestamp;
+                }
               }
-            }
-            // need to remove dead ports, for unifiers
-            Iterator<Map.Entry<String, PortStatus>> it = status.inputPortStatusList.entrySet().iterator();
-            while (it.hasNext()) {
-              Map.Entry<String, PortStatus> entry = it.next();
-              if (!currentInputPortSet.contains(entry.getKey())) {
-                it.remove();
+              // need to remove dead ports, for unifiers
+              Iterator<Map.Entry<String, PortStatus>> it = status.inputPortStatusList.entrySet().iterator();
+              while (it.hasNext()) {
+                Map.Entry<String, PortStatus> entry = it.next();
+                if (!currentInputPortSet.contains(entry.getKey())) {
+                  it.remove();
+                }
               }
             }
-          }
 
-          ports = stats.outputPorts;
-          if (ports != null) {
-            Set<String> currentOutputPortSet = Sets.newHashSetWithExpectedSize(ports.size());
-            for (ContainerStats.OperatorStats.PortStats s : ports) {
-              currentOutputPortSet.add(s.id);
-              PortStatus ps = status.outputPortStatusList.get(s.id);
-              if (ps == null) {
-                ps = status.new PortStatus();
-                ps.portName = s.id;
-                status.outputPortStatusList.put(s.id, ps);
-              }
-              ps.totalTuples += s.tupleCount;
-              ps.recordingId = s.recordingId;
-
-              tuplesEmitted += s.tupleCount;
-              Pair<Integer, String> operatorPortName = new Pair<>(oper.getId(), s.id);
-              Long lastEndWindowTimestamp = operatorPortLastEndWindowTimestamps.get(operatorPortName);
-              if (lastEndWindowTimestamp == null) {
-                lastEndWindowTimestamp = lastStatsTimestamp;
+            ports = stats.outputPorts;
+            if (ports != null) {
+              Set<String> currentOutputPortSet = Sets.newHashSetWithExpectedSize(ports.size());
+              for (ContainerStats.OperatorStats.PortStats s : ports) {
+                currentOutputPortSet.add(s.id);
+                PortStatus ps = status.outputPortStatusList.get(s.id);
+                if (ps == null) {
+                  ps = status.new PortStatus();
+                  ps.portName = s.id;
+                  status.outputPortStatusList.put(s.id, ps);
+                }
+                ps.totalTuples += s.tupleCount;
+                ps.recordingId = s.recordingId;
+
+                tuplesEmitted += s.tupleCount;
+                long lastEndWindowTimestamp = ps.lastEndWindowTimestamp <= 0 ? lastStatsTimestamp : ps.lastEndWindowTimestamp;
+                long portElapsedMillis = Math.max(s.endWindowTimestamp - lastEndWindowTimestamp, 0);
+                ps.tuplesPMSMA.add(s.tupleCount, portElapsedMillis);
+                ps.bufferServerBytesPMSMA.add(s.bufferServerBytes, portElapsedMillis);
+
+                ps.lastEndWindowTimestamp = s.endWindowTimestamp;
+                if (maxEndWindowTimestamp < s.endWindowTimestamp) {
+                  maxEndWindowTimestamp = s.endWindowTimestamp;
+                }
               }
-              long portElapsedMillis = Math.max(s.endWindowTimestamp - lastEndWindowTimestamp, 0);
-              //LOG.debug("=== EMITTED TUPLE COUNT for {}: {}, {}, {}, {}", operatorPortName, s.tupleCount, portElapsedMillis, operatorPortLastEndWindowTimestamps.get(operatorPortName), lastStatsTimestamp);
-              ps.tuplesPMSMA.add(s.tupleCount, portElapsedMillis);
-              ps.bufferServerBytesPMSMA.add(s.bufferServerBytes, portElapsedMillis);
-
-              operatorPortLastEndWindowTimestamps.put(operatorPortName, s.endWindowTimestamp);
-              if (maxEndWindowTimestamp < s.endWindowTimestamp) {
-                maxEndWindowTimestamp = s.endWindowTimestamp;
+              if (ports.size() > 0) {
+                endWindowStats.emitTimestamp = ports.iterator().next().endWindowTimestamp;
               }
-            }
-            if (ports.size() > 0) {
-              endWindowStats.emitTimestamp = ports.iterator().next().endWindowTimestamp;
-            }
-            // need to remove dead ports, for unifiers
-            Iterator<Map.Entry<String, PortStatus>> it = status.outputPortStatusList.entrySet().iterator();
-            while (it.hasNext()) {
-              Map.Entry<String, PortStatus> entry = it.next();
-              if (!currentOutputPortSet.contains(entry.getKey())) {
-                it.remove();
+              // need to remove dead ports, for unifiers
+              Iterator<Map.Entry<String, PortStatus>> it = status.outputPortStatusList.entrySet().iterator();
+              while (it.hasNext()) {
+                Map.Entry<String, PortStatus> entry = it.next();
+                if (!currentOutputPortSet.contains(entry.getKey())) {
+                  it.remove();
+                }
               }
             }
-          }
 
-          // for output operator, just take the maximum dequeue time for emit timestamp.
-          // (we don't know the latency for output operators because they don't emit tuples)
-          if (endWindowStats.emitTimestamp < 0) {
-            endWindowStats.emitTimestamp = maxDequeueTimestamp;
-          }
-
-          if (status.currentWindowId.get() != stats.windowId) {
-            status.lastWindowIdChangeTms = currentTimeMillis;
-            status.currentWindowId.set(stats.windowId);
-          }
-          totalCpuTimeUsed += stats.cpuTimeUsed;
-          statCount++;
+            // for output operator, just take the maximum dequeue time for emit timestamp.
+            // (we don't know the latency for output operators because they don't emit tuples)
+            if (endWindowStats.emitTimestamp < 0) {
+              endWindowStats.emitTimestamp = maxDequeueTimestamp;
+            }
 
-          if (oper.getOperatorMeta().getValue(OperatorContext.COUNTERS_AGGREGATOR) != null) {
-            endWindowStats.counters = stats.counters;
-          }
-          if (oper.getOperatorMeta().getMetricAggregatorMeta() != null &&
-              oper.getOperatorMeta().getMetricAggregatorMeta().getAggregator() != null) {
-            endWindowStats.metrics = stats.metrics;
-          }
+            if (status.currentWindowId.get() != stats.windowId) {
+              status.lastWindowIdChangeTms = currentTimeMillis;
+              status.currentWindowId.set(stats.windowId);
+            }
+            totalCpuTimeUsed += stats.cpuTimeUsed;
+            statCount++;
 
-          if (stats.windowId > currentEndWindowStatsWindowId) {
-            Map<Integer, EndWindowStats> endWindowStatsMap = endWindowStatsOperatorMap.get(stats.windowId);
-            if (endWindowStatsMap == null) {
-              endWindowStatsMap = new ConcurrentSkipListMap<>();
-              Map<Integer, EndWindowStats> endWindowStatsMapPrevious =
-                  endWindowStatsOperatorMap.putIfAbsent(stats.windowId, endWindowStatsMap);
-              if (endWindowStatsMapPrevious != null) {
-                endWindowStatsMap = endWindowStatsMapPrevious;
-              }
+            if (oper.getOperatorMeta().getValue(OperatorContext.COUNTERS_AGGREGATOR) != null) {
+              endWindowStats.counters = stats.counters;
             }
-            endWindowStatsMap.put(shb.getNodeId(), endWindowStats);
-
-            if (!oper.getInputs().isEmpty()) {
-              long latency = Long.MAX_VALUE;
-              long adjustedEndWindowEmitTimestamp = endWindowStats.emitTimestamp;
-              MovingAverageLong rpcLatency = rpcLatencies.get(oper.getContainer().getExternalId());
-              if (rpcLatency != null) {
-                adjustedEndWindowEmitTimestamp += rpcLatency.getAvg();
+            if (oper.getOperatorMeta().getMetricAggregatorMeta() != null &&
+                oper.getOperatorMeta().getMetricAggregatorMeta().getAggregator() != null) {
+              endWindowStats.metrics = stats.metrics;
+            }
+
+            if (stats.windowId > currentEndWindowStatsWindowId) {
+              Map<Integer, EndWindowStats> endWindowStatsMap = endWindowStatsOperatorMap.get(stats.windowId);
+              if (endWindowStatsMap == null) {
+                endWindowStatsMap = new ConcurrentHashMap<>();
+                Map<Integer, EndWindowStats> endWindowStatsMapPrevious =
+                    endWindowStatsOperatorMap.putIfAbsent(stats.windowId, endWindowStatsMap);
+                if (endWindowStatsMapPrevious != null) {
+                  endWindowStatsMap = endWindowStatsMapPrevious;
+                }
               }
-              PTOperator slowestUpstream = null;
-              for (PTInput input : oper.getInputs()) {
-                PTOperator upstreamOp = input.source.source;
-                if (upstreamOp.getOperatorMeta().getOperator() instanceof Operator.DelayOperator) {
-                  continue;
+              endWindowStatsMap.put(shb.getNodeId(), endWindowStats);
+
+              if (!oper.getInputs().isEmpty()) {
+                long latency = Long.MAX_VALUE;
+                long adjustedEndWindowEmitTimestamp = endWindowStats.emitTimestamp;
+                MovingAverageLong rpcLatency = rpcLatencies.get(oper.getContainer().getExternalId());
+                if (rpcLatency != null) {
+                  adjustedEndWindowEmitTimestamp += rpcLatency.getAvg();
                 }
-                EndWindowStats ews = endWindowStatsMap.get(upstreamOp.getId());
-                long portLatency;
-                if (ews == null) {
-                  // This is when the operator is likely to be behind too many windows. We need to give an estimate for
-                  // latency at this point, by looking at the number of windows behind
-                  int widthMillis = plan.getLogicalPlan().getValue(LogicalPlan.STREAMING_WINDOW_SIZE_MILLIS);
-                  portLatency = (upstreamOp.stats.currentWindowId.get() - oper.stats.currentWindowId.get()) * widthMillis;
-                } else {
-                  MovingAverageLong upstreamRPCLatency = rpcLatencies.get(upstreamOp.getContainer().getExternalId());
-                  portLatency = adjustedEndWindowEmitTimestamp - ews.emitTimestamp;
-                  if (upstreamRPCLatency != null) {
-                    portLatency -= upstreamRPCLatency.getAvg();
+                PTOperator slowestUpstream = null;
+                for (PTInput input : oper.getInputs()) {
+                  PTOperator upstreamOp = input.source.source;
+                  if (upstreamOp.getOperatorMeta().getOperator() instanceof Operator.DelayOperator) {
+                    continue;
+                  }
+                  EndWindowStats ews = endWindowStatsMap.get(upstreamOp.getId());
+                  long portLatency;
+                  if (ews == null) {
+                    // This is when the operator is likely to be behind too many windows. We need to give an estimate for
+                    // latency at this point, by looking at the number of windows behind
+                    int widthMillis = plan.getLogicalPlan().getValue(LogicalPlan.STREAMING_WINDOW_SIZE_MILLIS);
+                    portLatency = (upstreamOp.stats.currentWindowId.get() - oper.stats.currentWindowId.get()) * widthMillis;
+                  } else {
+                    MovingAverageLong upstreamRPCLatency = rpcLatencies.get(upstreamOp.getContainer().getExternalId());
+                    portLatency = adjustedEndWindowEmitTimestamp - ews.emitTimestamp;
+                    if (upstreamRPCLatency != null) {
+                      portLatency -= upstreamRPCLatency.getAvg();
+                    }
+                  }
+                  if (portLatency < 0) {
+                    portLatency = 0;
+                  }
+                  if (latency > portLatency) {
+                    latency = portLatency;
+                    slowestUpstream = upstreamOp;
                   }
                 }
-                if (portLatency < 0) {
-                  portLatency = 0;
-                }
-                if (latency > portLatency) {
-                  latency = portLatency;
-                  slowestUpstream = upstreamOp;
-                }
+                status.latencyMA.add(latency);
+                slowestUpstreamOp.put(oper, slowestUpstream);
               }
-              status.latencyMA.add(latency);
-              slowestUpstreamOp.put(oper, slowestUpstream);
-            }
+              endWindowStatsChanged = true;
 
-            Set<Integer> allCurrentOperators = plan.getAllOperators().keySet();
-            int numOperators = plan.getAllOperators().size();
-            if (allCurrentOperators.containsAll(endWindowStatsMap.keySet()) && endWindowStatsMap.size() == numOperators) {
-              completeEndWindowStatsWindowId = stats.windowId;
+              // compare the size first, the operator sets are only compared once per window
+              Map<Integer, PTOperator> allCurrentOperators = plan.getAllOperators();
+              if (endWindowStatsMap.size() == allCurrentOperators.size() && allCurrentOperators.keySet().containsAll(endWindowStatsMap.keySet())) {
+                completeEndWindowStatsWindowId = stats.windowId;
+              }
             }
           }
-        }
 
-        status.totalTuplesProcessed.add(tuplesProcessed);
-        status.totalTuplesEmitted.add(tuplesEmitted);
-        OperatorMeta logicalOperator = oper.getOperatorMeta();
-        LogicalOperatorStatus logicalStatus = logicalOperator.getStatus();
-        if (!oper.isUnifier()) {
-          logicalStatus.totalTuplesProcessed += tuplesProcessed;
-          logicalStatus.totalTuplesEmitted += tuplesEmitted;
-        }
-        long lastMaxEndWindowTimestamp = operatorLastEndWindowTimestamps.containsKey(oper.getId()) ? operatorLastEndWindowTimestamps.get(oper.getId()) : lastStatsTimestamp;
-        if (maxEndWindowTimestamp >= lastMaxEndWindowTimestamp) {
-          double tuplesProcessedPMSMA = 0.0;
-          double tuplesEmittedPMSMA = 0.0;
-          if (statCount != 0) {
-            //LOG.debug("CPU for {}: {} / {} - {}", oper.getId(), totalCpuTimeUsed, maxEndWindowTimestamp, lastMaxEndWindowTimestamp);
-            status.cpuNanosPMSMA.add(totalCpuTimeUsed, maxEndWindowTimestamp - lastMaxEndWindowTimestamp);
+          status.totalTuplesProcessed.add(tuplesProcessed);
+          status.totalTuplesEmitted.add(tuplesEmitted);
+          OperatorMeta logicalOperator = oper.getOperatorMeta();
+          LogicalOperatorStatus logicalStatus = logicalOperator.getStatus();
+          if (!oper.isUnifier()) {
+            logicalStatus.totalTuplesProcessed += tuplesProcessed;
+            logicalStatus.totalTuplesEmitted += tuplesEmitted;
           }
+          long lastMaxEndWindowTimestamp = status.lastMaxEndWindowTimestamp <= 0 ? lastStatsTimestamp : status.lastMaxEndWindowTimestamp;
+          if (maxEndWindowTimestamp >= lastMaxEndWindowTimestamp) {
+            double tuplesProcessedPMSMA = 0.0;
+            double tuplesEmittedPMSMA = 0.0;
+            if (statCount != 0) {
+              //LOG.debug("CPU for {}: {} / {} - {}", oper.getId(), totalCpuTimeUsed, maxEndWindowTimestamp, lastMaxEndWindowTimestamp);
+              status.cpuNanosPMSMA.add(totalCpuTimeUsed, maxEndWindowTimestamp - lastMaxEndWindowTimestamp);
+            }
 
-          for (PortStatus ps : status.inputPortStatusList.values()) {
-            tuplesProcessedPMSMA += ps.tuplesPMSMA.getAvg();
-          }
-          for (PortStatus ps : status.outputPortStatusList.values()) {
-            tuplesEmittedPMSMA += ps.tuplesPMSMA.getAvg();
+            for (PortStatus ps : status.inputPortStatusList.values()) {
+              tuplesProcessedPMSMA += ps.tuplesPMSMA.getAvg();
+            }
+            for (PortStatus ps : status.outputPortStatusList.values()) {
+              tuplesEmittedPMSMA += ps.tuplesPMSMA.getAvg();
+            }
+            status.tuplesProcessedPSMA.set(Math.round(tuplesProcessedPMSMA * 1000));
+            status.tuplesEmittedPSMA.set(Math.round(tuplesEmittedPMSMA * 1000));
+          } else {
+            //LOG.warn("This timestamp for {} is lower than the previous!! {} < {}", oper.getId(),
+            // maxEndWindowTimestamp, lastMaxEndWindowTimestamp);
           }
-          status.tuplesProcessedPSMA.set(Math.round(tuplesProcessedPMSMA * 1000));
-          status.tuplesEmittedPSMA.set(Math.round(tuplesEmittedPMSMA * 1000));
-        } else {
-          //LOG.warn("This timestamp for {} is lower than the previous!! {} < {}", oper.getId(),
-          // maxEndWindowTimestamp, lastMaxEndWindowTimestamp);
+          status.lastMaxEndWindowTimestamp = maxEndWindowTimestamp;
+          status.listenerStats.add(statsList);
+          this.reportStats.put(oper, oper);
+        } finally {
+          status.statsRevs.commit();
         }
-        operatorLastEndWindowTimestamps.put(oper.getId(), maxEndWindowTimestamp);
-        status.listenerStats.add(statsList);
-        this.reportStats.put(oper, oper);
-
-        status.statsRevs.commit();
       }
       if (lastStatsTimestamp < maxEndWindowTimestamp) {
         lastStatsTimestamp = maxEndWindowTimestamp;
@@ -1799,6 +1960,18 @@ public class StreamingContainerManager implements PlanContext
       }
     }
 
+    // make the checkpoints reported with this heartbeat durable in the manifest, otherwise they are not known after
+    // a restart of the master and their files are never purged
+    CheckpointManifest manifest = this.checkpointManifest;
+    if (manifest != null) {
+      manifest.flush();
+    }
+
+    PendingDeploy pd = pendingDeploy;
+    if (pd != null && pd.scheduled) {
+      updatePendingUndeploy(pd, sca, reportedOperators);
+    }
+
     ContainerHeartbeatResponse rsp = getHeartbeatResponse(sca);
 
     if (heartbeat.getContainerStats().operators.isEmpty() && isApplicationIdle()) {
@@ -1823,6 +1996,7 @@ public class StreamingContainerManager implements PlanContext
     rsp.nodeRequests = requests;
     rsp.committedWindowId = committedWindowId;
     rsp.stackTraceRequired = sca.stackTraceRequested;
+    rsp.statsResync = statsResync;
     sca.stackTraceRequested = false;
 
     return rsp;
@@ -1845,6 +2019,13 @@ public class StreamingContainerManager implements PlanContext
 
     Set<PTOperator> deployOperators = sca.deployOpers;
     if (!deployOperators.isEmpty()) {
+      // operators replaced in a handover have to be undeployed first, they are no longer part of the plan
+      PendingDeploy pd = pendingDeploy;
+      if (pd != null && !pd.pendingUndeploy.isEmpty()) {
+        LOG.debug("{} waiting for undeploy of replaced operators {}", sca.container.toIdStateString(), pd.pendingUndeploy);
+        rsp.hasPendingRequests = true;
+        return rsp;
+      }
       // deploy once all containers are running and no undeploy operations are pending.
       for (PTContainer c : getPhysicalPlan().getContainers()) {
         if (c.getState() != PTContainer.State.ACTIVE) {
@@ -1921,6 +2102,10 @@ public class StreamingContainerManager implements PlanContext
         node.checkpoints.add(checkpoint);
       }
     }
+    if (checkpointManifest != null && !node.isOperatorStateLess()) {
+      checkpointManifest.add(node.getId(), checkpoint.windowId);
+    }
+    checkpointsChanged = true;
   }
 
   public static class UpdateCheckpointsContext
@@ -2076,6 +2261,10 @@ public class StreamingContainerManager implements PlanContext
           }
         }
         //LOG.debug("Operator {} checkpoints: commit {} recent {}", new Object[] {operator.getName(), c1, operator.checkpoints});
+        if (!c1.equals(groupOper.getRecoveryCheckpoint())) {
+          // upstream operators and the committed window see the change in the next pass
+          checkpointsChanged = true;
+        }
         groupOper.setRecoveryCheckpoint(c1);
       } else {
         LOG.debug("Skipping checkpoint update {} during {}", groupOper, groupOper.getState());
@@ -2120,6 +2309,12 @@ public class StreamingContainerManager implements PlanContext
    */
   private long updateCheckpoints(boolean recovery)
   {
+    if (!recovery && !checkpointsChanged && !hasTimedOutOperator(clock.getTime())) {
+      // the recovery checkpoints only move when a checkpoint was reported or the plan changed
+      purgeCheckpoints();
+      return committedWindowId;
+    }
+    checkpointsChanged = false;
     UpdateCheckpointsContext ctx = new UpdateCheckpointsContext(clock, recovery, getCheckpointGroups());
     for (OperatorMeta logicalOperator : plan.getLogicalPlan().getRootOperators()) {
       //LOG.debug("Updating checkpoints for operator {}", logicalOperator.getName());
@@ -2142,6 +2337,20 @@ public class StreamingContainerManager implements PlanContext
     return ctx.committedWindowId.longValue();
   }
 
+  /**
+   * @return whether an active operator did not move its window within the processing timeout and may be blocked
+   */
+  private boolean hasTimedOutOperator(long currentTms)
+  {
+    for (PTOperator operator : plan.getAllOperators().values()) {
+      if (operator.getState() == PTOperator.State.ACTIVE &&
+          (currentTms - operator.stats.lastWindowIdChangeTms) > operator.stats.windowProcessingTimeoutMillis) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   private BufferServerController getBufferServerClient(PTOperator operator)
   {
     BufferServerController bsc = new BufferServerController(operator.getLogicalId());
@@ -2151,28 +2360,76 @@ public class StreamingContainerManager implements PlanContext
     return bsc;
   }
 
+  /**
+   * Delete the checkpoints that are no longer needed for recovery as one batch, grouped by operator. The removal
+   * is recorded in the checkpoint manifest before any checkpoint is deleted from the storage agent. The checkpoints
+   * of an operator that is no longer in the plan are deleted with a single call when the storage agent supports it.
+   */
   private void purgeCheckpoints()
   {
+    final Map<PTOperator, List<Long>> batch = new LinkedHashMap<>();
     for (Pair<PTOperator, Long> p : purgeCheckpoints) {
-      final PTOperator operator = p.getFirst();
-      if (!operator.isOperatorStateLess()) {
-        final long windowId = p.getSecond();
-        Runnable r = new Runnable()
-        {
-          @Override
-          public void run()
-          {
+      if (!p.getFirst().isOperatorStateLess()) {
+        List<Long> windowIds = batch.get(p.getFirst());
+        if (windowIds == null) {
+          windowIds = new ArrayList<>();
+          batch.put(p.getFirst(), windowIds);
+        }
+        windowIds.add(p.getSecond());
+      }
+    }
+    purgeCheckpoints.clear();
+
+    final CheckpointManifest manifest = this.checkpointManifest;
+    if (batch.isEmpty() && (manifest == null || !manifest.isDirty())) {
+      return;
+    }
+
+    final Set<PTOperator> removed = new HashSet<>();
+    for (PTOperator operator : batch.keySet()) {
+      if (plan.getAllOperators().get(operator.getId()) != operator) {
+        removed.add(operator);
+      }
+    }
+
+    Runnable r = new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        if (manifest != null) {
+          for (Map.Entry<PTOperator, List<Long>> e : batch.entrySet()) {
+            for (long windowId : e.getValue()) {
+              manifest.remove(e.getKey().getId(), windowId);
+            }
+          }
+          manifest.flush();
+        }
+        for (Map.Entry<PTOperator, List<Long>> e : batch.entrySet()) {
+          PTOperator operator = e.getKey();
+          StorageAgent agent = operator.getOperatorMeta().getValue(OperatorContext.STORAGE_AGENT);
+          if (removed.contains(operator) && agent instanceof FSStorageAgent) {
+            try {
+              ((FSStorageAgent)agent).deleteAll(operator.getId());
+            } catch (IOException ex) {
+              LOG.error("Failed to purge checkpoints for removed operator {}", operator, ex);
+            }
+            continue;
+          }
+          for (long windowId : e.getValue()) {
             try {
-              operator.getOperatorMeta().getValue(OperatorContext.STORAGE_AGENT).delete(operator.getId(), windowId);
+              agent.delete(operator.getId(), windowId);
             } catch (IOException ex) {
               LOG.error("Failed to purge checkpoint for operator {} for windowId {}", operator, windowId, ex);
             }
           }
-        };
-        poolExecutor.submit(r);
+        }
+        if (manifest != null) {
+          manifest.compact();
+        }
       }
-    }
-    purgeCheckpoints.clear();
+    };
+    poolExecutor.submit(r);
   }
 
   /**
@@ -2189,6 +2446,7 @@ public class StreamingContainerManager implements PlanContext
     LOG.info("Initiating application shutdown: {}", message);
     for (StreamingContainerAgent cs : this.containers.values()) {
       cs.shutdownRequested = true;
+      notifyContainer(cs.container.getExternalId());
     }
   }
 
@@ -2206,11 +2464,56 @@ public class StreamingContainerManager implements PlanContext
     return m;
   }
 
+  /**
+   * Plan change that keeps the affected operators running until the new containers are up. The new operators are
+   * only deployed after the replaced operators are undeployed, so that they never run side by side.
+   *
+   * @see LogicalPlan#DEPLOY_HANDOVER_TIMEOUT_MILLIS
+   */
+  private static class PendingDeploy
+  {
+    final Set<PTContainer> releaseContainers;
+    final Collection<PTOperator> undeploy;
+    final Set<PTContainer> startContainers;
+    final Collection<PTOperator> deploy;
+    /**
+     * Operators removed from the plan, by id, which keep running until the change is scheduled.
+     */
+    final Map<Integer, PTOperator> removedOperators = new HashMap<>();
+    /**
+     * Last checkpoint of each removed operator when it was removed, the plan already deleted the checkpoints up to it.
+     */
+    final Map<PTOperator, Long> removedCheckpointWindowIds = new HashMap<>();
+    /**
+     * Removed operators that are not yet known to be undeployed after the change was scheduled.
+     */
+    final Set<PTOperator> pendingUndeploy = Collections.newSetFromMap(new ConcurrentHashMap<PTOperator, Boolean>());
+    final long deadlineMillis;
+    volatile boolean scheduled;
+
+    PendingDeploy(Set<PTContainer> releaseContainers, Collection<PTOperator> undeploy, Set<PTContainer> startContainers, Collection<PTOperator> deploy, Map<Integer, PTOperator> allOperators, long deadlineMillis)
+    {
+      // the plan reuses its collections for the next change
+      this.releaseContainers = new HashSet<>(releaseContainers);
+      this.undeploy = new ArrayList<>(undeploy);
+      this.startContainers = new HashSet<>(startContainers);
+      this.deploy = new ArrayList<>(deploy);
+      this.deadlineMillis = deadlineMillis;
+      for (PTOperator oper : undeploy) {
+        if (allOperators.get(oper.getId()) != oper) {
+          removedOperators.put(oper.getId(), oper);
+          removedCheckpointWindowIds.put(oper, oper.getRecentCheckpoint().windowId);
+        }
+      }
+    }
+  }
+
   private void requestContainer(PTContainer c)
   {
     ContainerStartRequest dr = new ContainerStartRequest(c);
     containerStartRequests.add(dr);
     pendingAllocation.add(dr.container);
+    signalEvent();
     lastResourceRequest = System.currentTimeMillis();
     for (PTOperator operator : c.getOperators()) {
       operator.setState(PTOperator.State.INACTIVE);
@@ -2220,6 +2523,110 @@ public class StreamingContainerManager implements PlanContext
   @Override
   public void deploy(Set<PTContainer> releaseContainers, Collection<PTOperator> undeploy, Set<PTContainer> startContainers, Collection<PTOperator> deploy)
   {
+    // changes are applied in order, a held change is scheduled before the next one
+    PendingDeploy pd = pendingDeploy;
+    if (pd != null && !pd.scheduled) {
+      schedulePendingDeploy(pd);
+    }
+
+    // the initial deployment is called from the plan constructor, it does not undeploy anything
+    int handoverTimeoutMillis = undeploy.isEmpty() || startContainers.isEmpty() ? 0 : plan.getLogicalPlan().getValue(LogicalPlan.DEPLOY_HANDOVER_TIMEOUT_MILLIS);
+    if (handoverTimeoutMillis > 0 && pendingDeploy == null && isActive(undeploy)) {
+      // allocate the new containers now, stop the affected operators and deploy the new ones once they are running
+      pendingDeploy = new PendingDeploy(releaseContainers, undeploy, startContainers, deploy, plan.getAllOperators(), clock.getTime() + handoverTimeoutMillis);
+      LOG.info("Holding undeploy of {} until containers {} are running", undeploy, startContainers);
+      checkpointsChanged = true;
+      for (PTContainer c : startContainers) {
+        requestContainer(c);
+      }
+    } else {
+      scheduleDeploy(releaseContainers, undeploy, startContainers, deploy, true);
+    }
+  }
+
+  private static boolean isActive(Collection<PTOperator> operators)
+  {
+    for (PTOperator oper : operators) {
+      if (oper.getState() != PTOperator.State.ACTIVE || oper.getContainer().getState() != PTContainer.State.ACTIVE) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Schedule the held plan change when the new containers are running, failed or the handover timed out. Once
+   * scheduled, the change is complete when the removed operators are undeployed.
+   */
+  private void checkPendingDeploy(long currentTms)
+  {
+    PendingDeploy pd = pendingDeploy;
+    if (pd == null) {
+      return;
+    }
+    if (!pd.scheduled) {
+      if (currentTms < pd.deadlineMillis) {
+        for (PTContainer c : pd.startContainers) {
+          if (c.getState() != PTContainer.State.ACTIVE && c.getState() != PTContainer.State.KILLED) {
+            return;
+          }
+        }
+      } else {
+        LOG.warn("Handover timeout waiting for containers {}", pd.startContainers);
+      }
+      schedulePendingDeploy(pd);
+    }
+
+    for (PTOperator oper : pd.pendingUndeploy) {
+      PTContainer c = oper.getContainer();
+      if (c.getState() == PTContainer.State.KILLED || c.getExternalId() == null || !containers.containsKey(c.getExternalId())) {
+        pd.pendingUndeploy.remove(oper);
+      }
+    }
+    if (pd.pendingUndeploy.isEmpty()) {
+      LOG.info("Handover complete, removed operators {} undeployed", pd.removedOperators.values());
+      pendingDeploy = null;
+      // purge the checkpoints the removed operators wrote while they were held
+      for (PTOperator oper : pd.removedOperators.values()) {
+        long removedWindowId = pd.removedCheckpointWindowIds.get(oper);
+        synchronized (oper.checkpoints) {
+          for (Checkpoint checkpoint : oper.checkpoints) {
+            if (checkpoint.windowId > removedWindowId) {
+              purgeCheckpoints.add(new Pair<>(oper, checkpoint.windowId));
+            }
+          }
+        }
+      }
+    }
+  }
+
+  private void schedulePendingDeploy(PendingDeploy pd)
+  {
+    LOG.info("Undeploying {} after handover", pd.undeploy);
+    pd.pendingUndeploy.addAll(pd.removedOperators.values());
+    pd.scheduled = true;
+    // the new containers were requested when the change was held
+    scheduleDeploy(pd.releaseContainers, pd.undeploy, pd.startContainers, pd.deploy, false);
+    for (PTOperator oper : pd.removedOperators.values()) {
+      notifyContainer(oper.getContainer().getExternalId());
+    }
+  }
+
+  /**
+   * Track the removed operators of a scheduled handover that the container no longer reports.
+   */
+  private static void updatePendingUndeploy(PendingDeploy pd, StreamingContainerAgent sca, Set<Integer> reportedOperators)
+  {
+    for (PTOperator oper : pd.pendingUndeploy) {
+      if (oper.getContainer() == sca.container && !reportedOperators.contains(oper.getId())) {
+        pd.pendingUndeploy.remove(oper);
+      }
+    }
+  }
+
+  private void scheduleDeploy(Set<PTContainer> releaseContainers, Collection<PTOperator> undeploy, Set<PTContainer> startContainers, Collection<PTOperator> deploy, boolean requestContainers)
+  {
+    checkpointsChanged = true;
     try {
       this.deployChangeInProgress.set(true);
 
@@ -2235,12 +2642,15 @@ public class StreamingContainerManager implements PlanContext
           for (PTOperator oper : e.getValue()) {
             oper.setState(PTOperator.State.PENDING_UNDEPLOY);
           }
+          notifyContainer(c.getExternalId());
         }
       }
 
       // start new containers
-      for (PTContainer c : startContainers) {
-        requestContainer(c);
+      if (requestContainers) {
+        for (PTContainer c : startContainers) {
+          requestContainer(c);
+        }
       }
 
       // (re)deploy affected operators
@@ -2284,6 +2694,7 @@ public class StreamingContainerManager implements PlanContext
             oper.setState(PTOperator.State.PENDING_DEPLOY);
           }
         }
+        notifyContainer(e.getKey().getExternalId());
       }
 
       // stop containers that are no longer used
@@ -2297,6 +2708,7 @@ public class StreamingContainerManager implements PlanContext
           // container already removed from plan
           // TODO: monitor soft shutdown
           sca.shutdownRequested = true;
+          notifyContainer(c.getExternalId());
         }
       }
 
@@ -2318,6 +2730,34 @@ public class StreamingContainerManager implements PlanContext
   public void dispatch(Runnable r)
   {
     this.eventQueue.add(r);
+    signalEvent();
+  }
+
+  /**
+   * Wake up the master loop, which otherwise only runs {@link #monitorHeartbeat()} at a fixed interval. Called
+   * only for events the loop acts on: when a container has to be started or stopped and for queued plan changes.
+   * Operator stats are not signaled, they are passed to the stats listeners at the regular interval and any
+   * resulting repartitioning is dispatched as plan change.
+   */
+  public void signalEvent()
+  {
+    if (eventSignal.availablePermits() == 0) {
+      eventSignal.release();
+    }
+  }
+
+  /**
+   * Wait until an event was signaled or the timeout elapsed.
+   *
+   * @param timeoutMillis maximum wait time
+   * @return true when an event was signaled
+   * @throws InterruptedException
+   */
+  public boolean awaitEvent(long timeoutMillis) throws InterruptedException
+  {
+    boolean signaled = eventSignal.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS);
+    eventSignal.drainPermits();
+    return signaled;
   }
 
   public OperatorInfo getOperatorInfo(int operatorId)
@@ -2711,6 +3151,7 @@ public class StreamingContainerManager implements PlanContext
   public void stopContainer(String containerId)
   {
     this.containerStopRequests.put(containerId, containerId);
+    signalEvent();
   }
 
   public Recoverable getSetOperatorProperty(String operatorName, String propertyName, String propertyValue)
@@ -2956,6 +3397,8 @@ public class StreamingContainerManager implements PlanContext
   private void checkpoint() throws IOException
   {
     if (recoveryHandler != null) {
+      // the log can only be rotated again once the snapshot of the previous rotation was saved
+      awaitJournalCompaction();
       LOG.debug("Checkpointing state");
       DataOutputStream out = recoveryHandler.rotateLog();
       journal.setOutputStream(out);
@@ -2964,12 +3407,132 @@ public class StreamingContainerManager implements PlanContext
       cs.finals = this.vars;
       cs.physicalPlan = this.plan;
       recoveryHandler.save(cs);
+      checkpointManifest();
     }
   }
 
+  /**
+   * Compact the journal once it exceeds {@link LogicalPlan#JOURNAL_COMPACTION_SIZE}, to bound the replay on
+   * recovery. The log is rotated and the state serialized on the monitor thread, so that the snapshot matches the
+   * rotated log, and the snapshot is saved by the pool executor. A failed save is logged and retried with the next
+   * cycle, until then recovery replays the rotated and the current log on top of the previous snapshot.
+   */
+  private void compactJournal()
+  {
+    if (recoveryHandler == null) {
+      return;
+    }
+    Future<?> f = journalCompaction;
+    if (f != null) {
+      if (!f.isDone()) {
+        return;
+      }
+      try {
+        f.get();
+        journalCompaction = null;
+        pendingSnapshot = null;
+      } catch (InterruptedException | ExecutionException e) {
+        LOG.warn("Failed to save snapshot for journal compaction, retrying", e);
+        journalCompaction = poolExecutor.submit(new SaveSnapshot(pendingSnapshot));
+        return;
+      }
+    }
+
+    if (journal.getSize() > plan.getLogicalPlan().getValue(LogicalPlan.JOURNAL_COMPACTION_SIZE)) {
+      LOG.info("Compacting journal of {} bytes", journal.getSize());
+      try {
+        DataOutputStream out = recoveryHandler.rotateLog();
+        journal.setOutputStream(out);
+      } catch (IOException e) {
+        LOG.warn("Failed to rotate journal, retrying", e);
+        return;
+      }
+      CheckpointState cs = new CheckpointState();
+      cs.finals = this.vars;
+      cs.physicalPlan = this.plan;
+      try {
+        pendingSnapshot = recoveryHandler.serialize(cs);
+      } catch (IOException e) {
+        throw new RuntimeException("Failed to serialize state.", e);
+      }
+      checkpointManifest();
+      journalCompaction = poolExecutor.submit(new SaveSnapshot(pendingSnapshot));
+    }
+  }
+
+  /**
+   * Complete the pending journal compaction, saving its snapshot on the calling thread when the save failed.
+   */
+  private void awaitJournalCompaction() throws IOException
+  {
+    Future<?> f = journalCompaction;
+    if (f == null) {
+      return;
+    }
+    try {
+      f.get();
+    } catch (ExecutionException e) {
+      LOG.warn("Failed to save snapshot for journal compaction, retrying", e);
+      recoveryHandler.saveSnapshot(pendingSnapshot);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while saving snapshot", e);
+    }
+    journalCompaction = null;
+    pendingSnapshot = null;
+  }
+
+  private class SaveSnapshot implements Callable<Void>
+  {
+    private final byte[] snapshot;
+
+    private SaveSnapshot(byte[] snapshot)
+    {
+      this.snapshot = snapshot;
+    }
+
+    @Override
+    public Void call() throws IOException
+    {
+      long start = System.currentTimeMillis();
+      recoveryHandler.saveSnapshot(snapshot);
+      LOG.info("Saved snapshot of {} bytes in {} ms", snapshot.length, System.currentTimeMillis() - start);
+      return null;
+    }
+  }
+
+  /**
+   * Rewrite the checkpoint manifest from the physical plan so that it matches the snapshot.
+   */
+  private void checkpointManifest()
+  {
+    if (checkpointManifest == null) {
+      checkpointManifest = new CheckpointManifest(fileContext, new Path(vars.appPath, LogicalPlan.SUBDIR_CHECKPOINTS));
+    }
+    Map<Integer, long[]> checkpoints = new HashMap<>();
+    for (PTOperator oper : plan.getAllOperators().values()) {
+      if (oper.isOperatorStateLess()) {
+        continue;
+      }
+      synchronized (oper.checkpoints) {
+        if (!oper.checkpoints.isEmpty()) {
+          long[] windowIds = new long[oper.checkpoints.size()];
+          int i = 0;
+          for (Checkpoint c : oper.checkpoints) {
+            windowIds[i++] = c.windowId;
+          }
+          checkpoints.put(oper.getId(), windowIds);
+        }
+      }
+    }
+    checkpointManifest.reset(checkpoints);
+  }
+
   @Override
   public void writeJournal(Recoverable operation)
   {
+    // the journal records all changes of the physical plan and operator state, which can move recovery checkpoints
+    checkpointsChanged = true;
     try {
       if (journal != null) {
         journal.write(operation);
@@ -3016,7 +3579,9 @@ public class StreamingContainerManager implements PlanContext
         logStream.close();
 
         // restore checkpoint info
-        plan.syncCheckpoints(scm.vars.windowStartMillis, scm.clock.getTime());
+        CheckpointManifest manifest = new CheckpointManifest(scm.fileContext, new Path(scm.vars.appPath, LogicalPlan.SUBDIR_CHECKPOINTS));
+        plan.syncCheckpoints(scm.vars.windowStartMillis, scm.clock.getTime(), manifest.load() ? manifest : null);
+        scm.checkpointManifest = manifest;
         scm.committedWindowId = scm.updateCheckpoints(true);
 
         // at this point the physical plan has been fully restored
@@ -3144,6 +3709,24 @@ public class StreamingContainerManager implements PlanContext
      */
     void save(Object state) throws IOException;
 
+    /**
+     * Serialize the state in the snapshot format, for a snapshot that is saved with {@link #saveSnapshot(byte[])}
+     * while the state continues to change.
+     *
+     * @param state
+     * @return serialized snapshot
+     * @throws IOException
+     */
+    byte[] serialize(Object state) throws IOException;
+
+    /**
+     * Save a snapshot serialized with {@link #serialize(Object)}. Can be repeated after a failure.
+     *
+     * @param snapshot
+     * @throws IOException
+     */
+    void saveSnapshot(byte[] snapshot) throws IOException;
+
     /**
      * Restore snapshot. Must get/apply log after restore.
      *
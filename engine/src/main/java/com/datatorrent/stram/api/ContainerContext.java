@@ -18,6 +18,8 @@
  */
 package com.datatorrent.stram.api;
 
+import java.net.InetSocketAddress;
+
 import com.datatorrent.api.Attribute;
 import com.datatorrent.api.Attribute.AttributeMap.AttributeInitializer;
 import com.datatorrent.api.Context;
@@ -33,6 +35,14 @@ public interface ContainerContext extends Context
   public static final Attribute<Integer> BUFFER_SERVER_MB = new Attribute<>(8 * 64);
   public static final Attribute<byte[]> BUFFER_SERVER_TOKEN = new Attribute<>(null, null);
   public static final Attribute<RequestFactory> REQUEST_FACTORY = new Attribute<>(null, null);
+  /**
+   * Address of the master control channel, set when {@link com.datatorrent.stram.plan.logical.LogicalPlan#CONTAINER_CONTROL_CHANNEL} is enabled.
+   */
+  public static final Attribute<InetSocketAddress> CONTROL_ADDRESS = new Attribute<>(null, null);
+  /**
+   * Token with which the container authenticates on the master control channel.
+   */
+  public static final Attribute<byte[]> CONTROL_TOKEN = new Attribute<>(null, null);
   @SuppressWarnings("FieldNameHidesFieldInSuperclass")
   long serialVersionUID = AttributeInitializer.initialize(ContainerContext.class);
 }
@@ -0,0 +1,810 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.stram.api;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.apache.hadoop.io.WritableUtils;
+
+import com.datatorrent.api.Stats;
+import com.datatorrent.api.StatsListener;
+import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.ContainerHeartbeat;
+import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.ContainerHeartbeatResponse;
+import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.ContainerStats;
+import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.OperatorHeartbeat;
+import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.StramToNodeRequest;
+
+/**
+ * Binary encoding of the heartbeat and the heartbeat response exchanged on every heartbeat interval.
+ * <p>
+ * The fields are written in a fixed order with variable length integers and without reflection. Values that are
+ * provided by the application, such as metrics, counters and operator requests, are written as tagged values and
+ * only fall back to Java serialization for types other than strings and boxed primitives. The encoding starts with
+ * a version so that incompatible changes are detected instead of misread.
+ * <p>
+ * The operator window stats are delta encoded against the last heartbeat the master acknowledged, see
+ * {@link Encoder} and {@link Decoder}. Port and metric names are written once and then referenced by index. Window
+ * ids, port counters, end window timestamps and CPU time are written as differences to the previous window of the
+ * operator. The checkpoint, the port layout, metric values and the recording id are only written when they changed.
+ * A heartbeat without a base is encoded against empty state, which is the full state.
+ */
+public class HeartbeatCodec
+{
+  public static final int VERSION = 2;
+
+  private static final byte TAG_NULL = 0;
+  private static final byte TAG_STRING = 1;
+  private static final byte TAG_LONG = 2;
+  private static final byte TAG_INTEGER = 3;
+  private static final byte TAG_DOUBLE = 4;
+  private static final byte TAG_FLOAT = 5;
+  private static final byte TAG_BOOLEAN = 6;
+  private static final byte TAG_SERIALIZED = 7;
+  private static final byte TAG_CHECKPOINT = 8;
+  /**
+   * Metric value that is equal to the value in the previous window.
+   */
+  private static final byte TAG_SAME = 9;
+
+  private static final int SAME_CHECKPOINT = 1;
+  private static final int SAME_INPUT_PORTS = 1 << 1;
+  private static final int SAME_OUTPUT_PORTS = 1 << 2;
+  private static final int SAME_RECORDING = 1 << 3;
+  private static final int CHECKPOINT_STATS = 1 << 4;
+
+  private static final int PORT_END_WINDOW = 1;
+  private static final int PORT_TUPLES = 1 << 1;
+  private static final int PORT_BYTES = 1 << 2;
+  private static final int PORT_QUEUE = 1 << 3;
+  private static final int PORT_RECORDING = 1 << 4;
+
+  private HeartbeatCodec()
+  {
+  }
+
+  public static void write(ContainerHeartbeat hb, DataOutput out) throws IOException
+  {
+    WritableUtils.writeVInt(out, VERSION);
+    WritableUtils.writeString(out, hb.bufferServerHost);
+    WritableUtils.writeVInt(out, hb.bufferServerPort);
+    WritableUtils.writeString(out, hb.jvmName);
+    WritableUtils.writeVInt(out, hb.memoryMBFree);
+    WritableUtils.writeVInt(out, hb.memoryMBUsed);
+    out.writeBoolean(hb.restartRequested);
+    WritableUtils.writeVLong(out, hb.gcCollectionTime);
+    WritableUtils.writeVLong(out, hb.gcCollectionCount);
+    WritableUtils.writeVLong(out, hb.sentTms);
+    WritableUtils.writeString(out, hb.stackTrace);
+    byte[] windowStats = hb.encodedWindowStats;
+    long baseSequence = hb.baseSequence;
+    if (windowStats == null) {
+      // not prepared by an encoder, write the full state
+      ByteArrayOutputStream bos = new ByteArrayOutputStream();
+      DataOutputStream dos = new DataOutputStream(bos);
+      writeWindowStats(hb.stats, Base.EMPTY, new NameTable(Base.EMPTY.names, Collections.<String, Integer>emptyMap()),
+          dos);
+      dos.flush();
+      windowStats = bos.toByteArray();
+      baseSequence = -1;
+    }
+    WritableUtils.writeVLong(out, hb.sequence);
+    WritableUtils.writeVLong(out, baseSequence);
+    writeContainerStats(hb.stats, hb.sentTms, out);
+    WritableUtils.writeVInt(out, windowStats.length);
+    out.write(windowStats);
+  }
+
+  public static void read(ContainerHeartbeat hb, DataInput in) throws IOException
+  {
+    checkVersion(in);
+    hb.bufferServerHost = WritableUtils.readString(in);
+    hb.bufferServerPort = WritableUtils.readVInt(in);
+    hb.jvmName = WritableUtils.readString(in);
+    hb.memoryMBFree = WritableUtils.readVInt(in);
+    hb.memoryMBUsed = WritableUtils.readVInt(in);
+    hb.restartRequested = in.readBoolean();
+    hb.gcCollectionTime = WritableUtils.readVLong(in);
+    hb.gcCollectionCount = WritableUtils.readVLong(in);
+    hb.sentTms = WritableUtils.readVLong(in);
+    hb.stackTrace = WritableUtils.readString(in);
+    hb.sequence = WritableUtils.readVLong(in);
+    hb.baseSequence = WritableUtils.readVLong(in);
+    hb.stats = readContainerStats(hb.sentTms, in);
+    hb.encodedWindowStats = new byte[WritableUtils.readVInt(in)];
+    in.readFully(hb.encodedWindowStats);
+  }
+
+  public static void write(ContainerHeartbeatResponse rsp, DataOutput out) throws IOException
+  {
+    WritableUtils.writeVInt(out, VERSION);
+    out.writeBoolean(rsp.shutdown);
+    out.writeBoolean(rsp.hasPendingRequests);
+    out.writeBoolean(rsp.stackTraceRequired);
+    out.writeBoolean(rsp.statsResync);
+    WritableUtils.writeVLong(out, rsp.committedWindowId);
+    if (rsp.undeployRequest == null) {
+      WritableUtils.writeVInt(out, -1);
+    } else {
+      WritableUtils.writeVInt(out, rsp.undeployRequest.size());
+      for (Integer operatorId : rsp.undeployRequest) {
+        WritableUtils.writeVInt(out, operatorId);
+      }
+    }
+    // requests have subclasses and deploy info carries the operator attributes, both are rare
+    writeObject(rsp.nodeRequests, out);
+    writeObject(rsp.deployRequest, out);
+  }
+
+  @SuppressWarnings("unchecked")
+  public static void read(ContainerHeartbeatResponse rsp, DataInput in) throws IOException
+  {
+    checkVersion(in);
+    rsp.shutdown = in.readBoolean();
+    rsp.hasPendingRequests = in.readBoolean();
+    rsp.stackTraceRequired = in.readBoolean();
+    rsp.statsResync = in.readBoolean();
+    rsp.committedWindowId = WritableUtils.readVLong(in);
+    int size = WritableUtils.readVInt(in);
+    if (size < 0) {
+      rsp.undeployRequest = null;
+    } else {
+      rsp.undeployRequest = new ArrayList<>(size);
+      for (int i = 0; i < size; i++) {
+        rsp.undeployRequest.add(WritableUtils.readVInt(in));
+      }
+    }
+    rsp.nodeRequests = (List<StramToNodeRequest>)readObject(in);
+    rsp.deployRequest = (List<OperatorDeployInfo>)readObject(in);
+  }
+
+  private static void checkVersion(DataInput in) throws IOException
+  {
+    int version = WritableUtils.readVInt(in);
+    if (version != VERSION) {
+      throw new IOException("Unsupported heartbeat encoding version " + version + ", expected " + VERSION);
+    }
+  }
+
+  private static void writeContainerStats(ContainerStats stats, long sentTms, DataOutput out) throws IOException
+  {
+    out.writeBoolean(stats != null);
+    if (stats == null) {
+      return;
+    }
+    WritableUtils.writeString(out, stats.id);
+    if (stats.operators == null) {
+      WritableUtils.writeVInt(out, -1);
+      return;
+    }
+    WritableUtils.writeVInt(out, stats.operators.size());
+    for (OperatorHeartbeat ohb : stats.operators) {
+      WritableUtils.writeVInt(out, ohb.nodeId);
+      WritableUtils.writeVLong(out, sentTms - ohb.generatedTms);
+      WritableUtils.writeVLong(out, ohb.intervalMs);
+      WritableUtils.writeVInt(out, ohb.state == null ? -1 : ohb.state.ordinal());
+      if (ohb.requestResponse == null) {
+        WritableUtils.writeVInt(out, -1);
+      } else {
+        WritableUtils.writeVInt(out, ohb.requestResponse.size());
+        for (StatsListener.OperatorResponse response : ohb.requestResponse) {
+          writeObject(response, out);
+        }
+      }
+    }
+  }
+
+  private static ContainerStats readContainerStats(long sentTms, DataInput in) throws IOException
+  {
+    if (!in.readBoolean()) {
+      return null;
+    }
+    ContainerStats stats = new ContainerStats(WritableUtils.readString(in));
+    int size = WritableUtils.readVInt(in);
+    if (size < 0) {
+      stats.operators = null;
+      return stats;
+    }
+    stats.operators = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      OperatorHeartbeat ohb = new OperatorHeartbeat();
+      ohb.nodeId = WritableUtils.readVInt(in);
+      ohb.generatedTms = sentTms - WritableUtils.readVLong(in);
+      ohb.intervalMs = WritableUtils.readVLong(in);
+      int state = WritableUtils.readVInt(in);
+      ohb.state = state < 0 ? null : OperatorHeartbeat.DeployState.values()[state];
+      int responseCount = WritableUtils.readVInt(in);
+      if (responseCount >= 0) {
+        ohb.requestResponse = new ArrayList<>(responseCount);
+        for (int j = 0; j < responseCount; j++) {
+          ohb.requestResponse.add((StatsListener.OperatorResponse)readObject(in));
+        }
+      }
+      stats.operators.add(ohb);
+    }
+    return stats;
+  }
+
+  /**
+   * Write the window stats of all operators, each operator against the last window stats of the base.
+   *
+   * @return the last window stats of each operator after this heartbeat
+   */
+  private static Map<Integer, Stats.OperatorStats> writeWindowStats(ContainerStats stats, Base base, NameTable names,
+      DataOutput out) throws IOException
+  {
+    Map<Integer, Stats.OperatorStats> lastStats = new HashMap<>();
+    if (stats == null || stats.operators == null) {
+      return lastStats;
+    }
+    for (OperatorHeartbeat ohb : stats.operators) {
+      Stats.OperatorStats prev = base.lastStats.get(ohb.nodeId);
+      if (ohb.windowStats == null) {
+        WritableUtils.writeVInt(out, -1);
+      } else {
+        WritableUtils.writeVInt(out, ohb.windowStats.size());
+        for (Stats.OperatorStats os : ohb.windowStats) {
+          writeOperatorStats(os, prev, names, out);
+          prev = os;
+        }
+      }
+      if (prev != null) {
+        lastStats.put(ohb.nodeId, prev);
+      }
+    }
+    return lastStats;
+  }
+
+  private static Map<Integer, Stats.OperatorStats> readWindowStats(ContainerStats stats, Base base, NameTable names,
+      DataInput in) throws IOException
+  {
+    Map<Integer, Stats.OperatorStats> lastStats = new HashMap<>();
+    if (stats == null || stats.operators == null) {
+      return lastStats;
+    }
+    for (OperatorHeartbeat ohb : stats.operators) {
+      Stats.OperatorStats prev = base.lastStats.get(ohb.nodeId);
+      int windowCount = WritableUtils.readVInt(in);
+      if (windowCount < 0) {
+        ohb.windowStats = null;
+      } else {
+        ohb.windowStats = new ArrayList<>(windowCount);
+        for (int j = 0; j < windowCount; j++) {
+          prev = readOperatorStats(prev, names, in);
+          ohb.windowStats.add(prev);
+        }
+      }
+      if (prev != null) {
+        lastStats.put(ohb.nodeId, prev);
+      }
+    }
+    return lastStats;
+  }
+
+  private static void writeOperatorStats(Stats.OperatorStats os, Stats.OperatorStats prev, NameTable names,
+      DataOutput out) throws IOException
+  {
+    int flags = 0;
+    if (prev != null) {
+      flags |= Objects.equals(os.checkpoint, prev.checkpoint) ? SAME_CHECKPOINT : 0;
+      flags |= samePorts(os.inputPorts, prev.inputPorts) ? SAME_INPUT_PORTS : 0;
+      flags |= samePorts(os.outputPorts, prev.outputPorts) ? SAME_OUTPUT_PORTS : 0;
+      flags |= Objects.equals(os.recordingId, prev.recordingId) ? SAME_RECORDING : 0;
+    }
+    flags |= os.checkpointStats != null ? CHECKPOINT_STATS : 0;
+    out.writeByte(flags);
+    WritableUtils.writeVLong(out, prev == null ? os.windowId : os.windowId - prev.windowId);
+    if ((flags & SAME_CHECKPOINT) == 0) {
+      writeObject(os.checkpoint, out);
+    }
+    writePortStats(os.inputPorts, (flags & SAME_INPUT_PORTS) == 0 ? null : prev.inputPorts, names, out);
+    writePortStats(os.outputPorts, (flags & SAME_OUTPUT_PORTS) == 0 ? null : prev.outputPorts, names, out);
+    WritableUtils.writeVLong(out, prev == null ? os.cpuTimeUsed : os.cpuTimeUsed - prev.cpuTimeUsed);
+    if (os.checkpointStats != null) {
+      WritableUtils.writeVLong(out, os.checkpointStats.checkpointStartTime);
+      WritableUtils.writeVLong(out, os.checkpointStats.checkpointTime);
+    }
+    writeCounters(os, out);
+    if (os.metrics == null) {
+      WritableUtils.writeVInt(out, -1);
+    } else {
+      WritableUtils.writeVInt(out, os.metrics.size());
+      for (Map.Entry<String, Object> e : os.metrics.entrySet()) {
+        names.write(e.getKey(), out);
+        Object value = e.getValue();
+        if (value != null && prev != null && prev.metrics != null && value.equals(prev.metrics.get(e.getKey()))) {
+          out.writeByte(TAG_SAME);
+        } else {
+          writeObject(value, out);
+        }
+      }
+    }
+    if ((flags & SAME_RECORDING) == 0) {
+      WritableUtils.writeString(out, os.recordingId);
+    }
+  }
+
+  private static Stats.OperatorStats readOperatorStats(Stats.OperatorStats prev, NameTable names, DataInput in)
+      throws IOException
+  {
+    Stats.OperatorStats os = new Stats.OperatorStats();
+    int flags = in.readByte();
+    if (prev == null && (flags & (SAME_CHECKPOINT | SAME_INPUT_PORTS | SAME_OUTPUT_PORTS | SAME_RECORDING)) != 0) {
+      throw new IOException("Window stats refer to missing previous window");
+    }
+    os.windowId = prev == null ? WritableUtils.readVLong(in) : prev.windowId + WritableUtils.readVLong(in);
+    os.checkpoint = (flags & SAME_CHECKPOINT) == 0 ? (Stats.Checkpoint)readObject(in) : prev.checkpoint;
+    os.inputPorts = readPortStats((flags & SAME_INPUT_PORTS) == 0 ? null : prev.inputPorts, names, in);
+    os.outputPorts = readPortStats((flags & SAME_OUTPUT_PORTS) == 0 ? null : prev.outputPorts, names, in);
+    os.cpuTimeUsed = prev == null ? WritableUtils.readVLong(in) : prev.cpuTimeUsed + WritableUtils.readVLong(in);
+    if ((flags & CHECKPOINT_STATS) != 0) {
+      os.checkpointStats = new Stats.CheckpointStats();
+      os.checkpointStats.checkpointStartTime = WritableUtils.readVLong(in);
+      os.checkpointStats.checkpointTime = WritableUtils.readVLong(in);
+    }
+    readCounters(os, in);
+    int size = WritableUtils.readVInt(in);
+    if (size >= 0) {
+      os.metrics = new HashMap<>(size * 2);
+      for (int i = 0; i < size; i++) {
+        String name = names.read(in);
+        Object value = readObject(in, prev == null ? null : prev.metrics, name);
+        os.metrics.put(name, value);
+      }
+    }
+    os.recordingId = (flags & SAME_RECORDING) == 0 ? WritableUtils.readString(in) : prev.recordingId;
+    return os;
+  }
+
+  /**
+   * The deprecated counters are still reported by operators that use the legacy counters API and aggregated by the
+   * application master, so the codec has to carry them until the field is removed.
+   */
+  @SuppressWarnings("deprecation")
+  private static void writeCounters(Stats.OperatorStats os, DataOutput out) throws IOException
+  {
+    writeObject(os.counters, out);
+  }
+
+  @SuppressWarnings("deprecation")
+  private static void readCounters(Stats.OperatorStats os, DataInput in) throws IOException
+  {
+    os.counters = readObject(in);
+  }
+
+  private static boolean samePorts(List<Stats.OperatorStats.PortStats> ports,
+      List<Stats.OperatorStats.PortStats> prevPorts)
+  {
+    if (ports == null || prevPorts == null) {
+      return ports == prevPorts;
+    }
+    if (ports.size() != prevPorts.size()) {
+      return false;
+    }
+    for (int i = 0; i < ports.size(); i++) {
+      if (!Objects.equals(ports.get(i).id, prevPorts.get(i).id)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Write the port stats. When the ports are the same as in the previous window only the differences of the values
+   * that changed are written.
+   *
+   * @param prevPorts ports of the previous window when they are the same, otherwise null
+   */
+  private static void writePortStats(List<Stats.OperatorStats.PortStats> ports,
+      List<Stats.OperatorStats.PortStats> prevPorts, NameTable names, DataOutput out) throws IOException
+  {
+    if (prevPorts == null) {
+      if (ports == null) {
+        WritableUtils.writeVInt(out, -1);
+        return;
+      }
+      WritableUtils.writeVInt(out, ports.size());
+    }
+    for (int i = 0; i < ports.size(); i++) {
+      Stats.OperatorStats.PortStats ps = ports.get(i);
+      if (prevPorts == null) {
+        names.write(ps.id, out);
+        WritableUtils.writeVLong(out, ps.endWindowTimestamp);
+        WritableUtils.writeVInt(out, ps.tupleCount);
+        WritableUtils.writeVLong(out, ps.bufferServerBytes);
+        WritableUtils.writeVInt(out, ps.queueSize);
+        WritableUtils.writeString(out, ps.recordingId);
+      } else {
+        Stats.OperatorStats.PortStats prev = prevPorts.get(i);
+        int changed = 0;
+        changed |= ps.endWindowTimestamp != prev.endWindowTimestamp ? PORT_END_WINDOW : 0;
+        changed |= ps.tupleCount != prev.tupleCount ? PORT_TUPLES : 0;
+        changed |= ps.bufferServerBytes != prev.bufferServerBytes ? PORT_BYTES : 0;
+        changed |= ps.queueSize != prev.queueSize ? PORT_QUEUE : 0;
+        changed |= !Objects.equals(ps.recordingId, prev.recordingId) ? PORT_RECORDING : 0;
+        out.writeByte(changed);
+        if ((changed & PORT_END_WINDOW) != 0) {
+          WritableUtils.writeVLong(out, ps.endWindowTimestamp - prev.endWindowTimestamp);
+        }
+        if ((changed & PORT_TUPLES) != 0) {
+          WritableUtils.writeVInt(out, ps.tupleCount - prev.tupleCount);
+        }
+        if ((changed & PORT_BYTES) != 0) {
+          WritableUtils.writeVLong(out, ps.bufferServerBytes - prev.bufferServerBytes);
+        }
+        if ((changed & PORT_QUEUE) != 0) {
+          WritableUtils.writeVInt(out, ps.queueSize - prev.queueSize);
+        }
+        if ((changed & PORT_RECORDING) != 0) {
+          WritableUtils.writeString(out, ps.recordingId);
+        }
+      }
+    }
+  }
+
+  private static ArrayList<Stats.OperatorStats.PortStats> readPortStats(List<Stats.OperatorStats.PortStats> prevPorts,
+      NameTable names, DataInput in) throws IOException
+  {
+    if (prevPorts == null) {
+      int size = WritableUtils.readVInt(in);
+      if (size < 0) {
+        return null;
+      }
+      ArrayList<Stats.OperatorStats.PortStats> ports = new ArrayList<>(size);
+      for (int i = 0; i < size; i++) {
+        Stats.OperatorStats.PortStats ps = new Stats.OperatorStats.PortStats(names.read(in));
+        ps.endWindowTimestamp = WritableUtils.readVLong(in);
+        ps.tupleCount = WritableUtils.readVInt(in);
+        ps.bufferServerBytes = WritableUtils.readVLong(in);
+        ps.queueSize = WritableUtils.readVInt(in);
+        ps.recordingId = WritableUtils.readString(in);
+        ports.add(ps);
+      }
+      return ports;
+    }
+    ArrayList<Stats.OperatorStats.PortStats> ports = new ArrayList<>(prevPorts.size());
+    for (Stats.OperatorStats.PortStats prev : prevPorts) {
+      Stats.OperatorStats.PortStats ps = new Stats.OperatorStats.PortStats(prev.id);
+      int changed = in.readByte();
+      ps.endWindowTimestamp = prev.endWindowTimestamp;
+      if ((changed & PORT_END_WINDOW) != 0) {
+        ps.endWindowTimestamp += WritableUtils.readVLong(in);
+      }
+      ps.tupleCount = prev.tupleCount;
+      if ((changed & PORT_TUPLES) != 0) {
+        ps.tupleCount += WritableUtils.readVInt(in);
+      }
+      ps.bufferServerBytes = prev.bufferServerBytes;
+      if ((changed & PORT_BYTES) != 0) {
+        ps.bufferServerBytes += WritableUtils.readVLong(in);
+      }
+      ps.queueSize = prev.queueSize;
+      if ((changed & PORT_QUEUE) != 0) {
+        ps.queueSize += WritableUtils.readVInt(in);
+      }
+      ps.recordingId = (changed & PORT_RECORDING) != 0 ? WritableUtils.readString(in) : prev.recordingId;
+      ports.add(ps);
+    }
+    return ports;
+  }
+
+  static void writeObject(Object value, DataOutput out) throws IOException
+  {
+    if (value == null) {
+      out.writeByte(TAG_NULL);
+    } else if (value instanceof String) {
+      out.writeByte(TAG_STRING);
+      WritableUtils.writeString(out, (String)value);
+    } else if (value instanceof Long) {
+      out.writeByte(TAG_LONG);
+      WritableUtils.writeVLong(out, (Long)value);
+    } else if (value instanceof Integer) {
+      out.writeByte(TAG_INTEGER);
+      WritableUtils.writeVInt(out, (Integer)value);
+    } else if (value instanceof Double) {
+      out.writeByte(TAG_DOUBLE);
+      out.writeDouble((Double)value);
+    } else if (value instanceof Float) {
+      out.writeByte(TAG_FLOAT);
+      out.writeFloat((Float)value);
+    } else if (value instanceof Boolean) {
+      out.writeByte(TAG_BOOLEAN);
+      out.writeBoolean((Boolean)value);
+    } else if (value instanceof Checkpoint) {
+      Checkpoint checkpoint = (Checkpoint)value;
+      out.writeByte(TAG_CHECKPOINT);
+      WritableUtils.writeVLong(out, checkpoint.windowId);
+      WritableUtils.writeVInt(out, checkpoint.applicationWindowCount);
+      WritableUtils.writeVInt(out, checkpoint.checkpointWindowCount);
+    } else {
+      out.writeByte(TAG_SERIALIZED);
+      ByteArrayOutputStream bos = new ByteArrayOutputStream();
+      try (ObjectOutputStream oos = new ObjectOutputStream(bos)) {
+        oos.writeObject(value);
+      }
+      WritableUtils.writeVInt(out, bos.size());
+      out.write(bos.toByteArray());
+    }
+  }
+
+  private static Object readObject(DataInput in, Map<String, Object> prevMetrics, String name) throws IOException
+  {
+    byte tag = in.readByte();
+    if (tag == TAG_SAME) {
+      if (prevMetrics == null || !prevMetrics.containsKey(name)) {
+        throw new IOException("Metric " + name + " refers to missing previous value");
+      }
+      return prevMetrics.get(name);
+    }
+    return readObject(tag, in);
+  }
+
+  static Object readObject(DataInput in) throws IOException
+  {
+    return readObject(in.readByte(), in);
+  }
+
+  private static Object readObject(byte tag, DataInput in) throws IOException
+  {
+    switch (tag) {
+      case TAG_NULL:
+        return null;
+      case TAG_STRING:
+        return WritableUtils.readString(in);
+      case TAG_LONG:
+        return WritableUtils.readVLong(in);
+      case TAG_INTEGER:
+        return WritableUtils.readVInt(in);
+      case TAG_DOUBLE:
+        return in.readDouble();
+      case TAG_FLOAT:
+        return in.readFloat();
+      case TAG_BOOLEAN:
+        return in.readBoolean();
+      case TAG_CHECKPOINT:
+        long windowId = WritableUtils.readVLong(in);
+        int applicationWindowCount = WritableUtils.readVInt(in);
+        return new Checkpoint(windowId, applicationWindowCount, WritableUtils.readVInt(in));
+      case TAG_SERIALIZED:
+        byte[] bytes = new byte[WritableUtils.readVInt(in)];
+        in.readFully(bytes);
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+          return ois.readObject();
+        } catch (ClassNotFoundException e) {
+          throw new IOException(e);
+        }
+      default:
+        throw new IOException("Invalid value tag " + tag);
+    }
+  }
+
+  /**
+   * Encodes the operator window stats of the heartbeats of a container against the last heartbeat acknowledged by
+   * the master. A heartbeat becomes the base of the following ones when the master responded to it. Until then the
+   * previous base stays in effect, so that the heartbeat that follows a lost response can still be decoded. When the
+   * master no longer has the base, for example after it was restarted, it requests a resync and the next heartbeat
+   * is encoded in full.
+   */
+  public static class Encoder
+  {
+    private Base base = Base.EMPTY;
+    private final Map<String, Integer> nameIds = new HashMap<>();
+    private long sequence;
+    private Base pending;
+
+    /**
+     * Encode the window stats of the heartbeat before it is sent.
+     *
+     * @param hb
+     * @throws IOException
+     */
+    public synchronized void encode(ContainerHeartbeat hb) throws IOException
+    {
+      hb.sequence = ++sequence;
+      hb.baseSequence = base.sequence;
+      NameTable names = new NameTable(base.names, nameIds);
+      ByteArrayOutputStream bos = new ByteArrayOutputStream();
+      DataOutputStream dos = new DataOutputStream(bos);
+      Map<Integer, Stats.OperatorStats> lastStats = writeWindowStats(hb.stats, base, names, dos);
+      dos.flush();
+      hb.encodedWindowStats = bos.toByteArray();
+      pending = new Base(hb.sequence, names.getNames(), lastStats);
+    }
+
+    /**
+     * Process the response of the master to the heartbeat.
+     *
+     * @param hb
+     * @param rsp null when the heartbeat failed
+     */
+    public synchronized void acknowledge(ContainerHeartbeat hb, ContainerHeartbeatResponse rsp)
+    {
+      if (rsp == null || pending == null || pending.sequence != hb.sequence) {
+        return;
+      }
+      if (rsp.statsResync) {
+        base = Base.EMPTY;
+        nameIds.clear();
+      } else {
+        for (int i = base.names.size(); i < pending.names.size(); i++) {
+          nameIds.put(pending.names.get(i), i);
+        }
+        base = pending;
+      }
+      pending = null;
+    }
+  }
+
+  /**
+   * Decodes the operator window stats of the heartbeats of a container in the master. Keeps the state of the last
+   * heartbeats, as the container uses the previous one as base until it received the response to the last one.
+   */
+  public static class Decoder
+  {
+    private static final int MAX_BASES = 2;
+    private final LinkedHashMap<Long, Base> bases = new LinkedHashMap<>();
+
+    /**
+     * Decode the window stats of a heartbeat received from the container.
+     *
+     * @param hb
+     * @return false when the base of the heartbeat is not known, the window stats are then missing and the
+     * container has to be asked to resync
+     * @throws IOException
+     */
+    public synchronized boolean decode(ContainerHeartbeat hb) throws IOException
+    {
+      if (hb.encodedWindowStats == null) {
+        // received without serialization, the stats are complete
+        return true;
+      }
+      Base base = hb.baseSequence < 0 ? Base.EMPTY : bases.get(hb.baseSequence);
+      if (base == null) {
+        return false;
+      }
+      NameTable names = new NameTable(base.names, null);
+      DataInputStream in = new DataInputStream(new ByteArrayInputStream(hb.encodedWindowStats));
+      Map<Integer, Stats.OperatorStats> lastStats;
+      try {
+        lastStats = readWindowStats(hb.stats, base, names, in);
+      } catch (IOException e) {
+        // do not pass on the stats decoded before the failure
+        for (OperatorHeartbeat ohb : hb.stats.operators) {
+          ohb.windowStats = new ArrayList<>();
+        }
+        throw e;
+      }
+      hb.encodedWindowStats = null;
+      bases.put(hb.sequence, new Base(hb.sequence, names.getNames(), lastStats));
+      Iterator<Long> it = bases.keySet().iterator();
+      while (bases.size() > MAX_BASES) {
+        it.next();
+        it.remove();
+      }
+      return true;
+    }
+  }
+
+  /**
+   * State of an acknowledged heartbeat that the following heartbeats are encoded against.
+   */
+  private static class Base
+  {
+    private static final Base EMPTY = new Base(-1, Collections.<String>emptyList(),
+        Collections.<Integer, Stats.OperatorStats>emptyMap());
+
+    private final long sequence;
+    /**
+     * Port and metric names, referenced by their index.
+     */
+    private final List<String> names;
+    /**
+     * Last window stats of each operator.
+     */
+    private final Map<Integer, Stats.OperatorStats> lastStats;
+
+    private Base(long sequence, List<String> names, Map<Integer, Stats.OperatorStats> lastStats)
+    {
+      this.sequence = sequence;
+      this.names = names;
+      this.lastStats = lastStats;
+    }
+  }
+
+  /**
+   * Names of the base, followed by the names that are first written in the current heartbeat.
+   */
+  private static class NameTable
+  {
+    private final List<String> names;
+    private final Map<String, Integer> ids;
+    private final List<String> added = new ArrayList<>();
+    private final Map<String, Integer> addedIds = new HashMap<>();
+
+    /**
+     * @param names names of the base
+     * @param ids index of the names of the base, only needed to write
+     */
+    private NameTable(List<String> names, Map<String, Integer> ids)
+    {
+      this.names = names;
+      this.ids = ids;
+    }
+
+    private void write(String name, DataOutput out) throws IOException
+    {
+      Integer id = ids.get(name);
+      if (id == null) {
+        id = addedIds.get(name);
+      }
+      if (id != null) {
+        WritableUtils.writeVInt(out, id);
+      } else {
+        WritableUtils.writeVInt(out, -1);
+        WritableUtils.writeString(out, name);
+        addedIds.put(name, names.size() + added.size());
+        added.add(name);
+      }
+    }
+
+    private String read(DataInput in) throws IOException
+    {
+      int id = WritableUtils.readVInt(in);
+      if (id < 0) {
+        String name = WritableUtils.readString(in);
+        added.add(name);
+        return name;
+      }
+      if (id < names.size()) {
+        return names.get(id);
+      }
+      if (id - names.size() < added.size()) {
+        return added.get(id - names.size());
+      }
+      throw new IOException("Invalid name reference " + id);
+    }
+
+    private List<String> getNames()
+    {
+      if (added.isEmpty()) {
+        return names;
+      }
+      List<String> result = new ArrayList<>(names.size() + added.size());
+      result.addAll(names);
+      result.addAll(added);
+      return result;
+    }
+  }
+
+}
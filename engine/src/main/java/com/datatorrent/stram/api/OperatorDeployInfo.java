@@ -30,6 +30,7 @@ import org.apache.commons.lang.builder.ToStringStyle;
 
 import com.datatorrent.api.Attribute;
 import com.datatorrent.api.Attribute.AttributeMap;
+import com.datatorrent.api.AutoMetric;
 import com.datatorrent.api.Context.OperatorContext;
 import com.datatorrent.api.DAG.Locality;
 import com.datatorrent.api.StreamCodec;
@@ -312,6 +313,11 @@ public class OperatorDeployInfo implements Serializable, OperatorContext
    * Context attributes for operator
    */
   public AttributeMap contextAttributes;
+  /**
+   * Aggregator to combine the metrics of partitions of this operator that share the container, null when the metrics
+   * are reported for each partition.
+   */
+  public AutoMetric.Aggregator metricsAggregator;
 
   /**
    *
@@ -132,6 +132,7 @@ public abstract class StramEvent
   {
     private int oldNumPartitions;
     private int newNumPartitions;
+    private int unifierChanges;
 
     public PartitionEvent(String operatorName, int oldNumPartitions, int newNumPartitions)
     {
@@ -166,6 +167,19 @@ public abstract class StramEvent
       this.newNumPartitions = newNumPartitions;
     }
 
+    /**
+     * @return number of unifiers that were added, removed or rewired to accommodate the new partitions
+     */
+    public int getUnifierChanges()
+    {
+      return unifierChanges;
+    }
+
+    public void setUnifierChanges(int unifierChanges)
+    {
+      this.unifierChanges = unifierChanges;
+    }
+
   }
 
   public abstract static class PhysicalOperatorEvent extends OperatorEvent
@@ -416,6 +430,123 @@ public abstract class StramEvent
 
   }
 
+  public static class PlacementProposalEvent extends StramEvent
+  {
+    private int currentContainers;
+    private int proposedContainers;
+    private int migrations;
+
+    public PlacementProposalEvent(int currentContainers, int proposedContainers, int migrations)
+    {
+      this.currentContainers = currentContainers;
+      this.proposedContainers = proposedContainers;
+      this.migrations = migrations;
+    }
+
+    @Override
+    public String getType()
+    {
+      return "PlacementProposal";
+    }
+
+    public int getCurrentContainers()
+    {
+      return currentContainers;
+    }
+
+    public void setCurrentContainers(int currentContainers)
+    {
+      this.currentContainers = currentContainers;
+    }
+
+    public int getProposedContainers()
+    {
+      return proposedContainers;
+    }
+
+    public void setProposedContainers(int proposedContainers)
+    {
+      this.proposedContainers = proposedContainers;
+    }
+
+    public int getMigrations()
+    {
+      return migrations;
+    }
+
+    public void setMigrations(int migrations)
+    {
+      this.migrations = migrations;
+    }
+
+  }
+
+  public static class CascadingUnifierEvent extends StramEvent
+  {
+    private String streamName;
+    private int oldLevels;
+    private int newLevels;
+    private int unifierChanges;
+
+    public CascadingUnifierEvent(String streamName, int oldLevels, int newLevels, int unifierChanges)
+    {
+      this.streamName = streamName;
+      this.oldLevels = oldLevels;
+      this.newLevels = newLevels;
+      this.unifierChanges = unifierChanges;
+    }
+
+    @Override
+    public String getType()
+    {
+      return "CascadingUnifier";
+    }
+
+    public String getStreamName()
+    {
+      return streamName;
+    }
+
+    public void setStreamName(String streamName)
+    {
+      this.streamName = streamName;
+    }
+
+    public int getOldLevels()
+    {
+      return oldLevels;
+    }
+
+    public void setOldLevels(int oldLevels)
+    {
+      this.oldLevels = oldLevels;
+    }
+
+    public int getNewLevels()
+    {
+      return newLevels;
+    }
+
+    public void setNewLevels(int newLevels)
+    {
+      this.newLevels = newLevels;
+    }
+
+    /**
+     * @return number of unifiers that were added, removed or rewired to reshape the tree
+     */
+    public int getUnifierChanges()
+    {
+      return unifierChanges;
+    }
+
+    public void setUnifierChanges(int unifierChanges)
+    {
+      this.unifierChanges = unifierChanges;
+    }
+
+  }
+
   public static class OperatorErrorEvent extends PhysicalOperatorEvent
   {
     private String containerId;
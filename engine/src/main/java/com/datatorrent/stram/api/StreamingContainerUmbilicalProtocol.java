@@ -18,6 +18,8 @@
  */
 package com.datatorrent.stram.api;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
@@ -52,7 +54,7 @@ import com.datatorrent.stram.util.AbstractWritableAdapter;
 @InterfaceStability.Stable
 public interface StreamingContainerUmbilicalProtocol extends VersionedProtocol
 {
-  public static final long versionID = 201208081755L;
+  public static final long versionID = 201610191200L;
 
   /**
    * Initialization parameters for StramChild container. Container
@@ -230,6 +232,10 @@ public interface StreamingContainerUmbilicalProtocol extends VersionedProtocol
 
     public String jvmName;
     public int memoryMBFree;
+    /**
+     * Heap in use, the free memory is only the unused part of the heap currently reserved by the JVM.
+     */
+    public int memoryMBUsed;
     public boolean restartRequested;
     public long gcCollectionTime;
     public long gcCollectionCount;
@@ -254,6 +260,30 @@ public interface StreamingContainerUmbilicalProtocol extends VersionedProtocol
     }
 
     public String stackTrace;
+
+    /**
+     * Sequence of this heartbeat and of the acknowledged heartbeat the window stats are encoded against, -1 when they
+     * are encoded in full.
+     */
+    long sequence;
+    long baseSequence = -1;
+    /**
+     * Operator window stats encoded by {@link HeartbeatCodec.Encoder}, the master decodes them into the operator
+     * heartbeats with {@link HeartbeatCodec.Decoder}.
+     */
+    transient byte[] encodedWindowStats;
+
+    @Override
+    public void readFields(DataInput in) throws IOException
+    {
+      HeartbeatCodec.read(this, in);
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException
+    {
+      HeartbeatCodec.write(this, out);
+    }
   }
 
   /**
@@ -383,6 +413,24 @@ public interface StreamingContainerUmbilicalProtocol extends VersionedProtocol
     public long committedWindowId = -1;
 
     public boolean stackTraceRequired = false;
+
+    /**
+     * Set when the master cannot decode the window stats of the heartbeat, as it does not have the heartbeat they
+     * were encoded against. The container sends the full stats with the next heartbeat.
+     */
+    public boolean statsResync = false;
+
+    @Override
+    public void readFields(DataInput in) throws IOException
+    {
+      HeartbeatCodec.read(this, in);
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException
+    {
+      HeartbeatCodec.write(this, out);
+    }
   }
 
   /**
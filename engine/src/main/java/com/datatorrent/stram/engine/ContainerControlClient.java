@@ -0,0 +1,75 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.stram.engine;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datatorrent.netlet.AbstractLengthPrependerClient;
+import com.datatorrent.netlet.EventLoop;
+import com.datatorrent.stram.ContainerControlServer;
+
+/**
+ * Container end of the control channel, requests a heartbeat whenever the master signals pending work.
+ *
+ * @see ContainerControlServer
+ */
+class ContainerControlClient extends AbstractLengthPrependerClient
+{
+  private final StreamingContainer container;
+  private final byte[] token;
+
+  ContainerControlClient(StreamingContainer container, byte[] token)
+  {
+    this.container = container;
+    this.token = token;
+  }
+
+  @Override
+  public void connected()
+  {
+    super.connected();
+    write(ContainerControlServer.getAuthenticateMessage(container.getContainerId(), token));
+  }
+
+  @Override
+  public void onMessage(byte[] buffer, int offset, int size)
+  {
+    if (size > 0 && buffer[offset] == ContainerControlServer.MESSAGE_HEARTBEAT) {
+      container.requestHeartbeat();
+    }
+  }
+
+  @Override
+  public void disconnected()
+  {
+    logger.debug("Control channel disconnected for {}", container.getContainerId());
+    super.disconnected();
+  }
+
+  @Override
+  public void handleException(Exception cce, EventLoop el)
+  {
+    // the heartbeat remains the authoritative channel, fall back to it
+    logger.warn("Control channel failed for {}", container.getContainerId(), cce);
+    el.disconnect(this);
+  }
+
+  private static final Logger logger = LoggerFactory.getLogger(ContainerControlClient.class);
+}
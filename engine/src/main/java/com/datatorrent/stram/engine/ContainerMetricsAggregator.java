@@ -0,0 +1,136 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.stram.engine;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.datatorrent.api.AutoMetric;
+import com.datatorrent.api.Stats.OperatorStats;
+import com.datatorrent.stram.api.OperatorDeployInfo;
+import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.ContainerStats;
+import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.OperatorHeartbeat;
+
+/**
+ * Pre-aggregates the {@link AutoMetric}s of partitions of the same logical operator that are deployed in this
+ * container, so that the master aggregates one value per container instead of one per partition.
+ * <p>
+ * Only operators for which the master passed {@link OperatorDeployInfo#metricsAggregator} take part. For each window
+ * the aggregate replaces the metrics of the lowest partition that reported the window, the other partitions report
+ * no metrics for it.
+ */
+class ContainerMetricsAggregator
+{
+  private final Map<Integer, OperatorDeployInfo> operators = new HashMap<>();
+
+  void add(OperatorDeployInfo ndi)
+  {
+    if (ndi.metricsAggregator != null) {
+      operators.put(ndi.id, ndi);
+    }
+  }
+
+  void remove(int operatorId)
+  {
+    operators.remove(operatorId);
+  }
+
+  void aggregate(ContainerStats stats)
+  {
+    if (operators.size() < 2) {
+      return;
+    }
+    Map<String, List<OperatorHeartbeat>> groups = new HashMap<>();
+    for (OperatorHeartbeat hb : stats.operators) {
+      OperatorDeployInfo ndi = operators.get(hb.nodeId);
+      if (ndi != null) {
+        List<OperatorHeartbeat> group = groups.get(ndi.name);
+        if (group == null) {
+          groups.put(ndi.name, group = new ArrayList<>());
+        }
+        group.add(hb);
+      }
+    }
+    for (List<OperatorHeartbeat> group : groups.values()) {
+      if (group.size() > 1) {
+        aggregate(group, operators.get(group.get(0).nodeId).metricsAggregator);
+      }
+    }
+  }
+
+  private static void aggregate(List<OperatorHeartbeat> group, AutoMetric.Aggregator aggregator)
+  {
+    // window id -> stats of the partitions with metrics for that window, ordered by operator id
+    Map<Long, TreeMap<Integer, OperatorStats>> windows = new HashMap<>();
+    for (OperatorHeartbeat hb : group) {
+      for (OperatorStats os : hb.windowStats) {
+        if (os.metrics != null && !os.metrics.isEmpty()) {
+          TreeMap<Integer, OperatorStats> partitions = windows.get(os.windowId);
+          if (partitions == null) {
+            windows.put(os.windowId, partitions = new TreeMap<>());
+          }
+          partitions.put(hb.nodeId, os);
+        }
+      }
+    }
+
+    for (Map.Entry<Long, TreeMap<Integer, OperatorStats>> window : windows.entrySet()) {
+      TreeMap<Integer, OperatorStats> partitions = window.getValue();
+      if (partitions.size() < 2) {
+        continue;
+      }
+      List<AutoMetric.PhysicalMetricsContext> physicalMetrics = new ArrayList<>(partitions.size());
+      for (Map.Entry<Integer, OperatorStats> e : partitions.entrySet()) {
+        physicalMetrics.add(new PhysicalMetrics(e.getKey(), e.getValue().metrics));
+      }
+      Map<String, Object> aggregate = aggregator.aggregate(window.getKey(), physicalMetrics);
+      for (OperatorStats os : partitions.values()) {
+        os.metrics = null;
+      }
+      partitions.firstEntry().getValue().metrics = aggregate;
+    }
+  }
+
+  private static class PhysicalMetrics implements AutoMetric.PhysicalMetricsContext
+  {
+    private final int operatorId;
+    private final Map<String, Object> metrics;
+
+    PhysicalMetrics(int operatorId, Map<String, Object> metrics)
+    {
+      this.operatorId = operatorId;
+      this.metrics = metrics;
+    }
+
+    @Override
+    public Map<String, Object> getMetrics()
+    {
+      return metrics;
+    }
+
+    @Override
+    public int operatorId()
+    {
+      return operatorId;
+    }
+  }
+}
@@ -40,7 +40,6 @@ import com.datatorrent.api.Operator.InputPort;
 import com.datatorrent.api.Operator.ProcessingMode;
 import com.datatorrent.api.Operator.ShutdownException;
 import com.datatorrent.api.Sink;
-import com.datatorrent.api.annotation.Stateless;
 import com.datatorrent.bufferserver.packet.MessageType;
 import com.datatorrent.bufferserver.util.Codec;
 import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.ContainerStats;
@@ -173,6 +172,8 @@ public class GenericNode extends Node<Operator>
       }
     }
 
+    processEndWindowCheckpoint(currentWindowId);
+
     ContainerStats.OperatorStats stats = new ContainerStats.OperatorStats();
     reportStats(stats, currentWindowId);
     if (!insideWindow) {
@@ -196,8 +197,6 @@ public class GenericNode extends Node<Operator>
   }
 
   boolean insideWindow;
-  boolean doCheckpoint;
-  long lastCheckpointWindowId = Stateless.WINDOW_ID;
 
   @Override
   public void activate()
@@ -268,7 +267,7 @@ public class GenericNode extends Node<Operator>
               case BEGIN_WINDOW:
                 if (expectingBeginWindow == totalQueues) {
                   // This is the first begin window tuple among all ports
-                  if (isInputPortConnectedToDelayOperator(activePortEntry.getKey())) {
+                  if (!WINDOW_ALIGNED_CHECKPOINTS && isInputPortConnectedToDelayOperator(activePortEntry.getKey())) {
                     // We need to wait for the first BEGIN_WINDOW from a port not connected to DelayOperator before
                     // we can do anything with it, because otherwise if a CHECKPOINT tuple arrives from
                     // upstream after the BEGIN_WINDOW tuple for the next window from the delay operator, it would end
@@ -366,17 +365,7 @@ public class GenericNode extends Node<Operator>
                 activePort.remove();
                 long checkpointWindow = t.getWindowId();
                 if (lastCheckpointWindowId < checkpointWindow) {
-                  dagCheckpointOffsetCount = 0;
-                  if (PROCESSING_MODE == ProcessingMode.EXACTLY_ONCE) {
-                    lastCheckpointWindowId = checkpointWindow;
-                  } else if (!doCheckpoint) {
-                    if (checkpointWindowCount == 0) {
-                      checkpoint(checkpointWindow);
-                      lastCheckpointWindowId = checkpointWindow;
-                    } else {
-                      doCheckpoint = true;
-                    }
-                  }
+                  processCheckpoint(checkpointWindow);
                   if (!delay) {
                     for (int s = sinks.length; s-- > 0; ) {
                       sinks[s].put(t);
@@ -30,7 +30,6 @@ import com.datatorrent.api.Operator.IdleTimeHandler;
 import com.datatorrent.api.Operator.ProcessingMode;
 import com.datatorrent.api.Operator.ShutdownException;
 import com.datatorrent.api.Sink;
-import com.datatorrent.api.annotation.Stateless;
 import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.ContainerStats;
 import com.datatorrent.stram.tuple.Tuple;
 
@@ -44,7 +43,6 @@ public class InputNode extends Node<InputOperator>
 {
   private final ArrayList<SweepableReservoir> deferredInputConnections = new ArrayList<>();
   protected SweepableReservoir controlTuples;
-  long lastCheckpointWindowId = Stateless.WINDOW_ID;
 
   public InputNode(InputOperator operator, OperatorContext context)
   {
@@ -72,7 +70,7 @@ public class InputNode extends Node<InputOperator>
     final boolean handleIdleTime = operator instanceof IdleTimeHandler;
 
     boolean insideApplicationWindow = applicationWindowCount != 0;
-    boolean doCheckpoint = false;
+    doCheckpoint = false;
     boolean insideStreamingWindow = false;
 
     calculateNextCheckpointWindow();
@@ -155,6 +153,8 @@ public class InputNode extends Node<InputOperator>
                 }
               }
 
+              processEndWindowCheckpoint(currentWindowId);
+
               ContainerStats.OperatorStats stats = new ContainerStats.OperatorStats();
               reportStats(stats, currentWindowId);
               if (!insideApplicationWindow) {
@@ -69,6 +69,7 @@ import com.datatorrent.api.Stats;
 import com.datatorrent.api.StatsListener;
 import com.datatorrent.api.StatsListener.OperatorRequest;
 import com.datatorrent.api.StorageAgent;
+import com.datatorrent.api.annotation.Stateless;
 import com.datatorrent.bufferserver.util.Codec;
 import com.datatorrent.common.util.AsyncFSStorageAgent;
 import com.datatorrent.common.util.Pair;
@@ -76,6 +77,7 @@ import com.datatorrent.stram.api.Checkpoint;
 import com.datatorrent.stram.api.OperatorDeployInfo;
 import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.ContainerStats;
 import com.datatorrent.stram.debug.MuxSink;
+import com.datatorrent.stram.plan.logical.LogicalPlan;
 import com.datatorrent.stram.plan.logical.Operators;
 import com.datatorrent.stram.plan.logical.Operators.PortContextPair;
 import com.datatorrent.stram.plan.logical.Operators.PortMappingDescriptor;
@@ -107,6 +109,8 @@ public abstract class Node<OPERATOR extends Operator> implements Component<Opera
 
   protected boolean DATA_TUPLE_AWARE; /* this is write once variable */
 
+  protected boolean WINDOW_ALIGNED_CHECKPOINTS; /* this is write once variable */
+
   protected int id;
   protected final HashMap<String, Sink<Object>> outputs;
   @SuppressWarnings(value = "VolatileArrayField")
@@ -124,6 +128,8 @@ public abstract class Node<OPERATOR extends Operator> implements Component<Opera
   public int checkpointWindowCount;
   public int nextCheckpointWindowCount;
   public int dagCheckpointOffsetCount;
+  protected boolean doCheckpoint;
+  protected long lastCheckpointWindowId = Stateless.WINDOW_ID;
   protected int controlTupleCount;
   public final OperatorContext context;
   public final BlockingQueue<StatsListener.OperatorResponse> commandResponse;
@@ -551,6 +557,55 @@ public abstract class Node<OPERATOR extends Operator> implements Component<Opera
     }
   }
 
+  /**
+   * Handles the checkpoint barrier for the given window, received either as CHECKPOINT tuple or derived from the
+   * END_WINDOW with window aligned checkpoints. The operator is checkpointed right away if it is at the end of an
+   * application window, otherwise at the end of the current application window.
+   *
+   * @param checkpointWindow the window id of the checkpoint barrier
+   */
+  protected void processCheckpoint(long checkpointWindow)
+  {
+    dagCheckpointOffsetCount = 0;
+    if (PROCESSING_MODE == ProcessingMode.EXACTLY_ONCE) {
+      lastCheckpointWindowId = checkpointWindow;
+    } else if (!doCheckpoint) {
+      if (checkpointWindowCount == 0) {
+        checkpoint(checkpointWindow);
+        lastCheckpointWindowId = checkpointWindow;
+      } else {
+        doCheckpoint = true;
+      }
+    }
+  }
+
+  /**
+   * Handles the END_WINDOW of the given window as checkpoint barrier when the checkpoints are window aligned and the
+   * window is a DAG checkpoint window.
+   *
+   * @param windowId the streaming window that just ended
+   */
+  protected void processEndWindowCheckpoint(long windowId)
+  {
+    if (WINDOW_ALIGNED_CHECKPOINTS && lastCheckpointWindowId < windowId && isCheckpointBarrier(windowId)) {
+      processCheckpoint(windowId);
+    }
+  }
+
+  /**
+   * Tells whether the given streaming window is a DAG checkpoint window when the checkpoints are window aligned.
+   * This is the window after which the window generator would have emitted the CHECKPOINT tuple, the windows are
+   * counted from the first window of the application so that all the operators agree without coordination.
+   *
+   * @param windowId the streaming window that just ended
+   * @return true if the END_WINDOW of the window is a checkpoint barrier
+   */
+  protected boolean isCheckpointBarrier(long windowId)
+  {
+    long millis = WindowGenerator.getWindowMillis(windowId, firstWindowMillis, windowWidthMillis);
+    return (WindowGenerator.getWindowCount(millis, firstWindowMillis, windowWidthMillis) + 1) % DAG_CHECKPOINT_WINDOW_COUNT == 0;
+  }
+
   protected void calculateNextCheckpointWindow()
   {
     if (PROCESSING_MODE != ProcessingMode.EXACTLY_ONCE) {
@@ -610,6 +665,7 @@ public abstract class Node<OPERATOR extends Operator> implements Component<Opera
     }
     DAG_CHECKPOINT_WINDOW_COUNT = context.getValue(Context.DAGContext.CHECKPOINT_WINDOW_COUNT);
     CHECKPOINT_WINDOW_COUNT = context.getValue(OperatorContext.CHECKPOINT_WINDOW_COUNT);
+    WINDOW_ALIGNED_CHECKPOINTS = context.getValue(LogicalPlan.WINDOW_ALIGNED_CHECKPOINTS);
     Collection<StatsListener> statsListeners = context.getValue(OperatorContext.STATS_LISTENERS);
 
     if (CHECKPOINT_WINDOW_COUNT % APPLICATION_WINDOW_COUNT != 0) {
@@ -20,18 +20,23 @@ package com.datatorrent.stram.engine;
 
 import java.io.Serializable;
 import java.lang.reflect.Field;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 
 import com.datatorrent.api.Context.OperatorContext;
 import com.datatorrent.api.DefaultOutputPort;
 import com.datatorrent.api.Operator;
+import com.datatorrent.api.Operator.Combiner;
 import com.datatorrent.api.Operator.Unifier;
 import com.datatorrent.api.Sink;
 import com.datatorrent.api.StatsListener;
 
 /**
  * <p>Slider class.</p>
+ * Unifies the buckets of a sliding window. When the unifier is a {@link Combiner}, only the aggregate of each bucket
+ * is kept and the window is computed incrementally, otherwise all tuples of the window are cached and replayed
+ * through the unifier.
  *
  * @since 3.2.0
  */
@@ -39,6 +44,8 @@ public class Slider implements Unifier<Object>, Operator.IdleTimeHandler, Operat
 {
   private List<List<Object>> cache;
   private transient List<Object> currentList;
+  private Panes panes;
+  private transient Object currentAggregate;
   private final Unifier<Object> unifier;
   private final int numberOfBuckets;
   private final int numberOfSlideBuckets;
@@ -62,6 +69,9 @@ public class Slider implements Unifier<Object>, Operator.IdleTimeHandler, Operat
   {
     unifier = uniOperator;
     cache = new LinkedList<>();
+    if (uniOperator instanceof Combiner) {
+      panes = new Panes();
+    }
     this.numberOfBuckets = buckets;
     this.numberOfSlideBuckets = numberOfSlideBuckets;
   }
@@ -85,9 +95,19 @@ public class Slider implements Unifier<Object>, Operator.IdleTimeHandler, Operat
     throw new RuntimeException("Unifier should have exactly one output port");
   }
 
+  @SuppressWarnings("unchecked")
+  private Combiner<Object, Object> getCombiner()
+  {
+    return (Combiner<Object, Object>)unifier;
+  }
+
   @Override
   public void process(Object tuple)
   {
+    if (panes != null) {
+      currentAggregate = getCombiner().accumulate(currentAggregate, tuple);
+      return;
+    }
     if (cacheSize == numberOfBuckets - 1) {
       unifier.process(tuple);
     }
@@ -97,8 +117,12 @@ public class Slider implements Unifier<Object>, Operator.IdleTimeHandler, Operat
   @Override
   public void beginWindow(long windowId)
   {
-    cacheSize = cache.size();
     unifier.beginWindow(windowId);
+    if (panes != null) {
+      currentAggregate = getCombiner().createAggregate();
+      return;
+    }
+    cacheSize = cache.size();
     if (cacheSize == numberOfBuckets - 1) {
       for (List<Object> windowCache : cache) {
         for (Object obj : windowCache) {
@@ -112,6 +136,21 @@ public class Slider implements Unifier<Object>, Operator.IdleTimeHandler, Operat
   @Override
   public void endWindow()
   {
+    if (panes != null) {
+      Combiner<Object, Object> combiner = getCombiner();
+      panes.add(combiner, currentAggregate);
+      if (panes.size() == numberOfBuckets) {
+        Object result = combiner.getResult(panes.getAggregate(combiner));
+        if (result != null) {
+          unifier.process(result);
+        }
+        for (int i = 0; i < numberOfSlideBuckets; i++) {
+          panes.remove(combiner);
+        }
+      }
+      unifier.endWindow();
+      return;
+    }
     cache.add(currentList);
     if (cacheSize == numberOfBuckets - 1) {
       for (int i = 0; i < numberOfSlideBuckets; i++) {
@@ -207,5 +246,60 @@ public class Slider implements Unifier<Object>, Operator.IdleTimeHandler, Operat
     }
   }
 
+  /**
+   * Aggregates of the buckets in the sliding window, maintained with two stacks so that adding and removing a bucket
+   * takes an amortized constant number of merges. Recent buckets are appended to the back along with their running
+   * aggregate. When the oldest bucket is removed and the front is empty, the back buckets are moved to the front as
+   * suffix aggregates, the last element of the front being the aggregate of all front buckets.
+   */
+  static class Panes implements Serializable
+  {
+    private final ArrayList<Object> front = new ArrayList<>();
+    private final ArrayList<Object> back = new ArrayList<>();
+    private Object backAggregate;
+
+    int size()
+    {
+      return front.size() + back.size();
+    }
+
+    void add(Combiner<Object, Object> combiner, Object aggregate)
+    {
+      if (back.isEmpty()) {
+        backAggregate = combiner.createAggregate();
+      }
+      back.add(aggregate);
+      backAggregate = combiner.merge(backAggregate, aggregate);
+    }
+
+    void remove(Combiner<Object, Object> combiner)
+    {
+      if (front.isEmpty()) {
+        Object suffix = null;
+        for (int i = back.size(); i-- > 0;) {
+          suffix = suffix == null ? back.get(i) : combiner.merge(back.get(i), suffix);
+          front.add(suffix);
+        }
+        back.clear();
+        backAggregate = null;
+      }
+      front.remove(front.size() - 1);
+    }
+
+    Object getAggregate(Combiner<Object, Object> combiner)
+    {
+      Object aggregate = combiner.createAggregate();
+      if (!front.isEmpty()) {
+        aggregate = combiner.merge(aggregate, front.get(front.size() - 1));
+      }
+      if (!back.isEmpty()) {
+        aggregate = combiner.merge(aggregate, backAggregate);
+      }
+      return aggregate;
+    }
+
+    private static final long serialVersionUID = 201610190000L;
+  }
+
   private static final long serialVersionUID = 201505251917L;
 }
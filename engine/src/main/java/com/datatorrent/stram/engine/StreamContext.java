@@ -49,6 +49,10 @@ public class StreamContext extends DefaultAttributeMap implements Context
   public static final Attribute<InetSocketAddress> BUFFER_SERVER_ADDRESS = new Attribute<>(null, null);
   public static final Attribute<byte[]> BUFFER_SERVER_TOKEN = new Attribute<>(null, null);
   public static final Attribute<EventLoop> EVENT_LOOP = new Attribute<>(null, null);
+  /**
+   * Directory for the shared memory ring of a subscriber on the same host as the buffer server, null to use the socket.
+   */
+  public static final Attribute<String> SHARED_MEMORY_DIR = new Attribute<>(null, null);
   public static final Attribute<StreamCodec<?>> CODEC = new Attribute<StreamCodec<?>>(new DefaultStatefulStreamCodec<>(), null);
 
   @Override
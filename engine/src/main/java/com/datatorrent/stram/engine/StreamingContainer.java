@@ -62,6 +62,7 @@ import com.datatorrent.api.Operator;
 import com.datatorrent.api.Operator.InputPort;
 import com.datatorrent.api.Operator.OutputPort;
 import com.datatorrent.api.Operator.ProcessingMode;
+import com.datatorrent.api.Sink;
 import com.datatorrent.api.StatsListener;
 import com.datatorrent.api.StatsListener.OperatorRequest;
 import com.datatorrent.api.StorageAgent;
@@ -88,6 +89,7 @@ import com.datatorrent.stram.api.ContainerEvent.NodeActivationEvent;
 import com.datatorrent.stram.api.ContainerEvent.NodeDeactivationEvent;
 import com.datatorrent.stram.api.ContainerEvent.StreamActivationEvent;
 import com.datatorrent.stram.api.ContainerEvent.StreamDeactivationEvent;
+import com.datatorrent.stram.api.HeartbeatCodec;
 import com.datatorrent.stram.api.OperatorDeployInfo;
 import com.datatorrent.stram.api.OperatorDeployInfo.OperatorType;
 import com.datatorrent.stram.api.OperatorDeployInfo.UnifierDeployInfo;
@@ -109,6 +111,7 @@ import com.datatorrent.stram.plan.logical.StreamCodecWrapperForPersistance;
 import com.datatorrent.stram.security.StramUserLogin;
 import com.datatorrent.stram.stream.BufferServerPublisher;
 import com.datatorrent.stram.stream.BufferServerSubscriber;
+import com.datatorrent.stram.stream.CombinerSink;
 import com.datatorrent.stram.stream.FastPublisher;
 import com.datatorrent.stram.stream.FastSubscriber;
 import com.datatorrent.stram.stream.InlineStream;
@@ -146,8 +149,12 @@ public class StreamingContainer extends YarnContainerMain
   private final Map<Stream, StreamContext> activeStreams = new ConcurrentHashMap<>();
   private final Map<WindowGenerator, Object> activeGenerators = new ConcurrentHashMap<>();
   private int heartbeatIntervalMillis = 1000;
+  private final HeartbeatCodec.Encoder heartbeatEncoder = new HeartbeatCodec.Encoder();
   private volatile boolean exitHeartbeatLoop = false;
   private final Object heartbeatTrigger = new Object();
+  private boolean heartbeatRequested;
+  private ContainerControlClient controlClient;
+  private final ContainerMetricsAggregator metricsAggregator = new ContainerMetricsAggregator();
   public static DefaultEventLoop eventloop;
   /**
    * List of listeners interested in listening into the status change of the nodes.
@@ -237,6 +244,14 @@ public class StreamingContainer extends YarnContainerMain
       throw new IllegalStateException("Failed to deploy buffer server", ex);
     }
 
+    InetSocketAddress controlAddress = ctx.getValue(ContainerContext.CONTROL_ADDRESS);
+    if (controlAddress != null) {
+      eventloop.start();
+      controlClient = new ContainerControlClient(this, ctx.getValue(ContainerContext.CONTROL_TOKEN));
+      eventloop.connect(controlAddress.isUnresolved() ? new InetSocketAddress(controlAddress.getHostName(), controlAddress.getPort()) : controlAddress, controlClient);
+      logger.debug("Control channel connecting to {}", controlAddress);
+    }
+
     for (Class<?> clazz : ContainerEvent.CONTAINER_EVENTS_LISTENERS) {
       try {
         Object newInstance = clazz.newInstance();
@@ -563,6 +578,7 @@ public class StreamingContainer extends YarnContainerMain
 
     for (Integer operatorId : nodeList) {
       nodes.remove(operatorId);
+      metricsAggregator.remove(operatorId);
     }
   }
 
@@ -585,6 +601,12 @@ public class StreamingContainer extends YarnContainerMain
       wg.teardown();
     }
 
+    if (controlClient != null) {
+      eventloop.disconnect(controlClient);
+      eventloop.stop();
+      controlClient = null;
+    }
+
     if (bufferServer != null) {
       eventloop.stop(bufferServer);
       eventloop.stop();
@@ -600,6 +622,18 @@ public class StreamingContainer extends YarnContainerMain
     }
   }
 
+  /**
+   * Like {@link #triggerHeartbeat()}, but the request is not lost when the heartbeat loop is not waiting, as the
+   * master may queue work while a heartbeat is in flight.
+   */
+  void requestHeartbeat()
+  {
+    synchronized (heartbeatTrigger) {
+      heartbeatRequested = true;
+      heartbeatTrigger.notifyAll();
+    }
+  }
+
   public void heartbeatLoop() throws Exception
   {
     umbilical.log(containerId, "[" + containerId + "] Entering heartbeat loop..");
@@ -623,7 +657,10 @@ public class StreamingContainer extends YarnContainerMain
       }
       synchronized (this.heartbeatTrigger) {
         try {
-          this.heartbeatTrigger.wait(heartbeatIntervalMillis);
+          if (!heartbeatRequested) {
+            this.heartbeatTrigger.wait(heartbeatIntervalMillis);
+          }
+          heartbeatRequested = false;
         } catch (InterruptedException e1) {
           logger.warn("Interrupted in heartbeat loop, exiting..");
           break;
@@ -641,7 +678,9 @@ public class StreamingContainer extends YarnContainerMain
           msg.restartRequested = true;
         }
       }
-      msg.memoryMBFree = ((int)(Runtime.getRuntime().freeMemory() / (1024 * 1024)));
+      long freeMemory = Runtime.getRuntime().freeMemory();
+      msg.memoryMBFree = ((int)(freeMemory / (1024 * 1024)));
+      msg.memoryMBUsed = ((int)((Runtime.getRuntime().totalMemory() - freeMemory) / (1024 * 1024)));
       garbageCollectorMXBeans = ManagementFactory.getGarbageCollectorMXBeans();
       for (GarbageCollectorMXBean bean : garbageCollectorMXBeans) {
         msg.gcCollectionTime += bean.getCollectionTime();
@@ -687,6 +726,8 @@ public class StreamingContainer extends YarnContainerMain
          */
         eventBus.publish(new ContainerStatsEvent(stats));
 
+        metricsAggregator.aggregate(stats);
+
         msg.setContainerStats(stats);
 
         // heartbeat call and follow-up processing
@@ -695,7 +736,9 @@ public class StreamingContainer extends YarnContainerMain
 
         msg.stackTrace = stackTrace;
 
+        heartbeatEncoder.encode(msg);
         rsp = umbilical.processHeartbeat(msg);
+        heartbeatEncoder.acknowledge(msg, rsp);
 
         if (rsp.stackTraceRequired) {
           stackTrace = StramUtils.getStackTrace().toString();
@@ -709,7 +752,10 @@ public class StreamingContainer extends YarnContainerMain
           logger.info("Waiting for pending request.");
           synchronized (this.heartbeatTrigger) {
             try {
-              this.heartbeatTrigger.wait(500);
+              if (!heartbeatRequested) {
+                this.heartbeatTrigger.wait(500);
+              }
+              heartbeatRequested = false;
             } catch (InterruptedException ie) {
               logger.warn("Interrupted in heartbeat loop", ie);
               break;
@@ -920,6 +966,7 @@ public class StreamingContainer extends YarnContainerMain
 
       node.setId(ndi.id);
       nodes.put(ndi.id, node);
+      metricsAggregator.add(ndi);
       logger.debug("Marking operator {} as deployed.", node);
     }
   }
@@ -987,7 +1034,7 @@ public class StreamingContainer extends YarnContainerMain
           SimpleEntry<String, ComponentContextPair<Stream, StreamContext>> deployBufferServerPublisher =
               deployBufferServerPublisher(connIdentifier, streamCodec, checkpointWindowId, queueCapacity, nodi);
           newStreams.put(sourceIdentifier, deployBufferServerPublisher.getValue());
-          node.connectOutputPort(nodi.portName, deployBufferServerPublisher.getValue().component);
+          node.connectOutputPort(nodi.portName, getOutputSink(node, ndi, nodi, deployBufferServerPublisher.getValue().component));
         } else {
           /*
            * In this case we have 2 possibilities, either we have 1 inline or multiple streams.
@@ -1009,7 +1056,7 @@ public class StreamingContainer extends YarnContainerMain
             Stream stream = new MuxStream();
 
             newStreams.put(sourceIdentifier, pair = new ComponentContextPair<>(stream, context));
-            node.connectOutputPort(nodi.portName, stream);
+            node.connectOutputPort(nodi.portName, getOutputSink(node, ndi, nodi, stream));
           }
 
           if (nodi.bufferServerHost != null) {
@@ -1044,6 +1091,33 @@ public class StreamingContainer extends YarnContainerMain
     return newStreams;
   }
 
+  /**
+   * Wrap the stream of the output port to aggregate the tuples with the combiner of the unifier, when requested.
+   */
+  @SuppressWarnings("unchecked")
+  private static Sink<Object> getOutputSink(Node<?> node, OperatorDeployInfo ndi, OperatorDeployInfo.OutputDeployInfo nodi, Stream stream)
+  {
+    if (ndi.type != OperatorType.UNIFIER && nodi.getValue(PortContext.UNIFIER_PRE_AGGREGATE)) {
+      PortContextPair<OutputPort<?>> pcpair = node.getPortMappingDescriptor().outputPorts.get(nodi.portName);
+      Operator.Unifier<?> unifier = pcpair == null ? null : pcpair.component.getUnifier();
+      if (unifier instanceof Operator.Combiner) {
+        logger.debug("Aggregating output {} of {} with {}", nodi.portName, ndi.name, unifier);
+        return new CombinerSink<>((Operator.Combiner<Object, Object>)unifier, stream);
+      }
+    }
+    return stream;
+  }
+
+  private static boolean isLocalHost(String host)
+  {
+    try {
+      return NetUtils.isLocalAddress(InetAddress.getByName(host));
+    } catch (UnknownHostException ex) {
+      logger.debug("Cannot resolve {}", host, ex);
+      return false;
+    }
+  }
+
   /**
    * If the port is connected, return the declared stream Id.
    *
@@ -1134,6 +1208,10 @@ public class StreamingContainer extends YarnContainerMain
               context.setBufferServerAddress(new InetSocketAddress(InetAddress.getByName(null), nidi.bufferServerPort));
             }
             context.put(StreamContext.BUFFER_SERVER_TOKEN, nidi.bufferServerToken);
+            String sharedMemoryDir = containerContext.getValue(LogicalPlan.SHARED_MEMORY_STREAM_DIR);
+            if (sharedMemoryDir != null && (nidi.locality == Locality.NODE_LOCAL || isLocalHost(nidi.bufferServerHost))) {
+              context.put(StreamContext.SHARED_MEMORY_DIR, sharedMemoryDir);
+            }
             String connIdentifier = sourceIdentifier + Component.CONCAT_SEPARATOR + streamCodecIdentifier;
             context.setPortId(nidi.portName);
             context.put(StreamContext.CODEC, streamCodec);
@@ -1305,7 +1383,12 @@ public class StreamingContainer extends YarnContainerMain
     windowGenerator.setWindowWidth(windowWidthMillis);
 
     long windowCount = WindowGenerator.getWindowCount(millisAtFirstWindow, firstWindowMillis, windowWidthMillis);
-    windowGenerator.setCheckpointCount(checkpointWindowCount, (int)(windowCount % checkpointWindowCount));
+    if (containerContext.getValue(LogicalPlan.WINDOW_ALIGNED_CHECKPOINTS)) {
+      // the operators derive the checkpoint windows from the window ids
+      windowGenerator.setCheckpointCount(0, 0);
+    } else {
+      windowGenerator.setCheckpointCount(checkpointWindowCount, (int)(windowCount % checkpointWindowCount));
+    }
     return windowGenerator;
   }
 
@@ -99,7 +99,7 @@ public class WindowGenerator extends MuxReservoir implements Stream, Runnable
   private void endCurrentBeginNewWindow() throws InterruptedException
   {
     queue.put(new EndWindowTuple(baseSeconds | windowId));
-    if (++checkPointWindowCount == checkpointCount) {
+    if (checkpointCount > 0 && ++checkPointWindowCount == checkpointCount) {
       queue.put(new Tuple(MessageType.CHECKPOINT, baseSeconds | windowId));
       checkPointWindowCount = 0;
     }
@@ -141,6 +141,10 @@ public class WindowGenerator extends MuxReservoir implements Stream, Runnable
     windowWidthMillis = millis;
   }
 
+  /**
+   * @param streamingWindowCount number of windows between CHECKPOINT tuples, 0 to not emit CHECKPOINT tuples
+   * @param offset number of windows already elapsed since the last checkpoint
+   */
   public void setCheckpointCount(int streamingWindowCount, int offset)
   {
     logger.debug("setCheckpointCount: {} {}", streamingWindowCount, offset);
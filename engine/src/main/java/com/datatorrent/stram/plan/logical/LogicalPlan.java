@@ -186,6 +186,124 @@ public class LogicalPlan implements Serializable, DAG
    */
   public static Attribute<Integer> APPLICATION_ATTEMPT_ID = new Attribute<>(1);
 
+  /**
+   * Size in bytes of the recovery journal after which the application master writes a new snapshot of the
+   * physical plan and starts a new journal. This bounds the number of operations to replay on recovery.
+   */
+  public static Attribute<Long> JOURNAL_COMPACTION_SIZE = new Attribute<>(8L * 1024 * 1024);
+
+  /**
+   * Maximum time in milliseconds that a journal write waits for other writes to be flushed together with it.
+   * With the default of 0 only the writes that arrive while a flush is in progress are combined.
+   */
+  public static Attribute<Long> JOURNAL_FLUSH_DELAY_MILLIS = new Attribute<>(0L);
+
+  /**
+   * When set, the checkpoint windows are derived from the window id instead of being announced with CHECKPOINT
+   * control tuples. The END_WINDOW of a checkpoint window, which is aligned across all the input ports of an
+   * operator, acts as the checkpoint barrier. Operators snapshot as soon as it was received on every input
+   * and do not wait for a CHECKPOINT tuple to be propagated through the upstream pipeline.
+   */
+  public static Attribute<Boolean> WINDOW_ALIGNED_CHECKPOINTS = new Attribute<>(false);
+
+  /**
+   * Minimum interval in milliseconds between two updates of the logical metrics and the critical path from the
+   * end window stats reported by the operators. With the default of 0 they are updated in every monitoring cycle
+   * of the application master.
+   */
+  public static Attribute<Long> STATS_PUBLISH_INTERVAL_MILLIS = new Attribute<>(0L);
+
+  /**
+   * Whether containers keep a connection to the application master on which they are asked to heartbeat immediately
+   * when deploy, undeploy or operator requests are queued for them, instead of waiting for the next heartbeat interval.
+   * The requests themselves are still delivered with the heartbeat response.
+   */
+  public static Attribute<Boolean> CONTAINER_CONTROL_CHANNEL = new Attribute<>(false);
+
+  /**
+   * Whether containers pre-aggregate the auto metrics of partitions of the same logical operator before reporting
+   * them, which reduces the number of values the application master aggregates per window. Applies to operators with
+   * a metrics aggregator that can be combined, like the default sum aggregator, and the partitions no longer report
+   * their individual metrics.
+   */
+  public static Attribute<Boolean> METRICS_CONTAINER_AGGREGATION = new Attribute<>(false);
+
+  /**
+   * Maximum number of stats records or events that wait to be written by the stats and event recorders of the
+   * application master. When the file system does not keep up, further records are dropped and counted.
+   */
+  public static Attribute<Integer> RECORDING_QUEUE_CAPACITY = new Attribute<>(64 * 1024);
+
+  /**
+   * Time in milliseconds that operators affected by a plan change, such as the partitions and downstream operators
+   * of a repartitioned operator, keep running while the containers for the new operators are allocated. Once all
+   * new containers are running, the affected operators are undeployed, and the new and affected operators are
+   * deployed and restored from their checkpoints after the undeploy is confirmed. Old and new operators therefore
+   * never run side by side, and the affected operators don't sit idle while the resource manager allocates
+   * containers. When the timeout expires before all containers are running, the affected operators are undeployed
+   * anyway and the new operators are deployed as their containers become available, as for a plan change without
+   * handover. The default 0 undeploys the affected operators right away.
+   */
+  public static Attribute<Integer> DEPLOY_HANDOVER_TIMEOUT_MILLIS = new Attribute<>(0);
+
+  /**
+   * Number of threads that define the initial partitions of the operators which are not parallel partitioned when
+   * the physical plan is created, so that partitioners which query external systems, for example for the partitions
+   * of an input source, run concurrently. Partitioner instances shared by several operators are called sequentially.
+   * The default of 1 defines all partitions on the calling thread.
+   */
+  public static Attribute<Integer> PARTITIONING_THREADS = new Attribute<>(1);
+
+  /**
+   * Interval in milliseconds at which the application master computes a packing of the operators into containers
+   * from their measured CPU and memory usage and proposes the migrations that reduce the number of containers or
+   * relieve overloaded containers. The proposal is logged and recorded as event, operators are not moved. The
+   * default of 0 disables the placement optimizer.
+   */
+  public static Attribute<Long> PLACEMENT_OPTIMIZER_INTERVAL_MILLIS = new Attribute<>(0L);
+
+  /**
+   * Fraction of the memory and cores of a container that the placement optimizer fills with operators.
+   */
+  public static Attribute<Double> PLACEMENT_TARGET_UTILIZATION = new Attribute<>(0.8);
+
+  /**
+   * Interval in milliseconds at which the application master reshapes the cascading unifiers of the partitioned
+   * streams from the unifier stats. A level is added when one of the unifiers is saturated and a level is collapsed
+   * when all of them are idle, starting from the tree given by {@link PortContext#UNIFIER_LIMIT}. Only the unifiers
+   * affected by the new shape are redeployed. The default of 0 keeps the tree as configured.
+   */
+  public static Attribute<Long> UNIFIER_ADAPTIVE_INTERVAL_MILLIS = new Attribute<>(0L);
+
+  /**
+   * Minimum time in milliseconds between two reshapes of the cascading unifiers of a stream, so that the unifier
+   * stats reflect the new shape before the next decision.
+   */
+  public static Attribute<Long> UNIFIER_ADAPTIVE_COOLDOWN_MILLIS = new Attribute<>(60000L);
+
+  /**
+   * Fraction of a core above which a unifier is considered saturated.
+   */
+  public static Attribute<Double> UNIFIER_SATURATED_CPU = new Attribute<>(0.8);
+
+  /**
+   * Fraction of a core below which all unifiers of a stream need to stay for the tree to be collapsed by a level.
+   */
+  public static Attribute<Double> UNIFIER_IDLE_CPU = new Attribute<>(0.2);
+
+  /**
+   * Average input queue size at which a unifier is considered saturated, as it cannot keep up with its sources.
+   */
+  public static Attribute<Integer> UNIFIER_SATURATED_QUEUE_SIZE = new Attribute<>(512);
+
+  /**
+   * Directory for the shared memory rings, typically /dev/shm, through which the buffer server delivers the stream
+   * to a subscriber on the same host, which includes all the NODE_LOCAL streams, instead of the loopback socket.
+   * The buffer server keeps the data for replay as usual and falls back to the socket when it cannot open the ring.
+   * Not set by default, which delivers all streams through the socket.
+   */
+  public static Attribute<String> SHARED_MEMORY_STREAM_DIR = new Attribute<>((String)null, new StringCodec.String2String());
+
   static {
     Attribute.AttributeMap.AttributeInitializer.initialize(LogicalPlan.class);
   }
@@ -54,6 +54,10 @@ public class OperatorStatus implements BatchedOperatorStats, java.io.Serializabl
     public final TimedMovingAverageLong tuplesPMSMA;
     public final TimedMovingAverageLong bufferServerBytesPMSMA;
     public final MovingAverageLong queueSizeMA;
+    /**
+     * End window timestamp of the last reported window, not set while {@link Stats#INVALID_TIME_MILLIS} or 0.
+     */
+    public long lastEndWindowTimestamp = Stats.INVALID_TIME_MILLIS;
 
     public PortStatus()
     {
@@ -81,6 +85,11 @@ public class OperatorStatus implements BatchedOperatorStats, java.io.Serializabl
   public List<OperatorStats> lastWindowedStats = Collections.emptyList();
   public final ConcurrentLinkedQueue<List<OperatorStats>> listenerStats = new ConcurrentLinkedQueue<>();
   public volatile long lastWindowIdChangeTms = 0;
+  /**
+   * Latest end window timestamp of the ports in the last heartbeat, not set while {@link Stats#INVALID_TIME_MILLIS}
+   * or 0. Restored status is created by the serialization proxy and starts unset.
+   */
+  public long lastMaxEndWindowTimestamp = Stats.INVALID_TIME_MILLIS;
   public final int windowProcessingTimeoutMillis;
   public final ConcurrentLinkedQueue<StatsListener.OperatorResponse> responses = new ConcurrentLinkedQueue<>();
   public List<StatsListener.OperatorResponse> operatorResponses;
@@ -39,6 +39,7 @@ import com.google.common.collect.Sets;
 import com.datatorrent.api.Context;
 import com.datatorrent.api.Context.OperatorContext;
 import com.datatorrent.api.DAG.Locality;
+import com.datatorrent.api.Operator;
 import com.datatorrent.api.Operator.InputPort;
 import com.datatorrent.api.Partitioner.PartitionKeys;
 import com.datatorrent.api.StatsListener;
@@ -136,6 +137,10 @@ public class PTOperator implements java.io.Serializable
     public final PTOperator source;
     public final String portName;
     public final List<PTInput> sinks;
+    /**
+     * Whether the output was last deployed to pre-aggregate its tuples.
+     */
+    boolean preAggregate;
 
     /**
      * Constructor
@@ -168,6 +173,26 @@ public class PTOperator implements java.io.Serializable
       return true;
     }
 
+    /**
+     * Whether the tuples of the output can be aggregated before they are sent. The output port has to request it,
+     * all sinks need to be unifiers that receive all tuples and the unifier needs to be a combiner.
+     *
+     * @return boolean
+     * @see Context.PortContext#UNIFIER_PRE_AGGREGATE
+     */
+    public boolean isPreAggregated()
+    {
+      if (source.isUnifier() || sinks.isEmpty() || !logicalStream.getSource().getValue(Context.PortContext.UNIFIER_PRE_AGGREGATE)) {
+        return false;
+      }
+      for (PTInput input : sinks) {
+        if (!input.target.isUnifier() || input.partitions != null) {
+          return false;
+        }
+      }
+      return logicalStream.getSource().getUnifierMeta().getOperator() instanceof Operator.Combiner;
+    }
+
     public Set<PTOperator> threadLocalSinks()
     {
       Set<PTOperator> threadLocalOperators = null;
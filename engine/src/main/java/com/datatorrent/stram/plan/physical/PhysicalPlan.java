@@ -29,13 +29,17 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Stack;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
@@ -69,6 +73,9 @@ import com.datatorrent.api.StorageAgent;
 import com.datatorrent.api.StreamCodec;
 import com.datatorrent.api.annotation.Stateless;
 import com.datatorrent.common.util.AsyncFSStorageAgent;
+import com.datatorrent.common.util.FSStorageAgent;
+import com.datatorrent.common.util.NameableThreadFactory;
+import com.datatorrent.stram.CheckpointManifest;
 import com.datatorrent.stram.Journal.Recoverable;
 import com.datatorrent.stram.api.Checkpoint;
 import com.datatorrent.stram.api.StramEvent;
@@ -132,23 +139,31 @@ public class PhysicalPlan implements Serializable
   final Set<PTOperator> deployOpers = Sets.newHashSet();
   final Map<PTOperator, Operator> newOpers = Maps.newHashMap();
   final Set<PTOperator> undeployOpers = Sets.newHashSet();
+  /**
+   * Number of unifiers added, removed or rewired by stream mapping updates, reported with the partition event.
+   */
+  transient int unifierChanges;
   final ConcurrentMap<Integer, PTOperator> allOperators = Maps.newConcurrentMap();
   private final ConcurrentMap<OperatorMeta, OperatorMeta> pendingRepartition = Maps.newConcurrentMap();
+  /**
+   * Initial partitions defined concurrently while the plan is created.
+   */
+  private transient Map<OperatorMeta, Future<Collection<Partition<Operator>>>> initialPartitions;
 
   private final AtomicInteger strCodecIdSequence = new AtomicInteger();
   private final Map<StreamCodec<?>, Integer> streamCodecIdentifiers = Maps.newHashMap();
 
-  private PTContainer getContainer(int index)
+  private PTContainer getContainer(List<PTContainer> newContainers, int index)
   {
-    if (index >= containers.size()) {
+    if (index >= newContainers.size()) {
       if (index >= maxContainers) {
         index = maxContainers - 1;
       }
-      for (int i = containers.size(); i < index + 1; i++) {
-        containers.add(i, new PTContainer(this));
+      for (int i = newContainers.size(); i < index + 1; i++) {
+        newContainers.add(i, new PTContainer(this));
       }
     }
-    return containers.get(index);
+    return newContainers.get(index);
   }
 
   /**
@@ -215,7 +230,7 @@ public class PhysicalPlan implements Serializable
     private static final long serialVersionUID = 201312112033L;
 
     private final OperatorMeta logicalOperator;
-    private List<PTOperator> partitions = new LinkedList<>();
+    private List<PTOperator> partitions = new ArrayList<>();
     private final Map<LogicalPlan.OutputPortMeta, StreamMapping> outputStreams = Maps.newHashMap();
     private List<StatsListener> statsHandlers;
 
@@ -352,30 +367,38 @@ public class PhysicalPlan implements Serializable
       pendingNodes.push(n);
     }
 
-    while (!pendingNodes.isEmpty()) {
-      OperatorMeta n = pendingNodes.pop();
+    ExecutorService partitioningExecutor = defineInitialPartitions(dag.getValue(LogicalPlan.PARTITIONING_THREADS));
+    try {
+      while (!pendingNodes.isEmpty()) {
+        OperatorMeta n = pendingNodes.pop();
 
-      if (this.logicalToPTOperator.containsKey(n)) {
-        // already processed as upstream dependency
-        continue;
-      }
+        if (this.logicalToPTOperator.containsKey(n)) {
+          // already processed as upstream dependency
+          continue;
+        }
 
-      boolean upstreamDeployed = true;
+        boolean upstreamDeployed = true;
 
-      for (Map.Entry<InputPortMeta, StreamMeta> entry : n.getInputStreams().entrySet()) {
-        StreamMeta s = entry.getValue();
-        boolean delay = entry.getKey().getValue(LogicalPlan.IS_CONNECTED_TO_DELAY_OPERATOR);
-        // skip delay sources since it's going to be handled as downstream
-        if (!delay && s.getSource() != null && !this.logicalToPTOperator.containsKey(s.getSource().getOperatorMeta())) {
-          pendingNodes.push(n);
-          pendingNodes.push(s.getSource().getOperatorMeta());
-          upstreamDeployed = false;
-          break;
+        for (Map.Entry<InputPortMeta, StreamMeta> entry : n.getInputStreams().entrySet()) {
+          StreamMeta s = entry.getValue();
+          boolean delay = entry.getKey().getValue(LogicalPlan.IS_CONNECTED_TO_DELAY_OPERATOR);
+          // skip delay sources since it's going to be handled as downstream
+          if (!delay && s.getSource() != null && !this.logicalToPTOperator.containsKey(s.getSource().getOperatorMeta())) {
+            pendingNodes.push(n);
+            pendingNodes.push(s.getSource().getOperatorMeta());
+            upstreamDeployed = false;
+            break;
+          }
         }
-      }
 
-      if (upstreamDeployed) {
-        addLogicalOperator(n);
+        if (upstreamDeployed) {
+          addLogicalOperator(n);
+        }
+      }
+    } finally {
+      initialPartitions = null;
+      if (partitioningExecutor != null) {
+        partitioningExecutor.shutdownNow();
       }
     }
 
@@ -439,10 +462,12 @@ public class PhysicalPlan implements Serializable
     // assign operators to containers
     int groupCount = 0;
     Set<PTOperator> deployOperators = Sets.newHashSet();
+    // collected before adding to the copy on write list of containers
+    List<PTContainer> newContainers = new ArrayList<>();
     for (Map.Entry<OperatorMeta, PMapping> e : logicalToPTOperator.entrySet()) {
       for (PTOperator oper : e.getValue().getAllOperators()) {
         if (oper.container == null) {
-          PTContainer container = getContainer((groupCount++) % maxContainers);
+          PTContainer container = getContainer(newContainers, (groupCount++) % maxContainers);
           if (!container.operators.isEmpty()) {
             LOG.warn("Operator {} shares container without locality contraint due to insufficient resources.", oper);
           }
@@ -462,6 +487,7 @@ public class PhysicalPlan implements Serializable
         }
       }
     }
+    containers.addAll(newContainers);
 
 
     for (PTContainer container : containers) {
@@ -494,6 +520,7 @@ public class PhysicalPlan implements Serializable
     for (Map.Entry<PTOperator, Operator> operEntry : this.newOpers.entrySet()) {
       initCheckpoint(operEntry.getKey(), operEntry.getValue(), Checkpoint.INITIAL_CHECKPOINT);
     }
+    updatePreAggregation();
     // request initial deployment
     ctx.deploy(Collections.<PTContainer>emptySet(), Collections.<PTOperator>emptySet(), Sets.newHashSet(containers), deployOperators);
     this.newOpers.clear();
@@ -749,7 +776,19 @@ public class PhysicalPlan implements Serializable
     collection.add(firstPartition);
 
     if (partitioner != null) {
-      partitions = partitioner.definePartitions(collection, new PartitioningContextImpl(m, partitionCnt));
+      Future<Collection<Partition<Operator>>> future = initialPartitions == null ? null : initialPartitions.remove(m.logicalOperator);
+      if (future != null) {
+        try {
+          partitions = future.get();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new IllegalStateException("Interrupted while defining partitions of " + m.logicalOperator, e);
+        } catch (ExecutionException e) {
+          throw Throwables.propagate(e.getCause());
+        }
+      } else {
+        partitions = partitioner.definePartitions(collection, new PartitioningContextImpl(m, partitionCnt));
+      }
 
       if (partitions == null || partitions.isEmpty()) {
         throw new IllegalStateException("Partitioner returns null or empty.");
@@ -790,6 +829,66 @@ public class PhysicalPlan implements Serializable
     }
   }
 
+  /**
+   * Submit the definition of the initial partitions of the operators that are not parallel partitioned, those are
+   * picked up by {@link #initPartitioning} when the operator is added to the plan.
+   *
+   * @param numThreads
+   * @return the executor or null when the partitions are defined on the calling thread
+   */
+  private ExecutorService defineInitialPartitions(int numThreads)
+  {
+    if (numThreads <= 1) {
+      return null;
+    }
+    Map<Partitioner<Operator>, PMapping> partitioners = Maps.newIdentityHashMap();
+    Set<Partitioner<Operator>> shared = Sets.newIdentityHashSet();
+    for (OperatorMeta om : dag.getAllOperators()) {
+      if (isParallelPartitioned(om)) {
+        continue;
+      }
+      PMapping m = new PMapping(om);
+      Partitioner<Operator> partitioner = getPartitioner(m);
+      if (partitioner != null && partitioners.put(partitioner, m) != null) {
+        shared.add(partitioner);
+      }
+    }
+    partitioners.keySet().removeAll(shared);
+    if (partitioners.size() < 2) {
+      return null;
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(numThreads, partitioners.size()),
+        new NameableThreadFactory("PlanPartitioning"));
+    initialPartitions = new HashMap<>();
+    for (Map.Entry<Partitioner<Operator>, PMapping> e : partitioners.entrySet()) {
+      final Partitioner<Operator> partitioner = e.getKey();
+      final PMapping m = e.getValue();
+      initialPartitions.put(m.logicalOperator, executor.submit(new Callable<Collection<Partition<Operator>>>()
+      {
+        @Override
+        public Collection<Partition<Operator>> call() throws Exception
+        {
+          Collection<Partition<Operator>> collection = new ArrayList<>(1);
+          collection.add(new DefaultPartition<>(m.logicalOperator.getOperator()));
+          return partitioner.definePartitions(collection, new PartitioningContextImpl(m, 0));
+        }
+      }));
+    }
+    LOG.debug("Defining initial partitions of {} operators on {} threads", partitioners.size(), numThreads);
+    return executor;
+  }
+
+  private static boolean isParallelPartitioned(OperatorMeta om)
+  {
+    for (InputPortMeta ipm : om.getInputStreams().keySet()) {
+      if (ipm.getValue(PortContext.PARTITION_PARALLEL)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   private class RepartitionContext extends PartitioningContextImpl
   {
     final List<PTOperator> operators;
@@ -888,6 +987,7 @@ public class PhysicalPlan implements Serializable
     }
 
     List<Partition<Operator>> addedPartitions = new ArrayList<>();
+    this.unifierChanges = 0;
     // determine modifications of partition set, identify affected operator instance(s)
     for (Partition<Operator> newPartition : mainPC.newPartitions) {
       PTOperator op = mainPC.currentPartitionMap.remove(newPartition);
@@ -1035,7 +1135,8 @@ public class PhysicalPlan implements Serializable
     deployChanges();
 
     if (mainPC.currentPartitions.size() != mainPC.newPartitions.size()) {
-      StramEvent ev = new StramEvent.PartitionEvent(currentMapping.logicalOperator.getName(), mainPC.currentPartitions.size(), mainPC.newPartitions.size());
+      StramEvent.PartitionEvent ev = new StramEvent.PartitionEvent(currentMapping.logicalOperator.getName(), mainPC.currentPartitions.size(), mainPC.newPartitions.size());
+      ev.setUnifierChanges(this.unifierChanges);
       ev.setReason(note);
       this.ctx.recordEventAsync(ev);
     }
@@ -1122,6 +1223,7 @@ public class PhysicalPlan implements Serializable
     Set<PTContainer> releaseContainers = Sets.newHashSet();
     assignContainers(newContainers, releaseContainers);
     updatePartitionsInfoForPersistOperator(this.dag);
+    updatePreAggregation();
 
     // redeploy dependencies of the new operators excluding the new operators themselves
     Set<PTOperator> ndeps = getDependents(this.newOpers.keySet());
@@ -1141,6 +1243,30 @@ public class PhysicalPlan implements Serializable
     this.undeployOpers.clear();
   }
 
+  /**
+   * Operators that pre-aggregate their output only do so while the unifiers are combiners that receive all tuples.
+   * Existing operators for which that changed with the unifiers need to be redeployed.
+   *
+   * @see PortContext#UNIFIER_PRE_AGGREGATE
+   */
+  private void updatePreAggregation()
+  {
+    for (PTOperator oper : this.allOperators.values()) {
+      for (PTOutput out : oper.outputs) {
+        boolean preAggregate = out.isPreAggregated();
+        if (out.preAggregate != preAggregate) {
+          out.preAggregate = preAggregate;
+          if (!this.newOpers.containsKey(oper)) {
+            LOG.debug("Redeploy {} to change pre-aggregation of {} to {}", oper, out.portName, preAggregate);
+            Set<PTOperator> deps = getDependents(Collections.singletonList(oper));
+            this.undeployOpers.addAll(deps);
+            this.deployOpers.addAll(deps);
+          }
+        }
+      }
+    }
+  }
+
   private void assignContainers(Set<PTContainer> newContainers, Set<PTContainer> releaseContainers)
   {
     Set<PTOperator> mxnUnifiers = Sets.newHashSet();
@@ -1267,11 +1393,8 @@ public class PhysicalPlan implements Serializable
     if (oper.recoveryCheckpoint == null && oper.checkpoints.isEmpty()) {
       Checkpoint activationCheckpoint = Checkpoint.INITIAL_CHECKPOINT;
       for (PTInput input : oper.inputs) {
-        PTOperator sourceOper = input.source.source;
-        if (sourceOper.checkpoints.isEmpty()) {
-          getActivationCheckpoint(sourceOper);
-        }
-        activationCheckpoint = Checkpoint.max(activationCheckpoint, sourceOper.recoveryCheckpoint);
+        // new upstream operators, such as cascading unifiers, have no recovery checkpoint yet
+        activationCheckpoint = Checkpoint.max(activationCheckpoint, getActivationCheckpoint(input.source.source));
       }
       return activationCheckpoint;
     }
@@ -1476,9 +1599,14 @@ public class PhysicalPlan implements Serializable
 
     // remove checkpoint states
     try {
-      synchronized (oper.checkpoints) {
-        for (Checkpoint checkpoint : oper.checkpoints) {
-          oper.operatorMeta.getValue(OperatorContext.STORAGE_AGENT).delete(oper.id, checkpoint.windowId);
+      StorageAgent agent = oper.operatorMeta.getValue(OperatorContext.STORAGE_AGENT);
+      if (agent instanceof FSStorageAgent) {
+        ((FSStorageAgent)agent).deleteAll(oper.id);
+      } else {
+        synchronized (oper.checkpoints) {
+          for (Checkpoint checkpoint : oper.checkpoints) {
+            agent.delete(oper.id, checkpoint.windowId);
+          }
         }
       }
     } catch (IOException e) {
@@ -1785,6 +1913,73 @@ public class PhysicalPlan implements Serializable
     this.logicalToPTOperator = copyMap;
   }
 
+  /**
+   * Reshape the cascading unifiers of the partitioned streams from the unifier stats, adding a level to a tree with a
+   * saturated unifier and collapsing a level of a tree with idle unifiers. A stream is reshaped at most once per
+   * cooldown. The tree is updated incrementally as for repartitioning, through the same hand over to the master main
+   * loop, which applies it only when all operators are active.
+   *
+   * @param currentTms current time, for the cooldown
+   * @see LogicalPlan#UNIFIER_ADAPTIVE_INTERVAL_MILLIS
+   * @see LogicalPlan#UNIFIER_ADAPTIVE_COOLDOWN_MILLIS
+   */
+  public void adaptCascadingUnifiers(long currentTms)
+  {
+    double saturatedCpu = dag.getValue(LogicalPlan.UNIFIER_SATURATED_CPU);
+    double idleCpu = dag.getValue(LogicalPlan.UNIFIER_IDLE_CPU);
+    int saturatedQueueSize = dag.getValue(LogicalPlan.UNIFIER_SATURATED_QUEUE_SIZE);
+    long cooldownMillis = dag.getValue(LogicalPlan.UNIFIER_ADAPTIVE_COOLDOWN_MILLIS);
+    for (PMapping m : logicalToPTOperator.values()) {
+      for (Map.Entry<OutputPortMeta, StreamMapping> e : m.outputStreams.entrySet()) {
+        final StreamMapping ug = e.getValue();
+        if (e.getKey().getOperatorMeta() != m.logicalOperator || m.partitions.size() < 2 || ug.reshapePending ||
+            currentTms - ug.lastReshapeMillis < cooldownMillis) {
+          continue;
+        }
+        int levels = ug.getCascadingLevels();
+        final int newLevels = ug.adaptCascadingLevels(saturatedCpu, idleCpu, saturatedQueueSize);
+        if (newLevels != levels) {
+          LOG.debug("Scheduling reshape of cascading unifiers of {} from {} to {} levels", e.getKey(), levels,
+              newLevels);
+          ug.reshapePending = true;
+          ug.lastReshapeMillis = currentTms;
+          final OperatorMeta om = m.logicalOperator;
+          final OutputPortMeta portMeta = e.getKey();
+          // hand over to monitor thread
+          Runnable r = new Runnable()
+          {
+            @Override
+            public void run()
+            {
+              ug.reshapePending = false;
+              reshapeCascadingUnifiers(logicalToPTOperator.get(om), portMeta, ug, newLevels);
+            }
+          };
+          ctx.dispatch(r);
+        }
+      }
+    }
+  }
+
+  private void reshapeCascadingUnifiers(PMapping m, OutputPortMeta portMeta, StreamMapping ug, int newLevels)
+  {
+    // the operator may have been removed or repartitioned since the decision
+    if (m == null || m.outputStreams.get(portMeta) != ug || m.partitions.size() < 2) {
+      return;
+    }
+    int levels = ug.getCascadingLevels();
+    if (newLevels == levels) {
+      return;
+    }
+    LOG.info("Reshaping cascading unifiers of {} from {} to {} levels", portMeta, levels, newLevels);
+    this.unifierChanges = 0;
+    ug.cascadingLevels = newLevels;
+    ug.setSources(m.partitions);
+    deployChanges();
+    String streamName = m.logicalOperator.getOutputStreams().get(portMeta).getName();
+    this.ctx.recordEventAsync(new StramEvent.CascadingUnifierEvent(streamName, levels, newLevels, unifierChanges));
+  }
+
   public void setAvailableResources(int memoryMB)
   {
     this.availableMemoryMB = memoryMB;
@@ -1849,11 +2044,27 @@ public class PhysicalPlan implements Serializable
    * @throws IOException
    */
   public void syncCheckpoints(long startTime, long currentTime) throws IOException
+  {
+    syncCheckpoints(startTime, currentTime, null);
+  }
+
+  /**
+   * Read available checkpoints for all operators. Operators that are found in the checkpoint manifest
+   * are restored without listing the storage agent.
+   * @param startTime
+   * @param currentTime
+   * @param manifest checkpoint manifest, can be null
+   * @throws IOException
+   */
+  public void syncCheckpoints(long startTime, long currentTime, CheckpointManifest manifest) throws IOException
   {
     for (PTOperator oper : getAllOperators().values()) {
-      StorageAgent sa = oper.operatorMeta.getValue(OperatorContext.STORAGE_AGENT);
-      long[] windowIds = sa.getWindowIds(oper.getId());
-      Arrays.sort(windowIds);
+      long[] windowIds = manifest == null ? null : manifest.getWindowIds(oper.getId());
+      if (windowIds == null) {
+        StorageAgent sa = oper.operatorMeta.getValue(OperatorContext.STORAGE_AGENT);
+        windowIds = sa.getWindowIds(oper.getId());
+        Arrays.sort(windowIds);
+      }
       oper.checkpoints.clear();
       for (long wid : windowIds) {
         if (wid != Stateless.WINDOW_ID) {
@@ -0,0 +1,389 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.stram.plan.physical;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.common.collect.Maps;
+
+import com.datatorrent.api.AffinityRule;
+import com.datatorrent.api.AffinityRulesSet;
+import com.datatorrent.api.Context.OperatorContext;
+import com.datatorrent.api.DAG.Locality;
+import com.datatorrent.stram.plan.physical.PTOperator.HostOperatorSet;
+
+/**
+ * Computes a placement of the deployed operators into containers from their measured resource usage and proposes the
+ * migrations to get there. The operators are packed best fit decreasing into containers of the largest allocated
+ * size, filled up to the target utilization of memory and cores. Hot operators that don't fit with others get a
+ * container of their own and lightly loaded containers are consolidated.
+ * <p>
+ * The CPU usage of an operator is its measured moving average, the memory usage of a container as reported with the
+ * heartbeat is attributed to its operators in proportion to the declared {@link OperatorContext#MEMORY_MB}.
+ * Container local operators and MxN unifiers move together with their group. Operators with node locality, a
+ * locality host or node level anti-affinity stay in their container. Operators with container level anti-affinity
+ * are not packed together.
+ * <p>
+ * A proposal is only made when it reduces the number of containers or the number of overloaded containers.
+ */
+public class PlacementOptimizer
+{
+  private final double targetUtilization;
+
+  public PlacementOptimizer(double targetUtilization)
+  {
+    this.targetUtilization = targetUtilization;
+  }
+
+  /**
+   * Operator move from one container to another.
+   */
+  public static class Migration
+  {
+    public final List<PTOperator> operators;
+    public final PTContainer from;
+    /**
+     * Existing container, null when the operators move to a new container.
+     */
+    public final PTContainer to;
+    /**
+     * Index that identifies the new container within the proposal, -1 for an existing container.
+     */
+    public final int newContainer;
+
+    private Migration(List<PTOperator> operators, PTContainer from, PTContainer to, int newContainer)
+    {
+      this.operators = operators;
+      this.from = from;
+      this.to = to;
+      this.newContainer = newContainer;
+    }
+
+    @Override
+    public String toString()
+    {
+      return operators + " " + from.getExternalId() + " -> " + (to != null ? to.getExternalId() : "new container " + newContainer);
+    }
+  }
+
+  public static class Proposal
+  {
+    public static final Proposal NONE = new Proposal(Collections.<Migration>emptyList(), 0, 0, 0);
+
+    public final List<Migration> migrations;
+    public final int currentContainers;
+    public final int proposedContainers;
+    public final int overloadedContainers;
+
+    private Proposal(List<Migration> migrations, int currentContainers, int proposedContainers, int overloadedContainers)
+    {
+      this.migrations = migrations;
+      this.currentContainers = currentContainers;
+      this.proposedContainers = proposedContainers;
+      this.overloadedContainers = overloadedContainers;
+    }
+
+    @Override
+    public String toString()
+    {
+      return "containers " + currentContainers + " -> " + proposedContainers + " (overloaded " + overloadedContainers + ") migrations " + migrations;
+    }
+  }
+
+  /**
+   * Operators that are placed together.
+   */
+  private static class Unit
+  {
+    final List<PTOperator> operators = new ArrayList<>();
+    final Set<String> logicalOperators = new HashSet<>();
+    final PTContainer container;
+    boolean pinned;
+    double cpu;
+    double memory;
+    Bin bin;
+
+    Unit(PTContainer container)
+    {
+      this.container = container;
+    }
+  }
+
+  private static class Bin
+  {
+    final List<Unit> units = new ArrayList<>();
+    final Set<String> logicalOperators = new HashSet<>();
+    PTContainer container;
+    double cpu;
+    double memory;
+
+    void add(Unit unit)
+    {
+      units.add(unit);
+      unit.bin = this;
+      logicalOperators.addAll(unit.logicalOperators);
+      cpu += unit.cpu;
+      memory += unit.memory;
+    }
+  }
+
+  /**
+   * @param containers containers of the plan
+   * @param usedMemoryMB memory used by the containers that reported it
+   * @param affinityRules affinity rules of the DAG, may be null
+   * @return the proposal, {@link Proposal#NONE} when the placement is not improved
+   */
+  public Proposal propose(Collection<PTContainer> containers, Map<PTContainer, Integer> usedMemoryMB, AffinityRulesSet affinityRules)
+  {
+    int maxMemoryMB = 0;
+    int maxVCores = 1;
+    List<PTContainer> deployed = new ArrayList<>();
+    for (PTContainer c : containers) {
+      if (c.getOperators().isEmpty()) {
+        continue;
+      }
+      if (c.getState() != PTContainer.State.ACTIVE) {
+        // plan change in progress
+        return Proposal.NONE;
+      }
+      deployed.add(c);
+      maxMemoryMB = Math.max(maxMemoryMB, c.getAllocatedMemoryMB());
+      maxVCores = Math.max(maxVCores, c.getAllocatedVCores());
+    }
+    if (deployed.isEmpty() || maxMemoryMB == 0) {
+      return Proposal.NONE;
+    }
+    final double memoryCapacity = maxMemoryMB * targetUtilization;
+    final double cpuCapacity = maxVCores * 100 * targetUtilization;
+
+    List<Set<String>> containerAntiAffinity = new ArrayList<>();
+    Set<String> nodeAntiAffinity = new HashSet<>();
+    if (affinityRules != null && affinityRules.getAffinityRules() != null) {
+      for (AffinityRule rule : affinityRules.getAffinityRules()) {
+        if (rule.getType() == AffinityRule.Type.ANTI_AFFINITY && rule.getOperatorsList() != null) {
+          if (rule.getLocality() == Locality.NODE_LOCAL) {
+            nodeAntiAffinity.addAll(rule.getOperatorsList());
+          } else {
+            containerAntiAffinity.add(new HashSet<>(rule.getOperatorsList()));
+          }
+        }
+      }
+    }
+
+    // MxN unifiers are placed with the downstream operator
+    Map<PTOperator, PTOperator> mergeTargets = new HashMap<>();
+    for (PTContainer c : deployed) {
+      for (PTOperator oper : c.getOperators()) {
+        for (PTOperator unifier : oper.upstreamMerge.values()) {
+          mergeTargets.put(unifier, oper);
+        }
+      }
+    }
+
+    List<Unit> units = new ArrayList<>();
+    Map<PTContainer, Bin> pinnedBins = new HashMap<>();
+    int overloaded = 0;
+    for (PTContainer c : deployed) {
+      Map<Object, Unit> containerUnits = Maps.newIdentityHashMap();
+      int declaredMemory = 0;
+      for (PTOperator oper : c.getOperators()) {
+        declaredMemory += oper.getOperatorMeta().getValue(OperatorContext.MEMORY_MB);
+      }
+      Integer used = usedMemoryMB.get(c);
+      double memoryScale = used == null || declaredMemory == 0 ? 1 : (double)used / declaredMemory;
+      double containerCpu = 0;
+      double containerMemory = 0;
+
+      for (PTOperator oper : c.getOperators()) {
+        PTOperator groupOper = mergeTargets.containsKey(oper) ? mergeTargets.get(oper) : oper;
+        HostOperatorSet inline = groupOper.groupings.get(Locality.CONTAINER_LOCAL);
+        Object key = inline != null && inline.getOperatorSet().size() > 1 ? inline.getOperatorSet() : groupOper;
+        Unit unit = containerUnits.get(key);
+        if (unit == null) {
+          unit = new Unit(c);
+          containerUnits.put(key, unit);
+          units.add(unit);
+        }
+        unit.operators.add(oper);
+        unit.cpu += oper.stats.cpuNanosPMSMA.getAvg() / 10000.0;
+        unit.memory += oper.getOperatorMeta().getValue(OperatorContext.MEMORY_MB) * memoryScale;
+        if (!oper.isUnifier()) {
+          unit.logicalOperators.add(oper.getLogicalId());
+          HostOperatorSet nodeLocal = oper.groupings.get(Locality.NODE_LOCAL);
+          if ((nodeLocal != null && nodeLocal.getOperatorSet().size() > 1)
+              || oper.getOperatorMeta().getValue(OperatorContext.LOCALITY_HOST) != null
+              || nodeAntiAffinity.contains(oper.getLogicalId())) {
+            unit.pinned = true;
+          }
+        }
+      }
+
+      for (Unit unit : containerUnits.values()) {
+        containerCpu += unit.cpu;
+        containerMemory += unit.memory;
+        if (unit.pinned) {
+          Bin bin = pinnedBins.get(c);
+          if (bin == null) {
+            bin = new Bin();
+            bin.container = c;
+            pinnedBins.put(c, bin);
+          }
+          bin.add(unit);
+        }
+      }
+      if (containerCpu > cpuCapacity || containerMemory > memoryCapacity) {
+        overloaded++;
+      }
+    }
+
+    // bins of pinned operators first, in the order of the containers
+    List<Bin> bins = new ArrayList<>();
+    for (PTContainer c : deployed) {
+      if (pinnedBins.containsKey(c)) {
+        bins.add(pinnedBins.get(c));
+      }
+    }
+
+    List<Unit> movable = new ArrayList<>();
+    for (Unit unit : units) {
+      if (!unit.pinned) {
+        movable.add(unit);
+      }
+    }
+    Collections.sort(movable, new Comparator<Unit>()
+    {
+      @Override
+      public int compare(Unit u1, Unit u2)
+      {
+        int cmp = Double.compare(Math.max(u2.cpu / cpuCapacity, u2.memory / memoryCapacity),
+            Math.max(u1.cpu / cpuCapacity, u1.memory / memoryCapacity));
+        return cmp != 0 ? cmp : Integer.compare(u1.operators.get(0).getId(), u2.operators.get(0).getId());
+      }
+    });
+
+    for (Unit unit : movable) {
+      Bin best = null;
+      double bestRemaining = Double.MAX_VALUE;
+      for (Bin bin : bins) {
+        double cpu = bin.cpu + unit.cpu;
+        double memory = bin.memory + unit.memory;
+        if (cpu > cpuCapacity || memory > memoryCapacity || isAntiAffine(bin, unit, containerAntiAffinity)) {
+          continue;
+        }
+        double remaining = Math.min(1 - cpu / cpuCapacity, 1 - memory / memoryCapacity);
+        if (remaining < bestRemaining) {
+          best = bin;
+          bestRemaining = remaining;
+        }
+      }
+      if (best == null) {
+        best = new Bin();
+        bins.add(best);
+      }
+      best.add(unit);
+    }
+
+    // reuse the container that keeps most of the load of a bin in place
+    Set<PTContainer> assigned = new HashSet<>(pinnedBins.keySet());
+    for (Bin bin : bins) {
+      if (bin.container != null) {
+        continue;
+      }
+      Map<PTContainer, Double> inPlace = new HashMap<>();
+      for (Unit unit : bin.units) {
+        Double load = inPlace.get(unit.container);
+        inPlace.put(unit.container, (load == null ? 0 : load) + unit.cpu / cpuCapacity + unit.memory / memoryCapacity);
+      }
+      PTContainer target = null;
+      double maxLoad = -1;
+      for (Map.Entry<PTContainer, Double> e : inPlace.entrySet()) {
+        if (!assigned.contains(e.getKey()) && (e.getValue() > maxLoad
+            || (e.getValue() == maxLoad && e.getKey().getId() < target.getId()))) {
+          target = e.getKey();
+          maxLoad = e.getValue();
+        }
+      }
+      if (target == null) {
+        // container from which all operators move away
+        for (PTContainer c : deployed) {
+          if (!assigned.contains(c)) {
+            target = c;
+            break;
+          }
+        }
+      }
+      if (target != null) {
+        bin.container = target;
+        assigned.add(target);
+      }
+    }
+
+    int proposedOverloaded = 0;
+    int newContainers = 0;
+    Map<Bin, Integer> newContainerIndex = new HashMap<>();
+    for (Bin bin : bins) {
+      if (bin.cpu > cpuCapacity || bin.memory > memoryCapacity) {
+        proposedOverloaded++;
+      }
+      if (bin.container == null) {
+        newContainerIndex.put(bin, newContainers++);
+      }
+    }
+    if (bins.size() >= deployed.size() && proposedOverloaded >= overloaded) {
+      return Proposal.NONE;
+    }
+
+    List<Migration> migrations = new ArrayList<>();
+    for (Unit unit : units) {
+      if (unit.bin.container != unit.container) {
+        Integer index = newContainerIndex.get(unit.bin);
+        migrations.add(new Migration(unit.operators, unit.container, unit.bin.container, index == null ? -1 : index));
+      }
+    }
+    if (migrations.isEmpty()) {
+      return Proposal.NONE;
+    }
+    return new Proposal(migrations, deployed.size(), bins.size(), proposedOverloaded);
+  }
+
+  private static boolean isAntiAffine(Bin bin, Unit unit, List<Set<String>> antiAffinity)
+  {
+    for (Set<String> rule : antiAffinity) {
+      for (String name : unit.logicalOperators) {
+        if (rule.contains(name)) {
+          for (String other : bin.logicalOperators) {
+            if (rule.contains(other) && !other.equals(name)) {
+              return true;
+            }
+          }
+        }
+      }
+    }
+    return false;
+  }
+
+}
@@ -18,54 +18,47 @@
  */
 package com.datatorrent.stram.plan.physical;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
-import java.util.Arrays;
-import java.util.IdentityHashMap;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * MVCC store for single writer and multiple readers of consistent revisions.
- * All values are managed in arrays and referenced through an index map.
+ * Store for single writer and multiple readers of consistent revisions.
+ * The writer modifies a private copy of the values between {@link #checkout()} and {@link #commit()}. Each commit
+ * publishes an immutable revision with a single reference update, readers see the values of the last commit and
+ * never lock. Readers that need several values from the same revision read them from {@link #getRevision()}.
  * Fields can be added, but not removed.
  *
  * @since 0.9.3
  */
 public class StatsRevisions implements Serializable
 {
-  private final IdentityHashMap<Object, Integer> longsIndex = new IdentityHashMap<>();
-  private transient ThreadLocal<Revision> VERSION = new ThreadLocal<>();
-  private Revision current = new Revision();
+  private int size;
+  private volatile Revision current = new Revision(new long[0]);
+  private transient long[] pending = new long[0];
+  private transient ReentrantLock writeLock = new ReentrantLock();
 
   public VersionedLong newVersionedLong()
   {
-    VersionedLong vl = new VersionedLong(longsIndex.size());
-    longsIndex.put(vl, vl.index);
-    return vl;
+    return new VersionedLong(size++);
   }
 
-  private class Revision implements Serializable
+  /**
+   * Committed values, never modified after publication.
+   */
+  public static class Revision implements Serializable
   {
-    private static final long serialVersionUID = 201401131642L;
-    Object[] refs;
-    long[] longs;
-    double[] doubles;
+    private static final long serialVersionUID = 201610190002L;
+    private final long[] longs;
 
-    private Revision()
+    private Revision(long[] longs)
     {
-      refs = new Object[0];
-      longs = new long[0];
-      doubles = new double[0];
+      this.longs = longs;
     }
-
-    private Revision(Revision other)
-    {
-      refs = Arrays.copyOf(other.refs, other.refs.length);
-      longs = Arrays.copyOf(other.longs, other.longs.length);
-      doubles = Arrays.copyOf(other.doubles, other.doubles.length);
-    }
-
   }
 
   public class VersionedLong implements Serializable
@@ -80,12 +73,20 @@ public class StatsRevisions implements Serializable
 
     public long get()
     {
-      Revision v = VERSION.get();
-      if (v == null) {
-        v = current;
+      if (writeLock.isHeldByCurrentThread()) {
+        return pending[index];
       }
-      if (index < v.longs.length) {
-        return v.longs[index];
+      return get(current);
+    }
+
+    /**
+     * @param revision revision obtained from {@link StatsRevisions#getRevision()}
+     * @return the value in the given revision
+     */
+    public long get(Revision revision)
+    {
+      if (index < revision.longs.length) {
+        return revision.longs[index];
       }
       // revision did not have key
       return 0;
@@ -93,17 +94,10 @@ public class StatsRevisions implements Serializable
 
     public void set(long val)
     {
-      Revision v = VERSION.get();
-      if (v == null || v == current) {
+      if (!writeLock.isHeldByCurrentThread()) {
         throw new AssertionError("Cannot modify readonly state.");
       }
-      if (index >= v.longs.length) {
-        // grow array
-        long[] newArray = new long[index + 10];
-        System.arraycopy(v.longs, 0, newArray, 0, v.longs.length);
-        v.longs = newArray;
-      }
-      v.longs[index] = val;
+      pending[index] = val;
     }
 
     public void add(long val)
@@ -119,21 +113,48 @@ public class StatsRevisions implements Serializable
 
   }
 
+  /**
+   * @return the last committed revision
+   */
+  public Revision getRevision()
+  {
+    return current;
+  }
+
+  /**
+   * Start a new revision from the last committed values. Concurrent writers are serialized, every checkout has to
+   * be followed by {@link #commit()}.
+   */
   public void checkout()
   {
-    Revision v = new Revision(current);
-    VERSION.set(v);
+    writeLock.lock();
+    long[] longs = current.longs;
+    if (pending.length < size) {
+      pending = new long[size];
+    }
+    System.arraycopy(longs, 0, pending, 0, longs.length);
   }
 
   public void commit()
   {
     //LOG.debug("commit " + this);
-    Revision v = VERSION.get();
-    current = v;
-    VERSION.remove();
+    if (!writeLock.isHeldByCurrentThread()) {
+      throw new AssertionError("Revision not checked out.");
+    }
+    long[] longs = new long[size];
+    System.arraycopy(pending, 0, longs, 0, size);
+    current = new Revision(longs);
+    writeLock.unlock();
+  }
+
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
+  {
+    in.defaultReadObject();
+    pending = new long[0];
+    writeLock = new ReentrantLock();
   }
 
   @SuppressWarnings("unused")
   private static final Logger LOG = LoggerFactory.getLogger(StatsRevisions.class);
-  private static final long serialVersionUID = 201401131642L;
+  private static final long serialVersionUID = 201610190003L;
 }
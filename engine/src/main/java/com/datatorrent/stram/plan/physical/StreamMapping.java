@@ -19,6 +19,7 @@
 package com.datatorrent.stram.plan.physical;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -27,6 +28,7 @@ import java.util.Set;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
@@ -67,6 +69,19 @@ public class StreamMapping implements java.io.Serializable
   final Set<PTOperator> cascadingUnifiers = Sets.newHashSet();
   final Set<PTOperator> slidingUnifiers = Sets.newHashSet();
   private final List<PTOutput> upstream = Lists.newArrayList();
+  /**
+   * Levels of cascading unifiers set at runtime from the unifier stats, -1 while the tree is shaped by
+   * {@link PortContext#UNIFIER_LIMIT}.
+   */
+  int cascadingLevels = -1;
+  /**
+   * Time of the last reshape decision, the next one waits for the cooldown.
+   */
+  long lastReshapeMillis;
+  /**
+   * Reshape dispatched to the master main loop and not applied yet.
+   */
+  transient boolean reshapePending;
 
   public StreamMapping(StreamMeta streamMeta, PhysicalPlan plan)
   {
@@ -141,18 +156,28 @@ public class StreamMapping implements java.io.Serializable
     if (sourceOM.getAttributes().contains(Context.OperatorContext.SLIDE_BY_WINDOW_COUNT)) {
       if (sourceOM.getValue(Context.OperatorContext.SLIDE_BY_WINDOW_COUNT) <
           sourceOM.getValue(Context.OperatorContext.APPLICATION_WINDOW_COUNT)) {
-        plan.undeployOpers.addAll(slidingUnifiers);
+        // retain the sliding unifiers of sources that remain
+        Map<PTOutput, PTOperator> currentSlidingUnifiers = Maps.newHashMap();
+        for (PTOperator slidingUnifier : slidingUnifiers) {
+          currentSlidingUnifiers.put(slidingUnifier.inputs.get(0).source, slidingUnifier);
+        }
         slidingUnifiers.clear();
         List<PTOutput> newUpstream = Lists.newArrayList();
         PTOperator slidingUnifier;
         for (PTOutput source : upstream) {
-          slidingUnifier = StreamMapping.createSlidingUnifier(streamMeta, plan,
-              sourceOM.getValue(Context.OperatorContext.APPLICATION_WINDOW_COUNT),
-              sourceOM.getValue(Context.OperatorContext.SLIDE_BY_WINDOW_COUNT));
-          addInput(slidingUnifier, source, null);
+          slidingUnifier = currentSlidingUnifiers.remove(source);
+          if (slidingUnifier == null) {
+            slidingUnifier = StreamMapping.createSlidingUnifier(streamMeta, plan,
+                sourceOM.getValue(Context.OperatorContext.APPLICATION_WINDOW_COUNT),
+                sourceOM.getValue(Context.OperatorContext.SLIDE_BY_WINDOW_COUNT));
+            addInput(slidingUnifier, source, null);
+            plan.unifierChanges++;
+          }
           this.slidingUnifiers.add(slidingUnifier);
           newUpstream.add(slidingUnifier.outputs.get(0));
         }
+        plan.undeployOpers.addAll(currentSlidingUnifiers.values());
+        plan.unifierChanges += currentSlidingUnifiers.size();
         upstream.clear();
         upstream.addAll(newUpstream);
       } else {
@@ -161,44 +186,99 @@ public class StreamMapping implements java.io.Serializable
     }
   }
 
-  @SuppressWarnings("AssignmentToForLoopParameter")
-  private List<PTOutput> setupCascadingUnifiers(List<PTOutput> upstream, List<PTOperator> pooledUnifiers, int limit, int level)
+  /**
+   * Build a level of the cascading unifier tree. Each level has the same shape as a tree built from scratch, with
+   * (number of sources / limit) unifiers of limit inputs each and the remaining sources passed on to the next level.
+   * Pooled unifiers are assigned to the sources they consumed previously, so that only the part of the tree affected
+   * by a partition change needs to be redeployed.
+   */
+  private List<PTOutput> setupCascadingUnifiers(List<PTOutput> upstream, List<PTOperator> pooledUnifiers,
+      Map<PTOperator, Set<PTOutput>> previousSources, int limit, int level)
   {
-    List<PTOutput> nextLevel = Lists.newArrayList();
-    PTOperator pu = null;
-    for (int i = 0; i < upstream.size(); i++) {
-      if (i % limit == 0) {
-        if (upstream.size() - i < limit) {
-          while (i < upstream.size()) {
-            nextLevel.add(upstream.get(i));
-            i++;
-          }
-          continue;
+    Set<PTOutput> unassigned = Sets.newLinkedHashSet(upstream);
+    List<PTOperator> levelUnifiers = Lists.newArrayList();
+    int numUnifiers = upstream.size() / limit;
+
+    // retain the unifiers with the most sources in common first
+    while (levelUnifiers.size() < numUnifiers) {
+      PTOperator pu = null;
+      Set<PTOutput> retained = Collections.emptySet();
+      for (PTOperator candidate : pooledUnifiers) {
+        Set<PTOutput> common = Sets.newLinkedHashSet(Sets.intersection(previousSources.get(candidate), unassigned));
+        if (common.size() > retained.size()) {
+          pu = candidate;
+          retained = common;
         }
-        if (!pooledUnifiers.isEmpty()) {
-          pu = pooledUnifiers.remove(0);
-        } else {
-          pu = createUnifier(streamMeta, plan);
-        }
-        assert (pu.outputs.size() == 1) : "unifier has single output";
-        nextLevel.addAll(pu.outputs);
-        this.cascadingUnifiers.add(pu);
       }
+      if (pu == null) {
+        break;
+      }
+      pooledUnifiers.remove(pu);
+      levelUnifiers.add(pu);
+      for (PTOutput source : Iterables.limit(retained, limit)) {
+        unassigned.remove(source);
+        addInput(pu, source, null);
+      }
+    }
+
+    // unifiers for the remaining sources
+    while (levelUnifiers.size() < numUnifiers) {
+      PTOperator pu;
+      if (!pooledUnifiers.isEmpty()) {
+        pu = pooledUnifiers.remove(0);
+      } else {
+        pu = createUnifier(streamMeta, plan);
+      }
+      levelUnifiers.add(pu);
+    }
 
-      PTOutput source = upstream.get(i);
-      addInput(pu, source, null);
+    List<PTOutput> nextLevel = Lists.newArrayList();
+    Iterator<PTOutput> it = unassigned.iterator();
+    for (PTOperator pu : levelUnifiers) {
+      assert (pu.outputs.size() == 1) : "unifier has single output";
+      while (pu.inputs.size() < limit) {
+        addInput(pu, it.next(), null);
+        it.remove();
+      }
+      nextLevel.addAll(pu.outputs);
+      this.cascadingUnifiers.add(pu);
     }
+    nextLevel.addAll(unassigned);
 
     if (nextLevel.size() > limit) {
-      return setupCascadingUnifiers(nextLevel, pooledUnifiers, limit, level);
+      return setupCascadingUnifiers(nextLevel, pooledUnifiers, previousSources, limit, level + 1);
     } else {
       return nextLevel;
     }
   }
 
+  private static Set<PTOutput> getSources(PTOperator unifier)
+  {
+    Set<PTOutput> sources = Sets.newHashSet();
+    for (PTInput in : unifier.inputs) {
+      sources.add(in.source);
+    }
+    return sources;
+  }
+
+  /**
+   * Count the unifier as changed when its sources differ from those before the update.
+   * @return whether the unifier was added or its inputs changed
+   */
+  private boolean countChange(PTOperator unifier, Map<PTOperator, Set<PTOutput>> previousSources)
+  {
+    Set<PTOutput> sources = previousSources.get(unifier);
+    if (sources == null || !sources.equals(getSources(unifier))) {
+      plan.unifierChanges++;
+      return true;
+    }
+    return false;
+  }
+
   /**
-   * rebuild the tree, which may cause more changes to execution layer than need be
-   * TODO: investigate incremental logic
+   * Update the unifiers for the current sources. Existing unifiers are retained where their sources did not change,
+   * only unifiers that were rewired are undeployed. The number of unifiers added, removed or rewired is accumulated in
+   * {@link PhysicalPlan#unifierChanges}.
    */
   private void redoMapping()
   {
@@ -218,20 +298,28 @@ public class StreamMapping implements java.io.Serializable
     }
 
     if (!downstreamOpers.isEmpty()) {
-      // unifiers are required
+      // unifiers are required, remember the current inputs to determine what changed
+      Map<PTOperator, Set<PTOutput>> previousSources = Maps.newHashMap();
+      for (Pair<PTOperator, InputPortMeta> doperEntry : downstreamOpers) {
+        PTOperator unifier = doperEntry.first.upstreamMerge.get(doperEntry.second);
+        if (unifier != null) {
+          previousSources.put(unifier, getSources(unifier));
+        }
+      }
       for (PTOperator unifier : this.cascadingUnifiers) {
+        previousSources.put(unifier, getSources(unifier));
         detachUnifier(unifier);
       }
       if (this.finalUnifier != null) {
+        previousSources.put(finalUnifier, getSources(finalUnifier));
         detachUnifier(finalUnifier);
       }
 
       List<PTOperator> currentUnifiers = Lists.newArrayList(this.cascadingUnifiers);
       this.cascadingUnifiers.clear();
-      plan.undeployOpers.addAll(currentUnifiers);
       addSlidingUnifiers();
 
-      int limit = streamMeta.getSource().getValue(PortContext.UNIFIER_LIMIT);
+      int limit = getUnifierLimit();
 
       boolean separateUnifiers = false;
       Integer lastId = null;
@@ -252,19 +340,28 @@ public class StreamMapping implements java.io.Serializable
       if (limit > 1 && this.upstream.size() > limit) {
         // cascading unifier
         if (!separateUnifiers) {
-          unifierSources = setupCascadingUnifiers(this.upstream, currentUnifiers, limit, 0);
+          unifierSources = setupCascadingUnifiers(this.upstream, currentUnifiers, previousSources, limit, 0);
         } else {
           for (InputPortMeta ipm : streamMeta.getSinks()) {
             StreamCodec<?> streamCodecInfo = StreamingContainerAgent.getStreamCodec(ipm);
             if (!cascadeUnifierSourcesMap.containsKey(streamCodecInfo)) {
-              unifierSources = setupCascadingUnifiers(this.upstream, currentUnifiers, limit, 0);
+              unifierSources = setupCascadingUnifiers(this.upstream, currentUnifiers, previousSources, limit, 0);
               cascadeUnifierSourcesMap.put(streamCodecInfo, unifierSources);
             }
           }
         }
       }
 
+      // redeploy rewired unifiers, unchanged parts of the tree remain deployed
+      for (PTOperator unifier : this.cascadingUnifiers) {
+        if (countChange(unifier, previousSources) && previousSources.containsKey(unifier)) {
+          plan.undeployOpers.add(unifier);
+        }
+      }
+
       // remove remaining unifiers
+      plan.undeployOpers.addAll(currentUnifiers);
+      plan.unifierChanges += currentUnifiers.size();
       for (PTOperator oper : currentUnifiers) {
         plan.removePTOperator(oper);
       }
@@ -330,12 +427,14 @@ public class StreamMapping implements java.io.Serializable
             for (PTOutput out : doperUnifierSources) {
               addInput(unifier, out, (pks == null) || (pks.mask == 0) ? null : pks);
             }
+            countChange(unifier, previousSources);
           }
         } else {
           // no partitioning
           PTOperator unifier = doperEntry.first.upstreamMerge.remove(doperEntry.second);
           if (unifier != null) {
             plan.removePTOperator(unifier);
+            plan.unifierChanges++;
           }
           setInput(doperEntry.first, doperEntry.second, upstream.get(0).source, pks);
         }
@@ -345,13 +444,140 @@ public class StreamMapping implements java.io.Serializable
       // Unattached final unifier is from
       // 1) Upstream operator partitions are scaled down to one. (no unifier needed)
       // 2) Downstream operators partitions are scaled up from one to multiple. (replaced by merged unifier)
-      if (finalUnifier != null && finalUnifier.inputs.isEmpty()) {
-        plan.removePTOperator(finalUnifier);
-        finalUnifier = null;
+      if (finalUnifier != null) {
+        if (finalUnifier.inputs.isEmpty()) {
+          plan.removePTOperator(finalUnifier);
+          plan.unifierChanges++;
+          finalUnifier = null;
+        } else {
+          countChange(finalUnifier, previousSources);
+        }
+      }
+
+    }
+
+  }
+
+  private int getUnifierLimit()
+  {
+    if (cascadingLevels < 0) {
+      return streamMeta.getSource().getValue(PortContext.UNIFIER_LIMIT);
+    }
+    return getLimit(upstream.size(), cascadingLevels);
+  }
+
+  /**
+   * @return number of levels of cascading unifiers below the final unifiers
+   */
+  int getCascadingLevels()
+  {
+    return getLevels(upstream.size(), getUnifierLimit());
+  }
+
+  /**
+   * @return number of levels of cascading unifiers below the final unifiers for the given fan-in limit
+   */
+  static int getLevels(int sources, int limit)
+  {
+    int levels = 0;
+    if (limit > 1) {
+      while (sources > limit) {
+        sources = sources / limit + sources % limit;
+        levels++;
       }
+    }
+    return levels;
+  }
 
+  /**
+   * @return the smallest fan-in limit that unifies the sources within the given number of cascading levels
+   */
+  static int getLimit(int sources, int levels)
+  {
+    if (levels == 0) {
+      return Integer.MAX_VALUE;
     }
+    int limit = Math.max(2, (int)Math.pow(sources, 1.0 / (levels + 1)));
+    while (getLevels(sources, limit) > levels) {
+      limit++;
+    }
+    while (limit > 2 && getLevels(sources, limit - 1) <= levels) {
+      limit--;
+    }
+    return limit;
+  }
 
+  /**
+   * Decide the number of cascading levels from the stats of the unifiers of the stream. A level is added when one of
+   * the unifiers is saturated, by CPU or by the backlog in its input queues, and a level is collapsed when all of them
+   * are idle. The decision is deferred until all unifiers are active, which includes those of a previous change.
+   * <p>
+   * A level is collapsed only if the busiest unifier, scaled by the growth of the fan-in, stays below saturation, so
+   * that the collapse does not call for the level again right away.
+   *
+   * @param saturatedCpu fraction of a core above which a unifier is saturated
+   * @param idleCpu fraction of a core below which a unifier is idle
+   * @param saturatedQueueSize average input queue size at which a unifier is saturated
+   * @return the new number of levels or the current number when the tree should keep its shape
+   */
+  int adaptCascadingLevels(double saturatedCpu, double idleCpu, long saturatedQueueSize)
+  {
+    int levels = getCascadingLevels();
+    Set<PTOperator> unifiers = Sets.newHashSet(cascadingUnifiers);
+    if (finalUnifier != null) {
+      unifiers.add(finalUnifier);
+    }
+    for (InputPortMeta ipm : streamMeta.getSinks()) {
+      if (!ipm.getValue(PortContext.PARTITION_PARALLEL) && plan.hasMapping(ipm.getOperatorWrapper())) {
+        for (PTOperator doper : plan.getOperators(ipm.getOperatorWrapper())) {
+          PTOperator unifier = doper.upstreamMerge.get(ipm);
+          if (unifier != null) {
+            unifiers.add(unifier);
+          }
+        }
+      }
+    }
+    if (unifiers.isEmpty()) {
+      return levels;
+    }
+
+    boolean saturated = false;
+    boolean idle = true;
+    double maxCpu = 0;
+    for (PTOperator unifier : unifiers) {
+      if (unifier.getState() != PTOperator.State.ACTIVE) {
+        return levels;
+      }
+      double cpu = unifier.stats.cpuNanosPMSMA.getAvg() / 1000000.0;
+      maxCpu = Math.max(maxCpu, cpu);
+      long queueSize = 0;
+      for (OperatorStatus.PortStatus ps : unifier.stats.inputPortStatusList.values()) {
+        queueSize = Math.max(queueSize, ps.queueSizeMA.getAvg());
+      }
+      if (cpu >= saturatedCpu || queueSize >= saturatedQueueSize) {
+        saturated = true;
+      }
+      if (cpu >= idleCpu || queueSize >= saturatedQueueSize) {
+        idle = false;
+      }
+    }
+
+    if (saturated) {
+      if (getLevels(upstream.size(), 2) > levels) {
+        LOG.debug("Adding cascading unifier level for {} with {} levels", streamMeta, levels);
+        return levels + 1;
+      }
+    } else if (idle && levels > 0) {
+      int sources = upstream.size();
+      double expectedCpu = maxCpu * Math.min(getLimit(sources, levels - 1), sources) /
+          Math.min(getUnifierLimit(), sources);
+      if (expectedCpu < saturatedCpu) {
+        LOG.debug("Collapsing cascading unifier level for {} with {} levels", streamMeta, levels);
+        return levels - 1;
+      }
+      LOG.debug("Keeping cascading unifier level for {}, expected CPU {} after collapse", streamMeta, expectedCpu);
+    }
+    return levels;
   }
 
   private void setInput(PTOperator oper, InputPortMeta ipm, PTOperator sourceOper, PartitionKeys pks)
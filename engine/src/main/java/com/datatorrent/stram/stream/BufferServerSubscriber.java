@@ -18,6 +18,8 @@
  */
 package com.datatorrent.stram.stream;
 
+import java.io.File;
+import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.util.ArrayDeque;
 import java.util.HashMap;
@@ -31,6 +33,7 @@ import com.datatorrent.api.Sink;
 import com.datatorrent.api.StreamCodec;
 import com.datatorrent.bufferserver.client.Subscriber;
 import com.datatorrent.bufferserver.util.Codec;
+import com.datatorrent.bufferserver.util.SharedMemoryRing;
 import com.datatorrent.netlet.EventLoop;
 import com.datatorrent.netlet.util.CircularBuffer;
 import com.datatorrent.netlet.util.Slice;
@@ -98,7 +101,28 @@ public class BufferServerSubscriber extends Subscriber implements ByteCounterStr
     eventloop.connect(address.isUnresolved() ? new InetSocketAddress(address.getHostName(), address.getPort()) : address, this);
 
     logger.debug("Registering subscriber: id={} upstreamId={} streamLogicalName={} windowId={} mask={} partitions={} server={}", new Object[] {context.getSinkId(), context.getSourceId(), context.getId(), Codec.getStringWindowId(context.getFinishedWindowId()), context.getPartitionMask(), context.getPartitions(), context.getBufferServerAddress()});
-    activate(null, context.getId() + '/' + context.getSinkId(), context.getSourceId(), context.getPartitionMask(), context.getPartitions(), context.getFinishedWindowId(), freeFragments.capacity());
+    activate(null, context.getId() + '/' + context.getSinkId(), context.getSourceId(), context.getPartitionMask(), context.getPartitions(), context.getFinishedWindowId(), freeFragments.capacity(), createSharedMemoryRing(context), eventloop);
+  }
+
+  /**
+   * Create the ring through which the buffer server on the same host delivers the stream.
+   *
+   * @param context context of the stream
+   * @return the ring or null if the stream is delivered through the socket
+   */
+  protected SharedMemoryRing createSharedMemoryRing(StreamContext context)
+  {
+    String dir = context.get(StreamContext.SHARED_MEMORY_DIR);
+    if (dir == null) {
+      return null;
+    }
+
+    try {
+      return SharedMemoryRing.create(File.createTempFile("apex-", ".ring", new File(dir)), SharedMemoryRing.DEFAULT_CAPACITY);
+    } catch (IOException ex) {
+      logger.warn("Subscribing through the socket, cannot create shared memory ring in {}", dir, ex);
+      return null;
+    }
   }
 
   @Override
@@ -0,0 +1,82 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.stram.stream;
+
+import com.datatorrent.api.Operator.Combiner;
+import com.datatorrent.api.Sink;
+import com.datatorrent.stram.tuple.Tuple;
+
+/**
+ * Sink that accumulates the data tuples with the combiner of the unifier and emits the result of the aggregate
+ * before the next control tuple, typically the end window, see
+ * {@link com.datatorrent.api.Context.PortContext#UNIFIER_PRE_AGGREGATE}.
+ * <p>
+ * The aggregate does not span windows, so it is not part of the checkpointed state.
+ *
+ * @param <T> type of the tuple
+ * @param <A> type of the aggregate
+ */
+public class CombinerSink<T, A> implements Sink<Object>
+{
+  private final Combiner<T, A> combiner;
+  private final Sink<Object> output;
+  private A aggregate;
+  private int count;
+
+  public CombinerSink(Combiner<T, A> combiner, Sink<Object> output)
+  {
+    this.combiner = combiner;
+    this.output = output;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public void put(Object payload)
+  {
+    count++;
+    if (payload instanceof Tuple) {
+      if (aggregate != null) {
+        T result = combiner.getResult(aggregate);
+        aggregate = null;
+        if (result != null) {
+          output.put(result);
+        }
+      }
+      output.put(payload);
+    } else {
+      if (aggregate == null) {
+        aggregate = combiner.createAggregate();
+      }
+      aggregate = combiner.accumulate(aggregate, (T)payload);
+    }
+  }
+
+  @Override
+  public int getCount(boolean reset)
+  {
+    try {
+      return count;
+    } finally {
+      if (reset) {
+        count = 0;
+      }
+    }
+  }
+
+}
@@ -20,6 +20,10 @@ package com.datatorrent.stram.util;
 
 /**
  * Moving average calculations.
+ * <p>
+ * The samples are kept in primitive ring buffers. The average is computed when a sample is added and published
+ * through a volatile field, so that readers like the web services and stats listeners do not lock and do not
+ * iterate over the samples.
  *
  * @since 0.9.1
  */
@@ -32,6 +36,8 @@ public class MovingAverage
     private final long[] values;
     private int index = 0;
     private boolean filled = false;
+    private long sum;
+    private volatile long avg;
 
     public MovingAverageLong(int periods)
     {
@@ -41,25 +47,18 @@ public class MovingAverage
 
     public synchronized void add(long val)
     {
+      sum += val - values[index];
       values[index++] = val;
       if (index == periods) {
         filled = true;
       }
       index %= periods;
+      avg = filled ? sum / periods : sum / index;
     }
 
-    public synchronized long getAvg()
+    public long getAvg()
     {
-      long sum = 0;
-      for (int i = 0; i < periods; i++) {
-        sum += values[i];
-      }
-
-      if (!filled) {
-        return index == 0 ? 0 : sum / index;
-      } else {
-        return sum / periods;
-      }
+      return avg;
     }
   }
 
@@ -71,6 +70,7 @@ public class MovingAverage
     private final double[] values;
     private int index = 0;
     private boolean filled = false;
+    private volatile double avg;
 
     public MovingAverageDouble(int periods)
     {
@@ -85,20 +85,18 @@ public class MovingAverage
         filled = true;
       }
       index %= periods;
-    }
 
-    public synchronized double getAvg()
-    {
+      // summed again to not accumulate rounding errors
       double sum = 0;
       for (int i = 0; i < periods; i++) {
         sum += values[i];
       }
+      avg = filled ? sum / periods : sum / index;
+    }
 
-      if (!filled) {
-        return index == 0 ? 0 : sum / index;
-      } else {
-        return sum / periods;
-      }
+    public double getAvg()
+    {
+      return avg;
     }
   }
 
@@ -110,6 +108,7 @@ public class MovingAverage
     private final long[] timeIntervals;
     private int index = 0;
     private final long baseTimeInterval;
+    private volatile double avg;
 
     public TimedMovingAverageLong(int samples, long baseTimeInterval)
     {
@@ -125,10 +124,7 @@ public class MovingAverage
       timeIntervals[index] = time;
       index++;
       index %= periods;
-    }
 
-    public synchronized double getAvg()
-    {
       long sumValues = 0;
       long sumTimeIntervals = 0;
       int i = index;
@@ -148,11 +144,16 @@ public class MovingAverage
       }
 
       if (sumTimeIntervals == 0) {
-        return 0;
+        avg = 0;
       } else {
-        return ((double)sumValues) / sumTimeIntervals;
+        avg = ((double)sumValues) / sumTimeIntervals;
       }
     }
+
+    public double getAvg()
+    {
+      return avg;
+    }
   }
 
 }
@@ -0,0 +1,124 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.stram;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileContext;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.local.RawLocalFs;
+
+import com.datatorrent.stram.support.StramTestSupport.TestMeta;
+
+public class CheckpointManifestTest
+{
+  @Rule
+  public final TestMeta testMeta = new TestMeta();
+
+  private CheckpointManifest newManifest() throws Exception
+  {
+    FileContext fc = FileContext.getLocalFSFileContext();
+    return new CheckpointManifest(fc, new Path(fc.getWorkingDirectory(), testMeta.getPath()));
+  }
+
+  @Test
+  public void testAddRemoveAndReload() throws Exception
+  {
+    CheckpointManifest manifest = newManifest();
+    Assert.assertFalse("no manifest", manifest.load());
+
+    Map<Integer, long[]> checkpoints = new HashMap<>();
+    checkpoints.put(1, new long[] {10, 20});
+    manifest.reset(checkpoints);
+
+    manifest.add(1, 30);
+    manifest.add(2, 5);
+    manifest.remove(1, 10);
+    Assert.assertTrue("flushed", manifest.flush());
+    manifest.close();
+
+    Assert.assertArrayEquals(new long[] {20, 30}, manifest.getWindowIds(1));
+
+    CheckpointManifest restored = newManifest();
+    Assert.assertTrue("manifest loaded", restored.load());
+    Assert.assertArrayEquals(new long[] {20, 30}, restored.getWindowIds(1));
+    Assert.assertArrayEquals(new long[] {5}, restored.getWindowIds(2));
+    Assert.assertNull("unknown operator", restored.getWindowIds(3));
+  }
+
+  @Test
+  public void testCrashAndReopen() throws Exception
+  {
+    // the checksummed local file system buffers until close, the raw one makes hflush visible like HDFS does
+    Configuration conf = new Configuration(false);
+    conf.set("fs.AbstractFileSystem.file.impl", RawLocalFs.class.getName());
+    FileContext fc = FileContext.getLocalFSFileContext(conf);
+    Path dir = new Path(fc.getWorkingDirectory(), testMeta.getPath());
+
+    CheckpointManifest manifest = new CheckpointManifest(fc, dir);
+    Map<Integer, long[]> checkpoints = new HashMap<>();
+    checkpoints.put(1, new long[] {10});
+    manifest.reset(checkpoints);
+
+    // additions recorded after the last purge, flushed with the heartbeat but never closed
+    manifest.add(1, 20);
+    manifest.add(2, 5);
+    Assert.assertTrue("flushed", manifest.flush());
+    // not flushed when the master goes down
+    manifest.add(1, 30);
+
+    CheckpointManifest restored = new CheckpointManifest(fc, dir);
+    Assert.assertTrue("manifest loaded", restored.load());
+    Assert.assertArrayEquals(new long[] {10, 20}, restored.getWindowIds(1));
+    Assert.assertArrayEquals(new long[] {5}, restored.getWindowIds(2));
+    manifest.close();
+  }
+
+  @Test
+  public void testCompaction() throws Exception
+  {
+    CheckpointManifest manifest = newManifest();
+    manifest.reset(Collections.<Integer, long[]>emptyMap());
+    for (int i = 0; i < 2000; i++) {
+      manifest.add(1, i);
+      if (i > 0) {
+        manifest.remove(1, i - 1);
+      }
+    }
+    manifest.flush();
+    manifest.compact();
+    manifest.close();
+
+    Path file = new Path(new Path(FileContext.getLocalFSFileContext().getWorkingDirectory(), testMeta.getPath()),
+        CheckpointManifest.FILE_MANIFEST);
+    Assert.assertEquals("compacted size", 8 + 13, FileContext.getLocalFSFileContext().getFileStatus(file).getLen());
+
+    CheckpointManifest restored = newManifest();
+    Assert.assertTrue("manifest loaded", restored.load());
+    Assert.assertArrayEquals(new long[] {1999}, restored.getWindowIds(1));
+  }
+
+}
@@ -0,0 +1,95 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.stram;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+
+import org.apache.commons.io.FileUtils;
+
+import com.datatorrent.stram.api.StramEvent;
+import com.datatorrent.stram.support.StramTestSupport.TestMeta;
+
+public class FSEventRecorderTest
+{
+  @Rule
+  public TestMeta testMeta = new TestMeta();
+
+  @Test
+  public void testQueuedEventsWrittenOnTeardown() throws Exception
+  {
+    FSEventRecorder recorder = new FSEventRecorder("testApp");
+    recorder.setBasePath(testMeta.getAbsolutePath());
+    recorder.setup();
+    for (int i = 0; i < 5000; i++) {
+      recorder.recordEventAsync(new StramEvent.CreateOperatorEvent("o" + i, i));
+    }
+    recorder.teardown();
+
+    Assert.assertEquals("dropped", 0, recorder.getDroppedCount());
+    Assert.assertEquals("recorded", 5000, countEvents());
+  }
+
+  @Test
+  public void testBoundedQueue() throws Exception
+  {
+    FSEventRecorder recorder = new FSEventRecorder("testApp");
+    recorder.setBasePath(testMeta.getAbsolutePath());
+    recorder.setQueueCapacity(1);
+    recorder.setup();
+    for (int i = 0; i < 5000; i++) {
+      recorder.recordEventAsync(new StramEvent.CreateOperatorEvent("o" + i, i));
+    }
+    recorder.teardown();
+
+    Assert.assertEquals("recorded + dropped", 5000, countEvents() + recorder.getDroppedCount());
+  }
+
+  @Test
+  public void testEventsBeforeSetup() throws Exception
+  {
+    FSEventRecorder recorder = new FSEventRecorder("testApp");
+    recorder.setBasePath(testMeta.getAbsolutePath());
+    recorder.recordEventAsync(new StramEvent.CreateOperatorEvent("o1", 1));
+    recorder.setup();
+    recorder.recordEventAsync(new StramEvent.CreateOperatorEvent("o2", 2));
+    recorder.teardown();
+    Assert.assertEquals("recorded", 2, countEvents());
+
+    // teardown without setup
+    recorder = new FSEventRecorder("testApp");
+    recorder.recordEventAsync(new StramEvent.CreateOperatorEvent("o1", 1));
+    recorder.teardown();
+  }
+
+  private int countEvents() throws IOException
+  {
+    int count = 0;
+    for (File f : new File(testMeta.getAbsolutePath()).listFiles()) {
+      if (f.getName().startsWith("part")) {
+        count += FileUtils.readLines(f, "UTF-8").size();
+      }
+    }
+    return count;
+  }
+}
@@ -90,6 +90,17 @@ public class StramLocalClusterTest
    */
   @Test
   public void testLocalClusterInitShutdown() throws Exception
+  {
+    testLocalClusterInitShutdown(false);
+  }
+
+  @Test
+  public void testLocalClusterInitShutdownWithControlChannel() throws Exception
+  {
+    testLocalClusterInitShutdown(true);
+  }
+
+  private void testLocalClusterInitShutdown(boolean controlChannel) throws Exception
   {
     TestGeneratorInputOperator genNode = dag.addOperator("genNode", TestGeneratorInputOperator.class);
     genNode.setMaxTuples(2);
@@ -108,6 +119,7 @@ public class StramLocalClusterTest
     dag.addStream("fromNode1", node1.outport1, outNode.inport);
 
     dag.getAttributes().put(LogicalPlan.CONTAINERS_MAX_COUNT, 2);
+    dag.getAttributes().put(LogicalPlan.CONTAINER_CONTROL_CHANNEL, controlChannel);
 
     StramLocalCluster localCluster = new StramLocalCluster(dag);
     localCluster.setHeartbeatMonitoringEnabled(false);
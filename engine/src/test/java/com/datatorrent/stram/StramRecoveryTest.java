@@ -30,6 +30,7 @@ import java.lang.reflect.Field;
 import java.net.InetSocketAddress;
 import java.net.URI;
 import java.util.List;
+import java.util.concurrent.Future;
 import java.util.concurrent.FutureTask;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -54,6 +55,7 @@ import org.apache.hadoop.test.MockitoUtil;
 import com.google.common.collect.Lists;
 
 import com.datatorrent.api.Context.OperatorContext;
+import com.datatorrent.api.Stats;
 import com.datatorrent.api.StatsListener;
 import com.datatorrent.api.StorageAgent;
 import com.datatorrent.common.util.AsyncFSStorageAgent;
@@ -107,6 +109,9 @@ public class StramRecoveryTest
     TestPlanContext ctx = new TestPlanContext();
     dag.setAttribute(OperatorContext.STORAGE_AGENT, agent);
     PhysicalPlan plan = new PhysicalPlan(dag, ctx);
+    for (PTOperator o : plan.getAllOperators().values()) {
+      o.stats.lastMaxEndWindowTimestamp = 1000;
+    }
 
     ByteArrayOutputStream  bos = new ByteArrayOutputStream();
     LogicalPlan.write(dag, bos);
@@ -136,6 +141,7 @@ public class StramRecoveryTest
       PartitioningTestOperator partitionedInstance = (PartitioningTestOperator)plan.loadOperator(o);
       assertEquals("instance per partition", o.getPartitionKeys().values().toString(), partitionedInstance.pks);
       Assert.assertNotNull("partition stats null " + o, o.stats);
+      assertEquals("end window timestamp unset " + o, Stats.INVALID_TIME_MILLIS, o.stats.lastMaxEndWindowTimestamp);
     }
 
   }
@@ -152,6 +158,95 @@ public class StramRecoveryTest
     testPhysicalPlanSerialization(new AsyncFSStorageAgent(testMeta.getPath(), null));
   }
 
+  @Test
+  public void testJournalCompaction() throws Exception
+  {
+    dag.setAttribute(LogicalPlan.JOURNAL_COMPACTION_SIZE, 0L);
+    dag.setAttribute(OperatorContext.STORAGE_AGENT, new FSStorageAgent(testMeta.getPath(), null));
+    dag.addOperator("o1", GenericTestOperator.class);
+    FSRecoveryHandler recoveryHandler = new FSRecoveryHandler(dag.assertAppPath(), new Configuration(false));
+    StreamingContainerManager scm = StreamingContainerManager.getInstance(recoveryHandler, dag, false);
+    PTOperator o1p1 = scm.getPhysicalPlan().getAllOperators().values().iterator().next();
+    o1p1.getContainer().setExternalId("cid1");
+    scm.writeJournal(o1p1.getContainer().getSetContainerState());
+    Assert.assertTrue("journal written", scm.getJournal().getSize() > 0);
+
+    scm.monitorHeartbeat();
+    assertEquals("journal compacted", 0, scm.getJournal().getSize());
+    // waits for the snapshot
+    scm.teardown();
+
+    scm = StreamingContainerManager.getInstance(new FSRecoveryHandler(dag.assertAppPath(), new Configuration(false)), dag, false);
+    o1p1 = scm.getPhysicalPlan().getAllOperators().values().iterator().next();
+    assertEquals("restored from snapshot", "cid1", o1p1.getContainer().getExternalId());
+  }
+
+  @Test
+  public void testJournalCompactionRetry() throws Exception
+  {
+    dag.setAttribute(LogicalPlan.JOURNAL_COMPACTION_SIZE, 0L);
+    dag.setAttribute(OperatorContext.STORAGE_AGENT, new FSStorageAgent(testMeta.getPath(), null));
+    dag.addOperator("o1", GenericTestOperator.class);
+    final MutableInt saveCount = new MutableInt();
+    FSRecoveryHandler recoveryHandler = new FSRecoveryHandler(dag.assertAppPath(), new Configuration(false))
+    {
+      @Override
+      public void saveSnapshot(byte[] snapshot) throws IOException
+      {
+        saveCount.increment();
+        if (saveCount.intValue() == 1) {
+          throw new IOException("Simulated failure");
+        }
+        super.saveSnapshot(snapshot);
+      }
+    };
+    final StreamingContainerManager scm = StreamingContainerManager.getInstance(recoveryHandler, dag, false);
+    PTOperator o1p1 = scm.getPhysicalPlan().getAllOperators().values().iterator().next();
+    o1p1.getContainer().setExternalId("cid1");
+    scm.writeJournal(o1p1.getContainer().getSetContainerState());
+
+    // the failed save does not stop the monitor and is retried
+    StramTestSupport.WaitCondition c = new StramTestSupport.WaitCondition()
+    {
+      @Override
+      public boolean isComplete()
+      {
+        scm.monitorHeartbeat();
+        return saveCount.intValue() > 1;
+      }
+    };
+    Assert.assertTrue("snapshot saved after failure", StramTestSupport.awaitCompletion(c, 5000));
+    scm.teardown();
+
+    StreamingContainerManager restored = StreamingContainerManager.getInstance(
+        new FSRecoveryHandler(dag.assertAppPath(), new Configuration(false)), dag, false);
+    o1p1 = restored.getPhysicalPlan().getAllOperators().values().iterator().next();
+    assertEquals("restored from snapshot", "cid1", o1p1.getContainer().getExternalId());
+  }
+
+  @Test
+  public void testSnapshotFormat() throws Exception
+  {
+    FSRecoveryHandler recoveryHandler = new FSRecoveryHandler(testMeta.getPath(), new Configuration(false));
+    List<String> state = Lists.newArrayList("a", "b");
+    recoveryHandler.save(state);
+    assertEquals("restored", state, recoveryHandler.restore());
+
+    byte[] snapshot = recoveryHandler.serialize(state);
+    DataInputStream dis = new DataInputStream(new ByteArrayInputStream(snapshot));
+    assertEquals("magic", FSRecoveryHandler.SNAPSHOT_MAGIC, dis.readInt());
+    assertEquals("version", FSRecoveryHandler.SNAPSHOT_VERSION, dis.readInt());
+    recoveryHandler.saveSnapshot(snapshot);
+    assertEquals("restored serialized", state, recoveryHandler.restore());
+
+    // snapshot written by previous version
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    try (ObjectOutputStream oos = new ObjectOutputStream(bos)) {
+      oos.writeObject(state);
+    }
+    assertEquals("legacy snapshot", state, FSRecoveryHandler.readSnapshot(new ByteArrayInputStream(bos.toByteArray())));
+  }
+
   public static class StatsListeningOperator extends TestGeneratorInputOperator implements StatsListener
   {
     int processStatsCnt = 0;
@@ -451,6 +546,43 @@ public class StramRecoveryTest
 
   }
 
+  @Test
+  public void testJournalGroupCommit() throws Exception
+  {
+    final MutableInt flushCount = new MutableInt();
+    dag.setAttribute(OperatorContext.STORAGE_AGENT, new FSStorageAgent(testMeta.getPath(), null));
+    dag.setAttribute(LogicalPlan.JOURNAL_FLUSH_DELAY_MILLIS, 100L);
+    dag.addOperator("o1", GenericTestOperator.class);
+    StreamingContainerManager scm = new StreamingContainerManager(dag);
+    Journal j = scm.getJournal();
+    ByteArrayOutputStream bos = new ByteArrayOutputStream()
+    {
+      @Override
+      public void flush() throws IOException
+      {
+        super.flush();
+        flushCount.increment();
+      }
+    };
+    j.setOutputStream(new DataOutputStream(bos));
+
+    PTContainer c1 = scm.getPhysicalPlan().getContainers().get(0);
+    List<Future<Void>> futures = Lists.newArrayList();
+    for (int i = 0; i < 10; i++) {
+      c1.setAllocatedMemoryMB(i);
+      futures.add(j.writeAsync(c1.getSetContainerState()));
+    }
+    for (Future<Void> f : futures) {
+      f.get();
+    }
+    assertEquals("operations flushed together", 1, flushCount.intValue());
+
+    c1.setAllocatedMemoryMB(100);
+    j.replay(new DataInputStream(new ByteArrayInputStream(bos.toByteArray())));
+    assertEquals("last operation replayed", 9, c1.getAllocatedMemoryMB());
+    scm.teardown();
+  }
+
   @Test
   public void testRestartAppWithSyncAgent() throws Exception
   {
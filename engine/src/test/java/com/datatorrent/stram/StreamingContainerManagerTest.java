@@ -27,13 +27,19 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 
 import org.codehaus.jettison.json.JSONObject;
 import org.eclipse.jetty.websocket.WebSocket;
 import org.junit.Assert;
 import org.junit.Before;
+import org.junit.Ignore;
 import org.junit.Rule;
 import org.junit.Test;
 import org.slf4j.Logger;
@@ -42,6 +48,7 @@ import org.slf4j.LoggerFactory;
 import org.apache.commons.lang.StringUtils;
 import org.apache.hadoop.io.DataInputByteBuffer;
 import org.apache.hadoop.io.DataOutputByteBuffer;
+import org.apache.hadoop.yarn.util.Clock;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
@@ -54,11 +61,14 @@ import com.datatorrent.api.DAG.Locality;
 import com.datatorrent.api.Stats.OperatorStats;
 import com.datatorrent.api.Stats.OperatorStats.PortStats;
 import com.datatorrent.api.StatsListener;
+import com.datatorrent.api.StorageAgent;
 import com.datatorrent.api.annotation.Stateless;
 import com.datatorrent.common.metric.AutoMetricBuiltInTransport;
 import com.datatorrent.common.partitioner.StatelessPartitioner;
 import com.datatorrent.common.util.AsyncFSStorageAgent;
 import com.datatorrent.common.util.FSStorageAgent;
+import com.datatorrent.netlet.AbstractLengthPrependerClient;
+import com.datatorrent.netlet.DefaultEventLoop;
 import com.datatorrent.stram.MockContainer.MockOperatorStats;
 import com.datatorrent.stram.StreamingContainerAgent.ContainerStartRequest;
 import com.datatorrent.stram.StreamingContainerManager.ContainerResource;
@@ -68,6 +78,7 @@ import com.datatorrent.stram.api.ContainerContext;
 import com.datatorrent.stram.api.OperatorDeployInfo;
 import com.datatorrent.stram.api.OperatorDeployInfo.InputDeployInfo;
 import com.datatorrent.stram.api.OperatorDeployInfo.OutputDeployInfo;
+import com.datatorrent.stram.api.StramToNodeStartRecordingRequest;
 import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.ContainerHeartbeat;
 import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.ContainerHeartbeatResponse;
 import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.ContainerStats;
@@ -508,6 +519,84 @@ public class StreamingContainerManagerTest
     }
   }
 
+  @Test
+  public void testUpdateCheckpointsOnChange() throws Exception
+  {
+    GenericTestOperator o1 = dag.addOperator("o1", GenericTestOperator.class);
+    GenericTestOperator o2 = dag.addOperator("o2", GenericTestOperator.class);
+    dag.addStream("o1.outport1", o1.outport1, o2.inport1);
+    dag.setAttribute(LogicalPlan.CONTAINERS_MAX_COUNT, 1);
+    dag.setAttribute(OperatorContext.STORAGE_AGENT, new MemoryStorageAgent());
+    dag.setOperatorAttribute(o1, OperatorContext.TIMEOUT_WINDOW_COUNT, 2);
+    dag.setOperatorAttribute(o2, OperatorContext.TIMEOUT_WINDOW_COUNT, 2);
+
+    final long[] time = new long[] {1000};
+    StreamingContainerManager scm = new StreamingContainerManager(dag, new Clock()
+    {
+      @Override
+      public long getTime()
+      {
+        return time[0];
+      }
+    });
+    PhysicalPlan plan = scm.getPhysicalPlan();
+    PTOperator o1p1 = plan.getOperators(dag.getMeta(o1)).get(0);
+    PTOperator o2p1 = plan.getOperators(dag.getMeta(o2)).get(0);
+    StorageAgent storageAgent = o1p1.getOperatorMeta().getValue(OperatorContext.STORAGE_AGENT);
+    for (PTOperator oper : plan.getAllOperators().values()) {
+      for (long windowId = 1; windowId <= 2; windowId++) {
+        storageAgent.save(oper.getName(), oper.getId(), windowId);
+      }
+    }
+
+    MockContainer mc = new MockContainer(scm, o1p1.getContainer());
+    mc.deploy();
+    mc.stats(o1p1.getId()).deployState(DeployState.ACTIVE).currentWindowId(1).checkpointWindowId(1);
+    mc.stats(o2p1.getId()).deployState(DeployState.ACTIVE).currentWindowId(1).checkpointWindowId(1);
+    mc.sendHeartbeat();
+    // a moved recovery checkpoint is seen by upstream operators in the next pass
+    scm.monitorHeartbeat();
+    scm.monitorHeartbeat();
+    Assert.assertEquals("committed window", 1, scm.getCommittedWindowId());
+
+    // no checkpoint reported, the traversal is skipped
+    time[0] += 100;
+    mc.sendHeartbeat();
+    scm.monitorHeartbeat();
+    Assert.assertEquals("committed window", 1, scm.getCommittedWindowId());
+
+    // (a) a checkpoint that arrives after skipped passes moves the committed window and purges older checkpoints
+    time[0] += 100;
+    mc.stats(o1p1.getId()).currentWindowId(2).checkpointWindowId(2);
+    mc.stats(o2p1.getId()).currentWindowId(2).checkpointWindowId(2);
+    mc.sendHeartbeat();
+    scm.monitorHeartbeat();
+    scm.monitorHeartbeat();
+    Assert.assertEquals("committed window", 2, scm.getCommittedWindowId());
+    for (PTOperator oper : plan.getAllOperators().values()) {
+      Assert.assertEquals("checkpoints " + oper, Lists.newArrayList(new Checkpoint(2, 0, 0)), oper.checkpoints);
+      long endTms = System.currentTimeMillis() + 10000;
+      while (storageAgent.load(oper.getId(), 1) != null && System.currentTimeMillis() < endTms) {
+        Thread.sleep(10);
+      }
+      Assert.assertNull("purged checkpoint " + oper, storageAgent.load(oper.getId(), 1));
+      Assert.assertNotNull("recovery checkpoint " + oper, storageAgent.load(oper.getId(), 2));
+    }
+
+    // (b) operators that stop moving their window are detected as blocked although no checkpoint changed
+    time[0] += 100;
+    mc.sendHeartbeat();
+    scm.monitorHeartbeat();
+    Assert.assertTrue("no stop request " + scm.containerStopRequests, scm.containerStopRequests.isEmpty());
+
+    time[0] += o2p1.stats.windowProcessingTimeoutMillis;
+    mc.sendHeartbeat();
+    scm.monitorHeartbeat();
+    Assert.assertEquals("committed window", 2, scm.getCommittedWindowId());
+    Assert.assertTrue("stop request for blocked operators " + scm.containerStopRequests,
+        scm.containerStopRequests.containsKey(o2p1.getContainer().getExternalId()));
+  }
+
   @Test
   public void testProcessHeartbeat() throws Exception
   {
@@ -595,6 +684,72 @@ public class StreamingContainerManagerTest
 
   }
 
+  /**
+   * Replays synthetic heartbeats from many containers in parallel, as the RPC handler threads would, and reports the
+   * average time spent in processHeartbeat.
+   */
+  @Test
+  @Ignore
+  public void testHeartbeatPerformance() throws Exception
+  {
+    for (int numContainers : new int[] {100, 500, 2000}) {
+      testHeartbeatPerformance(numContainers, 20);
+    }
+  }
+
+  private void testHeartbeatPerformance(int numContainers, int numWindows) throws Exception
+  {
+    dag = StramTestSupport.createDAG(testMeta);
+    dag.setAttribute(OperatorContext.STORAGE_AGENT, new MemoryStorageAgent());
+    GenericTestOperator o1 = dag.addOperator("o1", GenericTestOperator.class);
+    GenericTestOperator o2 = dag.addOperator("o2", GenericTestOperator.class);
+    dag.addStream("stream1", o1.outport1, o2.inport1).setLocality(Locality.CONTAINER_LOCAL);
+    dag.setOperatorAttribute(o1, OperatorContext.PARTITIONER, new StatelessPartitioner<GenericTestOperator>(numContainers));
+    dag.setInputPortAttribute(o2.inport1, PortContext.PARTITION_PARALLEL, true);
+
+    StreamingContainerManager scm = new StreamingContainerManager(dag);
+    final List<MockContainer> containers = new ArrayList<>();
+    for (PTContainer c : scm.getPhysicalPlan().getContainers()) {
+      containers.add(new MockContainer(scm, c));
+    }
+    for (MockContainer mc : containers) {
+      mc.deploy();
+      // skip buffer server purge in monitorHeartbeat
+      mc.container.bufferServerAddress = null;
+      for (PTOperator oper : mc.container.getOperators()) {
+        mc.stats(oper.getId()).deployState(DeployState.ACTIVE);
+      }
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(dag.getValue(Context.DAGContext.HEARTBEAT_LISTENER_THREAD_COUNT));
+    long totalNanos = 0;
+    for (int windowId = 1; windowId <= numWindows; windowId++) {
+      List<Future<Long>> futures = new ArrayList<>(containers.size());
+      for (final MockContainer mc : containers) {
+        for (MockOperatorStats mos : mc.stats.values()) {
+          mos.currentWindowId(windowId).checkpointWindowId(windowId);
+        }
+        futures.add(executor.submit(new Callable<Long>()
+        {
+          @Override
+          public Long call() throws Exception
+          {
+            long start = System.nanoTime();
+            mc.sendHeartbeat();
+            return System.nanoTime() - start;
+          }
+        }));
+      }
+      for (Future<Long> f : futures) {
+        totalNanos += f.get();
+      }
+      scm.monitorHeartbeat();
+    }
+    executor.shutdown();
+    LOG.info("containers {} windows {} average heartbeat {} us", numContainers, numWindows,
+        totalNanos / 1000 / numContainers / numWindows);
+  }
+
   public static class TestStaticPartitioningSerDe extends DefaultStatefulStreamCodec<Object>
   {
 
@@ -800,6 +955,149 @@ public class StreamingContainerManagerTest
     Assert.assertEquals(0, physicalPlan.getContainers().size());
   }
 
+  public static class SplitPartitionListener implements StatsListener, Serializable
+  {
+    private static final long serialVersionUID = 201610190001L;
+    private static volatile int splitOperatorId = -1;
+    private boolean repartitionRequested;
+
+    @Override
+    public Response processStats(BatchedOperatorStats stats)
+    {
+      Response rsp = new Response();
+      if (stats.getOperatorId() == splitOperatorId) {
+        rsp.loadIndicator = 1;
+        rsp.repartitionRequired = !repartitionRequested;
+        repartitionRequested = true;
+      }
+      return rsp;
+    }
+  }
+
+  @Test
+  public void testDeployHandover() throws Exception
+  {
+    dag.setAttribute(OperatorContext.STORAGE_AGENT, new MemoryStorageAgent());
+    dag.setAttribute(LogicalPlan.DEPLOY_HANDOVER_TIMEOUT_MILLIS, 60000);
+
+    GenericTestOperator o1 = dag.addOperator("o1", GenericTestOperator.class);
+    GenericTestOperator o2 = dag.addOperator("o2", GenericTestOperator.class);
+    GenericTestOperator o3 = dag.addOperator("o3", GenericTestOperator.class);
+    dag.addStream("stream1", o1.outport1, o2.inport1);
+    dag.addStream("stream2", o2.outport1, o3.inport1);
+    dag.setOperatorAttribute(o2, OperatorContext.PARTITIONER, new StatelessPartitioner<GenericTestOperator>(2));
+    dag.setOperatorAttribute(o2, OperatorContext.STATS_LISTENERS, Lists.<StatsListener>newArrayList(new SplitPartitionListener()));
+
+    StreamingContainerManager scm = new StreamingContainerManager(dag);
+    PhysicalPlan physicalPlan = scm.getPhysicalPlan();
+    Map<PTContainer, MockContainer> mockContainers = new HashMap<>();
+    for (PTContainer c : physicalPlan.getContainers()) {
+      mockContainers.put(c, new MockContainer(scm, c));
+    }
+    for (MockContainer mc : mockContainers.values()) {
+      mc.deploy();
+    }
+    Map<PTContainer, InetSocketAddress> bufferServerAddresses = new HashMap<>();
+    for (PTContainer c : mockContainers.keySet()) {
+      // skip buffer server purge in monitorHeartbeat
+      bufferServerAddresses.put(c, c.bufferServerAddress);
+      c.bufferServerAddress = null;
+    }
+    for (MockContainer mc : mockContainers.values()) {
+      for (PTOperator oper : mc.container.getOperators()) {
+        mc.stats(oper.getId()).currentWindowId(1).checkpointWindowId(1).deployState(DeployState.ACTIVE);
+      }
+      mc.sendHeartbeat();
+    }
+
+    PTOperator o2p1 = physicalPlan.getOperators(dag.getMeta(o2)).get(0);
+    PTOperator o3p1 = physicalPlan.getOperators(dag.getMeta(o3)).get(0);
+    MockContainer o2p1Container = mockContainers.get(o2p1.getContainer());
+    SplitPartitionListener.splitOperatorId = o2p1.getId();
+    physicalPlan.onStatusUpdate(o2p1);
+    scm.processEvents();
+
+    Assert.assertEquals("partitions after split", 3, physicalPlan.getOperators(dag.getMeta(o2)).size());
+    Assert.assertFalse("split partition removed", physicalPlan.getAllOperators().containsKey(o2p1.getId()));
+    Assert.assertEquals("downstream running", PTOperator.State.ACTIVE, o3p1.getState());
+
+    // removed partition keeps running until the new partitions are up, its checkpoints are recorded
+    StorageAgent storageAgent = o2p1.getOperatorMeta().getValue(OperatorContext.STORAGE_AGENT);
+    storageAgent.save(o2p1.getName(), o2p1.getId(), 2);
+    o2p1Container.stats(o2p1.getId()).currentWindowId(2).checkpointWindowId(2);
+    o2p1Container.sendHeartbeat();
+    Assert.assertEquals("undeploy requests", Collections.emptySet(), o2p1Container.sca.undeployOpers);
+
+    // the containers for the new partitions are allocated, no operators are deployed before the handover
+    List<MockContainer> newContainers = new ArrayList<>();
+    for (PTContainer c : physicalPlan.getContainers()) {
+      if (!mockContainers.containsKey(c)) {
+        scm.monitorHeartbeat();
+        Assert.assertEquals("downstream running", PTOperator.State.ACTIVE, o3p1.getState());
+        newContainers.add(new MockContainer(scm, c));
+        bufferServerAddresses.put(c, c.bufferServerAddress);
+        c.bufferServerAddress = null;
+      }
+    }
+    Assert.assertFalse("new containers", newContainers.isEmpty());
+    for (MockContainer mc : newContainers) {
+      mc.sendHeartbeat();
+      for (PTOperator oper : mc.container.getOperators()) {
+        Assert.assertEquals("new partition held " + oper, PTOperator.State.INACTIVE, oper.getState());
+      }
+    }
+    o2p1Container.sendHeartbeat();
+    Assert.assertEquals("undeploy requests", Collections.emptySet(), o2p1Container.sca.undeployOpers);
+
+    // all new containers running, the affected operators are undeployed before the new ones are deployed
+    scm.monitorHeartbeat();
+    Assert.assertEquals("downstream undeployed", PTOperator.State.PENDING_UNDEPLOY, o3p1.getState());
+    for (MockContainer mc : newContainers) {
+      for (PTOperator oper : mc.container.getOperators()) {
+        Assert.assertEquals("new partition " + oper, PTOperator.State.PENDING_DEPLOY, oper.getState());
+      }
+      mc.sendHeartbeat();
+    }
+    o2p1Container.sendHeartbeat();
+    Assert.assertEquals("undeploy requests", Collections.singleton(o2p1.getId()), o2p1Container.sca.undeployOpers);
+    MockContainer o3p1Container = mockContainers.get(o3p1.getContainer());
+    o3p1Container.sendHeartbeat();
+    Assert.assertTrue("undeploy requests " + o3p1Container.sca.undeployOpers, o3p1Container.sca.undeployOpers.contains(o3p1.getId()));
+    for (int operId : o3p1Container.sca.undeployOpers) {
+      o3p1Container.stats.remove(operId);
+    }
+    o3p1Container.sendHeartbeat();
+    Assert.assertEquals("downstream redeploy", PTOperator.State.PENDING_DEPLOY, o3p1.getState());
+    for (MockContainer mc : newContainers) {
+      // the removed partition still runs
+      mc.sendHeartbeat();
+    }
+
+    // removed partition stopped
+    o2p1Container.stats.remove(o2p1.getId());
+    o2p1Container.sendHeartbeat();
+    for (Map.Entry<PTContainer, InetSocketAddress> e : bufferServerAddresses.entrySet()) {
+      e.getKey().bufferServerAddress = e.getValue();
+    }
+    for (MockContainer mc : newContainers) {
+      ContainerStats cstats = new ContainerStats(mc.sca.container.getExternalId());
+      ContainerHeartbeat hb = new ContainerHeartbeat();
+      hb.setContainerStats(cstats);
+      Assert.assertNotNull("deploy new partitions", scm.processHeartbeat(hb).deployRequest);
+    }
+    for (PTContainer c : bufferServerAddresses.keySet()) {
+      c.bufferServerAddress = null;
+    }
+
+    // checkpoints written by the removed partition while it was held are purged
+    scm.monitorHeartbeat();
+    long endTms = System.currentTimeMillis() + 10000;
+    while (storageAgent.load(o2p1.getId(), 2) != null && System.currentTimeMillis() < endTms) {
+      Thread.sleep(10);
+    }
+    Assert.assertNull("purged checkpoint", storageAgent.load(o2p1.getId(), 2));
+  }
+
   private void testDownStreamPartition(Locality locality) throws Exception
   {
     TestGeneratorInputOperator o1 = dag.addOperator("o1", TestGeneratorInputOperator.class);
@@ -1112,5 +1410,291 @@ public class StreamingContainerManagerTest
     lc.shutdown();
   }
 
+  @Test
+  public void testCriticalPathUpdate() throws Exception
+  {
+    TestGeneratorInputOperator o1 = dag.addOperator("o1", TestGeneratorInputOperator.class);
+    GenericTestOperator o2 = dag.addOperator("o2", GenericTestOperator.class);
+    GenericTestOperator o3 = dag.addOperator("o3", GenericTestOperator.class);
+    GenericTestOperator o4 = dag.addOperator("o4", GenericTestOperator.class);
+    dag.addStream("o1.outport", o1.outport, o2.inport1, o3.inport1);
+    dag.addStream("o2.outport1", o2.outport1, o4.inport1);
+    dag.addStream("o3.outport1", o3.outport1, o4.inport2);
+    dag.setAttribute(LogicalPlan.CONTAINERS_MAX_COUNT, 1);
+    dag.setAttribute(LogicalPlan.STATS_PUBLISH_INTERVAL_MILLIS, 1000L);
+    dag.setAttribute(OperatorContext.STORAGE_AGENT, new MemoryStorageAgent());
+
+    final long[] time = new long[] {0};
+    StreamingContainerManager scm = new StreamingContainerManager(dag, new Clock()
+    {
+      @Override
+      public long getTime()
+      {
+        return time[0];
+      }
+    });
+    PhysicalPlan plan = scm.getPhysicalPlan();
+    Assert.assertEquals("number required containers", 1, plan.getContainers().size());
+
+    PTOperator o1p1 = plan.getOperators(dag.getMeta(o1)).get(0);
+    PTOperator o2p1 = plan.getOperators(dag.getMeta(o2)).get(0);
+    PTOperator o3p1 = plan.getOperators(dag.getMeta(o3)).get(0);
+    PTOperator o4p1 = plan.getOperators(dag.getMeta(o4)).get(0);
+
+    String containerId = "container1";
+    scm.assignContainer(new ContainerResource(0, containerId, "localhost", 512, 0, null), InetSocketAddress.createUnresolved("localhost", 0));
+    ContainerStats cstats = new ContainerStats(containerId);
+    ContainerHeartbeat hb = new ContainerHeartbeat();
+    hb.setContainerStats(cstats);
+    Assert.assertNotNull(scm.processHeartbeat(hb).deployRequest);
+
+    // o2 is slow in the first window
+    addCriticalPathHeartbeats(cstats, 1, 10000, 300, 10, o1p1, o2p1, o3p1, o4p1);
+    scm.processHeartbeat(hb);
+    time[0] = 1000;
+    scm.monitorHeartbeat();
+
+    Assert.assertEquals("state " + o4p1, PTOperator.State.ACTIVE, o4p1.getState());
+    StreamingContainerManager.CriticalPathInfo cpi = scm.getCriticalPathInfo();
+    Assert.assertArrayEquals("critical path", new Integer[] {o1p1.getId(), o2p1.getId(), o4p1.getId()}, cpi.path.toArray());
+    Assert.assertEquals("latency " + o2p1, 300, o2p1.stats.getLatencyMA());
+    Assert.assertEquals("critical path latency", o1p1.stats.getLatencyMA() + o2p1.stats.getLatencyMA() + o4p1.stats.getLatencyMA(), cpi.latency);
+
+    // o3 becomes the slow operator, the path is only updated once the publish interval elapsed
+    addCriticalPathHeartbeats(cstats, 2, 11000, 10, 500, o1p1, o2p1, o3p1, o4p1);
+    scm.processHeartbeat(hb);
+    time[0] = 1500;
+    scm.monitorHeartbeat();
+    Assert.assertSame("critical path within publish interval", cpi, scm.getCriticalPathInfo());
+
+    time[0] = 2000;
+    scm.monitorHeartbeat();
+    cpi = scm.getCriticalPathInfo();
+    Assert.assertArrayEquals("critical path", new Integer[] {o1p1.getId(), o3p1.getId(), o4p1.getId()}, cpi.path.toArray());
+    Assert.assertEquals("critical path latency", o1p1.stats.getLatencyMA() + o3p1.stats.getLatencyMA() + o4p1.stats.getLatencyMA(), cpi.latency);
+  }
+
+  /**
+   * Adds the window stats of the diamond o1 -> (o2, o3) -> o4 to the container heartbeat, with o2 and o3 emitting the
+   * given number of milliseconds after o1 and o4 dequeuing the end window 10ms after the slower of both.
+   */
+  private static void addCriticalPathHeartbeats(ContainerStats cstats, long windowId, long emitTms, long o2Latency,
+      long o3Latency, PTOperator o1p1, PTOperator o2p1, PTOperator o3p1, PTOperator o4p1)
+  {
+    cstats.operators.clear();
+    cstats.operators.add(getOperatorHeartbeat(o1p1, windowId, null, null,
+        TestGeneratorInputOperator.OUTPUT_PORT, emitTms));
+    cstats.operators.add(getOperatorHeartbeat(o2p1, windowId, GenericTestOperator.IPORT1, emitTms,
+        GenericTestOperator.OPORT1, emitTms + o2Latency));
+    cstats.operators.add(getOperatorHeartbeat(o3p1, windowId, GenericTestOperator.IPORT1, emitTms,
+        GenericTestOperator.OPORT1, emitTms + o3Latency));
+    long dequeueTms = emitTms + Math.max(o2Latency, o3Latency) + 10;
+    OperatorHeartbeat ohb = getOperatorHeartbeat(o4p1, windowId, GenericTestOperator.IPORT1, dequeueTms, null, null);
+    PortStats ps = new PortStats(GenericTestOperator.IPORT2);
+    ps.endWindowTimestamp = dequeueTms;
+    ohb.windowStats.get(0).inputPorts.add(ps);
+    cstats.operators.add(ohb);
+  }
+
+  private static OperatorHeartbeat getOperatorHeartbeat(PTOperator oper, long windowId, String inputPort,
+      Long dequeueTms, String outputPort, Long emitTms)
+  {
+    OperatorStats stats = new OperatorStats();
+    stats.windowId = windowId;
+    stats.checkpoint = Checkpoint.INITIAL_CHECKPOINT;
+    stats.inputPorts = Lists.newArrayList();
+    if (inputPort != null) {
+      PortStats ps = new PortStats(inputPort);
+      ps.endWindowTimestamp = dequeueTms;
+      stats.inputPorts.add(ps);
+    }
+    stats.outputPorts = Lists.newArrayList();
+    if (outputPort != null) {
+      PortStats ps = new PortStats(outputPort);
+      ps.endWindowTimestamp = emitTms;
+      stats.outputPorts.add(ps);
+    }
+    OperatorHeartbeat ohb = new OperatorHeartbeat();
+    ohb.setNodeId(oper.getId());
+    ohb.setState(DeployState.ACTIVE);
+    ohb.windowStats = Lists.newArrayList(stats);
+    return ohb;
+  }
+
+  @Test
+  public void testEventSignal() throws Exception
+  {
+    dag.setAttribute(OperatorContext.STORAGE_AGENT, new MemoryStorageAgent());
+    GenericTestOperator o1 = dag.addOperator("o1", GenericTestOperator.class);
+    dag.setOperatorAttribute(o1, OperatorContext.STATS_LISTENERS, Arrays.asList(new StatsListener[]{new PartitioningTest.PartitionLoadWatch()}));
+    StreamingContainerManager scm = new StreamingContainerManager(dag);
+    // the initial deployment requests containers
+    Assert.assertTrue("container start requested", scm.awaitEvent(0));
+    Assert.assertFalse("no event", scm.awaitEvent(10));
+
+    // stats for listeners are processed at the regular interval and do not wake up the loop
+    PhysicalPlan plan = scm.getPhysicalPlan();
+    PTOperator o1p1 = plan.getOperators(dag.getMeta(o1)).get(0);
+    MockContainer mc = new MockContainer(scm, o1p1.getContainer());
+    mc.deploy();
+    for (int windowId = 1; windowId <= 3; windowId++) {
+      mc.stats(o1p1.getId()).deployState(DeployState.ACTIVE).currentWindowId(windowId);
+      mc.sendHeartbeat();
+    }
+    Assert.assertEquals("state " + o1p1, PTOperator.State.ACTIVE, o1p1.getState());
+    Assert.assertFalse("no event for stats", scm.awaitEvent(0));
+
+    scm.dispatch(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+      }
+    });
+    long startTms = System.currentTimeMillis();
+    Assert.assertTrue("plan change", scm.awaitEvent(10000));
+    Assert.assertTrue("no wait for signaled event", System.currentTimeMillis() - startTms < 5000);
+    Assert.assertFalse("signal consumed", scm.awaitEvent(0));
+  }
+
+  @Test
+  public void testContainerControlChannel() throws Exception
+  {
+    dag.setAttribute(OperatorContext.STORAGE_AGENT, new MemoryStorageAgent());
+    dag.setAttribute(LogicalPlan.CONTAINER_CONTROL_CHANNEL, true);
+    dag.addOperator("o1", GenericTestOperator.class);
+    StreamingContainerManager scm = new StreamingContainerManager(dag);
+    DefaultEventLoop eventloop = DefaultEventLoop.createEventLoop("testContainerControlChannel");
+    eventloop.start();
+    try {
+      scm.startControlServer(eventloop, "localhost");
+      StreamingContainerAgent sca = assignContainer(scm, "container1");
+      InetSocketAddress address = new InetSocketAddress("localhost", scm.getControlAddress().getPort());
+
+      // the token is only handed out with the init context
+      ControlClient noInitContext = new ControlClient("container1", null);
+      eventloop.connect(address, noInitContext);
+      Assert.assertTrue("container without token rejected", noInitContext.disconnected.await(10, TimeUnit.SECONDS));
+
+      Assert.assertEquals("control address", scm.getControlAddress(), sca.getInitContext().getValue(ContainerContext.CONTROL_ADDRESS));
+      byte[] token = sca.getInitContext().getValue(ContainerContext.CONTROL_TOKEN);
+      Assert.assertNotNull("control token", token);
+      Assert.assertNull("no buffer server token without security", sca.container.getBufferServerToken());
+
+      ControlClient rejected = new ControlClient("container1", new byte[] {1, 2, 3});
+      eventloop.connect(address, rejected);
+      Assert.assertTrue("invalid token rejected", rejected.disconnected.await(10, TimeUnit.SECONDS));
+
+      ControlClient noToken = new ControlClient("container1", null);
+      eventloop.connect(address, noToken);
+      Assert.assertTrue("missing token rejected", noToken.disconnected.await(10, TimeUnit.SECONDS));
+
+      ControlClient client = new ControlClient("container1", token);
+      eventloop.connect(address, client);
+      Assert.assertTrue("notified on connect", client.notifications.tryAcquire(10, TimeUnit.SECONDS));
+
+      sca.addOperatorRequest(new StramToNodeStartRecordingRequest());
+      Assert.assertTrue("notified for operator request", client.notifications.tryAcquire(10, TimeUnit.SECONDS));
+
+      scm.shutdownAllContainers("test");
+      Assert.assertTrue("notified for shutdown", client.notifications.tryAcquire(10, TimeUnit.SECONDS));
+      Assert.assertEquals("rejected client not notified", 0, rejected.notifications.availablePermits());
+      Assert.assertEquals("rejected client not notified", 0, noToken.notifications.availablePermits());
+      eventloop.disconnect(client);
+    } finally {
+      scm.stopControlServer();
+      eventloop.stop();
+    }
+  }
+
+  private static class ControlClient extends AbstractLengthPrependerClient
+  {
+    final String containerId;
+    final byte[] token;
+    final Semaphore notifications = new Semaphore(0);
+    final CountDownLatch disconnected = new CountDownLatch(1);
+
+    ControlClient(String containerId, byte[] token)
+    {
+      this.containerId = containerId;
+      this.token = token;
+    }
+
+    @Override
+    public void connected()
+    {
+      super.connected();
+      write(ContainerControlServer.getAuthenticateMessage(containerId, token));
+    }
+
+    @Override
+    public void onMessage(byte[] buffer, int offset, int size)
+    {
+      notifications.release();
+    }
+
+    @Override
+    public void disconnected()
+    {
+      disconnected.countDown();
+      super.disconnected();
+    }
+  }
+
   private static final Logger LOG = LoggerFactory.getLogger(StreamingContainerManagerTest.class);
+
+  /**
+   * Builds physical plans of increasing size and reports the time to create the plan, assign the containers and
+   * create the deploy info.
+   */
+  @Test
+  @Ignore
+  public void testPlanPerformance() throws Exception
+  {
+    for (int numOperators : new int[] {1000, 10000, 50000}) {
+      testPlanPerformance(numOperators);
+    }
+  }
+
+  private void testPlanPerformance(int numOperators) throws Exception
+  {
+    int numPartitions = numOperators / 4;
+    dag = StramTestSupport.createDAG(testMeta);
+    dag.setAttribute(OperatorContext.STORAGE_AGENT, new MemoryStorageAgent());
+    GenericTestOperator o1 = dag.addOperator("o1", GenericTestOperator.class);
+    GenericTestOperator o2 = dag.addOperator("o2", GenericTestOperator.class);
+    GenericTestOperator o3 = dag.addOperator("o3", GenericTestOperator.class);
+    GenericTestOperator o4 = dag.addOperator("o4", GenericTestOperator.class);
+    GenericTestOperator o5 = dag.addOperator("o5", GenericTestOperator.class);
+    dag.setOperatorAttribute(o1, OperatorContext.PARTITIONER, new StatelessPartitioner<GenericTestOperator>(numPartitions));
+    dag.addStream("s1", o1.outport1, o2.inport1).setLocality(Locality.CONTAINER_LOCAL);
+    dag.setInputPortAttribute(o2.inport1, PortContext.PARTITION_PARALLEL, true);
+    dag.addStream("s2", o2.outport1, o3.inport1);
+    dag.setInputPortAttribute(o3.inport1, PortContext.PARTITION_PARALLEL, true);
+    dag.addStream("s3", o3.outport1, o4.inport1).setLocality(Locality.NODE_LOCAL);
+    dag.setInputPortAttribute(o4.inport1, PortContext.PARTITION_PARALLEL, true);
+    dag.addStream("s4", o4.outport1, o5.inport1);
+    dag.setOutputPortAttribute(o4.outport1, PortContext.UNIFIER_LIMIT, 32);
+
+    long start = System.nanoTime();
+    StreamingContainerManager scm = new StreamingContainerManager(dag);
+    long planNanos = System.nanoTime() - start;
+    PhysicalPlan plan = scm.getPhysicalPlan();
+
+    start = System.nanoTime();
+    List<StreamingContainerAgent> agents = new ArrayList<>();
+    for (PTContainer c : plan.getContainers()) {
+      agents.add(assignContainer(scm, "container" + c.getId()));
+    }
+    long assignNanos = System.nanoTime() - start;
+
+    start = System.nanoTime();
+    for (StreamingContainerAgent agent : agents) {
+      agent.getDeployInfoList(agent.container.getOperators());
+    }
+    long deployNanos = System.nanoTime() - start;
+    LOG.info("operators {} containers {} plan {} ms assign {} ms deploy info {} ms", plan.getAllOperators().size(),
+        plan.getContainers().size(), planNanos / 1000000, assignNanos / 1000000, deployNanos / 1000000);
+  }
+
 }
@@ -0,0 +1,259 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.stram;
+
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.datatorrent.api.Context.OperatorContext;
+import com.datatorrent.api.Context.PortContext;
+import com.datatorrent.api.DefaultInputPort;
+import com.datatorrent.api.DefaultOutputPort;
+import com.datatorrent.api.InputOperator;
+import com.datatorrent.api.Operator;
+import com.datatorrent.api.StatsListener;
+import com.datatorrent.common.partitioner.StatelessPartitioner;
+import com.datatorrent.common.util.BaseOperator;
+import com.datatorrent.stram.api.OperatorDeployInfo;
+import com.datatorrent.stram.engine.SliderTest;
+import com.datatorrent.stram.engine.TestOutputOperator;
+import com.datatorrent.stram.plan.TestPlanContext;
+import com.datatorrent.stram.plan.logical.LogicalPlan;
+import com.datatorrent.stram.plan.physical.PTContainer;
+import com.datatorrent.stram.plan.physical.PTOperator;
+import com.datatorrent.stram.plan.physical.PhysicalPlan;
+import com.datatorrent.stram.support.StramTestSupport;
+import com.datatorrent.stram.support.StramTestSupport.MemoryStorageAgent;
+
+/**
+ * Tests for {@link PortContext#UNIFIER_PRE_AGGREGATE}.
+ */
+public class UnifierPreAggregateTest
+{
+  @Rule
+  public StramTestSupport.TestMeta testMeta = new StramTestSupport.TestMeta();
+
+  private LogicalPlan dag;
+
+  @Before
+  public void setup()
+  {
+    dag = StramTestSupport.createDAG(testMeta);
+    dag.setAttribute(OperatorContext.STORAGE_AGENT, new MemoryStorageAgent());
+  }
+
+  public static class CountInput extends BaseOperator implements InputOperator
+  {
+    public static final int TUPLES_PER_WINDOW = 100;
+    private int windowCount;
+
+    public final transient DefaultOutputPort<Integer> output = new DefaultOutputPort<>();
+
+    @Override
+    public void beginWindow(long windowId)
+    {
+      windowCount = 0;
+    }
+
+    @Override
+    public void emitTuples()
+    {
+      while (windowCount < TUPLES_PER_WINDOW) {
+        output.emit(1);
+        windowCount++;
+      }
+    }
+  }
+
+  public static class CountingCombiner extends SliderTest.SumCombiner
+  {
+    public static volatile int tupleCount;
+
+    @Override
+    public void process(Integer tuple)
+    {
+      tupleCount++;
+      super.process(tuple);
+    }
+  }
+
+  /**
+   * Forwards the tuples, the unifier sums them.
+   */
+  public static class CombiningOperator extends BaseOperator
+  {
+    public final transient DefaultInputPort<Integer> input = new DefaultInputPort<Integer>()
+    {
+      @Override
+      public void process(Integer tuple)
+      {
+        output.emit(tuple);
+      }
+    };
+
+    public final transient DefaultOutputPort<Integer> output = new DefaultOutputPort<Integer>()
+    {
+      @Override
+      public Operator.Unifier<Integer> getUnifier()
+      {
+        return new CountingCombiner();
+      }
+    };
+  }
+
+  public static class SumCollector extends BaseOperator
+  {
+    public static volatile long sum;
+
+    public final transient DefaultInputPort<Integer> input = new DefaultInputPort<Integer>()
+    {
+      @Override
+      public void process(Integer tuple)
+      {
+        sum += tuple;
+      }
+    };
+  }
+
+  @Test
+  public void testDeployInfo() throws Exception
+  {
+    CountInput i1 = dag.addOperator("i1", new CountInput());
+
+    CombiningOperator op1 = dag.addOperator("op1", new CombiningOperator());
+    dag.setOperatorAttribute(op1, OperatorContext.PARTITIONER, new StatelessPartitioner<CombiningOperator>(3));
+    dag.setOutputPortAttribute(op1.output, PortContext.UNIFIER_PRE_AGGREGATE, true);
+
+    CombiningOperator op2 = dag.addOperator("op2", new CombiningOperator());
+    dag.setOperatorAttribute(op2, OperatorContext.PARTITIONER, new StatelessPartitioner<CombiningOperator>(2));
+    dag.setOutputPortAttribute(op2.output, PortContext.UNIFIER_PRE_AGGREGATE, true);
+
+    TestOutputOperator op3 = dag.addOperator("op3", new TestOutputOperator());
+
+    dag.addStream("s1", i1.output, op1.input);
+    dag.addStream("s2", op1.output, op2.input);
+    dag.addStream("s3", op2.output, op3.inport);
+
+    StreamingContainerManager scm = new StreamingContainerManager(dag);
+    PhysicalPlan physicalPlan = scm.getPhysicalPlan();
+    for (PTContainer container : physicalPlan.getContainers()) {
+      scm.assignContainer(new StreamingContainerManager.ContainerResource(0, "container" + container.getId(), "localhost", 1024, 0, null), InetSocketAddress.createUnresolved("container" + container.getId() + "Host", 0));
+    }
+
+    // MxN unifiers receive the tuples of their partition keys only
+    assertPreAggregate(op1, scm, physicalPlan, false);
+    assertPreAggregate(op2, scm, physicalPlan, true);
+  }
+
+  @Test
+  public void testRepartition()
+  {
+    CountInput i1 = dag.addOperator("i1", new CountInput());
+    CombiningOperator op1 = dag.addOperator("op1", new CombiningOperator());
+    dag.setOperatorAttribute(op1, OperatorContext.PARTITIONER, new StatelessPartitioner<CombiningOperator>(2));
+    dag.setOutputPortAttribute(op1.output, PortContext.UNIFIER_PRE_AGGREGATE, true);
+    CombiningOperator op2 = dag.addOperator("op2", new CombiningOperator());
+    dag.setOperatorAttribute(op2, OperatorContext.PARTITIONER, new StatelessPartitioner<CombiningOperator>());
+    dag.setOperatorAttribute(op2, OperatorContext.STATS_LISTENERS, Arrays.asList(new StatsListener[]{new PartitioningTest.PartitionLoadWatch()}));
+    dag.addStream("s1", i1.output, op1.input);
+    dag.addStream("s2", op1.output, op2.input);
+
+    TestPlanContext ctx = new TestPlanContext();
+    dag.setAttribute(OperatorContext.STORAGE_AGENT, ctx);
+    PhysicalPlan plan = new PhysicalPlan(dag, ctx);
+    List<PTOperator> op1Partitions = plan.getOperators(dag.getMeta(op1));
+    for (PTOperator p : op1Partitions) {
+      Assert.assertTrue("pre-aggregate " + p, p.getOutputs().get(0).isPreAggregated());
+    }
+
+    // downstream partitions receive their partition keys only, upstream partitions stop pre-aggregating
+    PTOperator op2p1 = plan.getOperators(dag.getMeta(op2)).get(0);
+    PartitioningTest.PartitionLoadWatch.put(op2p1, 1);
+    plan.onStatusUpdate(op2p1);
+    Assert.assertEquals("scale up triggered", 1, ctx.events.size());
+    ctx.events.remove(0).run();
+    Assert.assertEquals("partitions", 2, plan.getOperators(dag.getMeta(op2)).size());
+    Assert.assertEquals("upstream partitions unchanged", op1Partitions, plan.getOperators(dag.getMeta(op1)));
+    for (PTOperator p : op1Partitions) {
+      Assert.assertFalse("pre-aggregate " + p, p.getOutputs().get(0).isPreAggregated());
+      Assert.assertTrue("undeploy " + p, ctx.undeploy.contains(p));
+      Assert.assertTrue("deploy " + p, ctx.deploy.contains(p));
+    }
+
+    // single downstream partition, upstream partitions pre-aggregate again
+    for (PTOperator p : plan.getOperators(dag.getMeta(op2))) {
+      PartitioningTest.PartitionLoadWatch.put(p, -1);
+      plan.onStatusUpdate(p);
+    }
+    Assert.assertEquals("scale down triggered", 1, ctx.events.size());
+    ctx.events.remove(0).run();
+    Assert.assertEquals("partitions", 1, plan.getOperators(dag.getMeta(op2)).size());
+    for (PTOperator p : op1Partitions) {
+      Assert.assertTrue("pre-aggregate " + p, p.getOutputs().get(0).isPreAggregated());
+      Assert.assertTrue("undeploy " + p, ctx.undeploy.contains(p));
+      Assert.assertTrue("deploy " + p, ctx.deploy.contains(p));
+    }
+  }
+
+  @Test
+  public void testLocalCluster() throws Exception
+  {
+    dag.getAttributes().put(LogicalPlan.STREAMING_WINDOW_SIZE_MILLIS, 100);
+    CountInput input = dag.addOperator("input", new CountInput());
+    CombiningOperator op1 = dag.addOperator("op1", new CombiningOperator());
+    dag.setOperatorAttribute(op1, OperatorContext.PARTITIONER, new StatelessPartitioner<CombiningOperator>(2));
+    dag.setOutputPortAttribute(op1.output, PortContext.UNIFIER_PRE_AGGREGATE, true);
+    SumCollector collector = dag.addOperator("collector", new SumCollector());
+    dag.addStream("s1", input.output, op1.input);
+    dag.addStream("s2", op1.output, collector.input);
+    SumCollector.sum = 0;
+    CountingCombiner.tupleCount = 0;
+
+    StramLocalCluster lc = new StramLocalCluster(dag);
+    lc.runAsync();
+    long startTms = System.currentTimeMillis();
+    while (SumCollector.sum < 10 * CountInput.TUPLES_PER_WINDOW && System.currentTimeMillis() - startTms < StramTestSupport.DEFAULT_TIMEOUT_MILLIS) {
+      Thread.sleep(100);
+    }
+    lc.shutdown();
+
+    long sum = SumCollector.sum;
+    Assert.assertTrue("sum " + sum, sum >= 10 * CountInput.TUPLES_PER_WINDOW);
+    // the partitions send one aggregate per window in place of the tuples
+    Assert.assertTrue("unifier tuples " + CountingCombiner.tupleCount, CountingCombiner.tupleCount < sum);
+  }
+
+  private void assertPreAggregate(Operator operator, StreamingContainerManager scm, PhysicalPlan physicalPlan, boolean result)
+  {
+    for (PTOperator ptOperator : physicalPlan.getOperators(dag.getMeta(operator))) {
+      StreamingContainerAgent agent = scm.getContainerAgent("container" + ptOperator.getContainer().getId());
+      for (OperatorDeployInfo odi : agent.getDeployInfoList(ptOperator.getContainer().getOperators())) {
+        if (odi.id == ptOperator.getId()) {
+          Assert.assertEquals("pre-aggregate " + ptOperator, result, odi.outputs.get(0).getValue(PortContext.UNIFIER_PRE_AGGREGATE));
+        }
+      }
+    }
+  }
+}
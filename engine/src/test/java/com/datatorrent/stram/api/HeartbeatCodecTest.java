@@ -0,0 +1,344 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.stram.api;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+
+import com.datatorrent.api.Stats;
+import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.ContainerHeartbeat;
+import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.ContainerHeartbeatResponse;
+import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.ContainerStats;
+import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.OperatorHeartbeat;
+import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.StramToNodeRequest;
+
+public class HeartbeatCodecTest
+{
+  private static final Logger LOG = LoggerFactory.getLogger(HeartbeatCodecTest.class);
+  private static final long WINDOW_ID = 0x57f6a3b200000010L;
+
+  private static ContainerHeartbeat newHeartbeat(int operatorCount, int windowCount)
+  {
+    ContainerHeartbeat hb = new ContainerHeartbeat();
+    hb.bufferServerHost = "localhost";
+    hb.bufferServerPort = 9999;
+    hb.jvmName = "1234@localhost";
+    hb.memoryMBFree = 512;
+    hb.memoryMBUsed = 256;
+    hb.gcCollectionCount = 3;
+    hb.gcCollectionTime = 25;
+    hb.stats = new ContainerStats("container_1");
+    long windowId = WINDOW_ID;
+    for (int i = 0; i < operatorCount; i++) {
+      OperatorHeartbeat ohb = new OperatorHeartbeat();
+      ohb.nodeId = i + 1;
+      ohb.generatedTms = hb.sentTms;
+      ohb.intervalMs = 1000;
+      ohb.state = OperatorHeartbeat.DeployState.ACTIVE;
+      for (int w = 0; w < windowCount; w++) {
+        Stats.OperatorStats os = new Stats.OperatorStats();
+        os.windowId = windowId + w;
+        os.checkpoint = new Checkpoint(windowId, 0, 0);
+        os.cpuTimeUsed = 1000000 + w;
+        os.inputPorts = new ArrayList<>();
+        Stats.OperatorStats.PortStats ps = new Stats.OperatorStats.PortStats("input");
+        ps.tupleCount = 1000;
+        ps.bufferServerBytes = 64000;
+        ps.endWindowTimestamp = hb.sentTms;
+        ps.queueSize = 10;
+        os.inputPorts.add(ps);
+        os.outputPorts = new ArrayList<>();
+        os.outputPorts.add(new Stats.OperatorStats.PortStats("output"));
+        os.metrics = new HashMap<>();
+        os.metrics.put("count", 1000L);
+        os.metrics.put("rate", 12.5d);
+        ohb.windowStats.add(os);
+      }
+      hb.stats.addNodeStats(ohb);
+    }
+    return hb;
+  }
+
+  private static ContainerHeartbeat roundTrip(ContainerHeartbeat hb) throws IOException
+  {
+    return roundTrip(hb, new HeartbeatCodec.Decoder(), new DataOutputBuffer());
+  }
+
+  private static ContainerHeartbeat roundTrip(ContainerHeartbeat hb, HeartbeatCodec.Decoder decoder,
+      DataOutputBuffer out) throws IOException
+  {
+    out.reset();
+    hb.write(out);
+    DataInputBuffer in = new DataInputBuffer();
+    in.reset(out.getData(), out.getLength());
+    ContainerHeartbeat result = new ContainerHeartbeat();
+    result.readFields(in);
+    Assert.assertTrue("decoded", decoder.decode(result));
+    return result;
+  }
+
+  private static void assertWindowStats(ContainerHeartbeat expected, ContainerHeartbeat actual)
+  {
+    Assert.assertEquals("operators", expected.stats.operators.size(), actual.stats.operators.size());
+    for (int i = 0; i < expected.stats.operators.size(); i++) {
+      List<Stats.OperatorStats> expectedWindows = expected.stats.operators.get(i).windowStats;
+      List<Stats.OperatorStats> windows = actual.stats.operators.get(i).windowStats;
+      Assert.assertEquals("windows", expectedWindows.size(), windows.size());
+      for (int j = 0; j < windows.size(); j++) {
+        Stats.OperatorStats eos = expectedWindows.get(j);
+        Stats.OperatorStats os = windows.get(j);
+        Assert.assertEquals("window", eos.windowId, os.windowId);
+        Assert.assertEquals("checkpoint", eos.checkpoint, os.checkpoint);
+        Assert.assertEquals("cpu", eos.cpuTimeUsed, os.cpuTimeUsed);
+        Assert.assertEquals("metrics", eos.metrics, os.metrics);
+        Assert.assertEquals("recording", eos.recordingId, os.recordingId);
+        Assert.assertEquals("input ports", eos.inputPorts.size(), os.inputPorts.size());
+        for (int k = 0; k < os.inputPorts.size(); k++) {
+          Stats.OperatorStats.PortStats eps = eos.inputPorts.get(k);
+          Stats.OperatorStats.PortStats ps = os.inputPorts.get(k);
+          Assert.assertEquals("port", eps.id, ps.id);
+          Assert.assertEquals("tuples", eps.tupleCount, ps.tupleCount);
+          Assert.assertEquals("end window", eps.endWindowTimestamp, ps.endWindowTimestamp);
+          Assert.assertEquals("bytes", eps.bufferServerBytes, ps.bufferServerBytes);
+        }
+        Assert.assertEquals("output ports", eos.outputPorts.size(), os.outputPorts.size());
+      }
+    }
+  }
+
+  /**
+   * Advance the windows of the heartbeat as the next heartbeat of the container would report them.
+   */
+  private static ContainerHeartbeat nextHeartbeat(ContainerHeartbeat hb, int windowCount)
+  {
+    ContainerHeartbeat next = newHeartbeat(hb.stats.operators.size(), windowCount);
+    for (int i = 0; i < hb.stats.operators.size(); i++) {
+      List<Stats.OperatorStats> windows = hb.stats.operators.get(i).windowStats;
+      Stats.OperatorStats last = windows.get(windows.size() - 1);
+      for (Stats.OperatorStats os : next.stats.operators.get(i).windowStats) {
+        os.windowId = last.windowId + 1 + os.windowId - WINDOW_ID;
+        os.inputPorts.get(0).endWindowTimestamp = last.inputPorts.get(0).endWindowTimestamp + 500;
+        os.inputPorts.get(0).tupleCount += i;
+      }
+    }
+    return next;
+  }
+
+  @Test
+  public void testDeltaEncoding() throws IOException
+  {
+    HeartbeatCodec.Encoder encoder = new HeartbeatCodec.Encoder();
+    HeartbeatCodec.Decoder decoder = new HeartbeatCodec.Decoder();
+    DataOutputBuffer out = new DataOutputBuffer();
+
+    // first heartbeat has no base and carries the full state
+    ContainerHeartbeat hb1 = newHeartbeat(10, 2);
+    encoder.encode(hb1);
+    Assert.assertEquals("full", -1, hb1.baseSequence);
+    ContainerHeartbeat result = roundTrip(hb1, decoder, out);
+    assertWindowStats(hb1, result);
+    int fullSize = out.getLength();
+    encoder.acknowledge(hb1, new ContainerHeartbeatResponse());
+
+    ContainerHeartbeat hb2 = nextHeartbeat(hb1, 2);
+    hb2.stats.operators.get(0).windowStats.get(1).metrics.put("added", "value");
+    hb2.stats.operators.get(1).windowStats.get(0).checkpoint = new Checkpoint(WINDOW_ID + 1, 0, 0);
+    hb2.stats.operators.get(2).windowStats.get(1).outputPorts.add(new Stats.OperatorStats.PortStats("output2"));
+    encoder.encode(hb2);
+    Assert.assertEquals("base", hb1.sequence, hb2.baseSequence);
+    result = roundTrip(hb2, decoder, out);
+    assertWindowStats(hb2, result);
+    Assert.assertTrue("delta smaller " + out.getLength() + " " + fullSize, out.getLength() < fullSize / 2);
+    // response lost, the next heartbeat is encoded against the previous base
+    encoder.acknowledge(hb2, null);
+
+    ContainerHeartbeat hb3 = nextHeartbeat(hb2, 1);
+    encoder.encode(hb3);
+    Assert.assertEquals("base", hb1.sequence, hb3.baseSequence);
+    assertWindowStats(hb3, roundTrip(hb3, decoder, out));
+    encoder.acknowledge(hb3, new ContainerHeartbeatResponse());
+
+    // master restarted without the base, the container falls back to the full state
+    ContainerHeartbeat hb4 = nextHeartbeat(hb3, 2);
+    encoder.encode(hb4);
+    Assert.assertEquals("base", hb3.sequence, hb4.baseSequence);
+    decoder = new HeartbeatCodec.Decoder();
+    out.reset();
+    hb4.write(out);
+    DataInputBuffer in = new DataInputBuffer();
+    in.reset(out.getData(), out.getLength());
+    result = new ContainerHeartbeat();
+    result.readFields(in);
+    Assert.assertFalse("missing base", decoder.decode(result));
+    ContainerHeartbeatResponse rsp = new ContainerHeartbeatResponse();
+    rsp.statsResync = true;
+    encoder.acknowledge(hb4, roundTrip(rsp));
+
+    ContainerHeartbeat hb5 = nextHeartbeat(hb4, 2);
+    encoder.encode(hb5);
+    Assert.assertEquals("full", -1, hb5.baseSequence);
+    assertWindowStats(hb5, roundTrip(hb5, decoder, out));
+  }
+
+  @Test
+  public void testHeartbeat() throws IOException
+  {
+    ContainerHeartbeat hb = newHeartbeat(2, 2);
+    hb.restartRequested = true;
+    hb.stats.operators.get(0).windowStats.get(0).counters = Collections.singletonMap("counter", 5);
+    hb.stats.operators.get(1).requestResponse = new ArrayList<>();
+
+    ContainerHeartbeat result = roundTrip(hb);
+    Assert.assertEquals("host", hb.bufferServerHost, result.bufferServerHost);
+    Assert.assertEquals("port", hb.bufferServerPort, result.bufferServerPort);
+    Assert.assertEquals("jvm", hb.jvmName, result.jvmName);
+    Assert.assertEquals("free memory", hb.memoryMBFree, result.memoryMBFree);
+    Assert.assertEquals("used memory", hb.memoryMBUsed, result.memoryMBUsed);
+    Assert.assertTrue("restart", result.restartRequested);
+    Assert.assertEquals("sent", hb.sentTms, result.sentTms);
+    Assert.assertNull("stack trace", result.stackTrace);
+    Assert.assertEquals("container", "container_1", result.getContainerId());
+    Assert.assertEquals("operators", 2, result.stats.operators.size());
+
+    OperatorHeartbeat ohb = result.stats.operators.get(0);
+    Assert.assertEquals("node id", 1, ohb.nodeId);
+    Assert.assertEquals("state", OperatorHeartbeat.DeployState.ACTIVE, ohb.state);
+    Assert.assertNull("responses", ohb.requestResponse);
+    Assert.assertEquals("responses", 0, result.stats.operators.get(1).requestResponse.size());
+
+    Stats.OperatorStats expected = hb.stats.operators.get(0).windowStats.get(1);
+    Stats.OperatorStats os = ohb.windowStats.get(1);
+    Assert.assertEquals("window", expected.windowId, os.windowId);
+    Assert.assertEquals("checkpoint", expected.checkpoint, os.checkpoint);
+    Assert.assertEquals("cpu", expected.cpuTimeUsed, os.cpuTimeUsed);
+    Assert.assertEquals("metrics", expected.metrics, os.metrics);
+    Assert.assertNull("checkpoint stats", os.checkpointStats);
+    Assert.assertEquals("input port", "input", os.inputPorts.get(0).id);
+    Assert.assertEquals("tuples", 1000, os.inputPorts.get(0).tupleCount);
+    Assert.assertEquals("queue", 10, os.inputPorts.get(0).queueSize);
+    Assert.assertEquals("bytes", 64000, os.inputPorts.get(0).bufferServerBytes);
+    Assert.assertEquals("output port", "output", os.outputPorts.get(0).id);
+    Assert.assertEquals("counters", hb.stats.operators.get(0).windowStats.get(0).counters,
+        ohb.windowStats.get(0).counters);
+  }
+
+  private static ContainerHeartbeatResponse roundTrip(ContainerHeartbeatResponse rsp) throws IOException
+  {
+    DataOutputBuffer out = new DataOutputBuffer();
+    rsp.write(out);
+    DataInputBuffer in = new DataInputBuffer();
+    in.reset(out.getData(), out.getLength());
+    ContainerHeartbeatResponse result = new ContainerHeartbeatResponse();
+    result.readFields(in);
+    return result;
+  }
+
+  @Test
+  public void testHeartbeatResponse() throws IOException
+  {
+    ContainerHeartbeatResponse rsp = new ContainerHeartbeatResponse();
+    rsp.committedWindowId = 0x57f6a3b200000010L;
+    rsp.hasPendingRequests = true;
+    rsp.undeployRequest = new ArrayList<>();
+    rsp.undeployRequest.add(3);
+    rsp.nodeRequests = new ArrayList<>();
+    StramToNodeRequest request = new StramToNodeRequest();
+    request.operatorId = 3;
+    request.requestType = StramToNodeRequest.RequestType.START_RECORDING;
+    rsp.nodeRequests.add(request);
+
+    ContainerHeartbeatResponse result = roundTrip(rsp);
+
+    Assert.assertFalse("shutdown", result.shutdown);
+    Assert.assertFalse("resync", result.statsResync);
+    Assert.assertTrue("pending", result.hasPendingRequests);
+    Assert.assertEquals("committed", rsp.committedWindowId, result.committedWindowId);
+    Assert.assertEquals("undeploy", rsp.undeployRequest, result.undeployRequest);
+    Assert.assertNull("deploy", result.deployRequest);
+    Assert.assertEquals("requests", 1, result.nodeRequests.size());
+    Assert.assertEquals("request type", StramToNodeRequest.RequestType.START_RECORDING,
+        result.nodeRequests.get(0).requestType);
+  }
+
+  /**
+   * Compares the encoding with Java serialization of the same heartbeat.
+   */
+  @Test
+  @Ignore
+  public void testPerformance() throws IOException
+  {
+    final int iterations = 2000;
+    for (int operatorCount : new int[] {10, 100, 1000}) {
+      ContainerHeartbeat hb = newHeartbeat(operatorCount, 2);
+      DataOutputBuffer out = new DataOutputBuffer();
+      DataInputBuffer in = new DataInputBuffer();
+      ContainerHeartbeat result = new ContainerHeartbeat();
+      for (int i = 0; i < iterations / 10; i++) {
+        out.reset();
+        hb.write(out);
+        in.reset(out.getData(), out.getLength());
+        result.readFields(in);
+      }
+
+      long start = System.nanoTime();
+      for (int i = 0; i < iterations; i++) {
+        out.reset();
+        hb.write(out);
+      }
+      long encodeNanos = (System.nanoTime() - start) / iterations;
+      start = System.nanoTime();
+      for (int i = 0; i < iterations; i++) {
+        in.reset(out.getData(), out.getLength());
+        result.readFields(in);
+        new HeartbeatCodec.Decoder().decode(result);
+      }
+      long decodeNanos = (System.nanoTime() - start) / iterations;
+
+      start = System.nanoTime();
+      int serializedSize = 0;
+      for (int i = 0; i < iterations; i++) {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(bos)) {
+          oos.writeObject(hb.stats);
+        }
+        serializedSize = bos.size();
+      }
+      long serializeNanos = (System.nanoTime() - start) / iterations;
+
+      LOG.info("operators {}: size {} bytes encode {} us decode {} us, java serialization size {} bytes encode {} us",
+          operatorCount, out.getLength(), encodeNanos / 1000, decodeNanos / 1000, serializedSize,
+          serializeNanos / 1000);
+    }
+  }
+
+}
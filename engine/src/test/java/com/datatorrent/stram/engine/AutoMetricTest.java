@@ -49,8 +49,14 @@ import com.datatorrent.api.Operator;
 import com.datatorrent.api.Partitioner;
 import com.datatorrent.api.Stats.OperatorStats;
 import com.datatorrent.api.StatsListener;
+import com.datatorrent.common.metric.MetricsAggregator;
+import com.datatorrent.common.metric.SingleMetricAggregator;
+import com.datatorrent.common.metric.sum.LongSumAggregator;
 import com.datatorrent.common.partitioner.StatelessPartitioner;
 import com.datatorrent.stram.StramLocalCluster;
+import com.datatorrent.stram.api.OperatorDeployInfo;
+import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.ContainerStats;
+import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.OperatorHeartbeat;
 import com.datatorrent.stram.engine.AutoMetricTest.TestOperator.TestStatsListener;
 import com.datatorrent.stram.plan.logical.LogicalPlan;
 import com.datatorrent.stram.plan.logical.LogicalPlanConfiguration;
@@ -292,6 +298,62 @@ public class AutoMetricTest
     lc.shutdown();
   }
 
+  @Test
+  public void testContainerMetricsAggregation() throws Exception
+  {
+    MetricsAggregator aggregator = new MetricsAggregator();
+    aggregator.addAggregators("progress", new SingleMetricAggregator[]{new LongSumAggregator()});
+    Assert.assertTrue("sum is combinable", aggregator.isCombinable());
+
+    MetricsAggregator renamed = new MetricsAggregator();
+    renamed.addAggregators("progress", new SingleMetricAggregator[]{new LongSumAggregator()}, new String[]{"total"});
+    Assert.assertFalse("renamed metric is not combinable", renamed.isCombinable());
+
+    ContainerMetricsAggregator cma = new ContainerMetricsAggregator();
+    ContainerStats stats = new ContainerStats("container1");
+    stats.addNodeStats(newOperatorHeartbeat(cma, 1, "o1", aggregator, 10, 1L, 11, 2L));
+    stats.addNodeStats(newOperatorHeartbeat(cma, 2, "o1", aggregator, 10, 5L));
+    stats.addNodeStats(newOperatorHeartbeat(cma, 3, "o2", aggregator, 10, 7L));
+    stats.addNodeStats(newOperatorHeartbeat(cma, 4, "o1", null, 10, 9L));
+    cma.aggregate(stats);
+
+    Assert.assertEquals("aggregated window", 6L, stats.operators.get(0).windowStats.get(0).metrics.get("progress"));
+    Assert.assertEquals("window of single partition", 2L, stats.operators.get(0).windowStats.get(1).metrics.get("progress"));
+    Assert.assertNull("metrics combined", stats.operators.get(1).windowStats.get(0).metrics);
+    Assert.assertEquals("other operator", 7L, stats.operators.get(2).windowStats.get(0).metrics.get("progress"));
+    Assert.assertEquals("not combinable", 9L, stats.operators.get(3).windowStats.get(0).metrics.get("progress"));
+
+    // undeployed partitions are no longer combined
+    cma.remove(2);
+    stats = new ContainerStats("container1");
+    stats.addNodeStats(newOperatorHeartbeat(cma, 1, "o1", aggregator, 12, 1L));
+    stats.addNodeStats(newOperatorHeartbeat(null, 2, "o1", aggregator, 12, 5L));
+    cma.aggregate(stats);
+    Assert.assertEquals("removed partition", 5L, stats.operators.get(1).windowStats.get(0).metrics.get("progress"));
+  }
+
+  private static OperatorHeartbeat newOperatorHeartbeat(ContainerMetricsAggregator cma, int id, String name,
+      AutoMetric.Aggregator aggregator, long... windowProgress)
+  {
+    if (cma != null) {
+      OperatorDeployInfo ndi = new OperatorDeployInfo();
+      ndi.id = id;
+      ndi.name = name;
+      ndi.metricsAggregator = aggregator;
+      cma.add(ndi);
+    }
+    OperatorHeartbeat hb = new OperatorHeartbeat();
+    hb.setNodeId(id);
+    for (int i = 0; i < windowProgress.length; i += 2) {
+      OperatorStats os = new OperatorStats();
+      os.windowId = windowProgress[i];
+      os.metrics = Maps.newHashMap();
+      os.metrics.put("progress", windowProgress[i + 1]);
+      hb.windowStats.add(os);
+    }
+    return hb;
+  }
+
   @Test
   public void testInjectionOfDefaultMetricsAggregator() throws Exception
   {
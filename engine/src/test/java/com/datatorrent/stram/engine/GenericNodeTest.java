@@ -55,6 +55,7 @@ import com.datatorrent.common.util.AsyncFSStorageAgent;
 import com.datatorrent.common.util.ScheduledExecutorService;
 import com.datatorrent.common.util.ScheduledThreadPoolExecutor;
 import com.datatorrent.stram.api.Checkpoint;
+import com.datatorrent.stram.plan.logical.LogicalPlan;
 import com.datatorrent.stram.tuple.EndStreamTuple;
 import com.datatorrent.stram.tuple.EndWindowTuple;
 import com.datatorrent.stram.tuple.Tuple;
@@ -592,22 +593,29 @@ public class GenericNodeTest
   @Test
   public void testDefaultCheckPointDistance() throws InterruptedException
   {
-    testCheckpointDistance(Context.DAGContext.CHECKPOINT_WINDOW_COUNT.defaultValue, Context.OperatorContext.CHECKPOINT_WINDOW_COUNT.defaultValue);
+    testCheckpointDistance(Context.DAGContext.CHECKPOINT_WINDOW_COUNT.defaultValue, Context.OperatorContext.CHECKPOINT_WINDOW_COUNT.defaultValue, false);
   }
 
   @Test
   public void testDAGGreaterCheckPointDistance() throws InterruptedException
   {
-    testCheckpointDistance(7, 5);
+    testCheckpointDistance(7, 5, false);
   }
 
   @Test
   public void testOpGreaterCheckPointDistance() throws InterruptedException
   {
-    testCheckpointDistance(3, 5);
+    testCheckpointDistance(3, 5, false);
   }
 
-  private void testCheckpointDistance(int dagCheckPoint, int opCheckPoint) throws InterruptedException
+  @Test
+  public void testWindowAlignedCheckPointDistance() throws InterruptedException
+  {
+    testCheckpointDistance(7, 5, true);
+    testCheckpointDistance(3, 5, true);
+  }
+
+  private void testCheckpointDistance(int dagCheckPoint, int opCheckPoint, boolean windowAligned) throws InterruptedException
   {
     int windowWidth = 50;
     long sleeptime = 25L;
@@ -617,9 +625,11 @@ public class GenericNodeTest
 
     ScheduledExecutorService executorService = new ScheduledThreadPoolExecutor(1, "default");
     final WindowGenerator windowGenerator = new WindowGenerator(executorService, 1024);
+    final long firstWindowMillis = executorService.getCurrentTimeMillis();
+    windowGenerator.setResetWindow(firstWindowMillis);
     windowGenerator.setWindowWidth(windowWidth);
-    windowGenerator.setFirstWindow(executorService.getCurrentTimeMillis());
-    windowGenerator.setCheckpointCount(dagCheckPoint, 0);
+    windowGenerator.setFirstWindow(firstWindowMillis);
+    windowGenerator.setCheckpointCount(windowAligned ? 0 : dagCheckPoint, 0);
     //GenericOperator go = new GenericOperator();
     CheckpointDistanceOperator go = new CheckpointDistanceOperator();
     go.maxWindows = maxWindows;
@@ -637,6 +647,7 @@ public class GenericNodeTest
     DefaultAttributeMap attrMap = new DefaultAttributeMap();
     attrMap.put(Context.DAGContext.CHECKPOINT_WINDOW_COUNT, dagCheckPoint);
     attrMap.put(Context.OperatorContext.CHECKPOINT_WINDOW_COUNT, opCheckPoint);
+    attrMap.put(LogicalPlan.WINDOW_ALIGNED_CHECKPOINTS, windowAligned);
     final OperatorContext context = new com.datatorrent.stram.engine.OperatorContext(0, "operator", attrMap, null);
     final GenericNode gn = new GenericNode(go, context);
     gn.setId(1);
@@ -649,6 +660,8 @@ public class GenericNodeTest
     gn.connectInputPort("ip1", windowGenerator.acquireReservoir("ip1", 1024));
     gn.connectInputPort("ip2", windowGenerator.acquireReservoir("ip2", 1024));
     gn.connectOutputPort("op", Sink.BLACKHOLE);
+    gn.firstWindowMillis = firstWindowMillis;
+    gn.windowWidthMillis = windowWidth;
 
     final AtomicBoolean ab = new AtomicBoolean(false);
     Thread t = new Thread()
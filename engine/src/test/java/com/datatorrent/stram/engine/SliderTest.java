@@ -18,18 +18,25 @@
  */
 package com.datatorrent.stram.engine;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.junit.Assert;
 import org.junit.Test;
 
+import com.datatorrent.api.Attribute;
 import com.datatorrent.api.Context;
 import com.datatorrent.api.DefaultInputPort;
 import com.datatorrent.api.DefaultOutputPort;
 import com.datatorrent.api.InputOperator;
 import com.datatorrent.api.Operator;
+import com.datatorrent.api.Sink;
 import com.datatorrent.common.util.AsyncFSStorageAgent;
 import com.datatorrent.common.util.BaseOperator;
+import com.datatorrent.common.util.FSStorageAgent;
 import com.datatorrent.stram.StramLocalCluster;
 import com.datatorrent.stram.plan.logical.LogicalPlan;
 import com.datatorrent.stram.support.StramTestSupport;
@@ -64,6 +71,7 @@ public class SliderTest
   public static class Sum extends BaseOperator implements Operator.Unifier<Integer>
   {
     int sum;
+    boolean combine;
 
     @Override
     public void beginWindow(long windowId)
@@ -85,7 +93,7 @@ public class SliderTest
       @Override
       public Unifier<Integer> getUnifier()
       {
-        return new Sum();
+        return combine ? new SumCombiner() : new Sum();
       }
     };
 
@@ -104,6 +112,33 @@ public class SliderTest
     }
   }
 
+  public static class SumCombiner extends Sum implements Operator.Combiner<Integer, Integer>
+  {
+    @Override
+    public Integer createAggregate()
+    {
+      return 0;
+    }
+
+    @Override
+    public Integer accumulate(Integer aggregate, Integer tuple)
+    {
+      return aggregate + tuple;
+    }
+
+    @Override
+    public Integer merge(Integer aggregate, Integer other)
+    {
+      return aggregate + other;
+    }
+
+    @Override
+    public Integer getResult(Integer aggregate)
+    {
+      return aggregate;
+    }
+  }
+
   public static class Validator extends BaseOperator
   {
     public static int numbersValidated;
@@ -140,6 +175,11 @@ public class SliderTest
   }
 
   private void test(int applicationWindowCount, int slideByWindowCount) throws Exception
+  {
+    test(applicationWindowCount, slideByWindowCount, false);
+  }
+
+  private void test(int applicationWindowCount, int slideByWindowCount, boolean combine) throws Exception
   {
     LogicalPlan dag = new LogicalPlan();
     String workingDir = new File("target/sliderTest").getAbsolutePath();
@@ -147,6 +187,7 @@ public class SliderTest
     dag.getAttributes().put(LogicalPlan.STREAMING_WINDOW_SIZE_MILLIS, 100);
     Input input = dag.addOperator("Input", new Input());
     Sum sum = dag.addOperator("Sum", new Sum());
+    sum.combine = combine;
     dag.setOperatorAttribute(sum, OperatorContext.APPLICATION_WINDOW_COUNT, applicationWindowCount);
     dag.setOperatorAttribute(sum, OperatorContext.SLIDE_BY_WINDOW_COUNT, slideByWindowCount);
     Validator validate = dag.addOperator("validator", new Validator());
@@ -186,4 +227,66 @@ public class SliderTest
   {
     test(4, 2);
   }
+
+  @Test
+  public void testSliderWithCombiner() throws Exception
+  {
+    test(5, 2, true);
+  }
+
+  @Test
+  public void testCombinerMatchesCachedTuples() throws Exception
+  {
+    for (int slide = 1; slide < 7; slide++) {
+      List<Integer> expected = new ArrayList<>();
+      List<Integer> actual = new ArrayList<>();
+      Slider cached = newSlider(new Sum(), 7, slide, expected);
+      Slider combined = newSlider(new SumCombiner(), 7, slide, actual);
+      for (int windowId = 0; windowId < 50; windowId++) {
+        if (windowId == 20) {
+          // continue from checkpointed state
+          ByteArrayOutputStream bos = new ByteArrayOutputStream();
+          FSStorageAgent.store(bos, combined);
+          combined = (Slider)FSStorageAgent.retrieve(new ByteArrayInputStream(bos.toByteArray()));
+          combined = newSlider(combined, actual);
+        }
+        cached.beginWindow(windowId);
+        combined.beginWindow(windowId);
+        for (int i = 0; i < windowId % 3; i++) {
+          cached.process(windowId + i);
+          combined.process(windowId + i);
+        }
+        cached.endWindow();
+        combined.endWindow();
+      }
+      Assert.assertFalse("results for slide " + slide, expected.isEmpty());
+      Assert.assertEquals("results for slide " + slide, expected, actual);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Slider newSlider(Sum sum, int buckets, int slideBuckets, List<Integer> results)
+  {
+    return newSlider(new Slider((Operator.Unifier)sum, buckets, slideBuckets), results);
+  }
+
+  private static Slider newSlider(Slider slider, final List<Integer> results)
+  {
+    slider.outputPort.setSink(new Sink<Object>()
+    {
+      @Override
+      public void put(Object tuple)
+      {
+        results.add((Integer)tuple);
+      }
+
+      @Override
+      public int getCount(boolean reset)
+      {
+        return 0;
+      }
+    });
+    slider.setup(new OperatorContext(1, "slider", new Attribute.AttributeMap.DefaultAttributeMap(), null));
+    return slider;
+  }
 }
@@ -1719,6 +1719,175 @@ public class PhysicalPlanTest
 
   }
 
+  @Test
+  public void testIncrementalCascadingUnifier()
+  {
+    LogicalPlan dag = new LogicalPlan();
+
+    TestInputOperator<?> o1 = dag.addOperator("o1", TestInputOperator.class);
+    GenericTestOperator o2 = dag.addOperator("o2", GenericTestOperator.class);
+    dag.addStream("o1.outport1", o1.output, o2.inport1);
+
+    OperatorMeta o1Meta = dag.getMeta(o1);
+    dag.setOperatorAttribute(o1, OperatorContext.PARTITIONER, new StatelessPartitioner<GenericTestOperator>(4));
+    dag.setOperatorAttribute(o1, OperatorContext.STATS_LISTENERS, Arrays.asList(new StatsListener[]{new PartitioningTest.PartitionLoadWatch()}));
+    dag.setOutputPortAttribute(o1.output, PortContext.UNIFIER_LIMIT, 2);
+
+    TestPlanContext ctx = new TestPlanContext();
+    dag.setAttribute(OperatorContext.STORAGE_AGENT, ctx);
+    PhysicalPlan plan = new PhysicalPlan(dag, ctx);
+
+    List<PTOperator> o1Partitions = plan.getOperators(o1Meta);
+    Assert.assertEquals("partitions " + o1Partitions, 4, o1Partitions.size());
+    Assert.assertEquals("cascading unifiers " + o1Meta, 2, plan.getMergeOperators(o1Meta).size());
+
+    PTOperator o1p1 = o1Partitions.get(0);
+    PTOperator splitUnifier = o1p1.getOutputs().get(0).sinks.get(0).target;
+    PTOperator unchangedUnifier = o1Partitions.get(3).getOutputs().get(0).sinks.get(0).target;
+    Assert.assertNotSame("cascading unifiers", splitUnifier, unchangedUnifier);
+    Set<PTOperator> unchangedSources = Sets.newHashSet();
+    for (PTInput in : unchangedUnifier.getInputs()) {
+      unchangedSources.add(in.source.source);
+    }
+    Assert.assertFalse("split partition not in " + unchangedSources, unchangedSources.contains(o1p1));
+
+    PartitioningTest.PartitionLoadWatch.put(o1p1, 1);
+    plan.onStatusUpdate(o1p1);
+    Assert.assertEquals("partition scaling triggered", 1, ctx.events.size());
+    ctx.events.remove(0).run();
+    PartitioningTest.PartitionLoadWatch.remove(o1p1);
+
+    Assert.assertEquals("partitions " + o1Meta, 5, plan.getOperators(o1Meta).size());
+    List<PTOperator> o1Unifiers = plan.getMergeOperators(o1Meta);
+    Assert.assertEquals("cascading unifiers " + o1Unifiers, 3, o1Unifiers.size());
+    Assert.assertTrue("retained " + o1Unifiers, o1Unifiers.containsAll(Arrays.asList(splitUnifier, unchangedUnifier)));
+
+    Set<PTOperator> sources = Sets.newHashSet();
+    for (PTInput in : unchangedUnifier.getInputs()) {
+      sources.add(in.source.source);
+    }
+    Assert.assertEquals("sources " + unchangedUnifier, unchangedSources, sources);
+    Assert.assertFalse("unchanged unifier remains deployed " + ctx.undeploy, ctx.undeploy.contains(unchangedUnifier));
+    Assert.assertTrue("rewired unifier redeployed " + ctx.undeploy, ctx.undeploy.contains(splitUnifier));
+    Assert.assertTrue("downstream redeployed " + ctx.undeploy, ctx.undeploy.containsAll(plan.getOperators(dag.getMeta(o2))));
+    // rewired cascading unifier, added cascading unifier and rewired downstream unifier
+    Assert.assertEquals("unifier changes", 3, plan.unifierChanges);
+  }
+
+  @Test
+  public void testAdaptiveCascadingUnifier()
+  {
+    Assert.assertEquals("levels", 2, StreamMapping.getLevels(8, 2));
+    Assert.assertEquals("levels", 0, StreamMapping.getLevels(8, 8));
+    Assert.assertEquals("limit", 4, StreamMapping.getLimit(8, 1));
+    Assert.assertEquals("limit", 2, StreamMapping.getLimit(8, 2));
+
+    LogicalPlan dag = new LogicalPlan();
+    TestGeneratorInputOperator o1 = dag.addOperator("o1", TestGeneratorInputOperator.class);
+    GenericTestOperator o2 = dag.addOperator("o2", GenericTestOperator.class);
+    dag.addStream("o1.outport", o1.outport, o2.inport1);
+    OperatorMeta o1Meta = dag.getMeta(o1);
+    dag.setOperatorAttribute(o1, OperatorContext.PARTITIONER, new StatelessPartitioner<TestGeneratorInputOperator>(8));
+    dag.setAttribute(LogicalPlan.UNIFIER_ADAPTIVE_COOLDOWN_MILLIS, 1000L);
+
+    TestPlanContext ctx = new TestPlanContext();
+    dag.setAttribute(OperatorContext.STORAGE_AGENT, ctx);
+    PhysicalPlan plan = new PhysicalPlan(dag, ctx);
+    Assert.assertEquals("cascading unifiers", 0, plan.getMergeOperators(o1Meta).size());
+    PTOperator unifier = plan.getOperators(dag.getMeta(o2)).get(0).upstreamMerge.values().iterator().next();
+    Assert.assertEquals("unifier inputs", 8, unifier.getInputs().size());
+
+    // idle unifier at the minimum depth
+    long tms = 1000;
+    setUnifierStats(plan, 0.1);
+    Assert.assertEquals("reshapes", 0, adaptCascadingUnifiers(plan, ctx, tms));
+    Assert.assertEquals("cascading unifiers", 0, plan.getMergeOperators(o1Meta).size());
+
+    // saturated unifier adds a level, through the master main loop
+    setUnifierStats(plan, 0.9);
+    plan.adaptCascadingUnifiers(tms);
+    Assert.assertEquals("reshape dispatched", 1, ctx.events.size());
+    Assert.assertEquals("cascading unifiers", 0, plan.getMergeOperators(o1Meta).size());
+    plan.adaptCascadingUnifiers(tms + 1000);
+    Assert.assertEquals("single pending reshape", 1, ctx.events.size());
+    ctx.events.remove(0).run();
+    List<PTOperator> cascadingUnifiers = plan.getMergeOperators(o1Meta);
+    Assert.assertEquals("cascading unifiers " + cascadingUnifiers, 2, cascadingUnifiers.size());
+    for (PTOperator cascadingUnifier : cascadingUnifiers) {
+      Assert.assertEquals("cascading unifier inputs", 4, cascadingUnifier.getInputs().size());
+      Assert.assertTrue("deployed " + ctx.deploy, ctx.deploy.contains(cascadingUnifier));
+    }
+    Assert.assertEquals("unifier inputs", 2, unifier.getInputs().size());
+    Assert.assertTrue("rewired unifier redeployed " + ctx.undeploy, ctx.undeploy.contains(unifier));
+
+    // no decision within the cooldown
+    setUnifierStats(plan, 0.9);
+    Assert.assertEquals("reshapes", 0, adaptCascadingUnifiers(plan, ctx, tms + 500));
+    tms += 1000;
+
+    // no decision while the new unifiers are not active
+    setUnifierStats(plan, 0.9);
+    for (PTOperator cascadingUnifier : cascadingUnifiers) {
+      cascadingUnifier.setState(PTOperator.State.PENDING_DEPLOY);
+    }
+    Assert.assertEquals("reshapes", 0, adaptCascadingUnifiers(plan, ctx, tms));
+    Assert.assertEquals("cascading unifiers", cascadingUnifiers, plan.getMergeOperators(o1Meta));
+
+    // backlog adds another level
+    setUnifierStats(plan, 0.5);
+    unifier.stats.inputPortStatusList.values().iterator().next().queueSizeMA.add(1024);
+    Assert.assertEquals("reshapes", 1, adaptCascadingUnifiers(plan, ctx, tms));
+    Assert.assertEquals("cascading unifiers", 6, plan.getMergeOperators(o1Meta).size());
+    Assert.assertEquals("unifier inputs", 2, unifier.getInputs().size());
+    tms += 1000;
+
+    // idle unifiers collapse one level at a time
+    setUnifierStats(plan, 0.1);
+    Assert.assertEquals("reshapes", 1, adaptCascadingUnifiers(plan, ctx, tms));
+    Assert.assertEquals("cascading unifiers", 2, plan.getMergeOperators(o1Meta).size());
+    tms += 1000;
+
+    // idle unifiers that would saturate with the doubled fan-in keep the level
+    dag.setAttribute(LogicalPlan.UNIFIER_SATURATED_CPU, 0.15);
+    setUnifierStats(plan, 0.1);
+    Assert.assertEquals("reshapes", 0, adaptCascadingUnifiers(plan, ctx, tms));
+    Assert.assertEquals("cascading unifiers", 2, plan.getMergeOperators(o1Meta).size());
+
+    dag.setAttribute(LogicalPlan.UNIFIER_SATURATED_CPU, 0.8);
+    setUnifierStats(plan, 0.1);
+    Assert.assertEquals("reshapes", 1, adaptCascadingUnifiers(plan, ctx, tms));
+    Assert.assertEquals("cascading unifiers", 0, plan.getMergeOperators(o1Meta).size());
+    Assert.assertEquals("unifier inputs", 8, unifier.getInputs().size());
+  }
+
+  /**
+   * Run the reshape decisions and the dispatched reshapes as the master main loop does.
+   *
+   * @return number of reshapes
+   */
+  private static int adaptCascadingUnifiers(PhysicalPlan plan, TestPlanContext ctx, long tms)
+  {
+    plan.adaptCascadingUnifiers(tms);
+    int count = ctx.events.size();
+    while (!ctx.events.isEmpty()) {
+      ctx.events.remove(0).run();
+    }
+    return count;
+  }
+
+  private static void setUnifierStats(PhysicalPlan plan, double cpu)
+  {
+    for (PTOperator oper : plan.getAllOperators().values()) {
+      oper.setState(PTOperator.State.ACTIVE);
+      if (oper.isUnifier()) {
+        oper.stats.cpuNanosPMSMA.add((long)(cpu * 1000000 * 30000), 30000);
+        for (PTInput in : oper.getInputs()) {
+          oper.stats.inputPortStatusList.put(in.portName, oper.stats.new PortStatus());
+        }
+      }
+    }
+  }
+
   @Test
   public void testSingleFinalCascadingUnifier()
   {
@@ -2244,4 +2413,63 @@ public class PhysicalPlanTest
     PhysicalPlan plan = new PhysicalPlan(dag, new TestPlanContext());
     Assert.assertEquals("number of containers", 7, plan.getContainers().size());
   }
+
+  private static class ThreadRecordingPartitioner extends StatelessPartitioner<Operator>
+  {
+    private static final long serialVersionUID = 1L;
+    final List<String> threads = Collections.synchronizedList(new ArrayList<String>());
+
+    ThreadRecordingPartitioner(int partitionCount)
+    {
+      super(partitionCount);
+    }
+
+    @Override
+    public Collection<Partition<Operator>> definePartitions(Collection<Partition<Operator>> partitions, PartitioningContext context)
+    {
+      threads.add(Thread.currentThread().getName());
+      return super.definePartitions(partitions, context);
+    }
+  }
+
+  @Test
+  public void testConcurrentInitialPartitioning()
+  {
+    LogicalPlan dag = new LogicalPlan();
+    dag.setAttribute(OperatorContext.STORAGE_AGENT, new StramTestSupport.MemoryStorageAgent());
+    dag.setAttribute(LogicalPlan.PARTITIONING_THREADS, 4);
+
+    GenericTestOperator o1 = dag.addOperator("o1", GenericTestOperator.class);
+    GenericTestOperator o2 = dag.addOperator("o2", GenericTestOperator.class);
+    GenericTestOperator o3 = dag.addOperator("o3", GenericTestOperator.class);
+    GenericTestOperator o4 = dag.addOperator("o4", GenericTestOperator.class);
+    GenericTestOperator o5 = dag.addOperator("o5", GenericTestOperator.class);
+    ThreadRecordingPartitioner p1 = new ThreadRecordingPartitioner(2);
+    ThreadRecordingPartitioner p2 = new ThreadRecordingPartitioner(3);
+    ThreadRecordingPartitioner shared = new ThreadRecordingPartitioner(2);
+    ThreadRecordingPartitioner parallel = new ThreadRecordingPartitioner(1);
+    dag.setOperatorAttribute(o1, OperatorContext.PARTITIONER, p1);
+    dag.setOperatorAttribute(o2, OperatorContext.PARTITIONER, p2);
+    dag.setOperatorAttribute(o3, OperatorContext.PARTITIONER, shared);
+    dag.setOperatorAttribute(o4, OperatorContext.PARTITIONER, shared);
+    dag.setOperatorAttribute(o5, OperatorContext.PARTITIONER, parallel);
+    dag.addStream("o1.outport1", o1.outport1, o5.inport1);
+    dag.setInputPortAttribute(o5.inport1, PortContext.PARTITION_PARALLEL, true);
+    dag.addStream("o2.outport1", o2.outport1, o3.inport1);
+    dag.addStream("o3.outport1", o3.outport1, o4.inport1);
+
+    PhysicalPlan plan = new PhysicalPlan(dag, new TestPlanContext());
+    Assert.assertEquals("partitions o1", 2, plan.getOperators(dag.getMeta(o1)).size());
+    Assert.assertEquals("partitions o2", 3, plan.getOperators(dag.getMeta(o2)).size());
+    Assert.assertEquals("partitions o3", 2, plan.getOperators(dag.getMeta(o3)).size());
+    Assert.assertEquals("partitions o4", 2, plan.getOperators(dag.getMeta(o4)).size());
+    Assert.assertEquals("partitions o5", 2, plan.getOperators(dag.getMeta(o5)).size());
+
+    String planThread = Thread.currentThread().getName();
+    Assert.assertEquals("partitioner called once", 1, p1.threads.size());
+    Assert.assertNotEquals("concurrent", planThread, p1.threads.get(0));
+    Assert.assertNotEquals("concurrent", planThread, p2.threads.get(0));
+    Assert.assertEquals("shared partitioner", Arrays.asList(planThread, planThread), shared.threads);
+    Assert.assertEquals("parallel partitioned", Arrays.asList(planThread), parallel.threads);
+  }
 }
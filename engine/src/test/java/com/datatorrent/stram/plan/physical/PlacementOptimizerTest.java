@@ -0,0 +1,219 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.stram.plan.physical;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.datatorrent.api.AffinityRule;
+import com.datatorrent.api.AffinityRulesSet;
+import com.datatorrent.api.Context.DAGContext;
+import com.datatorrent.api.Context.OperatorContext;
+import com.datatorrent.api.DAG.Locality;
+import com.datatorrent.stram.engine.GenericTestOperator;
+import com.datatorrent.stram.plan.TestPlanContext;
+import com.datatorrent.stram.plan.logical.LogicalPlan;
+import com.datatorrent.stram.plan.physical.PlacementOptimizer.Migration;
+import com.datatorrent.stram.plan.physical.PlacementOptimizer.Proposal;
+import com.datatorrent.stram.support.StramTestSupport;
+
+public class PlacementOptimizerTest
+{
+  private final Map<PTContainer, Integer> usedMemoryMB = new HashMap<>();
+
+  @Test
+  public void testConsolidate()
+  {
+    LogicalPlan dag = newDAG();
+    GenericTestOperator o1 = dag.addOperator("o1", GenericTestOperator.class);
+    GenericTestOperator o2 = dag.addOperator("o2", GenericTestOperator.class);
+    dag.addOperator("o3", GenericTestOperator.class);
+    dag.addStream("s1", o1.outport1, o2.inport1);
+
+    PhysicalPlan plan = deploy(dag);
+    Assert.assertEquals("containers", 3, plan.getContainers().size());
+    for (PTOperator oper : plan.getAllOperators().values()) {
+      setCpu(oper, 10);
+    }
+
+    Proposal proposal = new PlacementOptimizer(0.8).propose(plan.getContainers(), usedMemoryMB, null);
+    Assert.assertEquals("current", 3, proposal.currentContainers);
+    Assert.assertEquals("proposed", 1, proposal.proposedContainers);
+    Assert.assertEquals("migrations " + proposal, 2, proposal.migrations.size());
+    Map<PTOperator, PTContainer> placement = getPlacement(plan, proposal);
+    Assert.assertEquals("placed together", 1, new HashSet<>(placement.values()).size());
+
+    // no further improvement
+    for (PTOperator oper : plan.getAllOperators().values()) {
+      setCpu(oper, 50);
+    }
+    Assert.assertSame("fully utilized", Proposal.NONE, new PlacementOptimizer(0.8).propose(plan.getContainers(), usedMemoryMB, null));
+  }
+
+  @Test
+  public void testSpreadHotOperators()
+  {
+    LogicalPlan dag = newDAG();
+    dag.setAttribute(LogicalPlan.CONTAINERS_MAX_COUNT, 2);
+    GenericTestOperator o1 = dag.addOperator("o1", GenericTestOperator.class);
+    GenericTestOperator o2 = dag.addOperator("o2", GenericTestOperator.class);
+    GenericTestOperator o3 = dag.addOperator("o3", GenericTestOperator.class);
+
+    PhysicalPlan plan = deploy(dag);
+    PTOperator p1 = plan.getOperators(dag.getMeta(o1)).get(0);
+    PTOperator p2 = plan.getOperators(dag.getMeta(o2)).get(0);
+    PTOperator p3 = plan.getOperators(dag.getMeta(o3)).get(0);
+    Assert.assertSame("shared container", p1.getContainer(), p3.getContainer());
+    setCpu(p1, 60);
+    setCpu(p2, 5);
+    setCpu(p3, 60);
+
+    Proposal proposal = new PlacementOptimizer(0.8).propose(plan.getContainers(), usedMemoryMB, null);
+    Assert.assertEquals("proposed " + proposal, 2, proposal.proposedContainers);
+    Assert.assertEquals("overloaded " + proposal, 0, proposal.overloadedContainers);
+    Map<PTOperator, PTContainer> placement = getPlacement(plan, proposal);
+    Assert.assertNotSame("hot operators spread", placement.get(p1), placement.get(p3));
+    for (Migration m : proposal.migrations) {
+      Assert.assertNotNull("existing container reused", m.to);
+    }
+  }
+
+  @Test
+  public void testConstraints()
+  {
+    LogicalPlan dag = newDAG();
+    GenericTestOperator o1 = dag.addOperator("o1", GenericTestOperator.class);
+    GenericTestOperator o2 = dag.addOperator("o2", GenericTestOperator.class);
+    GenericTestOperator o3 = dag.addOperator("o3", GenericTestOperator.class);
+    GenericTestOperator o4 = dag.addOperator("o4", GenericTestOperator.class);
+    GenericTestOperator o5 = dag.addOperator("o5", GenericTestOperator.class);
+    GenericTestOperator o6 = dag.addOperator("o6", GenericTestOperator.class);
+    dag.addStream("s1", o3.outport1, o4.inport1).setLocality(Locality.NODE_LOCAL);
+    dag.addStream("s2", o5.outport1, o6.inport1).setLocality(Locality.CONTAINER_LOCAL);
+    AffinityRulesSet ruleSet = new AffinityRulesSet();
+    ruleSet.setAffinityRules(Collections.singletonList(new AffinityRule(AffinityRule.Type.ANTI_AFFINITY, Locality.CONTAINER_LOCAL, false, "o1", "o2")));
+    dag.setAttribute(DAGContext.AFFINITY_RULES_SET, ruleSet);
+
+    PhysicalPlan plan = deploy(dag);
+    Assert.assertEquals("containers", 5, plan.getContainers().size());
+    for (PTOperator oper : plan.getAllOperators().values()) {
+      setCpu(oper, 5);
+    }
+
+    Proposal proposal = new PlacementOptimizer(0.8).propose(plan.getContainers(), usedMemoryMB, ruleSet);
+    Assert.assertEquals("proposed " + proposal, 2, proposal.proposedContainers);
+    Map<PTOperator, PTContainer> placement = getPlacement(plan, proposal);
+    PTOperator p1 = plan.getOperators(dag.getMeta(o1)).get(0);
+    PTOperator p2 = plan.getOperators(dag.getMeta(o2)).get(0);
+    PTOperator p3 = plan.getOperators(dag.getMeta(o3)).get(0);
+    PTOperator p4 = plan.getOperators(dag.getMeta(o4)).get(0);
+    PTOperator p5 = plan.getOperators(dag.getMeta(o5)).get(0);
+    PTOperator p6 = plan.getOperators(dag.getMeta(o6)).get(0);
+    Assert.assertNotSame("anti-affinity", placement.get(p1), placement.get(p2));
+    Assert.assertSame("node local stays", p3.getContainer(), placement.get(p3));
+    Assert.assertSame("node local stays", p4.getContainer(), placement.get(p4));
+    Assert.assertSame("container local together", placement.get(p5), placement.get(p6));
+  }
+
+  @Test
+  public void testHeapProfile()
+  {
+    LogicalPlan dag = newDAG();
+    dag.addOperator("o1", GenericTestOperator.class);
+    dag.addOperator("o2", GenericTestOperator.class);
+    dag.addOperator("o3", GenericTestOperator.class);
+
+    PhysicalPlan plan = deploy(dag);
+    Assert.assertEquals("containers", 3, plan.getContainers().size());
+    for (PTOperator oper : plan.getAllOperators().values()) {
+      setCpu(oper, 10);
+    }
+
+    // the JVMs reserved part of the maximum heap and most of it is free, the unreserved memory is not in use
+    for (PTContainer c : plan.getContainers()) {
+      setHeap(c, 600, 450);
+    }
+    Proposal proposal = new PlacementOptimizer(0.8).propose(plan.getContainers(), usedMemoryMB, null);
+    Assert.assertEquals("proposed " + proposal, 1, proposal.proposedContainers);
+
+    // a nearly full heap does not fit with the others
+    PTContainer full = plan.getContainers().get(0);
+    setHeap(full, 1000, 300);
+    proposal = new PlacementOptimizer(0.8).propose(plan.getContainers(), usedMemoryMB, null);
+    Assert.assertEquals("proposed " + proposal, 2, proposal.proposedContainers);
+    for (Migration m : proposal.migrations) {
+      Assert.assertNotSame("full container", full, m.to);
+      Assert.assertNotSame("full container", full, m.from);
+    }
+  }
+
+  private LogicalPlan newDAG()
+  {
+    LogicalPlan dag = new LogicalPlan();
+    dag.setAttribute(OperatorContext.STORAGE_AGENT, new StramTestSupport.MemoryStorageAgent());
+    return dag;
+  }
+
+  private PhysicalPlan deploy(LogicalPlan dag)
+  {
+    PhysicalPlan plan = new PhysicalPlan(dag, new TestPlanContext());
+    for (PTContainer c : plan.getContainers()) {
+      c.setExternalId("container" + c.getId());
+      c.setState(PTContainer.State.ACTIVE);
+      c.setAllocatedMemoryMB(1024);
+      c.setAllocatedVCores(1);
+      usedMemoryMB.put(c, 100 * c.getOperators().size());
+    }
+    return plan;
+  }
+
+  /**
+   * Record the used heap the way the container reports it in the heartbeat.
+   */
+  private void setHeap(PTContainer c, int totalMemoryMB, int freeMemoryMB)
+  {
+    usedMemoryMB.put(c, totalMemoryMB - freeMemoryMB);
+  }
+
+  private static void setCpu(PTOperator oper, int percent)
+  {
+    oper.stats.cpuNanosPMSMA.add(percent * 10000L * 30000, 30000);
+  }
+
+  private static Map<PTOperator, PTContainer> getPlacement(PhysicalPlan plan, Proposal proposal)
+  {
+    Map<PTOperator, PTContainer> placement = new HashMap<>();
+    for (PTOperator oper : plan.getAllOperators().values()) {
+      placement.put(oper, oper.getContainer());
+    }
+    for (Migration m : proposal.migrations) {
+      for (PTOperator oper : m.operators) {
+        Assert.assertSame("source container", m.from, oper.getContainer());
+        placement.put(oper, m.to);
+      }
+    }
+    return placement;
+  }
+
+}
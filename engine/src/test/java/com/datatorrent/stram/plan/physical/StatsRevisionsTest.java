@@ -18,6 +18,15 @@
  */
 package com.datatorrent.stram.plan.physical;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
 import org.junit.Assert;
 
 import org.junit.Test;
@@ -58,4 +67,121 @@ public class StatsRevisionsTest
 
   }
 
+  @Test
+  public void testReadCommitted() throws Exception
+  {
+    final StatsRevisions revs = new StatsRevisions();
+    final VersionedLong vl1 = revs.newVersionedLong();
+    final VersionedLong vl2 = revs.newVersionedLong();
+    final long[] read = new long[2];
+    Thread reader = new Thread()
+    {
+      @Override
+      public void run()
+      {
+        read[0] = vl1.get();
+        read[1] = vl2.get();
+      }
+    };
+
+    for (int i = 1; i <= 3; i++) {
+      revs.checkout();
+      Assert.assertEquals("checkout from last commit", i - 1, vl1.get());
+      vl1.add(1);
+      vl2.set(i * 10);
+      if (i == 3) {
+        reader.start();
+        reader.join();
+        Assert.assertEquals("reader sees last commit", 2, read[0]);
+        Assert.assertEquals("reader sees last commit", 20, read[1]);
+      }
+      revs.commit();
+    }
+    Assert.assertEquals("committed", 3, vl1.get());
+    Assert.assertEquals("committed", 30, vl2.get());
+  }
+
+  @Test
+  public void testConcurrentReaders() throws Exception
+  {
+    final StatsRevisions revs = new StatsRevisions();
+    final VersionedLong[] fields = new VersionedLong[8];
+    for (int i = 0; i < fields.length; i++) {
+      fields[i] = revs.newVersionedLong();
+    }
+    final int numRevisions = 100000;
+    final AtomicBoolean done = new AtomicBoolean();
+    final AtomicReference<String> failure = new AtomicReference<>();
+
+    List<Thread> readers = new ArrayList<>();
+    for (int r = 0; r < 4; r++) {
+      Thread reader = new Thread()
+      {
+        @Override
+        public void run()
+        {
+          long lastRevision = 0;
+          while (!done.get() && failure.get() == null) {
+            StatsRevisions.Revision revision = revs.getRevision();
+            long value = fields[0].get(revision);
+            for (int i = 1; i < fields.length; i++) {
+              if (fields[i].get(revision) != value) {
+                failure.set("mixed revision " + value + " and " + fields[i].get(revision));
+              }
+            }
+            if (value < lastRevision) {
+              failure.set("revision " + value + " after " + lastRevision);
+            }
+            lastRevision = value;
+          }
+        }
+      };
+      reader.start();
+      readers.add(reader);
+    }
+
+    for (long revision = 1; revision <= numRevisions; revision++) {
+      revs.checkout();
+      for (VersionedLong field : fields) {
+        field.set(revision);
+      }
+      revs.commit();
+    }
+    done.set(true);
+    for (Thread reader : readers) {
+      reader.join();
+    }
+    Assert.assertNull(failure.get(), failure.get());
+    for (VersionedLong field : fields) {
+      Assert.assertEquals("committed", numRevisions, field.get());
+    }
+  }
+
+  @Test
+  public void testSerialization() throws Exception
+  {
+    StatsRevisions revs = new StatsRevisions();
+    VersionedLong vl = revs.newVersionedLong();
+    revs.checkout();
+    vl.set(5);
+    revs.commit();
+
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    try (ObjectOutputStream oos = new ObjectOutputStream(bos)) {
+      oos.writeObject(new Object[] {revs, vl});
+    }
+    Object[] restored = (Object[])new ObjectInputStream(new ByteArrayInputStream(bos.toByteArray())).readObject();
+    revs = (StatsRevisions)restored[0];
+    vl = (VersionedLong)restored[1];
+    Assert.assertEquals("restored value", 5, vl.get());
+
+    VersionedLong vl2 = revs.newVersionedLong();
+    revs.checkout();
+    vl.add(1);
+    vl2.set(7);
+    revs.commit();
+    Assert.assertEquals("committed after restore", 6, vl.get());
+    Assert.assertEquals("committed after restore", 7, vl2.get());
+  }
+
 }
@@ -0,0 +1,73 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.stram.stream;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.datatorrent.api.Sink;
+import com.datatorrent.bufferserver.packet.MessageType;
+import com.datatorrent.stram.engine.SliderTest.SumCombiner;
+import com.datatorrent.stram.tuple.EndWindowTuple;
+import com.datatorrent.stram.tuple.Tuple;
+
+public class CombinerSinkTest
+{
+  @Test
+  public void testAggregatePerWindow()
+  {
+    final List<Object> output = new ArrayList<>();
+    CombinerSink<Integer, Integer> sink = new CombinerSink<>(new SumCombiner(), new Sink<Object>()
+    {
+      @Override
+      public void put(Object tuple)
+      {
+        output.add(tuple);
+      }
+
+      @Override
+      public int getCount(boolean reset)
+      {
+        return 0;
+      }
+    });
+
+    Tuple beginWindow1 = new Tuple(MessageType.BEGIN_WINDOW, 1);
+    EndWindowTuple endWindow1 = new EndWindowTuple(1);
+    Tuple beginWindow2 = new Tuple(MessageType.BEGIN_WINDOW, 2);
+    EndWindowTuple endWindow2 = new EndWindowTuple(2);
+
+    sink.put(beginWindow1);
+    for (int i = 1; i <= 10; i++) {
+      sink.put(i);
+    }
+    sink.put(endWindow1);
+    sink.put(beginWindow2);
+    sink.put(endWindow2);
+
+    Assert.assertEquals("output", Arrays.asList(beginWindow1, 55, endWindow1, beginWindow2, endWindow2), output);
+    Assert.assertEquals("count", 14, sink.getCount(true));
+    Assert.assertEquals("count reset", 0, sink.getCount(false));
+  }
+
+}